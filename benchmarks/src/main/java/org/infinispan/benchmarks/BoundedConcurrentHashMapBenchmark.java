@@ -0,0 +1,84 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap;
+import org.infinispan.util.concurrent.BoundedConcurrentHashMap.Eviction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures get and put throughput of {@link BoundedConcurrentHashMap} for each eviction policy, with a key space
+ * twice as large as the map's capacity so that evictions take place.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(4)
+public class BoundedConcurrentHashMapBenchmark {
+
+   @Param({"NONE", "LRU", "LRU_OLD", "LIRS"})
+   Eviction eviction;
+
+   @Param({"10000"})
+   int capacity;
+
+   BoundedConcurrentHashMap<Integer, Integer> map;
+   int keySpace;
+
+   @Setup
+   public void setUp() {
+      map = new BoundedConcurrentHashMap<Integer, Integer>(capacity, 32, eviction);
+      keySpace = capacity * 2;
+      for (int i = 0; i < capacity; i++) map.put(i, i);
+   }
+
+   @Benchmark
+   public Integer get(KeySequence keys) {
+      return map.get(keys.nextKey(keySpace));
+   }
+
+   @Benchmark
+   public Integer put(KeySequence keys) {
+      int key = keys.nextKey(keySpace);
+      return map.put(key, key);
+   }
+}
@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.commons.hash.MurmurHash3;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
+import org.jgroups.util.UUID;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultConsistentHash#locate(Object, int)} and
+ * {@link DefaultConsistentHash#isKeyLocalToAddress(Address, Object, int)} for various cluster sizes, numbers of
+ * owners and virtual nodes.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConsistentHashBenchmark {
+
+   @Param({"4", "20", "100"})
+   int numNodes;
+
+   @Param({"2", "3"})
+   int numOwners;
+
+   @Param({"1", "48"})
+   int numVirtualNodes;
+
+   @Param({"1000"})
+   int numKeys;
+
+   DefaultConsistentHash ch;
+   Address localAddress;
+   Object[] keys;
+
+   @Setup
+   public void setUp() {
+      Random r = new Random(numNodes);
+      Set<Address> addresses = new HashSet<Address>(numNodes);
+      while (addresses.size() < numNodes)
+         addresses.add(new JGroupsAddress(new UUID(r.nextLong(), r.nextLong())));
+      localAddress = addresses.iterator().next();
+
+      ch = new DefaultConsistentHash(new MurmurHash3());
+      ch.setNumVirtualNodes(numVirtualNodes);
+      ch.setCaches(addresses);
+
+      keys = new Object[numKeys];
+      for (int i = 0; i < numKeys; i++) keys[i] = "key" + i;
+   }
+
+   @Benchmark
+   public List<Address> locate(KeySequence sequence) {
+      return ch.locate(keys[sequence.nextKey(numKeys)], numOwners);
+   }
+
+   @Benchmark
+   public boolean isKeyLocalToAddress(KeySequence sequence) {
+      return ch.isKeyLocalToAddress(localAddress, keys[sequence.nextKey(numKeys)], numOwners);
+   }
+}
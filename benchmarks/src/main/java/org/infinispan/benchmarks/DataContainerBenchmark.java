@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.eviction.EvictionStrategy;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures get, put and remove throughput of {@link org.infinispan.container.DefaultDataContainer}.  The container
+ * is taken from a started local cache so that eviction and passivation are wired exactly as in production.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(4)
+public class DataContainerBenchmark {
+
+   @Param({"NONE", "LRU", "LIRS"})
+   EvictionStrategy eviction;
+
+   @Param({"10000"})
+   int numEntries;
+
+   EmbeddedCacheManager cacheManager;
+   DataContainer container;
+   int keySpace;
+
+   @Setup
+   public void setUp() {
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      if (eviction != EvictionStrategy.NONE)
+         builder.eviction().strategy(eviction).maxEntries(numEntries);
+      cacheManager = new DefaultCacheManager(builder.build());
+      container = cacheManager.getCache().getAdvancedCache().getDataContainer();
+      keySpace = numEntries * 2;
+      for (int i = 0; i < numEntries; i++) container.put(i, i, -1, -1);
+   }
+
+   @TearDown
+   public void tearDown() {
+      cacheManager.stop();
+   }
+
+   @Benchmark
+   public InternalCacheEntry get(KeySequence keys) {
+      return container.get(keys.nextKey(keySpace));
+   }
+
+   @Benchmark
+   public void put(KeySequence keys) {
+      int key = keys.nextKey(keySpace);
+      container.put(key, key, -1, -1);
+   }
+
+   @Benchmark
+   public InternalCacheEntry remove(KeySequence keys) {
+      return container.remove(keys.nextKey(keySpace));
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.Cache;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures local get and put latency through the full {@link org.infinispan.interceptors.InterceptorChain} of a
+ * non-clustered cache, with and without lazy deserialization.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(4)
+public class InterceptorChainBenchmark {
+
+   @Param({"false", "true"})
+   boolean storeAsBinary;
+
+   @Param({"1000"})
+   int numKeys;
+
+   EmbeddedCacheManager cacheManager;
+   Cache<Integer, Value> cache;
+
+   @Setup
+   public void setUp() {
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      if (storeAsBinary) builder.storeAsBinary().enable();
+      cacheManager = new DefaultCacheManager(builder.build());
+      cache = cacheManager.getCache();
+      for (int i = 0; i < numKeys; i++) cache.put(i, new Value(i));
+   }
+
+   @TearDown
+   public void tearDown() {
+      cacheManager.stop();
+   }
+
+   @Benchmark
+   public Value get(KeySequence keys) {
+      return cache.get(keys.nextKey(numKeys));
+   }
+
+   @Benchmark
+   public Value put(KeySequence keys) {
+      int key = keys.nextKey(numKeys);
+      return cache.put(key, new Value(key));
+   }
+
+   /**
+    * A user type, so that values are wrapped in {@link org.infinispan.marshall.MarshalledValue}s when storing as
+    * binary.
+    */
+   public static class Value implements Serializable {
+      final int id;
+
+      Value(int id) {
+         this.id = id;
+      }
+   }
+}
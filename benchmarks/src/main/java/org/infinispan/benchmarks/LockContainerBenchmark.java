@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.util.concurrent.locks.containers.LockContainer;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantStripedLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantStripedLockContainer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures an uncontended-to-moderately-contended acquire/release cycle on each {@link LockContainer}
+ * implementation.  The number of keys controls contention: with few keys, threads frequently compete for the same
+ * lock.
+ *
+ * @author Mircea Markus
+ * @since 5.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@Threads(8)
+public class LockContainerBenchmark {
+
+   @Param({"ReentrantPerEntry", "OwnableReentrantPerEntry", "ReentrantStriped", "OwnableReentrantStriped"})
+   String containerType;
+
+   @Param({"100", "100000"})
+   int numKeys;
+
+   @Param({"32"})
+   int concurrencyLevel;
+
+   LockContainer<?> container;
+
+   @Setup
+   public void setUp() {
+      if ("ReentrantPerEntry".equals(containerType))
+         container = new ReentrantPerEntryLockContainer(concurrencyLevel);
+      else if ("OwnableReentrantPerEntry".equals(containerType))
+         container = new OwnableReentrantPerEntryLockContainer(concurrencyLevel);
+      else if ("ReentrantStriped".equals(containerType))
+         container = new ReentrantStripedLockContainer(concurrencyLevel);
+      else if ("OwnableReentrantStriped".equals(containerType))
+         container = new OwnableReentrantStripedLockContainer(concurrencyLevel);
+      else
+         throw new IllegalArgumentException("Unknown lock container " + containerType);
+   }
+
+   @Benchmark
+   public boolean acquireAndRelease(KeySequence keys, LockOwner owner) throws InterruptedException {
+      Integer key = keys.nextKey(numKeys);
+      boolean acquired = container.acquireLock(owner, key, 10, TimeUnit.SECONDS) != null;
+      if (acquired) container.releaseLock(owner, key);
+      return acquired;
+   }
+
+   /**
+    * The owner used by the ownable containers; one per benchmark thread, like a transaction.
+    */
+   @State(Scope.Thread)
+   public static class LockOwner {
+   }
+}
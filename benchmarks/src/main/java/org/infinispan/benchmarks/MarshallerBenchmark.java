@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks;
+
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures round trips through the cache's {@link org.infinispan.marshall.VersionAwareMarshaller} for types that
+ * have internal externalizers as well as for user types that fall back to JBoss Marshalling's serialization.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MarshallerBenchmark {
+
+   @Param({"string", "map", "userObject"})
+   String payload;
+
+   EmbeddedCacheManager cacheManager;
+   StreamingMarshaller marshaller;
+   Object object;
+   byte[] bytes;
+
+   @Setup
+   public void setUp() throws Exception {
+      cacheManager = new DefaultCacheManager(new ConfigurationBuilder().build());
+      marshaller = cacheManager.getCache().getAdvancedCache().getComponentRegistry()
+            .getComponent(StreamingMarshaller.class, KnownComponentNames.CACHE_MARSHALLER);
+      object = createPayload(payload);
+      bytes = marshaller.objectToByteBuffer(object);
+   }
+
+   @TearDown
+   public void tearDown() {
+      cacheManager.stop();
+   }
+
+   @Benchmark
+   public byte[] marshall() throws Exception {
+      return marshaller.objectToByteBuffer(object);
+   }
+
+   @Benchmark
+   public Object unmarshall() throws Exception {
+      return marshaller.objectFromByteBuffer(bytes);
+   }
+
+   @Benchmark
+   public Object roundTrip() throws Exception {
+      return marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(object));
+   }
+
+   private static Object createPayload(String type) {
+      if ("string".equals(type)) {
+         return "a moderately sized string value, typical of a session attribute";
+      } else if ("map".equals(type)) {
+         Map<String, Integer> map = new HashMap<String, Integer>();
+         for (int i = 0; i < 16; i++) map.put("key" + i, i);
+         return map;
+      } else if ("userObject".equals(type)) {
+         return new Person("Jane", "Doe", 42);
+      }
+      throw new IllegalArgumentException("Unknown payload type " + type);
+   }
+
+   /**
+    * A user type without a registered externalizer.
+    */
+   public static class Person implements Serializable {
+      final String firstName;
+      final String lastName;
+      final int age;
+
+      Person(String firstName, String lastName, int age) {
+         this.firstName = firstName;
+         this.lastName = lastName;
+         this.age = age;
+      }
+   }
+}
@@ -0,0 +1,346 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks.cluster;
+
+import org.infinispan.Cache;
+import org.infinispan.api.BasicCacheContainer;
+import org.infinispan.cacheviews.CacheView;
+import org.infinispan.cacheviews.CacheViewsManager;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.configuration.global.GlobalConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.remoting.transport.jgroups.JGroupsTransport;
+import org.infinispan.statetransfer.StateTransferManager;
+import org.infinispan.transaction.TransactionMode;
+import org.infinispan.transaction.lookup.DummyTransactionManagerLookup;
+
+import javax.transaction.TransactionManager;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Starts a cluster of {@link DefaultCacheManager}s inside a single JVM, connected through JGroups' SHARED_LOOPBACK,
+ * and drives a configurable mix of gets, puts, putAlls and transactions against them.  At the end of the run it
+ * reports throughput and latency percentiles per operation, and optionally how long the cluster takes to rebalance
+ * when a node joins and leaves.
+ * <p />
+ * See {@link ClusterBenchmarkConfig} for the available settings.  Example:
+ * <pre>
+ *    java -Dbench.nodes=6 -Dbench.cacheMode=DIST_SYNC -Dbench.keyDistribution=zipfian \
+ *         -cp benchmarks/target/benchmarks.jar org.infinispan.benchmarks.cluster.ClusterBenchmark
+ * </pre>
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class ClusterBenchmark {
+   static final long REBALANCE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+   enum Operation {
+      GET, PUT, PUT_ALL, TX
+   }
+
+   private final ClusterBenchmarkConfig config;
+   private final List<EmbeddedCacheManager> cacheManagers = new ArrayList<EmbeddedCacheManager>();
+   private final KeyGenerator keyGenerator;
+   private final String[] keys;
+   private final byte[] value;
+   private int nodeCounter;
+
+   public ClusterBenchmark(ClusterBenchmarkConfig config) {
+      this.config = config;
+      this.keyGenerator = config.createKeyGenerator();
+      this.keys = new String[config.numKeys];
+      for (int i = 0; i < keys.length; i++) keys[i] = "key" + i;
+      this.value = new byte[config.valueSize];
+      new Random().nextBytes(value);
+   }
+
+   public static void main(String[] args) throws Exception {
+      ClusterBenchmark benchmark = new ClusterBenchmark(ClusterBenchmarkConfig.fromProperties(System.getProperties()));
+      try {
+         benchmark.run();
+      } finally {
+         benchmark.stop();
+      }
+   }
+
+   public void run() throws Exception {
+      System.out.println("Running " + config);
+      for (int i = 0; i < config.nodes; i++) startNode();
+      waitForRebalance(config.nodes);
+      preload();
+
+      System.out.printf("Warming up for %d seconds%n", config.warmupSeconds);
+      runWorkload(config.warmupSeconds);
+      System.out.printf("Measuring for %d seconds%n", config.durationSeconds);
+      WorkloadResult result = runWorkload(config.durationSeconds);
+      printReport(result);
+
+      if (config.measureRebalance) measureRebalance();
+   }
+
+   public void stop() {
+      // stop the nodes in reverse order so that the coordinator leaves last
+      for (int i = cacheManagers.size() - 1; i >= 0; i--) {
+         try {
+            cacheManagers.get(i).stop();
+         } catch (Exception e) {
+            System.err.println("Failed to stop node " + i + ": " + e);
+         }
+      }
+      cacheManagers.clear();
+   }
+
+   EmbeddedCacheManager startNode() {
+      GlobalConfigurationBuilder global = GlobalConfigurationBuilder.defaultClusteredBuilder();
+      global.transport()
+            .nodeName("node-" + nodeCounter++)
+            .addProperty(JGroupsTransport.CONFIGURATION_FILE, config.jgroupsConfigurationFile);
+
+      ConfigurationBuilder builder = new ConfigurationBuilder();
+      builder.clustering().cacheMode(config.cacheMode);
+      if (config.cacheMode.isDistributed())
+         builder.clustering().hash().numOwners(config.numOwners);
+      if (config.isTransactional())
+         builder.transaction()
+               .transactionMode(TransactionMode.TRANSACTIONAL)
+               .transactionManagerLookup(new DummyTransactionManagerLookup());
+
+      EmbeddedCacheManager cm = new DefaultCacheManager(global.build(), builder.build());
+      cacheManagers.add(cm);
+      cm.getCache();
+      return cm;
+   }
+
+   /**
+    * Waits until every node has installed a cache view with the expected number of members and has no state
+    * transfer in progress.
+    */
+   void waitForRebalance(int expectedMembers) throws InterruptedException, TimeoutException {
+      long deadline = System.currentTimeMillis() + REBALANCE_TIMEOUT_MILLIS;
+      while (!isRebalanced(expectedMembers)) {
+         if (System.currentTimeMillis() > deadline)
+            throw new TimeoutException("Cluster did not rebalance to " + expectedMembers + " members in time");
+         Thread.sleep(10);
+      }
+   }
+
+   private boolean isRebalanced(int expectedMembers) {
+      for (EmbeddedCacheManager cm : cacheManagers) {
+         CacheViewsManager cvm = cm.getGlobalComponentRegistry().getComponent(CacheViewsManager.class);
+         CacheView view = cvm.getCommittedView(BasicCacheContainer.DEFAULT_CACHE_NAME);
+         if (view == null || view.getMembers().size() != expectedMembers) return false;
+         StateTransferManager stm = cm.getCache().getAdvancedCache().getComponentRegistry()
+               .getComponent(StateTransferManager.class);
+         if (stm != null && stm.isStateTransferInProgress()) return false;
+      }
+      return true;
+   }
+
+   private void preload() {
+      Cache<String, byte[]> cache = cacheManagers.get(0).getCache();
+      Map<String, byte[]> batch = new HashMap<String, byte[]>();
+      for (String key : keys) {
+         batch.put(key, value);
+         if (batch.size() == 1000) {
+            cache.putAll(batch);
+            batch.clear();
+         }
+      }
+      if (!batch.isEmpty()) cache.putAll(batch);
+   }
+
+   private WorkloadResult runWorkload(int seconds) throws InterruptedException {
+      int numThreads = config.threads * cacheManagers.size();
+      CountDownLatch startLatch = new CountDownLatch(1);
+      long endNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+      Worker[] workers = new Worker[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+         Cache<String, byte[]> cache = cacheManagers.get(i % cacheManagers.size()).getCache();
+         workers[i] = new Worker("BenchmarkWorker-" + i, cache, startLatch, endNanos);
+         workers[i].start();
+      }
+
+      long start = System.nanoTime();
+      startLatch.countDown();
+      for (Worker w : workers) w.join();
+      long elapsed = System.nanoTime() - start;
+
+      WorkloadResult result = new WorkloadResult(elapsed);
+      for (Worker w : workers) result.add(w);
+      return result;
+   }
+
+   private void measureRebalance() throws Exception {
+      int members = cacheManagers.size();
+
+      long start = System.nanoTime();
+      startNode();
+      waitForRebalance(members + 1);
+      long joinNanos = System.nanoTime() - start;
+      System.out.printf("Rebalance after a join (%d -> %d nodes) took %d ms%n", members, members + 1,
+                        TimeUnit.NANOSECONDS.toMillis(joinNanos));
+
+      start = System.nanoTime();
+      cacheManagers.remove(cacheManagers.size() - 1).stop();
+      waitForRebalance(members);
+      long leaveNanos = System.nanoTime() - start;
+      System.out.printf("Rebalance after a leave (%d -> %d nodes) took %d ms%n", members + 1, members,
+                        TimeUnit.NANOSECONDS.toMillis(leaveNanos));
+   }
+
+   private void printReport(WorkloadResult result) {
+      double seconds = result.elapsedNanos / 1e9;
+      long totalOps = 0;
+      System.out.printf("%-8s %12s %12s %10s %10s %10s %10s %10s %10s %8s%n", "op", "count", "ops/s",
+                        "mean(us)", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)", "errors");
+      for (Operation op : Operation.values()) {
+         LatencyHistogram h = result.histograms.get(op);
+         if (h.getCount() == 0 && result.errors.get(op) == 0) continue;
+         totalOps += h.getCount();
+         System.out.printf("%-8s %12d %12.0f %10d %10d %10d %10d %10d %10d %8d%n", op, h.getCount(),
+                           h.getCount() / seconds, micros(h.getMeanNanos()), micros(h.getPercentileNanos(50)),
+                           micros(h.getPercentileNanos(90)), micros(h.getPercentileNanos(99)),
+                           micros(h.getPercentileNanos(99.9)), micros(h.getMaxNanos()), result.errors.get(op));
+      }
+      System.out.printf("Total throughput: %.0f ops/s%n", totalOps / seconds);
+   }
+
+   private static long micros(long nanos) {
+      return TimeUnit.NANOSECONDS.toMicros(nanos);
+   }
+
+   private class Worker extends Thread {
+      final Cache<String, byte[]> cache;
+      final CountDownLatch startLatch;
+      final long endNanos;
+      final Random random = new Random();
+      final Map<Operation, LatencyHistogram> histograms = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+      final Map<Operation, Long> errors = new EnumMap<Operation, Long>(Operation.class);
+
+      Worker(String name, Cache<String, byte[]> cache, CountDownLatch startLatch, long endNanos) {
+         super(name);
+         this.cache = cache;
+         this.startLatch = startLatch;
+         this.endNanos = endNanos;
+         for (Operation op : Operation.values()) {
+            histograms.put(op, new LatencyHistogram());
+            errors.put(op, 0L);
+         }
+      }
+
+      @Override
+      public void run() {
+         try {
+            startLatch.await();
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+         }
+         while (System.nanoTime() < endNanos) {
+            Operation op = nextOperation();
+            long start = System.nanoTime();
+            try {
+               perform(op);
+               histograms.get(op).record(System.nanoTime() - start);
+            } catch (Exception e) {
+               errors.put(op, errors.get(op) + 1);
+            }
+         }
+      }
+
+      private Operation nextOperation() {
+         int r = random.nextInt(config.totalWeight());
+         if ((r -= config.getWeight) < 0) return Operation.GET;
+         if ((r -= config.putWeight) < 0) return Operation.PUT;
+         if (r - config.putAllWeight < 0) return Operation.PUT_ALL;
+         return Operation.TX;
+      }
+
+      private void perform(Operation op) throws Exception {
+         switch (op) {
+            case GET:
+               cache.get(nextKey());
+               break;
+            case PUT:
+               cache.put(nextKey(), value);
+               break;
+            case PUT_ALL:
+               Map<String, byte[]> map = new HashMap<String, byte[]>();
+               for (int i = 0; i < config.putAllSize; i++) map.put(nextKey(), value);
+               cache.putAll(map);
+               break;
+            case TX:
+               TransactionManager tm = cache.getAdvancedCache().getTransactionManager();
+               tm.begin();
+               try {
+                  for (int i = 0; i < config.txSize; i++) {
+                     if (i % 2 == 0)
+                        cache.get(nextKey());
+                     else
+                        cache.put(nextKey(), value);
+                  }
+                  tm.commit();
+               } catch (Exception e) {
+                  if (tm.getTransaction() != null) tm.rollback();
+                  throw e;
+               }
+               break;
+         }
+      }
+
+      private String nextKey() {
+         return keys[keyGenerator.nextKeyIndex(random)];
+      }
+   }
+
+   private static class WorkloadResult {
+      final long elapsedNanos;
+      final Map<Operation, LatencyHistogram> histograms = new EnumMap<Operation, LatencyHistogram>(Operation.class);
+      final Map<Operation, Long> errors = new EnumMap<Operation, Long>(Operation.class);
+
+      WorkloadResult(long elapsedNanos) {
+         this.elapsedNanos = elapsedNanos;
+         for (Operation op : Operation.values()) {
+            histograms.put(op, new LatencyHistogram());
+            errors.put(op, 0L);
+         }
+      }
+
+      void add(Worker worker) {
+         for (Operation op : Operation.values()) {
+            histograms.get(op).add(worker.histograms.get(op));
+            errors.put(op, errors.get(op) + worker.errors.get(op));
+         }
+      }
+   }
+}
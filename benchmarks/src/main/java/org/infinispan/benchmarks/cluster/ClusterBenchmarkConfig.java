@@ -0,0 +1,148 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks.cluster;
+
+import org.infinispan.configuration.cache.CacheMode;
+
+import java.util.Properties;
+
+/**
+ * Settings of a {@link ClusterBenchmark} run.  Every setting can be overridden with a system property of the same
+ * name prefixed by <tt>bench.</tt>, e.g. <tt>-Dbench.nodes=8 -Dbench.cacheMode=REPL_SYNC</tt>.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class ClusterBenchmarkConfig {
+   static final String PREFIX = "bench.";
+
+   /**
+    * Number of cache managers to start
+    */
+   int nodes = 4;
+   /**
+    * One of the clustered {@link CacheMode}s, e.g. DIST_SYNC, REPL_ASYNC or INVALIDATION_SYNC
+    */
+   CacheMode cacheMode = CacheMode.DIST_SYNC;
+   int numOwners = 2;
+   /**
+    * Worker threads per node
+    */
+   int threads = 8;
+   int warmupSeconds = 10;
+   int durationSeconds = 60;
+   int numKeys = 10000;
+   int valueSize = 1000;
+   /**
+    * <tt>uniform</tt> or <tt>zipfian</tt>
+    */
+   String keyDistribution = "uniform";
+   double zipfExponent = 0.99;
+   /**
+    * Relative weights of the operations performed by the worker threads
+    */
+   int getWeight = 80;
+   int putWeight = 15;
+   int putAllWeight = 5;
+   int txWeight = 0;
+   int putAllSize = 10;
+   /**
+    * Number of operations, half of them reads, in each transaction
+    */
+   int txSize = 4;
+   /**
+    * Whether to measure how long it takes for the cluster to rebalance when a node joins and then leaves
+    */
+   boolean measureRebalance = true;
+   String jgroupsConfigurationFile = "jgroups-shared-loopback.xml";
+
+   static ClusterBenchmarkConfig fromProperties(Properties props) {
+      ClusterBenchmarkConfig c = new ClusterBenchmarkConfig();
+      c.nodes = intProp(props, "nodes", c.nodes);
+      c.cacheMode = CacheMode.valueOf(props.getProperty(PREFIX + "cacheMode", c.cacheMode.name()));
+      c.numOwners = intProp(props, "numOwners", c.numOwners);
+      c.threads = intProp(props, "threads", c.threads);
+      c.warmupSeconds = intProp(props, "warmupSeconds", c.warmupSeconds);
+      c.durationSeconds = intProp(props, "durationSeconds", c.durationSeconds);
+      c.numKeys = intProp(props, "numKeys", c.numKeys);
+      c.valueSize = intProp(props, "valueSize", c.valueSize);
+      c.keyDistribution = props.getProperty(PREFIX + "keyDistribution", c.keyDistribution);
+      c.zipfExponent = Double.parseDouble(props.getProperty(PREFIX + "zipfExponent", String.valueOf(c.zipfExponent)));
+      c.getWeight = intProp(props, "getWeight", c.getWeight);
+      c.putWeight = intProp(props, "putWeight", c.putWeight);
+      c.putAllWeight = intProp(props, "putAllWeight", c.putAllWeight);
+      c.txWeight = intProp(props, "txWeight", c.txWeight);
+      c.putAllSize = intProp(props, "putAllSize", c.putAllSize);
+      c.txSize = intProp(props, "txSize", c.txSize);
+      c.measureRebalance = Boolean.parseBoolean(props.getProperty(PREFIX + "measureRebalance", String.valueOf(c.measureRebalance)));
+      c.jgroupsConfigurationFile = props.getProperty(PREFIX + "jgroupsConfigurationFile", c.jgroupsConfigurationFile);
+      c.validate();
+      return c;
+   }
+
+   void validate() {
+      if (nodes < 1) throw new IllegalArgumentException("At least one node is needed");
+      if (!cacheMode.isClustered()) throw new IllegalArgumentException("Cache mode must be clustered: " + cacheMode);
+      if (getWeight < 0 || putWeight < 0 || putAllWeight < 0 || txWeight < 0 || totalWeight() == 0)
+         throw new IllegalArgumentException("Operation weights must be positive and not all zero");
+      if (!"uniform".equals(keyDistribution) && !"zipfian".equals(keyDistribution))
+         throw new IllegalArgumentException("Unknown key distribution " + keyDistribution);
+   }
+
+   int totalWeight() {
+      return getWeight + putWeight + putAllWeight + txWeight;
+   }
+
+   boolean isTransactional() {
+      return txWeight > 0;
+   }
+
+   KeyGenerator createKeyGenerator() {
+      if ("zipfian".equals(keyDistribution))
+         return new ZipfianKeyGenerator(numKeys, zipfExponent);
+      return new UniformKeyGenerator(numKeys);
+   }
+
+   private static int intProp(Properties props, String name, int defaultValue) {
+      String value = props.getProperty(PREFIX + name);
+      return value == null ? defaultValue : Integer.parseInt(value);
+   }
+
+   @Override
+   public String toString() {
+      return "ClusterBenchmarkConfig{" +
+            "nodes=" + nodes +
+            ", cacheMode=" + cacheMode +
+            ", numOwners=" + numOwners +
+            ", threads=" + threads +
+            ", warmupSeconds=" + warmupSeconds +
+            ", durationSeconds=" + durationSeconds +
+            ", numKeys=" + numKeys +
+            ", valueSize=" + valueSize +
+            ", keyDistribution=" + keyDistribution +
+            ", mix=get:" + getWeight + ",put:" + putWeight + ",putAll:" + putAllWeight + ",tx:" + txWeight +
+            ", putAllSize=" + putAllSize +
+            ", txSize=" + txSize +
+            '}';
+   }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks.cluster;
+
+/**
+ * A histogram of latencies with logarithmic buckets, each power of two being split into 32 linear sub-buckets.  This
+ * keeps the relative error of reported percentiles below ~3% with a fixed footprint of a couple of thousand counters,
+ * regardless of the number of samples.
+ * <p />
+ * Instances are not thread safe: each worker thread records into its own histogram, and these are {@link
+ * #add(LatencyHistogram) merged} once the run is over.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class LatencyHistogram {
+   private static final int SUB_BUCKET_BITS = 5;
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   private static final int NUM_BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+   private final long[] counts = new long[NUM_BUCKETS];
+   private long totalCount;
+   private long totalNanos;
+   private long maxNanos;
+
+   public void record(long nanos) {
+      if (nanos < 0) nanos = 0;
+      counts[bucketIndex(nanos)]++;
+      totalCount++;
+      totalNanos += nanos;
+      if (nanos > maxNanos) maxNanos = nanos;
+   }
+
+   public void add(LatencyHistogram other) {
+      for (int i = 0; i < NUM_BUCKETS; i++) counts[i] += other.counts[i];
+      totalCount += other.totalCount;
+      totalNanos += other.totalNanos;
+      if (other.maxNanos > maxNanos) maxNanos = other.maxNanos;
+   }
+
+   public long getCount() {
+      return totalCount;
+   }
+
+   public long getMeanNanos() {
+      return totalCount == 0 ? 0 : totalNanos / totalCount;
+   }
+
+   public long getMaxNanos() {
+      return maxNanos;
+   }
+
+   /**
+    * @param percentile a value between 0 and 100
+    * @return the lower bound of the bucket containing the given percentile, in nanoseconds
+    */
+   public long getPercentileNanos(double percentile) {
+      if (totalCount == 0) return 0;
+      long threshold = (long) Math.ceil(totalCount * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < NUM_BUCKETS; i++) {
+         seen += counts[i];
+         if (seen >= threshold && seen > 0) return bucketLowerBound(i);
+      }
+      return maxNanos;
+   }
+
+   static int bucketIndex(long value) {
+      if (value < SUB_BUCKETS) return (int) value;
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      // the SUB_BUCKET_BITS bits following the most significant one select the sub-bucket
+      int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS;
+      return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+   }
+
+   static long bucketLowerBound(int index) {
+      if (index < SUB_BUCKETS) return index;
+      int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+      int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+      return ((long) (SUB_BUCKETS + subBucket)) << (exponent - SUB_BUCKET_BITS);
+   }
+}
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.benchmarks.cluster;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chooses keys following a Zipf distribution, i.e. the key with rank <tt>k</tt> is chosen with a probability
+ * proportional to <tt>1 / k^exponent</tt>.  This models hot keys: with the usual exponent of 0.99 and 10,000 keys,
+ * the 100 most popular keys receive roughly half of all operations.
+ * <p />
+ * The cumulative distribution is computed once, so choosing a key is a binary search.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class ZipfianKeyGenerator implements KeyGenerator {
+   private final double[] cumulativeProbabilities;
+
+   public ZipfianKeyGenerator(int numKeys, double exponent) {
+      cumulativeProbabilities = new double[numKeys];
+      double sum = 0;
+      for (int i = 0; i < numKeys; i++) {
+         sum += 1 / Math.pow(i + 1, exponent);
+         cumulativeProbabilities[i] = sum;
+      }
+      for (int i = 0; i < numKeys; i++) cumulativeProbabilities[i] /= sum;
+   }
+
+   @Override
+   public int nextKeyIndex(Random random) {
+      int index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+      // binarySearch returns (-(insertion point) - 1) when the exact value isn't found
+      if (index < 0) index = -index - 1;
+      return Math.min(index, cumulativeProbabilities.length - 1);
+   }
+}
@@ -0,0 +1,33 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+/**
+ * JMH micro benchmarks for core hot paths: the bounded data container map and its eviction policies, the default
+ * data container, the interceptor chain of a local cache, marshaller round trips, consistent hash lookups and lock
+ * containers.
+ * <p />
+ * None of the benchmarks need a cluster. Build the module with <tt>mvn -Pbenchmarks package</tt> from the top level
+ * directory and run them with <tt>java -jar benchmarks/target/benchmarks.jar</tt>. Standard JMH options apply, e.g.
+ * <tt>-rf json -rff results.json</tt> produces a machine readable report that can be compared across runs.
+ */
+package org.infinispan.benchmarks;
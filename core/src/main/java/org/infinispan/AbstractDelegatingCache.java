@@ -302,6 +302,16 @@ public Set<Object> getListeners() {
    public NotifyingFuture<V> getAsync(K key) {
       return cache.getAsync(key);
    }
+
+   @Override
+   public Map<K, V> getAll(Set<? extends K> keys) {
+      return cache.getAll(keys);
+   }
+
+   @Override
+   public NotifyingFuture<Map<K, V>> getAllAsync(Set<? extends K> keys) {
+      return cache.getAllAsync(keys);
+   }
    
    @Override
    public String toString() {
@@ -148,6 +148,28 @@
     */
    void evict(K key);
 
+   /**
+    * Retrieves the values associated with several keys in a single invocation. This behaves like calling
+    * {@link #get(Object)} for each key, except that in distributed mode the keys that are not available locally are
+    * fetched from their owners with a single remote call per owner, issued in parallel, rather than with one remote call
+    * per key. Remotely retrieved entries are cached in L1 if L1 is enabled, and cache loaders are consulted as they would
+    * be for {@link #get(Object)}.
+    *
+    * @param keys keys to retrieve
+    * @return a map holding the value of each key that was found. Keys that are not mapped in the cache are absent from
+    *         the map.
+    */
+   Map<K, V> getAll(Set<? extends K> keys);
+
+   /**
+    * Asynchronous version of {@link #getAll(Set)}. Like {@link #getAsync(Object)}, a separate thread is only used if
+    * the keys might have to be retrieved from a remote node or a cache loader.
+    *
+    * @param keys keys to retrieve
+    * @return a future containing the map that {@link #getAll(Set)} would return
+    */
+   NotifyingFuture<Map<K, V>> getAllAsync(Set<? extends K> keys);
+
    /**
     * This method's return type will be replaced with
     * {@link org.infinispan.configuration.cache.Configuration} in a later release, at which point it
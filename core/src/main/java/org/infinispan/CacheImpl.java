@@ -28,6 +28,7 @@
 import org.infinispan.commands.VisitableCommand;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.SizeCommand;
@@ -91,6 +92,7 @@
 import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAResource;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -264,6 +266,18 @@ final V get(Object key, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLo
       return (V) invoker.invoke(ctx, command);
    }
 
+   public final Map<K, V> getAll(Set<? extends K> keys) {
+      return getAll(keys, null, null);
+   }
+
+   @SuppressWarnings("unchecked")
+   final Map<K, V> getAll(Set<? extends K> keys, EnumSet<Flag> explicitFlags, ClassLoader explicitClassLoader) {
+      for (K key : keys) assertKeyNotNull(key);
+      InvocationContext ctx = getInvocationContextForRead(null, explicitFlags, explicitClassLoader, keys.size());
+      GetAllCommand command = commandsFactory.buildGetAllCommand(new ArrayList<Object>(keys), ctx.getFlags());
+      return (Map<K, V>) invoker.invoke(ctx, command);
+   }
+
    public final V remove(Object key) {
       return remove(key, null, null);
    }
@@ -840,6 +854,51 @@ public V call() throws Exception {
       }
    }
 
+   public NotifyingFuture<Map<K, V>> getAllAsync(Set<? extends K> keys) {
+      return getAllAsync(keys, null, null);
+   }
+
+   @SuppressWarnings("unchecked")
+   NotifyingFuture<Map<K, V>> getAllAsync(final Set<? extends K> keys, final EnumSet<Flag> explicitFlags, final ClassLoader explicitClassLoader) {
+      final Transaction tx = getOngoingTransaction();
+      final NotifyingNotifiableFuture f = new DeferredReturnFuture();
+
+      // Only skip the thread if every key can be read cheaply
+      boolean skipThread = true;
+      for (K key : keys) {
+         if (!asyncSkipsThread(explicitFlags, key)) {
+            skipThread = false;
+            break;
+         }
+      }
+      if (skipThread) {
+         return wrapInFuture(getAll(keys, explicitFlags, explicitClassLoader));
+      } else {
+         // Make sure the flags are cleared
+         final EnumSet<Flag> appliedFlags;
+         if (explicitFlags == null) {
+            appliedFlags = null;
+         } else {
+            appliedFlags = explicitFlags.clone();
+            explicitFlags.clear();
+         }
+         final List<Object> keyList = new ArrayList<Object>(keys);
+         Callable<Map<K, V>> c = new Callable<Map<K, V>>() {
+            @Override
+            public Map<K, V> call() throws Exception {
+               for (Object key : keyList) assertKeyNotNull(key);
+               InvocationContext ctx = getInvocationContextForRead(tx, appliedFlags, explicitClassLoader, keyList.size());
+               GetAllCommand command = commandsFactory.buildGetAllCommand(keyList, appliedFlags);
+               Object ret = invoker.invoke(ctx, command);
+               f.notifyDone();
+               return (Map<K, V>) ret;
+            }
+         };
+         f.setNetworkFuture(asyncExecutor.submit(c));
+         return f;
+      }
+   }
+
    /**
     * Encodes the cases for an asyncGet operation in which it makes sense to actually perform the operation in sync.
     *
@@ -22,10 +22,12 @@
  */
 package org.infinispan.cacheviews;
 
+import org.infinispan.commands.control.CacheViewControlCommand;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
 import org.infinispan.remoting.transport.Address;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -79,4 +81,19 @@ public interface CacheViewsManager {
     * @return The last prepared view id for each cache that's running on this node.
     */
    Map<String, CacheView> handleRecoverViews();
+
+   /**
+    * Execute the commands of several caches received in a single round from the coordinator.
+    * The commands are executed in parallel, a failure in one of them does not affect the others.
+    * This method doesn't wait for the commands: once they have finished, the exceptions thrown by the failed ones
+    * are sent back to the coordinator in a BATCH_RESULT command.
+    */
+   void handleBatch(Address sender, int batchId, List<CacheViewControlCommand> commands);
+
+   /**
+    * Called on the coordinator when a node has finished executing the commands of a batch.
+    *
+    * @param failures The exceptions thrown by the failed commands, indexed by cache name.
+    */
+   void handleBatchResult(Address sender, int batchId, Map<String, Throwable> failures);
 }
@@ -27,6 +27,9 @@
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.notifications.Listener;
 import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
 import org.infinispan.notifications.cachemanagerlistener.annotation.Merged;
@@ -38,8 +41,13 @@
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.remoting.transport.jgroups.SuspectException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -47,19 +55,27 @@
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -76,7 +92,9 @@
  * <li>A node wants to start or stop the cache, sending a REQUEST_JOIN or a REQUEST_LEAVE.
  *     A node leaving the JGroups cluster is interpreted as a REQUEST_LEAVE for all its caches.
  *     The request will be broadcast to all the cluster members, as all the nodes need to stop sending requests to the leavers.
- * <li>For join requests, the cache views manager will wait for a short period of time to allow other members to join.
+ * <li>For join and leave requests, the cache views manager will wait until no other membership change has arrived
+ *     for a short settle period (but no longer than a maximum settle time), so that nodes starting or stopping
+ *     together are included in the same view and the data is only rebalanced once.
  * <li>The coordinator then sends a PREPARE_VIEW to all the nodes that have the cache started (or starting).
  *     Any node can veto the view by throwing an exception in this phase.
  * <li>The coordinator sends a COMMIT_VIEW to all the nodes that have the cache started.
@@ -85,6 +103,12 @@
  *     view id (even if the members are the same; this makes it simpler to implement).
  * </ul>
  * <p/>
+ * If several caches have pending views at the same time, their PREPARE_VIEW commands are sent together in a single
+ * BATCH command, and so are the COMMIT_VIEW or ROLLBACK_VIEW commands that follow. Each cache still succeeds or
+ * fails independently of the others. The nodes execute a batch on the installer threads and send back a BATCH_RESULT
+ * command, and the commands that don't finish in time are cancelled. A ROLLBACK_VIEW waits for a cancelled
+ * PREPARE_VIEW that is still running, so the rolled back view can't be installed after the rollback.
+ * <p/>
  * Only the coordinator keeps the information about which nodes have requested to join, so when
  * the coordinator changes the new coordinator will have to request state from all the members using
  * the RECOVER_VIEW command. This also happens after a merge, even if the new coordinator was a coordinator
@@ -93,6 +117,7 @@
  * @author Dan Berindei &lt;dan@infinispan.org&gt;
  * @since 5.1
  */
+@MBean(objectName = "CacheViewsManager", description = "Coordinates the installation of cache views in the cluster")
 public class CacheViewsManagerImpl implements CacheViewsManager {
    private static final Log log = LogFactory.getLog(CacheViewsManagerImpl.class);
    public static final String DUMMY_CACHE_NAME_FOR_GLOBAL_COMMANDS = "__dummy_cache_name_for_global_commands__";
@@ -115,8 +140,25 @@ public class CacheViewsManagerImpl implements CacheViewsManager {
    private long timeout = 10 * 1000;
    // TODO Make the cooldown configurable, or change the view installation timing altogether
    private long viewChangeCooldown = 1 * 1000;
+   // wait until there were no membership changes for this long before installing a new view
+   private volatile long viewSettleTime = 200;
+   // but don't postpone the installation of a new view for longer than this
+   private volatile long maxViewSettleTime = 5 * 1000;
+   private volatile long firstPendingChangeMillis;
+   private volatile long lastChangeMillis;
+
+   private final AtomicLong installedViews = new AtomicLong();
+   private final AtomicLong installationRounds = new AtomicLong();
+   private final AtomicLong batchedViews = new AtomicLong();
    private ViewListener listener = new ViewListener();;
 
+   // the batches this node sent as the coordinator that are still waiting for results, by batch id
+   private final ConcurrentMap<Integer, BatchResults> pendingBatches = new ConcurrentHashMap<Integer, BatchResults>();
+   private final AtomicInteger batchIds = new AtomicInteger();
+   // the batched prepare commands running on this node, by cache name
+   // a rollback waits for them, so that a prepare that timed out can't install its view after the rollback
+   private final ConcurrentMap<String, ViewCommandTask> preparesInProgress = new ConcurrentHashMap<String, ViewCommandTask>();
+
    // A single thread examines the unprepared changes and decides whether to install a new view for all the caches
    private ViewTriggerThread viewTriggerThread;
    private ExecutorService cacheViewInstallerExecutor;
@@ -255,6 +297,7 @@ boolean clusterInstallView(String cacheName, CacheView newView) throws Exception
 
          if (success) {
             clusterCommitView(cacheName, newView.getViewId(), newView.getMembers(), true);
+            installedViews.incrementAndGet();
             log.debugf("Successfully installed view %s for cache %s", newView, cacheName);
          } else {
             CacheView committedView = viewsInfo.get(cacheName).getCommittedView();
@@ -281,6 +324,7 @@ private CacheView clusterPrepareView(final String cacheName, final CacheView pen
       if (pendingView.containsAny(leavers))
          throw new IllegalStateException("Cannot prepare view " + pendingView + ", some nodes already left the cluster: " + leavers);
 
+      installationRounds.incrementAndGet();
       // broadcast the command to the targets, which will skip the local node
       Future<Map<Address, Response>> future = asyncTransportExecutor.submit(new Callable<Map<Address, Response>>() {
          @Override
@@ -302,6 +346,241 @@ public Map<Address, Response> call() throws Exception {
       return pendingView;
    }
 
+   /**
+    * Called on the coordinator to install new views for several caches in a single round.
+    * The protocol is the same as for a single cache, but all the PREPARE_VIEW commands are sent in one
+    * BATCH command and all the COMMIT_VIEW/ROLLBACK_VIEW commands in another. A failure to prepare the view of
+    * a cache only rolls back that cache.
+    */
+   void clusterInstallViews(Map<String, CacheView> newViews) {
+      log.debugf("Installing new views %s", newViews);
+      Map<String, Throwable> failures = clusterPrepareViews(newViews);
+
+      // Cache manager is shutting down, don't try to commit or roll back
+      if (!isRunning())
+         return;
+
+      clusterCompleteViews(newViews, failures);
+   }
+
+   /**
+    * The prepare phase of a batched view installation.
+    *
+    * @return The exceptions that prevented the views of some caches from being prepared, indexed by cache name.
+    */
+   @SuppressWarnings("unchecked")
+   private Map<String, Throwable> clusterPrepareViews(Map<String, CacheView> pendingViews) {
+      final Map<String, Throwable> failures = new HashMap<String, Throwable>();
+      final List<CacheViewControlCommand> commands = new ArrayList<CacheViewControlCommand>(pendingViews.size());
+      final Set<Address> targets = new HashSet<Address>();
+      for (Map.Entry<String, CacheView> e : pendingViews.entrySet()) {
+         String cacheName = e.getKey();
+         CacheView pendingView = e.getValue();
+         CacheViewInfo cacheViewInfo = viewsInfo.get(cacheName);
+         CacheView committedView = cacheViewInfo.getCommittedView();
+
+         Set<Address> leavers = cacheViewInfo.getPendingChanges().getLeavers();
+         if (pendingView.containsAny(leavers)) {
+            failures.put(cacheName, new IllegalStateException("Cannot prepare view " + pendingView + ", some nodes already left the cluster: " + leavers));
+            continue;
+         }
+
+         log.tracef("%s: Preparing view %d on members %s", cacheName, pendingView.getViewId(), pendingView.getMembers());
+         commands.add(new CacheViewControlCommand(cacheName, CacheViewControlCommand.Type.PREPARE_VIEW, self,
+               pendingView.getViewId(), pendingView.getMembers(), committedView.getViewId(), committedView.getMembers()));
+         targets.addAll(pendingView.getMembers());
+      }
+      if (commands.isEmpty())
+         return failures;
+
+      installationRounds.incrementAndGet();
+      // every target gets the commands for all the caches, but it will only prepare the caches it is a member of
+      BatchResults results = sendBatch(targets, commands, false);
+
+      // now prepare the views on the local node
+      try {
+         addFailures(failures, executeCommands(commands));
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         addFailure(failures, commands, e);
+      }
+
+      // wait for the remote commands to finish
+      try {
+         addFailures(failures, results.await(timeout));
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         addFailure(failures, commands, e);
+      }
+      return failures;
+   }
+
+   /**
+    * The commit/rollback phase of a batched view installation.
+    */
+   private void clusterCompleteViews(Map<String, CacheView> newViews, Map<String, Throwable> failures) {
+      final List<CacheViewControlCommand> commands = new ArrayList<CacheViewControlCommand>(newViews.size());
+      final Set<Address> targets = new HashSet<Address>();
+      for (Map.Entry<String, CacheView> e : newViews.entrySet()) {
+         String cacheName = e.getKey();
+         CacheView newView = e.getValue();
+         CacheViewInfo cacheViewInfo = viewsInfo.get(cacheName);
+
+         List<Address> validTargets = new ArrayList<Address>(newView.getMembers());
+         validTargets.removeAll(cacheViewInfo.getPendingChanges().getLeavers());
+         targets.addAll(validTargets);
+
+         Throwable failure = failures.get(cacheName);
+         if (failure == null) {
+            log.tracef("%s: Committing cache view %d on members %s", cacheName, newView.getViewId(), validTargets);
+            commands.add(new CacheViewControlCommand(cacheName, CacheViewControlCommand.Type.COMMIT_VIEW, self,
+                  newView.getViewId()));
+         } else {
+            CacheView committedView = cacheViewInfo.getCommittedView();
+            log.errorf(failure, "Failed to prepare view %s for cache  %s, rolling back to view %s", newView, cacheName, committedView);
+            int newViewId = cacheViewInfo.getPendingChanges().getRollbackViewId();
+            log.tracef("%s: Rolling back to cache view %d on members %s, new view id is %d", cacheName,
+                  committedView.getViewId(), validTargets, newViewId);
+            commands.add(new CacheViewControlCommand(cacheName, CacheViewControlCommand.Type.ROLLBACK_VIEW, self,
+                  newViewId, null, committedView.getViewId(), null));
+         }
+      }
+
+      // it's ok to send the commands to nodes that don't have some of the caches, they will just ignore them
+      // wait until we get all the results, but only log the failures
+      Map<String, Throwable> remoteFailures;
+      try {
+         remoteFailures = sendBatch(targets, commands, true).await(timeout);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         remoteFailures = new HashMap<String, Throwable>();
+         addFailure(remoteFailures, commands, e);
+      }
+      for (CacheViewControlCommand cmd : commands) {
+         Throwable t = remoteFailures.get(cmd.getCacheName());
+         if (t == null)
+            continue;
+
+         if (cmd.getType() == CacheViewControlCommand.Type.COMMIT_VIEW) {
+            log.cacheViewCommitFailure(t instanceof Exception ? (Exception) t : new CacheException(t),
+                  newViews.get(cmd.getCacheName()).getViewId(), cmd.getCacheName());
+         } else {
+            log.cacheViewRollbackFailure(t, viewsInfo.get(cmd.getCacheName()).getCommittedView().getViewId(),
+                  cmd.getCacheName());
+         }
+      }
+
+      // in the end we commit or roll back locally, so any pending changes can trigger a new view installation
+      try {
+         Map<String, Throwable> localFailures = executeCommands(commands);
+         for (Map.Entry<String, Throwable> e : localFailures.entrySet()) {
+            log.viewInstallationFailure(e.getValue(), e.getKey());
+         }
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+
+      for (Map.Entry<String, CacheView> e : newViews.entrySet()) {
+         if (failures.containsKey(e.getKey())) {
+            log.debugf("Rolled back to view %s for cache %s", viewsInfo.get(e.getKey()).getCommittedView(), e.getKey());
+         } else {
+            installedViews.incrementAndGet();
+            batchedViews.incrementAndGet();
+            log.debugf("Successfully installed view %s for cache %s", e.getValue(), e.getKey());
+         }
+      }
+   }
+
+   /**
+    * Execute the commands of a batch in parallel, one per cache. The commands that don't finish in time are
+    * cancelled and count as failed.
+    *
+    * @return The exceptions thrown by the failed commands, indexed by cache name.
+    */
+   private Map<String, Throwable> executeCommands(List<CacheViewControlCommand> commands) throws InterruptedException {
+      List<ViewCommandTask> tasks = new ArrayList<ViewCommandTask>(commands.size());
+      for (CacheViewControlCommand cmd : commands) {
+         cmd.init(this);
+         ViewCommandTask task = new ViewCommandTask(cmd);
+         if (cmd.getType() == CacheViewControlCommand.Type.PREPARE_VIEW) {
+            preparesInProgress.put(cmd.getCacheName(), task);
+         }
+         task.future = cacheViewInstallerExecutor.submit(task);
+         tasks.add(task);
+      }
+
+      Map<String, Throwable> failures = new HashMap<String, Throwable>();
+      long deadline = System.currentTimeMillis() + timeout;
+      try {
+         for (ViewCommandTask task : tasks) {
+            String cacheName = task.cmd.getCacheName();
+            try {
+               task.future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+               failures.put(cacheName, e.getCause());
+            } catch (CancellationException e) {
+               failures.put(cacheName, e);
+            } catch (TimeoutException e) {
+               log.debugf("%s: Cancelling %s, it did not finish in %d ms", cacheName, task.cmd, timeout);
+               task.cancel();
+               failures.put(cacheName, e);
+            }
+         }
+      } finally {
+         // if we were interrupted, don't leave the remaining commands running
+         for (ViewCommandTask task : tasks) {
+            if (!task.future.isDone()) task.cancel();
+         }
+      }
+      return failures;
+   }
+
+   /**
+    * Sends a batch of commands to the other nodes without waiting for them to execute it.
+    *
+    * @param ignoreLeavers If false, a node leaving the cluster before sending its results fails every command.
+    * @return The results of the batch, which must be awaited so that they stop being tracked.
+    */
+   private BatchResults sendBatch(Set<Address> targets, List<CacheViewControlCommand> commands, boolean ignoreLeavers) {
+      Set<Address> remoteTargets = new HashSet<Address>(targets);
+      remoteTargets.remove(self);
+      int batchId = batchIds.incrementAndGet();
+      BatchResults results = new BatchResults(batchId, remoteTargets, commands, ignoreLeavers);
+      if (remoteTargets.isEmpty())
+         return results;
+
+      pendingBatches.put(batchId, results);
+      CacheViewControlCommand batch = new CacheViewControlCommand(DUMMY_CACHE_NAME_FOR_GLOBAL_COMMANDS,
+            CacheViewControlCommand.Type.BATCH, self, batchId, commands);
+      try {
+         transport.invokeRemotely(remoteTargets, batch, ResponseMode.ASYNCHRONOUS, timeout, false, null, false);
+         // the view may have changed before we registered the batch
+         results.membersChanged(members);
+      } catch (Throwable t) {
+         results.failed(t);
+      }
+      return results;
+   }
+
+   private void addFailures(Map<String, Throwable> failures, Map<String, Throwable> newFailures) {
+      if (newFailures == null)
+         return;
+
+      for (Map.Entry<String, Throwable> e : newFailures.entrySet()) {
+         if (!failures.containsKey(e.getKey())) {
+            failures.put(e.getKey(), e.getValue());
+         }
+      }
+   }
+
+   private void addFailure(Map<String, Throwable> failures, List<CacheViewControlCommand> commands, Throwable t) {
+      for (CacheViewControlCommand cmd : commands) {
+         if (!failures.containsKey(cmd.getCacheName())) {
+            failures.put(cmd.getCacheName(), t);
+         }
+      }
+   }
+
    /**
     * The rollback phase of view installation.
     */
@@ -381,6 +660,7 @@ public void handleRequestJoin(Address sender, String cacheName) {
       // If we die the joiner will get a RECOVER_VIEW command from the new coordinator
       // so the join request will not be lost.
       cacheViewInfo.getPendingChanges().requestJoin(sender);
+      membershipChanged();
       viewTriggerThread.wakeUp();
    }
 
@@ -404,6 +684,7 @@ private CacheViewInfo getCacheViewInfo(String cacheName) {
    @Override
    public void handleRequestLeave(Address sender, String cacheName) {
       handleLeavers(Collections.singleton(sender), cacheName);
+      membershipChanged();
       viewTriggerThread.wakeUp();
    }
 
@@ -488,6 +769,18 @@ public void handleRollbackView(String cacheName, int newViewId, int committedVie
          return;
       }
 
+      // a prepare that timed out has been cancelled, but it may still be running
+      ViewCommandTask prepare = preparesInProgress.get(cacheName);
+      if (prepare != null) {
+         log.tracef("%s: Waiting for the cancelled prepare to finish before rolling back", cacheName);
+         try {
+            if (!prepare.awaitCompletion(timeout))
+               log.debugf("%s: Rolling back while a cancelled prepare is still running", cacheName);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+
       boolean isLocal = cacheViewInfo.getCommittedView().contains(self);
       if (isLocal || isCoordinator) {
          log.debugf("%s: Rolling back to cache view %d, new view id is %d", cacheName, committedViewId, newViewId);
@@ -502,6 +795,52 @@ public void handleRollbackView(String cacheName, int newViewId, int committedVie
       }
    }
 
+   @Override
+   public void handleBatch(final Address sender, final int batchId, List<CacheViewControlCommand> commands) {
+      // the coordinator sends the same batch to every node, skip the views we are not going to be part of
+      final List<CacheViewControlCommand> localCommands = new ArrayList<CacheViewControlCommand>(commands.size());
+      for (CacheViewControlCommand cmd : commands) {
+         if (cmd.getType() == CacheViewControlCommand.Type.PREPARE_VIEW && !cmd.getNewMembers().contains(self)) {
+            log.tracef("%s: Ignoring prepare request for view %d, we are not a member", cmd.getCacheName(), cmd.getNewViewId());
+            continue;
+         }
+         localCommands.add(cmd);
+      }
+
+      // wait for the commands on an installer thread, the delivering thread is free to handle other messages
+      cacheViewInstallerExecutor.submit(new Runnable() {
+         @Override
+         public void run() {
+            Map<String, Throwable> failures;
+            try {
+               failures = executeCommands(localCommands);
+            } catch (InterruptedException e) {
+               // shutting down, the coordinator will see us leave
+               Thread.currentThread().interrupt();
+               return;
+            }
+            try {
+               CacheViewControlCommand result = new CacheViewControlCommand(DUMMY_CACHE_NAME_FOR_GLOBAL_COMMANDS,
+                     CacheViewControlCommand.Type.BATCH_RESULT, self, batchId, failures);
+               transport.invokeRemotely(Collections.singleton(sender), result, ResponseMode.ASYNCHRONOUS, timeout,
+                     false, null, false);
+            } catch (Exception e) {
+               log.debugf(e, "Failed to send the results of batch %d to %s", batchId, sender);
+            }
+         }
+      });
+   }
+
+   @Override
+   public void handleBatchResult(Address sender, int batchId, Map<String, Throwable> failures) {
+      BatchResults results = pendingBatches.get(batchId);
+      if (results == null) {
+         log.tracef("Ignoring the results of batch %d from %s, we are no longer waiting for them", batchId, sender);
+         return;
+      }
+      results.resultReceived(sender, failures);
+   }
+
    @Override
    public Map<String, CacheView> handleRecoverViews() {
       Map<String, CacheView> result = new HashMap<String, CacheView>();
@@ -530,6 +869,11 @@ private void handleNewView(List<Address> newMembers, boolean mergeView, boolean
       // to ensure that it doesn't start processing leavers before doing the recovery
       members = newMembers;
 
+      for (BatchResults results : pendingBatches.values()) {
+         results.membersChanged(newMembers);
+      }
+
+      membershipChanged();
       viewTriggerThread.wakeUp();
    }
 
@@ -715,10 +1059,87 @@ public int compare(Address o1, Address o2) {
       }
    }
 
+   /**
+    * Remember when the last join or leave happened, so that the view trigger thread can wait for the
+    * membership to settle before installing a new view.
+    */
+   private void membershipChanged() {
+      long now = System.currentTimeMillis();
+      lastChangeMillis = now;
+      if (firstPendingChangeMillis == 0) {
+         firstPendingChangeMillis = now;
+      }
+   }
+
+   /**
+    * @return The time (in milliseconds) the view trigger thread still has to wait for the membership to settle,
+    *         or 0 if it can install the new views now.
+    */
+   private long getRemainingSettleTime() {
+      long firstChange = firstPendingChangeMillis;
+      if (firstChange == 0)
+         return 0;
+
+      long now = System.currentTimeMillis();
+      long untilQuiet = lastChangeMillis + viewSettleTime - now;
+      long untilDeadline = firstChange + maxViewSettleTime - now;
+      return Math.max(0, Math.min(untilQuiet, untilDeadline));
+   }
+
    public boolean isRunning() {
       return running;
    }
 
+   @ManagedAttribute(description = "Time without membership changes the coordinator waits for before installing a new cache view, in milliseconds", writable = true)
+   public long getViewSettleTime() {
+      return viewSettleTime;
+   }
+
+   @ManagedAttribute(description = "Time without membership changes the coordinator waits for before installing a new cache view, in milliseconds", writable = true)
+   public void setViewSettleTime(long viewSettleTime) {
+      if (viewSettleTime < 0)
+         throw new IllegalArgumentException("The view settle time cannot be negative: " + viewSettleTime);
+      this.viewSettleTime = viewSettleTime;
+   }
+
+   @ManagedAttribute(description = "Maximum time the coordinator postpones a cache view installation while the membership keeps changing, in milliseconds", writable = true)
+   public long getMaxViewSettleTime() {
+      return maxViewSettleTime;
+   }
+
+   @ManagedAttribute(description = "Maximum time the coordinator postpones a cache view installation while the membership keeps changing, in milliseconds", writable = true)
+   public void setMaxViewSettleTime(long maxViewSettleTime) {
+      if (maxViewSettleTime < 0)
+         throw new IllegalArgumentException("The maximum view settle time cannot be negative: " + maxViewSettleTime);
+      this.maxViewSettleTime = maxViewSettleTime;
+   }
+
+   @ManagedAttribute(description = "Number of cache views this node installed as the coordinator")
+   @Metric(displayName = "Installed cache views", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getInstalledViews() {
+      return installedViews.get();
+   }
+
+   @ManagedAttribute(description = "Number of prepare rounds this node started as the coordinator, each round may install the views of several caches")
+   @Metric(displayName = "View installation rounds", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getInstallationRounds() {
+      return installationRounds.get();
+   }
+
+   @ManagedAttribute(description = "Number of cache views this node installed as part of a batch with other caches")
+   @Metric(displayName = "Batched cache views", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getBatchedViews() {
+      return batchedViews.get();
+   }
+
+   @ManagedOperation(description = "Resets the cache view installation statistics")
+   @Operation(displayName = "Reset statistics")
+   public void resetStatistics() {
+      installedViews.set(0);
+      installationRounds.set(0);
+      batchedViews.set(0);
+   }
+
    /**
     * Executed on the coordinator to trigger the installation of new views.
     */
@@ -752,8 +1173,10 @@ public void run() {
 
             lock.lock();
             try {
-               // Ensure at least viewChangeCooldown between cache view changes
-               condition.await(viewChangeCooldown, TimeUnit.MILLISECONDS);
+               // Ensure at least viewChangeCooldown between cache view changes,
+               // unless we are only waiting for the membership to settle
+               long settleTime = getRemainingSettleTime();
+               condition.await(settleTime > 0 ? settleTime : viewChangeCooldown, TimeUnit.MILLISECONDS);
                log.tracef("Woke up, shouldRecoverViews=%s", shouldRecoverViews);
             } catch (InterruptedException e) {
                // shutting down
@@ -779,17 +1202,36 @@ public void run() {
                   if (shouldRecoverViews) {
                      continue outer;
                   }
+               }
+
+               // other nodes may still be joining or leaving, wait for them so that we only install one view
+               long settleTime = getRemainingSettleTime();
+               if (settleTime > 0) {
+                  log.tracef("Membership changed recently, waiting %d ms before installing new views", settleTime);
+                  continue;
+               }
+               firstPendingChangeMillis = 0;
 
+               Map<String, CacheView> pendingViews = new LinkedHashMap<String, CacheView>();
+               for (CacheViewInfo cacheViewInfo : viewsInfo.values()) {
                   try {
                      PendingCacheViewChanges pendingChanges = cacheViewInfo.getPendingChanges();
                      CacheView pendingView = pendingChanges.createPendingView(cacheViewInfo.getCommittedView());
                      if (pendingView != null) {
-                        cacheViewInstallerExecutor.submit(new ViewInstallationTask(cacheViewInfo.getCacheName(), pendingView));
+                        pendingViews.put(cacheViewInfo.getCacheName(), pendingView);
                      }
                   } catch (RuntimeException e) {
                      log.errorTriggeringViewInstallation(e, cacheViewInfo.getCacheName());
                   }
                }
+
+               // install the views of all the caches that changed in a single round
+               if (pendingViews.size() == 1) {
+                  Map.Entry<String, CacheView> e = pendingViews.entrySet().iterator().next();
+                  cacheViewInstallerExecutor.submit(new ViewInstallationTask(e.getKey(), e.getValue()));
+               } else if (pendingViews.size() > 1) {
+                  cacheViewInstallerExecutor.submit(new BatchViewInstallationTask(pendingViews));
+               }
             }
          }
       }
@@ -821,6 +1263,145 @@ public Object call() throws Exception {
    }
 
 
+   /**
+    * Executed on the coordinator to install new views for several caches in the cluster.
+    */
+   public class BatchViewInstallationTask implements Callable<Object> {
+      private final Map<String, CacheView> newViews;
+
+      public BatchViewInstallationTask(Map<String, CacheView> newViews) {
+         this.newViews = newViews;
+      }
+
+      @Override
+      public Object call() throws Exception {
+         try {
+            clusterInstallViews(newViews);
+         } catch (Throwable t) {
+            for (String cacheName : newViews.keySet()) {
+               log.viewInstallationFailure(t, cacheName);
+            }
+         }
+         return null;
+      }
+   }
+
+
+   /**
+    * A command of a batch, executed on an installer thread. It can be cancelled before it starts, and otherwise
+    * tells when it has finished, even if it was cancelled while running.
+    */
+   private final class ViewCommandTask implements Callable<Object> {
+      final CacheViewControlCommand cmd;
+      volatile Future<Object> future;
+      private final AtomicBoolean claimed = new AtomicBoolean();
+      private final CountDownLatch done = new CountDownLatch(1);
+
+      ViewCommandTask(CacheViewControlCommand cmd) {
+         this.cmd = cmd;
+      }
+
+      @Override
+      public Object call() throws Exception {
+         // cancelled before it started
+         if (!claimed.compareAndSet(false, true))
+            return null;
+
+         try {
+            return cmd.perform(null);
+         } catch (Exception e) {
+            throw e;
+         } catch (Throwable t) {
+            throw new CacheException(t);
+         } finally {
+            finished();
+         }
+      }
+
+      void cancel() {
+         future.cancel(true);
+         if (claimed.compareAndSet(false, true)) {
+            finished();
+         }
+      }
+
+      boolean awaitCompletion(long millis) throws InterruptedException {
+         return done.await(millis, TimeUnit.MILLISECONDS);
+      }
+
+      private void finished() {
+         preparesInProgress.remove(cmd.getCacheName(), this);
+         done.countDown();
+      }
+   }
+
+   /**
+    * Collects the results of a batch sent by the coordinator.
+    */
+   private final class BatchResults {
+      private final int batchId;
+      private final Set<Address> pending;
+      private final List<CacheViewControlCommand> commands;
+      private final boolean ignoreLeavers;
+      private final Map<String, Throwable> failures = new HashMap<String, Throwable>();
+
+      BatchResults(int batchId, Set<Address> targets, List<CacheViewControlCommand> commands, boolean ignoreLeavers) {
+         this.batchId = batchId;
+         this.pending = targets;
+         this.commands = commands;
+         this.ignoreLeavers = ignoreLeavers;
+      }
+
+      synchronized void resultReceived(Address sender, Map<String, Throwable> nodeFailures) {
+         if (pending.remove(sender)) {
+            addFailures(failures, nodeFailures);
+            notifyAll();
+         }
+      }
+
+      synchronized void membersChanged(Collection<Address> members) {
+         for (Iterator<Address> it = pending.iterator(); it.hasNext(); ) {
+            Address target = it.next();
+            if (!members.contains(target)) {
+               it.remove();
+               if (!ignoreLeavers) {
+                  addFailure(failures, commands, new SuspectException("Node " + target + " left the cluster before executing batch " + batchId));
+               }
+            }
+         }
+         notifyAll();
+      }
+
+      synchronized void failed(Throwable t) {
+         pending.clear();
+         addFailure(failures, commands, t);
+         notifyAll();
+      }
+
+      /**
+       * @return The exceptions thrown by the failed commands on any node, indexed by cache name.
+       */
+      Map<String, Throwable> await(long timeout) throws InterruptedException {
+         try {
+            synchronized (this) {
+               long deadline = System.currentTimeMillis() + timeout;
+               long remaining = timeout;
+               while (!pending.isEmpty() && remaining > 0) {
+                  wait(remaining);
+                  remaining = deadline - System.currentTimeMillis();
+               }
+               if (!pending.isEmpty()) {
+                  addFailure(failures, commands, new TimeoutException("Timed out waiting for the results of batch "
+                        + batchId + " from " + pending));
+               }
+               return new HashMap<String, Throwable>(failures);
+            }
+         } finally {
+            pendingBatches.remove(batchId);
+         }
+      }
+   }
+
    @Listener
    public class ViewListener {
       @Merged
@@ -32,6 +32,7 @@
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.MapReduceCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
@@ -106,40 +107,7 @@ public void inject(Transport transport, EmbeddedCacheManager cacheManager, Globa
    public ReplicableCommand fromStream(byte id, Object[] parameters, byte type) {
       ReplicableCommand command;
       if (type == 0) {
-         switch (id) {
-            case PutKeyValueCommand.COMMAND_ID:
-               command = new PutKeyValueCommand();
-               break;
-            case PutMapCommand.COMMAND_ID:
-               command = new PutMapCommand();
-               break;
-            case RemoveCommand.COMMAND_ID:
-               command = new RemoveCommand();
-               break;
-            case ReplaceCommand.COMMAND_ID:
-               command = new ReplaceCommand();
-               break;
-            case GetKeyValueCommand.COMMAND_ID:
-               command = new GetKeyValueCommand();
-               break;
-            case ClearCommand.COMMAND_ID:
-               command = new ClearCommand();
-               break;
-            case InvalidateCommand.COMMAND_ID:
-               command = new InvalidateCommand();
-               break;
-            case InvalidateL1Command.COMMAND_ID:
-               command = new InvalidateL1Command();
-               break;
-            case DistributedExecuteCommand.COMMAND_ID:
-               command = new DistributedExecuteCommand<Object>();
-               break;
-            case ApplyDeltaCommand.COMMAND_ID:
-               command = new ApplyDeltaCommand();
-               break;      
-            default:
-               throw new CacheException("Unknown command id " + id + "!");
-         }
+         command = createCoreCommand(id);
       } else {
          ModuleCommandFactory mcf = commandFactories.get(id);
          if (mcf != null)
@@ -151,6 +119,52 @@ public ReplicableCommand fromStream(byte id, Object[] parameters, byte type) {
       return command;
    }
 
+   /**
+    * Creates an un-initialized core command with no parameters set.  This is used to read {@link StreamingCommand}s,
+    * which populate their parameters straight from the stream.
+    *
+    * @param id id of the command
+    * @return a core replicable command
+    */
+   public ReplicableCommand createCoreCommand(byte id) {
+      ReplicableCommand command;
+      switch (id) {
+         case PutKeyValueCommand.COMMAND_ID:
+            command = new PutKeyValueCommand();
+            break;
+         case PutMapCommand.COMMAND_ID:
+            command = new PutMapCommand();
+            break;
+         case RemoveCommand.COMMAND_ID:
+            command = new RemoveCommand();
+            break;
+         case ReplaceCommand.COMMAND_ID:
+            command = new ReplaceCommand();
+            break;
+         case GetKeyValueCommand.COMMAND_ID:
+            command = new GetKeyValueCommand();
+            break;
+         case ClearCommand.COMMAND_ID:
+            command = new ClearCommand();
+            break;
+         case InvalidateCommand.COMMAND_ID:
+            command = new InvalidateCommand();
+            break;
+         case InvalidateL1Command.COMMAND_ID:
+            command = new InvalidateL1Command();
+            break;
+         case DistributedExecuteCommand.COMMAND_ID:
+            command = new DistributedExecuteCommand<Object>();
+            break;
+         case ApplyDeltaCommand.COMMAND_ID:
+            command = new ApplyDeltaCommand();
+            break;      
+         default:
+            throw new CacheException("Unknown command id " + id + "!");
+      }
+      return command;
+   }
+
    /**
     * Resolve an {@link CacheRpcCommand} from the stream.
     *
@@ -163,55 +177,7 @@ public ReplicableCommand fromStream(byte id, Object[] parameters, byte type) {
    public CacheRpcCommand fromStream(byte id, Object[] parameters, byte type, String cacheName) {
       CacheRpcCommand command;
       if (type == 0) {
-         switch (id) {
-            case LockControlCommand.COMMAND_ID:
-               command = new LockControlCommand(cacheName);
-               break;
-            case PrepareCommand.COMMAND_ID:
-               command = new PrepareCommand(cacheName);
-               break;
-            case CommitCommand.COMMAND_ID:
-               command = new CommitCommand(cacheName);
-               break;
-            case RollbackCommand.COMMAND_ID:
-               command = new RollbackCommand(cacheName);
-               break;
-            case MultipleRpcCommand.COMMAND_ID:
-               command = new MultipleRpcCommand(cacheName);
-               break;
-            case SingleRpcCommand.COMMAND_ID:
-               command = new SingleRpcCommand(cacheName);
-               break;
-            case ClusteredGetCommand.COMMAND_ID:
-               command = new ClusteredGetCommand(cacheName);
-               break;
-            case StateTransferControlCommand.COMMAND_ID:
-               command = new StateTransferControlCommand(cacheName);
-               break;
-            case RemoveCacheCommand.COMMAND_ID:
-               command = new RemoveCacheCommand(cacheName, cacheManager, registry);
-               break;
-            case TxCompletionNotificationCommand.COMMAND_ID:
-               command = new TxCompletionNotificationCommand(cacheName);
-               break;
-            case GetInDoubtTransactionsCommand.COMMAND_ID:
-               command = new GetInDoubtTransactionsCommand(cacheName);
-               break;
-            case MapReduceCommand.COMMAND_ID:
-               command = new MapReduceCommand(cacheName);
-               break;
-            case GetInDoubtTxInfoCommand.COMMAND_ID:
-               command = new GetInDoubtTxInfoCommand(cacheName);
-               break;
-            case CompleteTransactionCommand.COMMAND_ID:
-               command = new CompleteTransactionCommand(cacheName);
-               break;
-            case CacheViewControlCommand.COMMAND_ID:
-               command = new CacheViewControlCommand(cacheName);
-               break;                      
-            default:
-               throw new CacheException("Unknown command id " + id + "!");
-         }
+         command = createCoreCacheRpcCommand(id, cacheName);
       } else {
          ExtendedModuleCommandFactory mcf = (ExtendedModuleCommandFactory) commandFactories.get(id);
          if (mcf != null)
@@ -222,4 +188,69 @@ public CacheRpcCommand fromStream(byte id, Object[] parameters, byte type, Strin
       command.setParameters(id, parameters);
       return command;
    }
+
+   /**
+    * Creates an un-initialized core {@link CacheRpcCommand} with no parameters set.
+    *
+    * @param id         id of the command
+    * @param cacheName  cache name at which this command is directed
+    * @return           a core cache rpc command
+    * @see #createCoreCommand(byte)
+    */
+   public CacheRpcCommand createCoreCacheRpcCommand(byte id, String cacheName) {
+      CacheRpcCommand command;
+      switch (id) {
+         case LockControlCommand.COMMAND_ID:
+            command = new LockControlCommand(cacheName);
+            break;
+         case PrepareCommand.COMMAND_ID:
+            command = new PrepareCommand(cacheName);
+            break;
+         case CommitCommand.COMMAND_ID:
+            command = new CommitCommand(cacheName);
+            break;
+         case RollbackCommand.COMMAND_ID:
+            command = new RollbackCommand(cacheName);
+            break;
+         case MultipleRpcCommand.COMMAND_ID:
+            command = new MultipleRpcCommand(cacheName);
+            break;
+         case SingleRpcCommand.COMMAND_ID:
+            command = new SingleRpcCommand(cacheName);
+            break;
+         case ClusteredGetCommand.COMMAND_ID:
+            command = new ClusteredGetCommand(cacheName);
+            break;
+         case ClusteredGetAllCommand.COMMAND_ID:
+            command = new ClusteredGetAllCommand(cacheName);
+            break;
+         case StateTransferControlCommand.COMMAND_ID:
+            command = new StateTransferControlCommand(cacheName);
+            break;
+         case RemoveCacheCommand.COMMAND_ID:
+            command = new RemoveCacheCommand(cacheName, cacheManager, registry);
+            break;
+         case TxCompletionNotificationCommand.COMMAND_ID:
+            command = new TxCompletionNotificationCommand(cacheName);
+            break;
+         case GetInDoubtTransactionsCommand.COMMAND_ID:
+            command = new GetInDoubtTransactionsCommand(cacheName);
+            break;
+         case MapReduceCommand.COMMAND_ID:
+            command = new MapReduceCommand(cacheName);
+            break;
+         case GetInDoubtTxInfoCommand.COMMAND_ID:
+            command = new GetInDoubtTxInfoCommand(cacheName);
+            break;
+         case CompleteTransactionCommand.COMMAND_ID:
+            command = new CompleteTransactionCommand(cacheName);
+            break;
+         case CacheViewControlCommand.COMMAND_ID:
+            command = new CacheViewControlCommand(cacheName);
+            break;                      
+         default:
+            throw new CacheException("Unknown command id " + id + "!");
+      }
+      return command;
+   }
 }
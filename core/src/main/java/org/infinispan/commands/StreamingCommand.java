@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * A {@link ReplicableCommand} that writes its state straight to the marshalling stream, rather than boxing it into the
+ * <tt>Object[]</tt> returned by {@link #getParameters()}.  This is used for commands that are replicated on every
+ * write or remote read, so that no intermediate array (nor boxed primitives) are created per RPC.
+ * <p />
+ * Only core commands (those created by {@link RemoteCommandsFactory}) can be streamed this way.  {@link
+ * #getParameters()} and {@link #setParameters(int, Object[])} must still be implemented, and the two representations
+ * must be equivalent.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+public interface StreamingCommand extends ReplicableCommand {
+   /**
+    * Writes the command's parameters to the given output.
+    *
+    * @param output stream to write to
+    * @throws IOException if the parameters cannot be written
+    */
+   void writeTo(ObjectOutput output) throws IOException;
+
+   /**
+    * Reads the command's parameters, as written by {@link #writeTo(ObjectOutput)}, from the given input.
+    *
+    * @param input stream to read from
+    * @throws IOException if the parameters cannot be read
+    * @throws ClassNotFoundException if a parameter's class cannot be resolved
+    */
+   void readFrom(ObjectInput input) throws IOException, ClassNotFoundException;
+}
@@ -34,6 +34,7 @@
 import org.infinispan.util.logging.LogFactory;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * A control command to coordinate the installation of cache views between the members of the cluster.
@@ -41,6 +42,12 @@
  * It then sends PREPARE_VIEW to all the nodes in the cluster.
  * If all nodes return a successful response, the coordinator then sends a COMMIT_VIEW command to everyone.
  * If there is a failure on one of the nodes, the coordinator cancels the view with a ROLLBACK_VIEW command.
+ * <p/>
+ * When several caches have pending views at the same time, the coordinator wraps their PREPARE_VIEW commands
+ * (and later their COMMIT_VIEW/ROLLBACK_VIEW commands) in a single BATCH command, so that all the caches
+ * are installed in one cluster round. BATCH commands are sent asynchronously, and each node reports the outcome of
+ * the batched commands with a BATCH_RESULT command once they have finished, so the batched commands don't hold the
+ * thread that delivered the batch.
  *
  * @author Dan Berindei <dan@infinispan.org>
  * @since 5.1
@@ -59,7 +66,11 @@ public enum Type {
       // the coordinator is signalling that the current view has been cancelled and we are going back to the previous view
       ROLLBACK_VIEW,
       // when the coordinator changes (e.g. after a merge), the new coordinator requests existing state from all the members
-      RECOVER_VIEW
+      RECOVER_VIEW,
+      // the coordinator is sending the prepare, commit or rollback commands of several caches in a single round
+      BATCH,
+      // a node is reporting to the coordinator which of the commands of a batch failed
+      BATCH_RESULT
    }
 
    private static final Log log = LogFactory.getLog(CacheViewControlCommand.class);
@@ -75,6 +86,8 @@ public enum Type {
    private List<Address> newMembers;
    private int oldViewId;
    private List<Address> oldMembers;
+   private List<CacheViewControlCommand> commands;
+   private Map<String, Throwable> failures;
 
    // For CommandIdUniquenessTest only
    public CacheViewControlCommand() {
@@ -108,6 +121,28 @@ public CacheViewControlCommand(String cacheName, Type type, Address sender) {
       this.sender = sender;
    }
 
+   /**
+    * Creates a BATCH command; the batch id is sent back with the BATCH_RESULT.
+    */
+   public CacheViewControlCommand(String cacheName, Type type, Address sender, int batchId, List<CacheViewControlCommand> commands) {
+      this.cacheName = cacheName;
+      this.type = type;
+      this.sender = sender;
+      this.newViewId = batchId;
+      this.commands = commands;
+   }
+
+   /**
+    * Creates a BATCH_RESULT command.
+    */
+   public CacheViewControlCommand(String cacheName, Type type, Address sender, int batchId, Map<String, Throwable> failures) {
+      this.cacheName = cacheName;
+      this.type = type;
+      this.sender = sender;
+      this.newViewId = batchId;
+      this.failures = failures;
+   }
+
    public void init(CacheViewsManager cacheViewsManager) {
       this.cacheViewsManager = cacheViewsManager;
    }
@@ -135,6 +170,12 @@ public Object perform(InvocationContext ctx) throws Throwable {
                return null;
             case RECOVER_VIEW:
                return cacheViewsManager.handleRecoverViews();
+            case BATCH:
+               cacheViewsManager.handleBatch(sender, newViewId, commands);
+               return null;
+            case BATCH_RESULT:
+               cacheViewsManager.handleBatchResult(sender, newViewId, failures);
+               return null;
             default:
                throw new CacheException("Unknown cache views control command type " + type);
          }
@@ -180,12 +221,24 @@ public Type getType() {
       return type;
    }
 
+   public int getNewViewId() {
+      return newViewId;
+   }
+
+   public List<Address> getNewMembers() {
+      return newMembers;
+   }
+
+   public List<CacheViewControlCommand> getCommands() {
+      return commands;
+   }
+
    public byte getCommandId() {
       return COMMAND_ID;
    }
 
    public Object[] getParameters() {
-      return new Object[]{(byte) type.ordinal(), sender, newViewId, newMembers, oldViewId, oldMembers};
+      return new Object[]{(byte) type.ordinal(), sender, newViewId, newMembers, oldViewId, oldMembers, commands, failures};
    }
 
    @SuppressWarnings("unchecked")
@@ -197,6 +250,8 @@ public void setParameters(int commandId, Object[] parameters) {
       newMembers = (List<Address>) parameters[i++];
       oldViewId = (Integer) parameters[i++];
       oldMembers = (List<Address>) parameters[i++];
+      commands = (List<CacheViewControlCommand>) parameters[i++];
+      failures = (Map<String, Throwable>) parameters[i++];
    }
 
    @Override
@@ -209,6 +264,8 @@ public String toString() {
             ", newMembers=" + newMembers +
             ", oldViewId=" + oldViewId +
             ", oldMembers=" + oldMembers +
+            (commands != null ? ", commands=" + commands : "") +
+            (failures != null ? ", failures=" + failures : "") +
             '}';
    }
 }
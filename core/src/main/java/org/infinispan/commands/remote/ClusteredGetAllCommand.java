@@ -0,0 +1,206 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.commands.remote;
+
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.StreamingCommand;
+import org.infinispan.commands.read.GetAllCommand;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
+import org.infinispan.container.entries.InternalEntryFactory;
+import org.infinispan.container.entries.MVCCEntry;
+import org.infinispan.context.Flag;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.InvocationContextContainer;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Issues a remote lookup for several keys at once, typically all the keys of a
+ * {@link org.infinispan.Cache#getAll(java.util.Set)} call that are owned by the recipient. Like
+ * {@link ClusteredGetCommand}, this is not a {@link org.infinispan.commands.VisitableCommand}, but it passes a single
+ * {@link GetAllCommand} up the recipient's interceptor chain.
+ * <p/>
+ * The response is an array of {@link InternalCacheValue}s in the same order as the requested keys, holding
+ * <tt>null</tt> for keys that were not found or that are affected by an ongoing rehash.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class ClusteredGetAllCommand extends BaseRpcCommand implements FlagAffectedCommand, StreamingCommand {
+
+   public static final byte COMMAND_ID = 26;
+   private static final Log log = LogFactory.getLog(ClusteredGetAllCommand.class);
+   private static final boolean trace = log.isTraceEnabled();
+
+   private List<Object> keys;
+   private Set<Flag> flags;
+
+   private InvocationContextContainer icc;
+   private CommandsFactory commandsFactory;
+   private InterceptorChain invoker;
+   private DistributionManager distributionManager;
+
+   private ClusteredGetAllCommand() {
+      super(null); // For command id uniqueness test
+   }
+
+   public ClusteredGetAllCommand(String cacheName) {
+      super(cacheName);
+   }
+
+   public ClusteredGetAllCommand(List<Object> keys, String cacheName, Set<Flag> flags) {
+      super(cacheName);
+      this.keys = keys;
+      this.flags = flags;
+   }
+
+   public void initialize(InvocationContextContainer icc, CommandsFactory commandsFactory,
+                          InterceptorChain interceptorChain, DistributionManager distributionManager) {
+      this.icc = icc;
+      this.commandsFactory = commandsFactory;
+      this.invoker = interceptorChain;
+      this.distributionManager = distributionManager;
+   }
+
+   /**
+    * Invokes a logical "getAll(keys)" on a remote cache and returns results.
+    *
+    * @param context invocation context, ignored.
+    * @return an array holding the value of each requested key, or null for keys that were not found
+    */
+   @Override
+   public InternalCacheValue[] perform(InvocationContext context) throws Throwable {
+      List<Object> lookupKeys = new ArrayList<Object>(keys.size());
+      int[] positions = new int[keys.size()];
+      for (int i = 0; i < keys.size(); i++) {
+         Object key = keys.get(i);
+         // keys affected by a rehash are left out, the requestor will look them up individually
+         if (distributionManager == null || !distributionManager.isAffectedByRehash(key)) {
+            positions[lookupKeys.size()] = i;
+            lookupKeys.add(key);
+         }
+      }
+
+      InternalCacheValue[] values = new InternalCacheValue[keys.size()];
+      if (lookupKeys.isEmpty()) return values;
+
+      // make sure the get command doesn't perform a remote call
+      // as our caller is already calling the ClusteredGetAllCommand on all the relevant nodes
+      Set<Flag> commandFlags = EnumSet.of(Flag.SKIP_REMOTE_LOOKUP);
+      if (this.flags != null) commandFlags.addAll(this.flags);
+      GetAllCommand command = commandsFactory.buildGetAllCommand(lookupKeys, commandFlags);
+      command.setReturnCacheEntries(true);
+      InvocationContext invocationContext = icc.createRemoteInvocationContextForCommand(command, getOrigin());
+      @SuppressWarnings("unchecked")
+      Map<Object, CacheEntry> entries = (Map<Object, CacheEntry>) invoker.invoke(invocationContext, command);
+
+      // the chain may have replaced the command's keys in place, so look the results up by the command's keys
+      List<Object> commandKeys = command.getKeys();
+      for (int j = 0; j < commandKeys.size(); j++) {
+         CacheEntry cacheEntry = entries.get(commandKeys.get(j));
+         if (cacheEntry != null) values[positions[j]] = toInternalCacheValue(cacheEntry);
+      }
+      if (trace) log.tracef("Found %s out of %s keys", entries.size(), keys.size());
+      return values;
+   }
+
+   private InternalCacheValue toInternalCacheValue(CacheEntry cacheEntry) {
+      //this might happen if the value was fetched from a cache loader
+      if (cacheEntry instanceof MVCCEntry) {
+         MVCCEntry mvccEntry = (MVCCEntry) cacheEntry;
+         return InternalEntryFactory.createValue(mvccEntry.getValue(), -1, mvccEntry.getLifespan(), -1, mvccEntry.getMaxIdle());
+      } else {
+         return ((InternalCacheEntry) cacheEntry).toInternalCacheValue();
+      }
+   }
+
+   public List<Object> getKeys() {
+      return keys;
+   }
+
+   @Override
+   public Set<Flag> getFlags() {
+      return flags;
+   }
+
+   @Override
+   public void setFlags(Set<Flag> flags) {
+      this.flags = flags;
+   }
+
+   @Override
+   public byte getCommandId() {
+      return COMMAND_ID;
+   }
+
+   @Override
+   public Object[] getParameters() {
+      return new Object[]{keys, flags};
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setParameters(int commandId, Object[] args) {
+      keys = (List<Object>) args[0];
+      flags = (Set<Flag>) args[1];
+   }
+
+   @Override
+   public void writeTo(ObjectOutput output) throws IOException {
+      UnsignedNumeric.writeUnsignedInt(output, keys.size());
+      for (Object key : keys) output.writeObject(key);
+      output.writeObject(flags);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void readFrom(ObjectInput input) throws IOException, ClassNotFoundException {
+      int size = UnsignedNumeric.readUnsignedInt(input);
+      keys = new ArrayList<Object>(size);
+      for (int i = 0; i < size; i++) keys.add(input.readObject());
+      flags = (Set<Flag>) input.readObject();
+   }
+
+   @Override
+   public String toString() {
+      return "ClusteredGetAllCommand{" +
+            "keys=" + keys +
+            ", flags=" + flags +
+            "} " + super.toString();
+   }
+}
@@ -24,6 +24,7 @@
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.FlagAffectedCommand;
+import org.infinispan.commands.StreamingCommand;
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.container.entries.CacheEntry;
@@ -41,6 +42,9 @@
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.Set;
@@ -53,7 +57,7 @@
  * @author Mircea.Markus@jboss.com
  * @since 4.0
  */
-public class ClusteredGetCommand extends BaseRpcCommand implements FlagAffectedCommand {
+public class ClusteredGetCommand extends BaseRpcCommand implements FlagAffectedCommand, StreamingCommand {
 
    public static final byte COMMAND_ID = 16;
    private static final Log log = LogFactory.getLog(ClusteredGetCommand.class);
@@ -163,6 +167,23 @@ public void setParameters(int commandId, Object[] args) {
       gtx = (GlobalTransaction) args[i];
    }
 
+   @Override
+   public void writeTo(ObjectOutput output) throws IOException {
+      output.writeObject(key);
+      output.writeObject(flags);
+      output.writeBoolean(acquireRemoteLock);
+      output.writeObject(gtx);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void readFrom(ObjectInput input) throws IOException, ClassNotFoundException {
+      key = input.readObject();
+      flags = (Set<Flag>) input.readObject();
+      acquireRemoteLock = input.readBoolean();
+      gtx = (GlobalTransaction) input.readObject();
+   }
+
    @Override
    public boolean equals(Object o) {
       if (this == o) return true;
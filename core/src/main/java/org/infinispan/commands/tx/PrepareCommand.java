@@ -23,12 +23,15 @@
 package org.infinispan.commands.tx;
 
 import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.StreamingCommand;
 import org.infinispan.commands.Visitor;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.RemoveCommand;
 import org.infinispan.commands.write.ReplaceCommand;
 import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.container.entries.EntryVersion;
 import org.infinispan.context.InvocationContext;
+import org.infinispan.io.UnsignedNumeric;
 import org.infinispan.context.impl.RemoteTxInvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
@@ -38,10 +41,14 @@
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -51,7 +58,7 @@
  * @author Mircea.Markus@jboss.com
  * @since 4.0
  */
-public class PrepareCommand extends AbstractTransactionBoundaryCommand {
+public class PrepareCommand extends AbstractTransactionBoundaryCommand implements StreamingCommand {
 
    private static final Log log = LogFactory.getLog(PrepareCommand.class);
    private boolean trace = log.isTraceEnabled();
@@ -62,6 +69,7 @@ public class PrepareCommand extends AbstractTransactionBoundaryCommand {
    protected boolean onePhaseCommit;
    protected CacheNotifier notifier;
    protected RecoveryManager recoveryManager;
+   protected Map<Object, EntryVersion> versionsSeen;
    private transient boolean replayEntryWrapping  = false;
 
    public void initialize(CacheNotifier notifier, RecoveryManager recoveryManager) {
@@ -138,6 +146,19 @@ public boolean isOnePhaseCommit() {
       return onePhaseCommit;
    }
 
+   /**
+    * @return the versions of the entries read or written by the transaction, as seen by the transaction on the
+    *         originator, or null if versioning is disabled.
+    * @see org.infinispan.config.Configuration#isUseVersioning()
+    */
+   public Map<Object, EntryVersion> getVersionsSeen() {
+      return versionsSeen;
+   }
+
+   public void setVersionsSeen(Map<Object, EntryVersion> versionsSeen) {
+      this.versionsSeen = versionsSeen;
+   }
+
    public boolean existModifications() {
       return modifications != null && modifications.length > 0;
    }
@@ -154,10 +175,11 @@ public byte getCommandId() {
    public Object[] getParameters() {
       int numMods = modifications == null ? 0 : modifications.length;
       int i = 0;
-      final int params = 3;
+      final int params = 4;
       Object[] retval = new Object[numMods + params];
       retval[i++] = globalTx;
       retval[i++] = onePhaseCommit;
+      retval[i++] = versionsSeen;
       retval[i++] = numMods;
       if (numMods > 0) System.arraycopy(modifications, 0, retval, params, numMods);
       return retval;
@@ -169,6 +191,7 @@ public void setParameters(int commandId, Object[] args) {
       int i = 0;
       globalTx = (GlobalTransaction) args[i++];
       onePhaseCommit = (Boolean) args[i++];
+      versionsSeen = (Map<Object, EntryVersion>) args[i++];
       int numMods = (Integer) args[i++];
       if (numMods > 0) {
          modifications = new WriteCommand[numMods];
@@ -176,11 +199,35 @@ public void setParameters(int commandId, Object[] args) {
       }
    }
 
+   @Override
+   public void writeTo(ObjectOutput output) throws IOException {
+      output.writeObject(globalTx);
+      output.writeBoolean(onePhaseCommit);
+      output.writeObject(versionsSeen);
+      int numMods = modifications == null ? 0 : modifications.length;
+      UnsignedNumeric.writeUnsignedInt(output, numMods);
+      for (int i = 0; i < numMods; i++) output.writeObject(modifications[i]);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void readFrom(ObjectInput input) throws IOException, ClassNotFoundException {
+      globalTx = (GlobalTransaction) input.readObject();
+      onePhaseCommit = input.readBoolean();
+      versionsSeen = (Map<Object, EntryVersion>) input.readObject();
+      int numMods = UnsignedNumeric.readUnsignedInt(input);
+      if (numMods > 0) {
+         modifications = new WriteCommand[numMods];
+         for (int i = 0; i < numMods; i++) modifications[i] = (WriteCommand) input.readObject();
+      }
+   }
+
    public PrepareCommand copy() {
       PrepareCommand copy = new PrepareCommand(cacheName);
       copy.globalTx = globalTx;
       copy.modifications = modifications == null ? null : modifications.clone();
       copy.onePhaseCommit = onePhaseCommit;
+      copy.versionsSeen = versionsSeen;
       return copy;
    }
 
@@ -22,11 +22,15 @@
  */
 package org.infinispan.commands.write;
 
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.util.Collections;
 import java.util.Set;
 
 import org.infinispan.atomic.Delta;
 import org.infinispan.atomic.DeltaAware;
+import org.infinispan.commands.StreamingCommand;
 import org.infinispan.commands.Visitor;
 import org.infinispan.container.entries.MVCCEntry;
 import org.infinispan.context.Flag;
@@ -39,7 +43,7 @@
  * @author Mircea.Markus@jboss.com
  * @since 4.0
  */
-public class PutKeyValueCommand extends AbstractDataWriteCommand {
+public class PutKeyValueCommand extends AbstractDataWriteCommand implements StreamingCommand {
    public static final byte COMMAND_ID = 8;
 
    Object value;
@@ -128,6 +132,27 @@ public void setParameters(int commandId, Object[] parameters) {
       flags = (Set<Flag>) (parameters.length > 4 ? parameters[4] : Collections.EMPTY_SET); //TODO remove conditional check in future - eases migration for now
    }
 
+   @Override
+   public void writeTo(ObjectOutput output) throws IOException {
+      output.writeObject(key);
+      // Only write deltas so that replication can be more efficient
+      output.writeObject(value instanceof DeltaAware ? ((DeltaAware) value).delta() : value);
+      output.writeLong(lifespanMillis);
+      output.writeLong(maxIdleTimeMillis);
+      output.writeObject(flags);
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void readFrom(ObjectInput input) throws IOException, ClassNotFoundException {
+      key = input.readObject();
+      // For DeltaAware instances, nothing special to be done here, merging happens in perform()
+      value = input.readObject();
+      lifespanMillis = input.readLong();
+      maxIdleTimeMillis = input.readLong();
+      flags = (Set<Flag>) input.readObject();
+   }
+
    public boolean isPutIfAbsent() {
       return putIfAbsent;
    }
@@ -248,7 +248,8 @@ public long getDeadlockDetectionSpinDuration() {
 
    /**
     * Time period that determines how often is lock acquisition attempted within maximum time allowed to acquire a
-    * particular lock
+    * particular lock. Ignored since 5.1, deadlocks are detected when they form and transactions waiting for a lock no
+    * longer spin.
     *
     * @param eagerDeadlockSpinDuration
     * @deprecated Use {@link FluentConfiguration.DeadlockDetectionConfig#spinDuration(Long)} instead
@@ -297,6 +298,43 @@ public boolean isUseLockStriping() {
       return locking.useLockStriping;
    }
 
+   /**
+    * If true, and lock striping is disabled, locks are still created per entry but are recycled through a pool once
+    * released, and looked up in an open addressing lock table rather than a ConcurrentHashMap. This reduces the
+    * garbage produced by write-heavy workloads over large key sets, without the false sharing of lock striping.
+    *
+    * @param useLockPooling
+    * @deprecated Use {@link FluentConfiguration.LockingConfig#useLockPooling(Boolean)} instead
+    */
+   @Deprecated
+   public void setUseLockPooling(boolean useLockPooling) {
+      locking.setUseLockPooling(useLockPooling);
+   }
+
+   public boolean isUseLockPooling() {
+      return locking.useLockPooling;
+   }
+
+   /**
+    * If true, entries carry a version, i.e. the id of the transaction that last wrote them, and optimistic transactions
+    * check at prepare time that the versions of all the entries they read or wrote are still the ones they saw. A
+    * transaction that fails this check is rolled back with a write skew exception. Prepare also never waits for
+    * locks held by another prepared transaction: the conflicting transaction fails straight away instead of blocking
+    * for the duration of the other transaction's commit. Only applicable to optimistic transactional caches using
+    * REPEATABLE_READ, where it replaces {@link #setWriteSkewCheck(boolean)}.
+    *
+    * @param useVersioning
+    * @deprecated Use {@link FluentConfiguration.LockingConfig#useVersioning(Boolean)} instead
+    */
+   @Deprecated
+   public void setUseVersioning(boolean useVersioning) {
+      locking.setUseVersioning(useVersioning);
+   }
+
+   public boolean isUseVersioning() {
+      return locking.useVersioning;
+   }
+
    public boolean isUnsafeUnreliableReturnValues() {
       return unsafe.unreliableReturnValues;
    }
@@ -328,6 +366,41 @@ public long getRehashRpcTimeout() {
       return clustering.hash.rehashRpcTimeout;
    }
 
+   /**
+    * If true, writes are only blocked for as long as it takes to install a new cache view, and keep being served while
+    * state is transferred, by sending them to both the old and the new owners of a key. Only applies to
+    * non-transactional distributed caches, transactional caches always block writes for the whole rehash.
+    *
+    * @param nonBlockingRehash
+    * @deprecated Use {@link FluentConfiguration.HashConfig#nonBlockingRehash(Boolean)} instead
+    */
+   @Deprecated
+   public void setNonBlockingRehash(boolean nonBlockingRehash) {
+      this.clustering.hash.setNonBlockingRehash(nonBlockingRehash);
+   }
+
+   public boolean isNonBlockingRehash() {
+      return clustering.hash.nonBlockingRehash;
+   }
+
+   /**
+    * If true, remote gets ask the owners of a key one at a time, starting with the owner closest to this node in the
+    * cluster topology (same machine, then same rack, then same site) and, among owners at the same distance, the one
+    * that recently answered fastest. The next owner is asked after the same adaptive delay as with
+    * {@link #setStaggerRemoteGets(boolean)}, so a temporarily slow owner is avoided.
+    *
+    * @param preferNearestOwner
+    * @deprecated Use {@link FluentConfiguration.HashConfig#preferNearestOwner(Boolean)} instead
+    */
+   @Deprecated
+   public void setPreferNearestOwner(boolean preferNearestOwner) {
+      this.clustering.hash.setPreferNearestOwner(preferNearestOwner);
+   }
+
+   public boolean isPreferNearestOwner() {
+      return clustering.hash.preferNearestOwner;
+   }
+
    public boolean isWriteSkewCheck() {
       return locking.writeSkewCheck;
    }
@@ -406,6 +479,33 @@ public void setReplQueueClass(String classname) {
       this.clustering.async.setReplQueueClass(classname);
    }
 
+   /**
+    * If useReplQueue is set to true, this attribute enables write coalescing in the replication queue. Only the latest
+    * unconditional put or remove of a key is kept between two flushes, so a hot key updated many times within one
+    * replQueueInterval is replicated once. Conditional writes, clears and all other commands keep their relative
+    * order. Note that listeners on remote nodes will not see the intermediate values that were coalesced away.
+    *
+    * @param replQueueCoalescing
+    * @deprecated Use {@link FluentConfiguration.AsyncConfig#replQueueCoalescing(Boolean)} instead
+    */
+   @Deprecated
+   public void setReplQueueCoalescing(boolean replQueueCoalescing) {
+      this.clustering.async.setReplQueueCoalescing(replQueueCoalescing);
+   }
+
+   /**
+    * If useReplQueue is set to true, this attribute can be used to trigger flushing of the queue when the estimated
+    * size of the queued commands reaches a specific number of bytes. A value of 0 (the default) disables the byte
+    * threshold, so that only replQueueMaxElements and replQueueInterval trigger flushes.
+    *
+    * @param replQueueMaxBytes
+    * @deprecated Use {@link FluentConfiguration.AsyncConfig#replQueueMaxBytes(Long)} instead
+    */
+   @Deprecated
+   public void setReplQueueMaxBytes(long replQueueMaxBytes) {
+      this.clustering.async.setReplQueueMaxBytes(replQueueMaxBytes);
+   }
+
    /**
     * @deprecated Use {@link FluentConfiguration#jmxStatistics()} instead
     */
@@ -878,6 +978,43 @@ public void setStateRetrievalMaxNonProgressingLogWrites(int maxNonProgressingLog
       this.clustering.stateRetrieval.setMaxNonProgressingLogWrites(maxNonProgressingLogWrites);
    }
 
+   /**
+    * The number of cache entries pushed in a single state transfer message. State is pushed to each node in chunks of
+    * this size, without reading all the entries to push in memory first. If 0 or negative, all the entries to push to
+    * a node are sent in a single message.
+    *
+    * @param chunkSize
+    * @deprecated Use {@link FluentConfiguration.StateRetrievalConfig#chunkSize(Integer)} instead
+    */
+   @Deprecated
+   public void setStateRetrievalChunkSize(int chunkSize) {
+      this.clustering.stateRetrieval.setChunkSize(chunkSize);
+   }
+
+   /**
+    * The maximum number of state chunks pushed to a node that the node hasn't applied yet. Pushing more chunks to that
+    * node waits until it applies the oldest one. Can be changed at runtime through JMX.
+    *
+    * @param maxInFlightChunks
+    * @deprecated Use {@link FluentConfiguration.StateRetrievalConfig#maxInFlightChunks(Integer)} instead
+    */
+   @Deprecated
+   public void setStateRetrievalMaxInFlightChunks(int maxInFlightChunks) {
+      this.clustering.stateRetrieval.setMaxInFlightChunks(maxInFlightChunks);
+   }
+
+   /**
+    * The maximum rate, in bytes per second, at which a node pushes state to the other nodes. If 0 or negative, state
+    * is pushed as fast as the receivers apply it. Can be changed at runtime through JMX.
+    *
+    * @param maxBandwidth
+    * @deprecated Use {@link FluentConfiguration.StateRetrievalConfig#maxBandwidth(Long)} instead
+    */
+   @Deprecated
+   public void setStateRetrievalMaxBandwidth(long maxBandwidth) {
+      this.clustering.stateRetrieval.setMaxBandwidth(maxBandwidth);
+   }
+
    /**
     * Initial wait time when backing off before retrying state transfer retrieval
     *
@@ -1000,6 +1137,51 @@ public int getL1InvalidationThreshold() {
    	return this.clustering.l1.invalidationThreshold;
    }
 
+   /**
+    * <p>
+    * Time window, in milliseconds, during which unicast L1 invalidations directed at the same node are
+    * coalesced into a single invalidation command carrying all the keys.
+    * </p>
+    *
+    * <p>
+    * By default (0) invalidations are sent immediately. A small window reduces the number of invalidation
+    * messages for keys that are written often, at the cost of delaying each write by up to the window.
+    * </p>
+    *
+    * @param window the invalidation batching window, in milliseconds
+    * @deprecated Use {@link FluentConfiguration.L1Config#invalidationBatchWindow(Long)} instead
+    */
+   @Deprecated
+   public void setL1InvalidationBatchWindow(long window) {
+      this.clustering.l1.setInvalidationBatchWindow(window);
+   }
+
+   public long getL1InvalidationBatchWindow() {
+      return this.clustering.l1.invalidationBatchWindow;
+   }
+
+   /**
+    * <p>
+    * Maximum number of keys for which a data owner remembers the nodes that cached them in L1.
+    * </p>
+    *
+    * <p>
+    * When the limit is reached the owner stops tracking new requestors and invalidates L1 entries via
+    * multicast instead, until the untracked requests are older than the L1 lifespan. 0 means no limit.
+    * </p>
+    *
+    * @param maxTrackedKeys the maximum number of keys with tracked L1 requestors
+    * @deprecated Use {@link FluentConfiguration.L1Config#maxTrackedKeys(Integer)} instead
+    */
+   @Deprecated
+   public void setL1MaxTrackedKeys(int maxTrackedKeys) {
+      this.clustering.l1.setMaxTrackedKeys(maxTrackedKeys);
+   }
+
+   public int getL1MaxTrackedKeys() {
+      return this.clustering.l1.maxTrackedKeys;
+   }
+
    /**
     * Fully qualified name of class providing consistent hash algorithm
     *
@@ -1046,6 +1228,19 @@ public void setRehashEnabled(boolean rehashEnabled) {
       this.clustering.hash.setRehashEnabled(rehashEnabled);
    }
 
+   /**
+    * If true, a remote get is first sent to the primary owner only, and the next owner is only contacted if no valid
+    * response arrives within a delay derived from the latency of recent remote gets. If false, remote gets are sent
+    * to all owners at once.
+    *
+    * @param staggerRemoteGets
+    * @deprecated Use {@link FluentConfiguration.HashConfig#staggerRemoteGets(Boolean)} instead
+    */
+   @Deprecated
+   public void setStaggerRemoteGets(boolean staggerRemoteGets) {
+      this.clustering.hash.setStaggerRemoteGets(staggerRemoteGets);
+   }
+
    /**
     * @deprecated Use {@link FluentConfiguration.HashConfig#rehashWait(Long)} instead
     */
@@ -1114,6 +1309,14 @@ public String getReplQueueClass() {
       return this.clustering.async.replQueueClass;
    }
 
+   public boolean isReplQueueCoalescing() {
+      return clustering.async.replQueueCoalescing;
+   }
+
+   public long getReplQueueMaxBytes() {
+      return clustering.async.replQueueMaxBytes;
+   }
+
    public boolean isExposeJmxStatistics() {
       return jmxStatistics.enabled;
    }
@@ -1332,6 +1535,18 @@ public int getStateRetrievalMaxNonProgressingLogWrites() {
       return clustering.stateRetrieval.maxNonProgressingLogWrites;
    }
 
+   public int getStateRetrievalChunkSize() {
+      return clustering.stateRetrieval.chunkSize;
+   }
+
+   public int getStateRetrievalMaxInFlightChunks() {
+      return clustering.stateRetrieval.maxInFlightChunks;
+   }
+
+   public long getStateRetrievalMaxBandwidth() {
+      return clustering.stateRetrieval.maxBandwidth;
+   }
+
    public long getStateRetrievalLogFlushTimeout() {
       return clustering.stateRetrieval.logFlushTimeout;
    }
@@ -1404,6 +1619,10 @@ public boolean isRehashEnabled() {
       return clustering.hash.rehashEnabled;
    }
 
+   public boolean isStaggerRemoteGets() {
+      return clustering.hash.staggerRemoteGets;
+   }
+
    public long getRehashWaitTime() {
       return clustering.hash.rehashWait;
    }
@@ -1647,6 +1866,9 @@ public void assertValid() throws ConfigurationException {
       if (clustering.mode.isClustered() && (globalConfiguration != null
               && (globalConfiguration.getTransportClass() == null || globalConfiguration.getTransportClass().length() == 0)))
          throw new ConfigurationException("Cache cannot use a clustered mode (" + clustering.mode + ") mode and not define a transport!");
+      if (isUseVersioning() && (!isTransactionalCache() || getTransactionLockingMode() != LockingMode.OPTIMISTIC
+            || getIsolationLevel() != IsolationLevel.REPEATABLE_READ))
+         throw new ConfigurationException("Versioning can only be used by optimistic transactional caches with REPEATABLE_READ isolation!");
    }
 
    public boolean isOnePhaseCommit() {
@@ -2083,6 +2305,12 @@ public TransactionType clone() throws CloneNotSupportedException {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseLockStriping")
       protected Boolean useLockStriping = false;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseLockPooling")
+      protected Boolean useLockPooling = false;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setUseVersioning")
+      protected Boolean useVersioning = false;
+
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setConcurrencyLevel")
       protected Integer concurrencyLevel = 32;
 
@@ -2175,6 +2403,48 @@ public LockingConfig useLockStriping(Boolean useLockStriping) {
       }
 
 
+      @XmlAttribute
+      public Boolean isUseLockPooling() {
+         return useLockPooling;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #useLockPooling(Boolean)} instead
+       */
+      @Deprecated
+      public void setUseLockPooling(Boolean useLockPooling) {
+         testImmutability("useLockPooling");
+         this.useLockPooling = useLockPooling;
+      }
+
+      @Override
+      public LockingConfig useLockPooling(Boolean useLockPooling) {
+         setUseLockPooling(useLockPooling);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Boolean isUseVersioning() {
+         return useVersioning;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #useVersioning(Boolean)} instead
+       */
+      @Deprecated
+      public void setUseVersioning(Boolean useVersioning) {
+         testImmutability("useVersioning");
+         this.useVersioning = useVersioning;
+      }
+
+      @Override
+      public LockingConfig useVersioning(Boolean useVersioning) {
+         setUseVersioning(useVersioning);
+         return this;
+      }
+
+
       @XmlAttribute
       public Integer getConcurrencyLevel() {
          return concurrencyLevel;
@@ -2215,6 +2485,10 @@ public boolean equals(Object o) {
             return false;
          if (useLockStriping != null ? !useLockStriping.equals(that.useLockStriping) : that.useLockStriping != null)
             return false;
+         if (useLockPooling != null ? !useLockPooling.equals(that.useLockPooling) : that.useLockPooling != null)
+            return false;
+         if (useVersioning != null ? !useVersioning.equals(that.useVersioning) : that.useVersioning != null)
+            return false;
          if (writeSkewCheck != null ? !writeSkewCheck.equals(that.writeSkewCheck) : that.writeSkewCheck != null)
             return false;
 
@@ -2227,6 +2501,8 @@ public int hashCode() {
          result = 31 * result + (isolationLevel != null ? isolationLevel.hashCode() : 0);
          result = 31 * result + (writeSkewCheck != null ? writeSkewCheck.hashCode() : 0);
          result = 31 * result + (useLockStriping != null ? useLockStriping.hashCode() : 0);
+         result = 31 * result + (useLockPooling != null ? useLockPooling.hashCode() : 0);
+         result = 31 * result + (useVersioning != null ? useVersioning.hashCode() : 0);
          result = 31 * result + (concurrencyLevel != null ? concurrencyLevel.hashCode() : 0);
          return result;
       }
@@ -2558,6 +2834,12 @@ public ClusteringType unmarshal(ClusteringType ct) throws Exception {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueClass")
       protected String replQueueClass = ReplicationQueueImpl.class.getName();
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueCoalescing")
+      protected Boolean replQueueCoalescing = false;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setReplQueueMaxBytes")
+      protected Long replQueueMaxBytes = 0L;
+
       @XmlTransient
       private boolean unmarshalledFromXml = false;
 
@@ -2588,6 +2870,10 @@ public boolean equals(Object o) {
             return false;
          if (!Util.safeEquals(replQueueClass, asyncType.replQueueClass))
             return false;
+         if (replQueueCoalescing != null ? !replQueueCoalescing.equals(asyncType.replQueueCoalescing) : asyncType.replQueueCoalescing != null)
+            return false;
+         if (replQueueMaxBytes != null ? !replQueueMaxBytes.equals(asyncType.replQueueMaxBytes) : asyncType.replQueueMaxBytes != null)
+            return false;
 
          return true;
       }
@@ -2600,6 +2886,8 @@ public int hashCode() {
          result = 31 * result + (replQueueInterval != null ? replQueueInterval.hashCode() : 0);
          result = 31 * result + (asyncMarshalling != null ? asyncMarshalling.hashCode() : 0);
          result = 31 * result + (replQueueClass != null ? replQueueClass.hashCode() : 0);
+         result = 31 * result + (replQueueCoalescing != null ? replQueueCoalescing.hashCode() : 0);
+         result = 31 * result + (replQueueMaxBytes != null ? replQueueMaxBytes.hashCode() : 0);
          return result;
       }
 
@@ -2712,6 +3000,48 @@ public AsyncConfig replQueueClass(Class<? extends ReplicationQueue> replQueueCla
       }
 
 
+      @XmlAttribute
+      public Boolean isReplQueueCoalescing() {
+         return replQueueCoalescing;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #replQueueCoalescing(Boolean)}
+       */
+      @Deprecated
+      public void setReplQueueCoalescing(Boolean replQueueCoalescing) {
+         testImmutability("replQueueCoalescing");
+         this.replQueueCoalescing = replQueueCoalescing;
+      }
+
+      @Override
+      public AsyncConfig replQueueCoalescing(Boolean replQueueCoalescing) {
+         setReplQueueCoalescing(replQueueCoalescing);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Long getReplQueueMaxBytes() {
+         return replQueueMaxBytes;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #replQueueMaxBytes(Long)}
+       */
+      @Deprecated
+      public void setReplQueueMaxBytes(Long replQueueMaxBytes) {
+         testImmutability("replQueueMaxBytes");
+         this.replQueueMaxBytes = replQueueMaxBytes;
+      }
+
+      @Override
+      public AsyncConfig replQueueMaxBytes(Long replQueueMaxBytes) {
+         setReplQueueMaxBytes(replQueueMaxBytes);
+         return this;
+      }
+
+
       @Override
       public void willUnmarshall(Object parent) {
          ClusteringType clustering = (ClusteringType) parent;
@@ -3125,6 +3455,15 @@ public int hashCode() {
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStateRetrievalMaxNonProgressingLogWrites")
       protected Integer maxNonProgressingLogWrites = 100;
 
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStateRetrievalChunkSize")
+      protected Integer chunkSize = 10000;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStateRetrievalMaxInFlightChunks")
+      protected Integer maxInFlightChunks = 2;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStateRetrievalMaxBandwidth")
+      protected Long maxBandwidth = 0L;
+
       public void accept(ConfigurationBeanVisitor v) {
          v.visitStateRetrievalType(this);
       }
@@ -3296,6 +3635,66 @@ public StateRetrievalConfig maxNonProgressingLogWrites(Integer maxNonProgressing
          return this;
       }
 
+      @XmlAttribute
+      public Integer getChunkSize() {
+         return chunkSize;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #chunkSize(Integer)} instead
+       */
+      @Deprecated
+      public void setChunkSize(Integer chunkSize) {
+         testImmutability("chunkSize");
+         this.chunkSize = chunkSize;
+      }
+
+      @Override
+      public StateRetrievalConfig chunkSize(Integer chunkSize) {
+         setChunkSize(chunkSize);
+         return this;
+      }
+
+      @XmlAttribute
+      public Integer getMaxInFlightChunks() {
+         return maxInFlightChunks;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #maxInFlightChunks(Integer)} instead
+       */
+      @Deprecated
+      public void setMaxInFlightChunks(Integer maxInFlightChunks) {
+         testImmutability("maxInFlightChunks");
+         this.maxInFlightChunks = maxInFlightChunks;
+      }
+
+      @Override
+      public StateRetrievalConfig maxInFlightChunks(Integer maxInFlightChunks) {
+         setMaxInFlightChunks(maxInFlightChunks);
+         return this;
+      }
+
+      @XmlAttribute
+      public Long getMaxBandwidth() {
+         return maxBandwidth;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #maxBandwidth(Long)} instead
+       */
+      @Deprecated
+      public void setMaxBandwidth(Long maxBandwidth) {
+         testImmutability("maxBandwidth");
+         this.maxBandwidth = maxBandwidth;
+      }
+
+      @Override
+      public StateRetrievalConfig maxBandwidth(Long maxBandwidth) {
+         setMaxBandwidth(maxBandwidth);
+         return this;
+      }
+
       @Override
       public boolean equals(Object o) {
          if (this == o) return true;
@@ -3311,6 +3710,10 @@ public boolean equals(Object o) {
          if (retryWaitTimeIncreaseFactor != null ? !retryWaitTimeIncreaseFactor.equals(that.retryWaitTimeIncreaseFactor) : that.retryWaitTimeIncreaseFactor != null)
             return false;
          if (numRetries != null ? !numRetries.equals(that.numRetries) : that.numRetries != null) return false;
+         if (chunkSize != null ? !chunkSize.equals(that.chunkSize) : that.chunkSize != null) return false;
+         if (maxInFlightChunks != null ? !maxInFlightChunks.equals(that.maxInFlightChunks) : that.maxInFlightChunks != null)
+            return false;
+         if (maxBandwidth != null ? !maxBandwidth.equals(that.maxBandwidth) : that.maxBandwidth != null) return false;
 
          return true;
       }
@@ -3322,6 +3725,9 @@ public int hashCode() {
          result = 31 * result + (initialRetryWaitTime != null ? initialRetryWaitTime.hashCode() : 0);
          result = 31 * result + (retryWaitTimeIncreaseFactor != null ? retryWaitTimeIncreaseFactor.hashCode() : 0);
          result = 31 * result + (numRetries != null ? numRetries.hashCode() : 0);
+         result = 31 * result + (chunkSize != null ? chunkSize.hashCode() : 0);
+         result = 31 * result + (maxInFlightChunks != null ? maxInFlightChunks.hashCode() : 0);
+         result = 31 * result + (maxBandwidth != null ? maxBandwidth.hashCode() : 0);
          return result;
       }
    }
@@ -3435,6 +3841,15 @@ public void willUnmarshall(Object parent) {
 
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setRehashEnabled")
       protected Boolean rehashEnabled = true;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setStaggerRemoteGets")
+      protected Boolean staggerRemoteGets = false;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setNonBlockingRehash")
+      protected Boolean nonBlockingRehash = false;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setPreferNearestOwner")
+      protected Boolean preferNearestOwner = false;
       
       @ConfigurationDocRef(bean = HashConfig.class, targetElement = "numVirtualNodes")
       protected Integer numVirtualNodes = 1;
@@ -3602,6 +4017,68 @@ public HashConfig rehashEnabled(Boolean rehashEnabled) {
          setRehashEnabled(rehashEnabled);
          return this;
       }
+
+
+      @XmlAttribute
+      public Boolean isStaggerRemoteGets() {
+         return staggerRemoteGets;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #staggerRemoteGets(Boolean)}
+       */
+      @Deprecated
+      public void setStaggerRemoteGets(Boolean staggerRemoteGets) {
+         testImmutability("staggerRemoteGets");
+         this.staggerRemoteGets = staggerRemoteGets;
+      }
+
+      @Override
+      public HashConfig staggerRemoteGets(Boolean staggerRemoteGets) {
+         setStaggerRemoteGets(staggerRemoteGets);
+         return this;
+      }
+
+
+      @XmlAttribute
+      public Boolean isNonBlockingRehash() {
+         return nonBlockingRehash;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #nonBlockingRehash(Boolean)}
+       */
+      @Deprecated
+      public void setNonBlockingRehash(Boolean nonBlockingRehash) {
+         testImmutability("nonBlockingRehash");
+         this.nonBlockingRehash = nonBlockingRehash;
+      }
+
+      @Override
+      public HashConfig nonBlockingRehash(Boolean nonBlockingRehash) {
+         setNonBlockingRehash(nonBlockingRehash);
+         return this;
+      }
+
+      @XmlAttribute
+      public Boolean isPreferNearestOwner() {
+         return preferNearestOwner;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #preferNearestOwner(Boolean)}
+       */
+      @Deprecated
+      public void setPreferNearestOwner(Boolean preferNearestOwner) {
+         testImmutability("preferNearestOwner");
+         this.preferNearestOwner = preferNearestOwner;
+      }
+
+      @Override
+      public HashConfig preferNearestOwner(Boolean preferNearestOwner) {
+         setPreferNearestOwner(preferNearestOwner);
+         return this;
+      }
       
       public GroupsConfiguration groups() {
          groups.setConfiguration(config);
@@ -3637,6 +4114,12 @@ public boolean equals(Object o) {
             return false;
          if (rehashWait != null ? !rehashWait.equals(hashType.rehashWait) : hashType.rehashWait != null) return false;
          if (rehashEnabled != hashType.rehashEnabled) return false;
+         if (staggerRemoteGets != null ? !staggerRemoteGets.equals(hashType.staggerRemoteGets) : hashType.staggerRemoteGets != null)
+            return false;
+         if (nonBlockingRehash != null ? !nonBlockingRehash.equals(hashType.nonBlockingRehash) : hashType.nonBlockingRehash != null)
+            return false;
+         if (preferNearestOwner != null ? !preferNearestOwner.equals(hashType.preferNearestOwner) : hashType.preferNearestOwner != null)
+            return false;
 
          return true;
       }
@@ -3651,6 +4134,9 @@ public int hashCode() {
          result = 31 * result + (rehashWait != null ? rehashWait.hashCode() : 0);
          result = 31 * result + (rehashRpcTimeout != null ? rehashRpcTimeout.hashCode() : 0);
          result = 31 * result + (rehashEnabled ? 0 : 1);
+         result = 31 * result + (staggerRemoteGets != null ? staggerRemoteGets.hashCode() : 0);
+         result = 31 * result + (nonBlockingRehash != null ? nonBlockingRehash.hashCode() : 0);
+         result = 31 * result + (preferNearestOwner != null ? preferNearestOwner.hashCode() : 0);
          return result;
       }
       
@@ -3662,6 +4148,9 @@ public HashType clone() throws CloneNotSupportedException {
          dolly.numOwners = numOwners;
          dolly.numVirtualNodes = numVirtualNodes;
          dolly.rehashEnabled = rehashEnabled;
+         dolly.staggerRemoteGets = staggerRemoteGets;
+         dolly.nonBlockingRehash = nonBlockingRehash;
+         dolly.preferNearestOwner = preferNearestOwner;
          dolly.rehashRpcTimeout = rehashRpcTimeout;
          dolly.rehashWait = rehashWait;
          dolly.groups = (GroupsConfiguration) groups.clone();
@@ -3695,6 +4184,12 @@ public HashType clone() throws CloneNotSupportedException {
       
       @ConfigurationDocRef(bean = Configuration.class, targetElement = "setL1InvalidationThreshold")
       protected Integer invalidationThreshold = 0;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setL1InvalidationBatchWindow")
+      protected Long invalidationBatchWindow = 0L;
+
+      @ConfigurationDocRef(bean = Configuration.class, targetElement = "setL1MaxTrackedKeys")
+      protected Integer maxTrackedKeys = 0;
       
       public void accept(ConfigurationBeanVisitor v) {
          v.visitL1Type(this);
@@ -3775,6 +4270,46 @@ public Integer getInvalidationThreshold() {
 	      return invalidationThreshold;
       }
 
+      @Override
+      public L1Config invalidationBatchWindow(Long window) {
+         setInvalidationBatchWindow(window);
+         return this;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #invalidationBatchWindow(Long)}
+       */
+      @Deprecated
+      public void setInvalidationBatchWindow(Long window) {
+         testImmutability("invalidationBatchWindow");
+         this.invalidationBatchWindow = window;
+      }
+
+      @XmlAttribute
+      public Long getInvalidationBatchWindow() {
+         return invalidationBatchWindow;
+      }
+
+      @Override
+      public L1Config maxTrackedKeys(Integer maxTrackedKeys) {
+         setMaxTrackedKeys(maxTrackedKeys);
+         return this;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #maxTrackedKeys(Integer)}
+       */
+      @Deprecated
+      public void setMaxTrackedKeys(Integer maxTrackedKeys) {
+         testImmutability("maxTrackedKeys");
+         this.maxTrackedKeys = maxTrackedKeys;
+      }
+
+      @XmlAttribute
+      public Integer getMaxTrackedKeys() {
+         return maxTrackedKeys;
+      }
+
       @Override
       public L1Config disable() {
          return setEnabled(false);
@@ -3791,6 +4326,8 @@ public boolean equals(Object o) {
          if (lifespan != null ? !lifespan.equals(l1Type.lifespan) : l1Type.lifespan != null) return false;
          if (onRehash != null ? !onRehash.equals(l1Type.onRehash) : l1Type.onRehash != null) return false;
          if (invalidationThreshold != null ? !invalidationThreshold.equals(l1Type.invalidationThreshold) : l1Type.invalidationThreshold != null) return false;
+         if (invalidationBatchWindow != null ? !invalidationBatchWindow.equals(l1Type.invalidationBatchWindow) : l1Type.invalidationBatchWindow != null) return false;
+         if (maxTrackedKeys != null ? !maxTrackedKeys.equals(l1Type.maxTrackedKeys) : l1Type.maxTrackedKeys != null) return false;
          
          return true;
       }
@@ -3801,6 +4338,8 @@ public int hashCode() {
          result = 31 * result + (lifespan != null ? lifespan.hashCode() : 0);
          result = 31 * result + (onRehash != null ? onRehash.hashCode() : 0);
          result = 31 * result + (invalidationThreshold != null ? invalidationThreshold.hashCode() : 0);
+         result = 31 * result + (invalidationBatchWindow != null ? invalidationBatchWindow.hashCode() : 0);
+         result = 31 * result + (maxTrackedKeys != null ? maxTrackedKeys.hashCode() : 0);
          return result;
       }
    }
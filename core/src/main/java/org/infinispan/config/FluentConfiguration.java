@@ -98,6 +98,24 @@ public FluentConfiguration(Configuration config) {
        */
       LockingConfig useLockStriping(Boolean useLockStriping);
 
+      /**
+       * If true, and lock striping is disabled, per entry locks are recycled through a pool once
+       * released and looked up in an open addressing lock table. This reduces lock churn for
+       * write-heavy workloads over large key sets without sharing locks between unrelated keys.
+       *
+       * @param useLockPooling
+       */
+      LockingConfig useLockPooling(Boolean useLockPooling);
+
+      /**
+       * If true, entries are versioned and optimistic transactions validate the versions of the
+       * entries they read and wrote when preparing, without waiting for locks held by other
+       * prepared transactions. Requires an optimistic transactional cache with REPEATABLE_READ.
+       *
+       * @param useVersioning
+       */
+      LockingConfig useVersioning(Boolean useVersioning);
+
       /**
        * Concurrency level for lock containers. Adjust this value according to the number of
        * concurrent threads interacting with Infinispan. Similar to the concurrencyLevel tuning
@@ -311,7 +329,8 @@ public FluentConfiguration(Configuration config) {
 
       /**
        * Time period that determines how often is lock acquisition attempted within maximum time
-       * allowed to acquire a particular lock
+       * allowed to acquire a particular lock. Ignored since 5.1, deadlocks are detected when they
+       * form and transactions waiting for a lock no longer spin.
        *
        * @param duration
        */
@@ -515,6 +534,24 @@ public FluentConfiguration(Configuration config) {
        * @param replQueueClass
        */
       AsyncConfig replQueueClass(Class<? extends ReplicationQueue> replQueueClass);
+
+      /**
+       * If useReplQueue is set to true, this attribute enables write coalescing in the replication
+       * queue: only the latest unconditional put or remove of each key is kept between flushes.
+       * Conditional writes, clears and other commands keep their relative order. Remote listeners
+       * will not see the coalesced intermediate values.
+       *
+       * @param replQueueCoalescing
+       */
+      AsyncConfig replQueueCoalescing(Boolean replQueueCoalescing);
+
+      /**
+       * If useReplQueue is set to true, this attribute can be used to trigger flushing of the queue
+       * when the estimated size of the queued commands reaches a number of bytes. 0 disables it.
+       *
+       * @param replQueueMaxBytes
+       */
+      AsyncConfig replQueueMaxBytes(Long replQueueMaxBytes);
    }
 
    /**
@@ -597,6 +634,29 @@ public FluentConfiguration(Configuration config) {
        * @param maxNonProgressingLogWrites
        */
       StateRetrievalConfig maxNonProgressingLogWrites(Integer maxNonProgressingLogWrites);
+
+      /**
+       * The number of cache entries pushed in a single state transfer message. If 0 or negative,
+       * all the entries to push to a node are sent in a single message.
+       *
+       * @param chunkSize
+       */
+      StateRetrievalConfig chunkSize(Integer chunkSize);
+
+      /**
+       * The maximum number of state chunks pushed to a node that the node hasn't applied yet.
+       *
+       * @param maxInFlightChunks
+       */
+      StateRetrievalConfig maxInFlightChunks(Integer maxInFlightChunks);
+
+      /**
+       * The maximum rate, in bytes per second, at which a node pushes state to the other nodes. If
+       * 0 or negative, the rate is not limited.
+       *
+       * @param maxBandwidth
+       */
+      StateRetrievalConfig maxBandwidth(Long maxBandwidth);
    }
 
    /**
@@ -639,6 +699,22 @@ public FluentConfiguration(Configuration config) {
        * 
        */
       L1Config invalidationThreshold(Integer threshold);
+
+      /**
+       * Time window, in milliseconds, during which unicast L1 invalidations directed at the same node are
+       * coalesced into a single invalidation command. 0 (the default) sends them immediately.
+       *
+       * @param window the invalidation batching window, in milliseconds
+       */
+      L1Config invalidationBatchWindow(Long window);
+
+      /**
+       * Maximum number of keys for which a data owner remembers the nodes that cached them in L1. Once the
+       * limit is reached, L1 invalidations fall back to multicast. 0 (the default) means no limit.
+       *
+       * @param maxTrackedKeys the maximum number of keys with tracked L1 requestors
+       */
+      L1Config maxTrackedKeys(Integer maxTrackedKeys);
    }
 
    /**
@@ -696,6 +772,33 @@ public FluentConfiguration(Configuration config) {
        * @param rehashEnabled
        */
       HashConfig rehashEnabled(Boolean rehashEnabled);
+
+      /**
+       * If true, a remote get is first sent to the primary owner only, and the next owner is only
+       * contacted if no valid response arrives within a delay derived from the latency of recent
+       * remote gets. If false (the default), remote gets are sent to all owners at once.
+       *
+       * @param staggerRemoteGets
+       */
+      HashConfig staggerRemoteGets(Boolean staggerRemoteGets);
+
+      /**
+       * If true, writes are only blocked while a new cache view is installed, and keep being served during the
+       * state transfer by sending them to both the old and the new owners of a key. Ignored for transactional
+       * caches.
+       *
+       * @param nonBlockingRehash
+       */
+      HashConfig nonBlockingRehash(Boolean nonBlockingRehash);
+
+      /**
+       * If true, remote gets ask the owners one at a time, starting with the owner closest to this node in
+       * the cluster topology and, among owners at the same distance, the one that recently answered fastest.
+       * The next owner is asked after the same adaptive delay as with {@link #staggerRemoteGets(Boolean)}.
+       *
+       * @param preferNearestOwner
+       */
+      HashConfig preferNearestOwner(Boolean preferNearestOwner);
       
       /**
        * Controls the number of virtual nodes per "real" node. You can read more about virtual nodes
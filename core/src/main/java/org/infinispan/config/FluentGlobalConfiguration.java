@@ -79,6 +79,15 @@ public FluentGlobalConfiguration(GlobalConfiguration globalConfig) {
        */
       SerializationConfig version(short marshallVersion);
 
+      /**
+       * Registers frequently marshalled classes, typically user key and value types, in the marshaller's class
+       * dictionary. Instances of these classes are written with a compact numeric identifier instead of a full
+       * class descriptor. Every node in the cluster must register exactly the same classes, in the same order.
+       *
+       * @param classes classes to register, in identifier order
+       */
+      SerializationConfig classDictionary(Class<?>... classes);
+
       /**
        * Adds an {@link org.infinispan.marshall.AdvancedExternalizer} with the give id.
        *
@@ -311,6 +320,8 @@ interface FluentGlobalTypes {
 
    FluentGlobalConfiguration.ExecutorFactoryConfig<ExecutorFactory> asyncListenerExecutor();
 
+   FluentGlobalConfiguration.ExecutorFactoryConfig<ExecutorFactory> remoteCommandsExecutor();
+
    FluentGlobalConfiguration.ExecutorFactoryConfig<ScheduledExecutorFactory> evictionScheduledExecutor();
 
    FluentGlobalConfiguration.ExecutorFactoryConfig<ScheduledExecutorFactory> replicationQueueScheduledExecutor();
@@ -381,6 +392,11 @@ public FluentGlobalConfiguration.ExecutorFactoryConfig<ExecutorFactory> asyncTra
       return globalConfig.asyncTransportExecutor;
    }
 
+   @Override
+   public FluentGlobalConfiguration.ExecutorFactoryConfig<ExecutorFactory> remoteCommandsExecutor() {
+      return globalConfig.remoteCommandsExecutor;
+   }
+
    @Override
    public FluentGlobalConfiguration.ExecutorFactoryConfig<ScheduledExecutorFactory> evictionScheduledExecutor() {
       return globalConfig.evictionScheduledExecutor;
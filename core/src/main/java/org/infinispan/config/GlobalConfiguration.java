@@ -104,6 +104,9 @@ public class GlobalConfiguration extends AbstractConfigurationBean {
    @XmlElement
    ExecutorFactoryType asyncTransportExecutor = new ExecutorFactoryType().setGlobalConfiguration(this);
 
+   @XmlElement
+   ExecutorFactoryType remoteCommandsExecutor = new ExecutorFactoryType().setGlobalConfiguration(this);
+
    @XmlElement
    ScheduledExecutorFactoryType evictionScheduledExecutor = new ScheduledExecutorFactoryType().setGlobalConfiguration(this);
 
@@ -331,6 +334,7 @@ private void injectDependencies(GlobalComponentRegistry gcr) {
       this.gcr = gcr;
       gcr.registerComponent(asyncListenerExecutor, "asyncListenerExecutor");
       gcr.registerComponent(asyncTransportExecutor, "asyncTransportExecutor");
+      gcr.registerComponent(remoteCommandsExecutor, "remoteCommandsExecutor");
       gcr.registerComponent(evictionScheduledExecutor, "evictionScheduledExecutor");
       gcr.registerComponent(replicationQueueScheduledExecutor, "replicationQueueScheduledExecutor");
       gcr.registerComponent(replicationQueueScheduledExecutor, "replicationQueueScheduledExecutor");
@@ -368,6 +372,18 @@ public void setAsyncTransportExecutorFactoryClass(String asyncTransportExecutorF
       this.asyncTransportExecutor.setFactory(asyncTransportExecutorFactoryClass);
    }
 
+   public String getRemoteCommandsExecutorFactoryClass() {
+      return remoteCommandsExecutor.factory;
+   }
+
+   /**
+    * @deprecated Use {@link FluentGlobalConfiguration.ExecutorFactoryConfig#remoteCommandsExecutor()} instead
+    */
+   @Deprecated
+   public void setRemoteCommandsExecutorFactoryClass(String remoteCommandsExecutorFactoryClass) {
+      this.remoteCommandsExecutor.setFactory(remoteCommandsExecutorFactoryClass);
+   }
+
    public String getEvictionScheduledExecutorFactoryClass() {
       return evictionScheduledExecutor.factory;
    }
@@ -609,6 +625,26 @@ public void setAsyncTransportExecutorProperties(String asyncSerializationExecuto
       this.asyncTransportExecutor.setProperties(toTypedProperties(asyncSerializationExecutorPropertiesString));
    }
 
+   public Properties getRemoteCommandsExecutorProperties() {
+      return remoteCommandsExecutor.properties;
+   }
+
+   /**
+    * @deprecated Use {@link FluentGlobalConfiguration.ExecutorFactoryConfig#remoteCommandsExecutor()} instead
+    */
+   @Deprecated
+   public void setRemoteCommandsExecutorProperties(Properties remoteCommandsExecutorProperties) {
+      this.remoteCommandsExecutor.setProperties(toTypedProperties(remoteCommandsExecutorProperties));
+   }
+
+   /**
+    * @deprecated Use {@link FluentGlobalConfiguration.ExecutorFactoryConfig#remoteCommandsExecutor()} instead
+    */
+   @Deprecated
+   public void setRemoteCommandsExecutorProperties(String remoteCommandsExecutorPropertiesString) {
+      this.remoteCommandsExecutor.setProperties(toTypedProperties(remoteCommandsExecutorPropertiesString));
+   }
+
    public Properties getEvictionScheduledExecutorProperties() {
       return evictionScheduledExecutor.properties;
    }
@@ -690,6 +726,35 @@ public List<AdvancedExternalizerConfig> getExternalizers() {
       return serialization.externalizerTypes.advancedExternalizers;
    }
 
+   /**
+    * Returns the fully qualified names of the classes in the marshaller's class dictionary, in the order in which
+    * they were configured. The position of each class in this list is the identifier written on the wire in place
+    * of its class descriptor.
+    */
+   public List<String> getClassDictionary() {
+      List<String> classNames = new ArrayList<String>();
+      if (serialization.classDictionary != null) {
+         for (String className : serialization.classDictionary.split(",")) {
+            className = className.trim();
+            if (className.length() > 0) classNames.add(className);
+         }
+      }
+      return classNames;
+   }
+
+   /**
+    * Comma separated list of fully qualified class names that are frequently marshalled, typically user key and value
+    * types. Instances of these classes are written with a compact numeric class identifier instead of a full class
+    * descriptor. Every node in the cluster must be configured with exactly the same list, in the same order.
+    *
+    * @param classDictionary
+    * @deprecated Use {@link FluentGlobalConfiguration.SerializationConfig#classDictionary(Class[])} instead
+    */
+   @Deprecated
+   public void setClassDictionary(String classDictionary) {
+      serialization.setClassDictionary(classDictionary);
+   }
+
    public long getDistributedSyncTimeout() {
       return transport.distributedSyncTimeout;
    }
@@ -705,6 +770,7 @@ public void setDistributedSyncTimeout(long distributedSyncTimeout) {
    public void accept(ConfigurationBeanVisitor v) {
       asyncListenerExecutor.accept(v);
       asyncTransportExecutor.accept(v);
+      remoteCommandsExecutor.accept(v);
       evictionScheduledExecutor.accept(v);
       globalJmxStatistics.accept(v);
       replicationQueueScheduledExecutor.accept(v);
@@ -730,6 +796,10 @@ public boolean equals(Object o) {
          return false;
       if (asyncTransportExecutor.properties != null ? !asyncTransportExecutor.properties.equals(that.asyncTransportExecutor.properties) : that.asyncTransportExecutor.properties != null)
          return false;
+      if (remoteCommandsExecutor.factory != null ? !remoteCommandsExecutor.factory.equals(that.remoteCommandsExecutor.factory) : that.remoteCommandsExecutor.factory != null)
+         return false;
+      if (remoteCommandsExecutor.properties != null ? !remoteCommandsExecutor.properties.equals(that.remoteCommandsExecutor.properties) : that.remoteCommandsExecutor.properties != null)
+         return false;
       if (transport.clusterName != null ? !transport.clusterName.equals(that.transport.clusterName) : that.transport.clusterName != null)
          return false;
       if (evictionScheduledExecutor.factory != null ? !evictionScheduledExecutor.factory.equals(that.evictionScheduledExecutor.factory) : that.evictionScheduledExecutor.factory != null)
@@ -758,6 +828,8 @@ public int hashCode() {
       result = 31 * result + (asyncListenerExecutor.properties != null ? asyncListenerExecutor.properties.hashCode() : 0);
       result = 31 * result + (asyncTransportExecutor.factory != null ? asyncTransportExecutor.factory.hashCode() : 0);
       result = 31 * result + (asyncTransportExecutor.properties != null ? asyncTransportExecutor.properties.hashCode() : 0);
+      result = 31 * result + (remoteCommandsExecutor.factory != null ? remoteCommandsExecutor.factory.hashCode() : 0);
+      result = 31 * result + (remoteCommandsExecutor.properties != null ? remoteCommandsExecutor.properties.hashCode() : 0);
       result = 31 * result + (evictionScheduledExecutor.factory != null ? evictionScheduledExecutor.factory.hashCode() : 0);
       result = 31 * result + (evictionScheduledExecutor.properties != null ? evictionScheduledExecutor.properties.hashCode() : 0);
       result = 31 * result + (replicationQueueScheduledExecutor.factory != null ? replicationQueueScheduledExecutor.factory.hashCode() : 0);
@@ -784,6 +856,10 @@ public GlobalConfiguration clone() {
             dolly.asyncTransportExecutor = asyncTransportExecutor.clone();
             dolly.asyncTransportExecutor.setGlobalConfiguration(dolly);
          }
+         if (remoteCommandsExecutor != null) {
+            dolly.remoteCommandsExecutor = remoteCommandsExecutor.clone();
+            dolly.remoteCommandsExecutor.setGlobalConfiguration(dolly);
+         }
          if (evictionScheduledExecutor != null) {
             dolly.evictionScheduledExecutor = evictionScheduledExecutor.clone();
             dolly.evictionScheduledExecutor.setGlobalConfiguration(dolly);
@@ -937,7 +1013,9 @@ public FactoryClassWithPropertiesType clone() throws CloneNotSupportedException
            @ConfigurationDoc(name = "asyncListenerExecutor",
                    desc = "Configuration for the executor service used to emit notifications to asynchronous listeners"),
            @ConfigurationDoc(name = "asyncTransportExecutor",
-                   desc = "Configuration for the executor service used for asynchronous work on the Transport, including asynchronous marshalling and Cache 'async operations' such as Cache.putAsync().")})
+                   desc = "Configuration for the executor service used for asynchronous work on the Transport, including asynchronous marshalling and Cache 'async operations' such as Cache.putAsync()."),
+           @ConfigurationDoc(name = "remoteCommandsExecutor",
+                   desc = "Configuration for the executors used to handle commands received from other nodes. Commands are classified as read, write, txControl, stateTransfer, distExec or query, and each class gets its own bounded executor. Properties apply to all classes and can be overridden per class with a prefix, e.g. read.maxThreads. A class with maxThreads of 0, the default, is handled on the thread that delivered the message.")})
    @Deprecated public static class ExecutorFactoryType extends FactoryClassWithPropertiesType implements ExecutorFactoryConfig<ExecutorFactory> {
 
       private static final long serialVersionUID = 6895901500645539386L;
@@ -1352,6 +1430,9 @@ TransportType setGlobalConfiguration(GlobalConfiguration globalConfig) {
 
       private short versionShort;
 
+      @ConfigurationDocRef(bean = GlobalConfiguration.class, targetElement = "setClassDictionary")
+      protected String classDictionary;
+
       @XmlElement(name = "advancedExternalizers")
       protected AdvancedExternalizersType externalizerTypes = new AdvancedExternalizersType();
 
@@ -1409,6 +1490,31 @@ public SerializationConfig version(short marshallVersion) {
          return this;
       }
 
+      @XmlAttribute
+      public String getClassDictionary() {
+         return classDictionary;
+      }
+
+      /**
+       * @deprecated The visibility of this will be reduced, use {@link #classDictionary(Class[])} instead
+       */
+      @Deprecated
+      public void setClassDictionary(String classDictionary) {
+         testImmutability("classDictionary");
+         this.classDictionary = classDictionary;
+      }
+
+      @Override
+      public SerializationConfig classDictionary(Class<?>... classes) {
+         StringBuilder sb = new StringBuilder();
+         for (Class<?> clazz : classes) {
+            if (sb.length() > 0) sb.append(',');
+            sb.append(clazz.getName());
+         }
+         setClassDictionary(sb.toString());
+         return this;
+      }
+
       // TODO implement equals and hashCode and update parent equals/hashcode
 
       @Override
@@ -16,14 +16,19 @@ public class AsyncConfiguration {
    private final long replicationQueueInterval;
    private final int replicationQueueMaxElements;
    private final boolean useReplicationQueue;
+   private final boolean replicationQueueCoalescing;
+   private final long replicationQueueMaxBytes;
 
    AsyncConfiguration(boolean asyncMarshalling, ReplicationQueue replicationQueue, long replicationQueueInterval,
-         int replicationQueueMaxElements, boolean useReplicationQueue) {
+         int replicationQueueMaxElements, boolean useReplicationQueue, boolean replicationQueueCoalescing,
+         long replicationQueueMaxBytes) {
       this.asyncMarshalling = asyncMarshalling;
       this.replicationQueue = replicationQueue;
       this.replicationQueueInterval = replicationQueueInterval;
       this.replicationQueueMaxElements = replicationQueueMaxElements;
       this.useReplicationQueue = useReplicationQueue;
+      this.replicationQueueCoalescing = replicationQueueCoalescing;
+      this.replicationQueueMaxBytes = replicationQueueMaxBytes;
    }
 
    /**
@@ -67,4 +72,20 @@ public boolean useReplQueue() {
       return useReplicationQueue;
    }
 
+   /**
+    * If true, the replication queue only keeps the latest unconditional write of each key between
+    * two flushes.
+    */
+   public boolean replQueueCoalescing() {
+      return replicationQueueCoalescing;
+   }
+
+   /**
+    * If useReplQueue is set to true, the estimated number of queued bytes that triggers a flush of
+    * the queue. 0 means no byte threshold.
+    */
+   public long replQueueMaxBytes() {
+      return replicationQueueMaxBytes;
+   }
+
 }
@@ -19,6 +19,8 @@ public class AsyncConfigurationBuilder extends AbstractClusteringConfigurationCh
    private long replicationQueueInterval = TimeUnit.SECONDS.toMillis(5);
    private int replicationQueueMaxElements = 1000;
    private boolean useReplicationQueue = false;
+   private boolean replicationQueueCoalescing = false;
+   private long replicationQueueMaxBytes = 0;
 
    protected AsyncConfigurationBuilder(ClusteringConfigurationBuilder builder) {
       super(builder);
@@ -80,6 +82,25 @@ public AsyncConfigurationBuilder useReplQueue(boolean use) {
       return this;
    }
 
+   /**
+    * If true, the replication queue only keeps the latest unconditional put or remove of each key
+    * between two flushes. Conditional writes, clears and other commands keep their relative order.
+    * Listeners on remote nodes will not see the coalesced intermediate values.
+    */
+   public AsyncConfigurationBuilder replQueueCoalescing(boolean coalescing) {
+      this.replicationQueueCoalescing = coalescing;
+      return this;
+   }
+
+   /**
+    * If useReplQueue is set to true, this attribute can be used to trigger flushing of the queue
+    * when the estimated size of the queued commands reaches a number of bytes. 0 disables it.
+    */
+   public AsyncConfigurationBuilder replQueueMaxBytes(long bytes) {
+      this.replicationQueueMaxBytes = bytes;
+      return this;
+   }
+
    @Override
    void validate() {
       if (useReplicationQueue && getClusteringBuilder().cacheMode().isDistributed())
@@ -87,11 +108,15 @@ void validate() {
 
       if (useReplicationQueue && getClusteringBuilder().cacheMode().isSynchronous())
          throw new ConfigurationException("Use of the replication queue is only allowed with an ASYNCHRONOUS cluster mode.");
+
+      if (replicationQueueMaxBytes < 0)
+         throw new ConfigurationException("replQueueMaxBytes cannot be negative");
    }
 
    @Override
    AsyncConfiguration create() {
-      return new AsyncConfiguration(asyncMarshalling, replicationQueue, replicationQueueInterval, replicationQueueMaxElements, useReplicationQueue);
+      return new AsyncConfiguration(asyncMarshalling, replicationQueue, replicationQueueInterval, replicationQueueMaxElements, useReplicationQueue,
+            replicationQueueCoalescing, replicationQueueMaxBytes);
    }
 
 }
@@ -18,18 +18,25 @@ public class HashConfiguration {
    private final int numOwners;
    private final int numVirtualNodes;
    private final boolean rehashEnabled;
+   private final boolean staggerRemoteGets;
+   private final boolean nonBlockingRehash;
+   private final boolean preferNearestOwner;
    private final long rehashRpcTimeout;
    private final long rehashWait;
    private final GroupsConfiguration groupsConfiguration;
 
    HashConfiguration(ConsistentHash consistentHash, HashSeed hashSeed, Hash hash, int numOwners, int numVirtualNodes,
-         boolean rehashEnabled, long rehashRpcTimeout, long rehashWait, GroupsConfiguration groupsConfiguration) {
+         boolean rehashEnabled, boolean staggerRemoteGets, boolean nonBlockingRehash, boolean preferNearestOwner, long rehashRpcTimeout,
+         long rehashWait, GroupsConfiguration groupsConfiguration) {
       this.consistentHash = consistentHash;
       this.hashSeed = hashSeed;
       this.hash = hash;
       this.numOwners = numOwners;
       this.numVirtualNodes = numVirtualNodes;
       this.rehashEnabled = rehashEnabled;
+      this.staggerRemoteGets = staggerRemoteGets;
+      this.nonBlockingRehash = nonBlockingRehash;
+      this.preferNearestOwner = preferNearestOwner;
       this.rehashRpcTimeout = rehashRpcTimeout;
       this.rehashWait = rehashWait;
       this.groupsConfiguration = groupsConfiguration;
@@ -96,6 +103,33 @@ public boolean isRehashEnabled() {
       return rehashEnabled;
    }
 
+   /**
+    * If true, a remote get is first sent to the primary owner only, and the next owner is only
+    * contacted if no valid response arrives within a delay derived from the latency of recent
+    * remote gets. If false, remote gets are sent to all owners at once.
+    */
+   public boolean isStaggerRemoteGets() {
+      return staggerRemoteGets;
+   }
+
+   /**
+    * If true, writes keep being served during a rehash by sending them to both the old and the new
+    * owners of a key, instead of being blocked until the state transfer ends. Transactional caches
+    * always block writes.
+    */
+   public boolean isNonBlockingRehash() {
+      return nonBlockingRehash;
+   }
+
+   /**
+    * If true, remote gets ask the owners one at a time, starting with the owner closest to this
+    * node in the cluster topology and, among owners at the same distance, the one that recently
+    * answered fastest.
+    */
+   public boolean isPreferNearestOwner() {
+      return preferNearestOwner;
+   }
+
    /**
     * Rehashing timeout
     */
@@ -22,6 +22,9 @@ public class HashConfigurationBuilder extends AbstractClusteringConfigurationChi
    private int numOwners = 2;
    private int numVirtualNodes = 1;
    private boolean rehashEnabled = true;
+   private boolean staggerRemoteGets = false;
+   private boolean nonBlockingRehash = false;
+   private boolean preferNearestOwner = false;
    private long rehashRpcTimeout = MINUTES.toMillis(10);
    private long rehashWait = MINUTES.toMillis(1);
 
@@ -101,6 +104,36 @@ public HashConfigurationBuilder rehashDisabled() {
       return this;
    }
 
+   /**
+    * Send remote gets to the primary owner first, and only contact the next owner if no valid
+    * response arrives within a delay derived from the latency of recent remote gets. This cuts the
+    * number of requests and value transfers per remote get from numOwners to usually one.
+    */
+   public HashConfigurationBuilder staggerRemoteGets(boolean staggerRemoteGets) {
+      this.staggerRemoteGets = staggerRemoteGets;
+      return this;
+   }
+
+   /**
+    * Keep serving writes during a rehash by sending them to both the old and the new owners of a
+    * key. Writes are then only blocked while the new cache view is installed. Ignored for
+    * transactional caches.
+    */
+   public HashConfigurationBuilder nonBlockingRehash(boolean nonBlockingRehash) {
+      this.nonBlockingRehash = nonBlockingRehash;
+      return this;
+   }
+
+   /**
+    * Send remote gets to the owner closest to this node in the cluster topology (same machine,
+    * then same rack, then same site) and, among owners at the same distance, to the one that
+    * recently answered fastest. The other owners are only contacted after an adaptive delay.
+    */
+   public HashConfigurationBuilder preferNearestOwner(boolean preferNearestOwner) {
+      this.preferNearestOwner = preferNearestOwner;
+      return this;
+   }
+
    /**
     * Rehashing timeout
     */
@@ -138,8 +171,8 @@ void validate() {
 
    @Override
    HashConfiguration create() {
-      return new HashConfiguration(consistentHash, hashSeed, hash, numOwners, numVirtualNodes, rehashEnabled, rehashRpcTimeout,
-            rehashWait, groupsConfigurationBuilder.create());
+      return new HashConfiguration(consistentHash, hashSeed, hash, numOwners, numVirtualNodes, rehashEnabled, staggerRemoteGets,
+            nonBlockingRehash, preferNearestOwner, rehashRpcTimeout, rehashWait, groupsConfigurationBuilder.create());
    }
 
 }
@@ -11,12 +11,17 @@ public class L1Configuration {
    private final int invalidationThreshold;
    private final long lifespan;
    private final boolean onRehash;
+   private final long invalidationBatchWindow;
+   private final int maxTrackedKeys;
 
-   L1Configuration(boolean enabled, int invalidationThreshold, long lifespan, boolean onRehash) {
+   L1Configuration(boolean enabled, int invalidationThreshold, long lifespan, boolean onRehash,
+         long invalidationBatchWindow, int maxTrackedKeys) {
       this.enabled = enabled;
       this.invalidationThreshold = invalidationThreshold;
       this.lifespan = lifespan;
       this.onRehash = onRehash;
+      this.invalidationBatchWindow = invalidationBatchWindow;
+      this.maxTrackedKeys = maxTrackedKeys;
    }
 
    public boolean isEnabled() {
@@ -56,4 +61,20 @@ public boolean onRehash() {
       return onRehash;
    }
 
+   /**
+    * Time window, in milliseconds, during which unicast L1 invalidations directed at the same node are
+    * coalesced into a single invalidation command. 0 means invalidations are sent immediately.
+    */
+   public long invalidationBatchWindow() {
+      return invalidationBatchWindow;
+   }
+
+   /**
+    * Maximum number of keys for which a data owner remembers the nodes that cached them in L1.
+    * 0 means no limit.
+    */
+   public int maxTrackedKeys() {
+      return maxTrackedKeys;
+   }
+
 }
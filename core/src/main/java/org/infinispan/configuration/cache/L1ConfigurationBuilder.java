@@ -19,6 +19,8 @@ public class L1ConfigurationBuilder extends AbstractClusteringConfigurationChild
    private int invalidationThreshold = 0;
    private long lifespan = TimeUnit.MINUTES.toMillis(10);
    private Boolean onRehash = null;
+   private long invalidationBatchWindow = 0;
+   private int maxTrackedKeys = 0;
 
    L1ConfigurationBuilder(ClusteringConfigurationBuilder builder) {
       super(builder);
@@ -70,6 +72,24 @@ public L1ConfigurationBuilder disableOnRehash() {
       return this;
    }
    
+   /**
+    * Time window, in milliseconds, during which unicast L1 invalidations directed at the same node are
+    * coalesced into a single invalidation command. 0 (the default) sends them immediately.
+    */
+   public L1ConfigurationBuilder invalidationBatchWindow(long invalidationBatchWindow) {
+      this.invalidationBatchWindow = invalidationBatchWindow;
+      return this;
+   }
+
+   /**
+    * Maximum number of keys for which a data owner remembers the nodes that cached them in L1. Once the
+    * limit is reached, L1 invalidations fall back to multicast. 0 (the default) means no limit.
+    */
+   public L1ConfigurationBuilder maxTrackedKeys(int maxTrackedKeys) {
+      this.maxTrackedKeys = maxTrackedKeys;
+      return this;
+   }
+
    public L1ConfigurationBuilder enable() {
       this.enabled = true;
       return this;
@@ -90,6 +110,10 @@ void validate() {
       // If L1 is disabled, L1ForRehash should also be disabled
       if (!enabled && onRehash)
          throw new ConfigurationException("Can only move entries to L1 on rehash when L1 is enabled");
+      if (invalidationBatchWindow < 0)
+         throw new ConfigurationException("The L1 invalidation batch window cannot be negative");
+      if (maxTrackedKeys < 0)
+         throw new ConfigurationException("The maximum number of tracked L1 keys cannot be negative");
    }
 
    @Override
@@ -102,7 +126,8 @@ L1Configuration create() {
       if (onRehash == null)
          onRehash = true;
       
-      return new L1Configuration(enabled, invalidationThreshold, lifespan, onRehash.booleanValue());
+      return new L1Configuration(enabled, invalidationThreshold, lifespan, onRehash.booleanValue(),
+            invalidationBatchWindow, maxTrackedKeys);
    }
 
 }
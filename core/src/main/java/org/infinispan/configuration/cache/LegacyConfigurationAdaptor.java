@@ -25,7 +25,9 @@ public org.infinispan.config.Configuration adapt(org.infinispan.configuration.ca
                .asyncMarshalling(config.clustering().async().asyncMarshalling())
                .replQueueClass(config.clustering().async().replQueue().getClass())
                .replQueueInterval(config.clustering().async().replQueueInterval())
-               .replQueueMaxElements(config.clustering().async().replQueueMaxElements());
+               .replQueueMaxElements(config.clustering().async().replQueueMaxElements())
+               .replQueueCoalescing(config.clustering().async().replQueueCoalescing())
+               .replQueueMaxBytes(config.clustering().async().replQueueMaxBytes());
       }
       
       if (config.clustering().hash().consistentHash() != null) {
@@ -45,6 +47,9 @@ public org.infinispan.config.Configuration adapt(org.infinispan.configuration.ca
             .numOwners(config.clustering().hash().numOwners())
             .numVirtualNodes(config.clustering().hash().numVirtualNodes())
             .rehashEnabled(config.clustering().hash().isRehashEnabled())
+            .staggerRemoteGets(config.clustering().hash().isStaggerRemoteGets())
+            .nonBlockingRehash(config.clustering().hash().isNonBlockingRehash())
+            .preferNearestOwner(config.clustering().hash().isPreferNearestOwner())
             .rehashRpcTimeout(config.clustering().hash().rehashRpcTimeout())
             .rehashWait(config.clustering().hash().rehashWait())
             .groups()
@@ -56,7 +61,9 @@ public org.infinispan.config.Configuration adapt(org.infinispan.configuration.ca
             .l1()
                .invalidationThreshold(config.clustering().l1().invalidationThreshold())
                .lifespan(config.clustering().l1().lifespan())
-               .onRehash(config.clustering().l1().onRehash());
+               .onRehash(config.clustering().l1().onRehash())
+               .invalidationBatchWindow(config.clustering().l1().invalidationBatchWindow())
+               .maxTrackedKeys(config.clustering().l1().maxTrackedKeys());
       } else {
          legacy.clustering()
             .l1()
@@ -72,7 +79,10 @@ public org.infinispan.config.Configuration adapt(org.infinispan.configuration.ca
             .maxNonProgressingLogWrites(config.clustering().stateRetrieval().maxNonPorgressingLogWrites())
             .numRetries(config.clustering().stateRetrieval().numRetries())
             .retryWaitTimeIncreaseFactor(config.clustering().stateRetrieval().retryWaitTimeIncreaseFactor())
-            .timeout(config.clustering().stateRetrieval().timeout());
+            .timeout(config.clustering().stateRetrieval().timeout())
+            .chunkSize(config.clustering().stateRetrieval().chunkSize())
+            .maxInFlightChunks(config.clustering().stateRetrieval().maxInFlightChunks())
+            .maxBandwidth(config.clustering().stateRetrieval().maxBandwidth());
       
       if (config.clustering().cacheMode().isSynchronous()) {
          legacy.clustering()
@@ -154,6 +164,8 @@ public org.infinispan.config.Configuration adapt(org.infinispan.configuration.ca
          .isolationLevel(config.locking().isolationLevel())
          .lockAcquisitionTimeout(config.locking().lockAcquisitionTimeout())
          .useLockStriping(config.locking().useLockStriping())
+         .useLockPooling(config.locking().useLockPooling())
+         .useVersioning(config.locking().useVersioning())
          .writeSkewCheck(config.locking().writeSkewCheck());
       
       if (config.storeAsBinary().enabled()) 
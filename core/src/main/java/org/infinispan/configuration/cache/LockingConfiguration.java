@@ -8,14 +8,18 @@ public class LockingConfiguration {
    private final IsolationLevel isolationLevel;
    private long lockAcquisitionTimeout;
    private final boolean useLockStriping;
+   private final boolean useLockPooling;
+   private final boolean useVersioning;
    private final boolean writeSkewCheck;
    
    LockingConfiguration(int concurrencyLevel, IsolationLevel isolationLevel, long lockAcquisitionTimeout,
-         boolean useLockStriping, boolean writeSkewCheck) {
+         boolean useLockStriping, boolean useLockPooling, boolean useVersioning, boolean writeSkewCheck) {
       this.concurrencyLevel = concurrencyLevel;
       this.isolationLevel = isolationLevel;
       this.lockAcquisitionTimeout = lockAcquisitionTimeout;
       this.useLockStriping = useLockStriping;
+      this.useLockPooling = useLockPooling;
+      this.useVersioning = useVersioning;
       this.writeSkewCheck = writeSkewCheck;
    }
 
@@ -40,6 +44,14 @@ public boolean useLockStriping() {
       return useLockStriping;
    }
 
+   public boolean useLockPooling() {
+      return useLockPooling;
+   }
+
+   public boolean useVersioning() {
+      return useVersioning;
+   }
+
    public boolean writeSkewCheck() {
       return writeSkewCheck;
    }
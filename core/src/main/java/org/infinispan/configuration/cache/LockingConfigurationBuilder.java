@@ -10,6 +10,8 @@ public class LockingConfigurationBuilder extends AbstractConfigurationChildBuild
    private IsolationLevel isolationLevel = IsolationLevel.READ_COMMITTED;
    private long lockAcquisitionTimeout = TimeUnit.SECONDS.toMillis(10);
    private boolean useLockStriping = false;
+   private boolean useLockPooling = false;
+   private boolean useVersioning = false;
    private boolean writeSkewCheck = false;
 
    protected LockingConfigurationBuilder(ConfigurationBuilder builder) {
@@ -37,6 +39,16 @@ public LockingConfigurationBuilder useLockStriping(boolean b) {
       return this;
    }
 
+   public LockingConfigurationBuilder useLockPooling(boolean b) {
+      this.useLockPooling = b;
+      return this;
+   }
+
+   public LockingConfigurationBuilder useVersioning(boolean b) {
+      this.useVersioning = b;
+      return this;
+   }
+
    public LockingConfigurationBuilder writeSkewCheck(boolean b) {
       this.writeSkewCheck = b;
       return this;
@@ -50,6 +62,6 @@ void validate() {
 
    @Override
    LockingConfiguration create() {
-      return new LockingConfiguration(concurrencyLevel, isolationLevel, lockAcquisitionTimeout, useLockStriping, writeSkewCheck);
+      return new LockingConfiguration(concurrencyLevel, isolationLevel, lockAcquisitionTimeout, useLockStriping, useLockPooling, useVersioning, writeSkewCheck);
    }
 }
@@ -14,9 +14,13 @@ public class StateRetrievalConfiguration {
    private final int numRetries;
    private final int retryWaitTimeIncreaseFactor;
    private long timeout;
+   private final int chunkSize;
+   private final int maxInFlightChunks;
+   private final long maxBandwidth;
 
    StateRetrievalConfiguration(boolean alwaysProvideInMemoryState, boolean fetchInMemoryState, long initialRetryWaitTime,
-         long logFlushTimeout, int maxNonPorgressingLogWrites, int numRetries, int retryWaitTimeIncreaseFactory, long timeout) {
+         long logFlushTimeout, int maxNonPorgressingLogWrites, int numRetries, int retryWaitTimeIncreaseFactory, long timeout,
+         int chunkSize, int maxInFlightChunks, long maxBandwidth) {
       this.alwaysProvideInMemoryState = alwaysProvideInMemoryState;
       this.fetchInMemoryState = fetchInMemoryState;
       this.initialRetryWaitTime = initialRetryWaitTime;
@@ -25,6 +29,9 @@ public class StateRetrievalConfiguration {
       this.numRetries = numRetries;
       this.retryWaitTimeIncreaseFactor = retryWaitTimeIncreaseFactory;
       this.timeout = timeout;
+      this.chunkSize = chunkSize;
+      this.maxInFlightChunks = maxInFlightChunks;
+      this.maxBandwidth = maxBandwidth;
    }
 
    /**
@@ -106,4 +113,27 @@ public StateRetrievalConfiguration timeout(long l) {
       return this;
    }
 
+   /**
+    * The number of cache entries pushed in a single state transfer message. If 0 or negative, all
+    * the entries to push to a node are sent in a single message.
+    */
+   public int chunkSize() {
+      return chunkSize;
+   }
+
+   /**
+    * The maximum number of state chunks pushed to a node that the node hasn't applied yet.
+    */
+   public int maxInFlightChunks() {
+      return maxInFlightChunks;
+   }
+
+   /**
+    * The maximum rate, in bytes per second, at which a node pushes state to the other nodes. If 0
+    * or negative, the rate is not limited.
+    */
+   public long maxBandwidth() {
+      return maxBandwidth;
+   }
+
 }
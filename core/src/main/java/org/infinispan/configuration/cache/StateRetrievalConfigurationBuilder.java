@@ -23,6 +23,9 @@ public class StateRetrievalConfigurationBuilder extends
    private int numRetries = 5;
    private int retryWaitTimeIncreaseFactor = 2;
    private long timeout = TimeUnit.MINUTES.toMillis(4);
+   private int chunkSize = 10000;
+   private int maxInFlightChunks = 2;
+   private long maxBandwidth = 0;
 
    StateRetrievalConfigurationBuilder(ClusteringConfigurationBuilder builder) {
       super(builder);
@@ -97,6 +100,34 @@ public StateRetrievalConfigurationBuilder timeout(long l) {
       return this;
    }
 
+   /**
+    * The number of cache entries pushed in a single state transfer message. State is pushed to
+    * each node in chunks of this size, without reading all the entries to push in memory first. If
+    * 0 or negative, all the entries to push to a node are sent in a single message.
+    */
+   public StateRetrievalConfigurationBuilder chunkSize(int i) {
+      this.chunkSize = i;
+      return this;
+   }
+
+   /**
+    * The maximum number of state chunks pushed to a node that the node hasn't applied yet. Pushing
+    * more chunks to that node waits until it applies the oldest one.
+    */
+   public StateRetrievalConfigurationBuilder maxInFlightChunks(int i) {
+      this.maxInFlightChunks = i;
+      return this;
+   }
+
+   /**
+    * The maximum rate, in bytes per second, at which a node pushes state to the other nodes. If 0
+    * or negative, state is pushed as fast as the receivers apply it.
+    */
+   public StateRetrievalConfigurationBuilder maxBandwidth(long l) {
+      this.maxBandwidth = l;
+      return this;
+   }
+
    @Override
    void validate() {
       // certain combinations are illegal, such as state transfer + DIST
@@ -117,7 +148,8 @@ StateRetrievalConfiguration create() {
       if (fetchInMemoryState == null)
          fetchInMemoryState = false;
       return new StateRetrievalConfiguration(alwaysProvideInMemoryState, fetchInMemoryState.booleanValue(),
-            initialRetryWaitTime, logFlushTimeout, maxNonPorgressingLogWrites, numRetries, retryWaitTimeIncreaseFactor, timeout);
+            initialRetryWaitTime, logFlushTimeout, maxNonPorgressingLogWrites, numRetries, retryWaitTimeIncreaseFactor, timeout,
+            chunkSize, maxInFlightChunks, maxBandwidth);
    }
 
 }
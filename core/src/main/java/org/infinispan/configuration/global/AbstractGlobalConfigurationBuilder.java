@@ -33,6 +33,10 @@ public ExecutorFactoryConfigurationBuilder asyncListenerExecutor() {
    public ExecutorFactoryConfigurationBuilder asyncTransportExecutor() {
       return globalConfig.asyncTransportExecutor();
    }
+
+   public ExecutorFactoryConfigurationBuilder remoteCommandsExecutor() {
+      return globalConfig.remoteCommandsExecutor();
+   }
    
    public ScheduledExecutorFactoryConfigurationBuilder evictionScheduledExecutor() {
       return globalConfig.evictionScheduledExecutor();
@@ -48,6 +48,7 @@ public class GlobalConfiguration {
 
    private final ExecutorFactoryConfiguration asyncListenerExecutor;
    private final ExecutorFactoryConfiguration asyncTransportExecutor;
+   private final ExecutorFactoryConfiguration remoteCommandsExecutor;
    private final ScheduledExecutorFactoryConfiguration evictionScheduledExecutor;
    private final ScheduledExecutorFactoryConfiguration replicationQueueScheduledExecutor;
    private final GlobalJmxStatisticsConfiguration globalJmxStatistics;
@@ -58,11 +59,13 @@ public class GlobalConfiguration {
    private final ClassLoader cl;
    
    GlobalConfiguration(ExecutorFactoryConfiguration asyncListenerExecutor,
-         ExecutorFactoryConfiguration asyncTransportExecutor, ScheduledExecutorFactoryConfiguration evictionScheduledExecutor,
+         ExecutorFactoryConfiguration asyncTransportExecutor, ExecutorFactoryConfiguration remoteCommandsExecutor,
+         ScheduledExecutorFactoryConfiguration evictionScheduledExecutor,
          ScheduledExecutorFactoryConfiguration replicationQueueScheduledExecutor, GlobalJmxStatisticsConfiguration globalJmxStatistics,
          TransportConfiguration transport, SerializationConfiguration serialization, ShutdownConfiguration shutdown, ClassLoader cl) {
       this.asyncListenerExecutor = asyncListenerExecutor;
       this.asyncTransportExecutor = asyncTransportExecutor;
+      this.remoteCommandsExecutor = remoteCommandsExecutor;
       this.evictionScheduledExecutor = evictionScheduledExecutor;
       this.replicationQueueScheduledExecutor = replicationQueueScheduledExecutor;
       this.globalJmxStatistics = globalJmxStatistics;
@@ -80,6 +83,14 @@ public ExecutorFactoryConfiguration asyncTransportExecutor() {
       return asyncTransportExecutor;
    }
    
+   /**
+    * The executors used to handle commands received from other nodes. A separate executor is
+    * created for each class of inbound command.
+    */
+   public ExecutorFactoryConfiguration remoteCommandsExecutor() {
+      return remoteCommandsExecutor;
+   }
+   
    public ScheduledExecutorFactoryConfiguration evictionScheduledExecutor() {
       return evictionScheduledExecutor;
    }
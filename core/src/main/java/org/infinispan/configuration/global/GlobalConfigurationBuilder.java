@@ -33,6 +33,7 @@ public class GlobalConfigurationBuilder implements GlobalConfigurationChildBuild
    private final SerializationConfigurationBuilder serialization;
    private final ExecutorFactoryConfigurationBuilder asyncTransportExecutor;
    private final ExecutorFactoryConfigurationBuilder asyncListenerExecutor;
+   private final ExecutorFactoryConfigurationBuilder remoteCommandsExecutor;
    private final ScheduledExecutorFactoryConfigurationBuilder evictionScheduledExecutor;
    private final ScheduledExecutorFactoryConfigurationBuilder replicationQueueScheduledExecutor;
    private final ShutdownConfigurationBuilder shutdown;
@@ -44,6 +45,7 @@ public GlobalConfigurationBuilder() {
       this.serialization = new SerializationConfigurationBuilder(this);
       this.asyncListenerExecutor = new ExecutorFactoryConfigurationBuilder(this);
       this.asyncTransportExecutor = new ExecutorFactoryConfigurationBuilder(this);
+      this.remoteCommandsExecutor = new ExecutorFactoryConfigurationBuilder(this);
       this.evictionScheduledExecutor = new ScheduledExecutorFactoryConfigurationBuilder(this);
       this.replicationQueueScheduledExecutor = new ScheduledExecutorFactoryConfigurationBuilder(this);
       this.shutdown = new ShutdownConfigurationBuilder(this);
@@ -111,6 +113,10 @@ public ExecutorFactoryConfigurationBuilder asyncListenerExecutor() {
       return asyncListenerExecutor;
    }
 
+   public ExecutorFactoryConfigurationBuilder remoteCommandsExecutor() {
+      return remoteCommandsExecutor;
+   }
+
    public ScheduledExecutorFactoryConfigurationBuilder evictionScheduledExecutor() {
       return evictionScheduledExecutor;
    }
@@ -127,6 +133,7 @@ public GlobalConfiguration build() {
       return new GlobalConfiguration(
             asyncListenerExecutor.create(), 
             asyncTransportExecutor.create(), 
+            remoteCommandsExecutor.create(),
             evictionScheduledExecutor.create(), 
             replicationQueueScheduledExecutor.create(), 
             globalJmxStatistics.create(),
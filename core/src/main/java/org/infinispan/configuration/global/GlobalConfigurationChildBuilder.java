@@ -10,6 +10,8 @@ public interface GlobalConfigurationChildBuilder {
    public ExecutorFactoryConfigurationBuilder asyncListenerExecutor();
 
    public ExecutorFactoryConfigurationBuilder asyncTransportExecutor();
+
+   public ExecutorFactoryConfigurationBuilder remoteCommandsExecutor();
    
    public ScheduledExecutorFactoryConfigurationBuilder evictionScheduledExecutor();
 
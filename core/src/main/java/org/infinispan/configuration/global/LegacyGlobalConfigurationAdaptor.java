@@ -1,5 +1,6 @@
 package org.infinispan.configuration.global;
 
+import java.util.List;
 import java.util.Map.Entry;
 
 import org.infinispan.config.FluentGlobalConfiguration;
@@ -45,6 +46,11 @@ public org.infinispan.config.GlobalConfiguration adapt(GlobalConfiguration confi
       for (Entry<Integer, AdvancedExternalizer<?>> entry : config.serialization().advancedExternalizers().entrySet()) {
          legacy.serialization().addAdvancedExternalizer(entry.getValue());
       }
+
+      if (!config.serialization().classDictionary().isEmpty()) {
+         List<Class<?>> classDictionary = config.serialization().classDictionary();
+         legacy.serialization().classDictionary(classDictionary.toArray(new Class<?>[classDictionary.size()]));
+      }
       
       legacy.asyncTransportExecutor()
          .factory(config.asyncTransportExecutor().factory().getClass())
@@ -54,6 +60,10 @@ public org.infinispan.config.GlobalConfiguration adapt(GlobalConfiguration confi
          .factory(config.asyncListenerExecutor().factory().getClass())
          .withProperties(config.asyncListenerExecutor().properties());
       
+      legacy.remoteCommandsExecutor()
+         .factory(config.remoteCommandsExecutor().factory().getClass())
+         .withProperties(config.remoteCommandsExecutor().properties());
+      
       legacy.evictionScheduledExecutor()
          .factory(config.evictionScheduledExecutor().factory().getClass())
          .withProperties(config.asyncListenerExecutor().properties());
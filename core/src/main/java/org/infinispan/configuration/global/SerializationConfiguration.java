@@ -1,7 +1,9 @@
 package org.infinispan.configuration.global;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.infinispan.marshall.AdvancedExternalizer;
@@ -12,12 +14,14 @@ public class SerializationConfiguration {
    private final Class<? extends Marshaller> marshallerClass;
    private final short version;
    private final Map<Integer, AdvancedExternalizer<?>> advancedExternalizers;
+   private final List<Class<?>> classDictionary;
    
    SerializationConfiguration(Class<? extends Marshaller> marshallerClass, short version,
-         Map<Integer, AdvancedExternalizer<?>> advancedExternalizers) {
+         Map<Integer, AdvancedExternalizer<?>> advancedExternalizers, List<Class<?>> classDictionary) {
       this.marshallerClass = marshallerClass;
       this.version = version;
       this.advancedExternalizers = Collections.unmodifiableMap(new HashMap<Integer, AdvancedExternalizer<?>>(advancedExternalizers));
+      this.classDictionary = Collections.unmodifiableList(new ArrayList<Class<?>>(classDictionary));
    }
 
    public Class<? extends Marshaller> marshallerClass() {
@@ -31,5 +35,9 @@ public short version() {
    public Map<Integer, AdvancedExternalizer<?>> advancedExternalizers() {
       return advancedExternalizers;
    }
+
+   public List<Class<?>> classDictionary() {
+      return classDictionary;
+   }
    
 }
\ No newline at end of file
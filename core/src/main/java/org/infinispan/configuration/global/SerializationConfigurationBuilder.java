@@ -1,6 +1,8 @@
 package org.infinispan.configuration.global;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.infinispan.Version;
@@ -16,6 +18,7 @@ public class SerializationConfigurationBuilder extends AbstractGlobalConfigurati
    private Class<? extends Marshaller> marshallerClass = VersionAwareMarshaller.class;
    private short marshallVersion = Short.valueOf(Version.MAJOR_MINOR);
    private Map<Integer, AdvancedExternalizer<?>> advancedExternalizers = new HashMap<Integer, AdvancedExternalizer<?>>();
+   private List<Class<?>> classDictionary = new ArrayList<Class<?>>();
    
    SerializationConfigurationBuilder(GlobalConfigurationBuilder globalConfig) {
       super(globalConfig);
@@ -83,6 +86,20 @@ public <T> SerializationConfigurationBuilder addAdvancedExternalizer(AdvancedExt
       return this;
    }
    
+   /**
+    * Registers frequently marshalled classes, typically user key and value types, in the marshaller's class
+    * dictionary. Instances of these classes are written with a compact numeric identifier instead of a full
+    * class descriptor. Every node in the cluster must register exactly the same classes, in the same order.
+    *
+    * @param classes
+    */
+   public SerializationConfigurationBuilder addDictionaryClass(Class<?>... classes) {
+      for (Class<?> clazz : classes) {
+         classDictionary.add(clazz);
+      }
+      return this;
+   }
+
    @Override
    protected void valididate() {
       // No-op, no validation required
@@ -90,6 +107,6 @@ protected void valididate() {
    
    @Override
    SerializationConfiguration create() {
-      return new SerializationConfiguration(marshallerClass, marshallVersion, advancedExternalizers);
+      return new SerializationConfiguration(marshallerClass, marshallVersion, advancedExternalizers, classDictionary);
    }
 }
\ No newline at end of file
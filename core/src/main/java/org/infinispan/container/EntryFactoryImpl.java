@@ -28,6 +28,7 @@
 import org.infinispan.config.Configuration;
 import org.infinispan.container.entries.CacheEntry;
 import org.infinispan.container.entries.DeltaAwareCacheEntry;
+import org.infinispan.container.entries.EntryVersion;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.MVCCEntry;
 import org.infinispan.container.entries.NullMarkerEntry;
@@ -56,6 +57,7 @@ public class EntryFactoryImpl implements EntryFactory {
    private boolean useRepeatableRead;
    private DataContainer container;
    private boolean writeSkewCheck;
+   private boolean useVersioning;
    private Configuration configuration;
    private CacheNotifier notifier;
 
@@ -69,7 +71,9 @@ public void injectDependencies(DataContainer dataContainer, Configuration config
    @Start
    public void init() {
       useRepeatableRead = configuration.getIsolationLevel() == IsolationLevel.REPEATABLE_READ;
-      writeSkewCheck = configuration.isWriteSkewCheck();
+      useVersioning = configuration.isUseVersioning();
+      // with versioning, write skews are detected when the transaction prepares
+      writeSkewCheck = configuration.isWriteSkewCheck() && !useVersioning;
    }
 
    @Override
@@ -82,7 +86,7 @@ public final CacheEntry wrapEntryForReading(InvocationContext ctx, Object key) t
          if (useRepeatableRead) {
             MVCCEntry mvccEntry = cacheEntry == null ?
                   createWrappedEntry(key, null, false, false, -1) :
-                  createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan());
+                  createWrappedEntry(key, (InternalCacheEntry) cacheEntry);
             if (mvccEntry != null) ctx.putLookedUpEntry(key, mvccEntry);
             return mvccEntry;
          } else if (cacheEntry != null) { // if not in transaction and repeatable read, or simply read committed (regardless of whether in TX or not), do not wrap
@@ -214,7 +218,7 @@ private MVCCEntry wrapMvccEntryForPut(InvocationContext ctx, Object key, CacheEn
    }
 
    private MVCCEntry wrapInternalCacheEntryForPut(InvocationContext ctx, Object key, InternalCacheEntry cacheEntry) {
-      MVCCEntry mvccEntry = createWrappedEntry(key, cacheEntry.getValue(), false, false, cacheEntry.getLifespan());
+      MVCCEntry mvccEntry = createWrappedEntry(key, cacheEntry);
       ctx.putLookedUpEntry(key, mvccEntry);
       return mvccEntry;
    }
@@ -241,6 +245,15 @@ private MVCCEntry wrapEntry(InvocationContext ctx, Object key) {
       return mvccEntry;
    }
 
+   private MVCCEntry createWrappedEntry(Object key, InternalCacheEntry ice) {
+      // read the version before the value: a commit writes the version last, so the value can't be older than it
+      EntryVersion version = useVersioning ? ice.getVersion() : null;
+      MVCCEntry mvccEntry = createWrappedEntry(key, ice.getValue(), false, false, ice.getLifespan());
+      if (version != null && mvccEntry instanceof RepeatableReadEntry && !mvccEntry.isNull())
+         ((RepeatableReadEntry) mvccEntry).setVersion(version);
+      return mvccEntry;
+   }
+
    private  MVCCEntry createWrappedEntry(Object key, Object value, boolean isForInsert, boolean forRemoval, long lifespan) {
       if (value == null && !isForInsert) return useRepeatableRead ?
             forRemoval ? new NullMarkerEntryForRemoval(key) : NullMarkerEntry.getInstance()
@@ -0,0 +1,130 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.container.entries;
+
+import net.jcip.annotations.Immutable;
+import org.infinispan.marshall.AbstractExternalizer;
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Set;
+
+/**
+ * The version of a cache entry, used when {@link org.infinispan.config.Configuration#isUseVersioning()} is enabled.
+ * <p/>
+ * A version identifies the transaction that last wrote the entry. Transaction ids are never reused, so versions only
+ * need to be compared for equality: every owner of a key installs the same version for a given write without any
+ * cluster wide counter, and an entry that is removed and written again never gets back a version seen before.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Immutable
+public final class EntryVersion {
+
+   private final Address origin;
+   private final long id;
+
+   public EntryVersion(Address origin, long id) {
+      this.origin = origin;
+      this.id = id;
+   }
+
+   /**
+    * @return the version of the entries written by the given transaction
+    */
+   public static EntryVersion of(GlobalTransaction gtx) {
+      return new EntryVersion(gtx.getAddress(), gtx.getId());
+   }
+
+   /**
+    * @return true if both versions are null or equal
+    */
+   public static boolean same(EntryVersion v1, EntryVersion v2) {
+      return v1 == null ? v2 == null : v1.equals(v2);
+   }
+
+   public Address getOrigin() {
+      return origin;
+   }
+
+   public long getId() {
+      return id;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      EntryVersion that = (EntryVersion) o;
+
+      if (id != that.id) return false;
+      return origin != null ? origin.equals(that.origin) : that.origin == null;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = origin != null ? origin.hashCode() : 0;
+      result = 31 * result + (int) (id ^ (id >>> 32));
+      return result;
+   }
+
+   @Override
+   public String toString() {
+      return "EntryVersion{" +
+            "origin=" + origin +
+            ", id=" + id +
+            '}';
+   }
+
+   public static class Externalizer extends AbstractExternalizer<EntryVersion> {
+      @Override
+      public void writeObject(ObjectOutput output, EntryVersion version) throws IOException {
+         output.writeObject(version.origin);
+         output.writeLong(version.id);
+      }
+
+      @Override
+      public EntryVersion readObject(ObjectInput input) throws IOException, ClassNotFoundException {
+         Address origin = (Address) input.readObject();
+         long id = input.readLong();
+         return new EntryVersion(origin, id);
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.ENTRY_VERSION;
+      }
+
+      @Override
+      public Set<Class<? extends EntryVersion>> getTypeClasses() {
+         return Util.<Class<? extends EntryVersion>>asSet(EntryVersion.class);
+      }
+   }
+}
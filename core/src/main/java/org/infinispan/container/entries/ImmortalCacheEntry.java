@@ -85,6 +85,14 @@ public final void reincarnate() {
       // no-op
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.getVersion();
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.setVersion(version);
+   }
+
    public InternalCacheValue toInternalCacheValue() {
       return cacheValue;
    }
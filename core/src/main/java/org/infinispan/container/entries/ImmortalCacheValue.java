@@ -41,12 +41,20 @@ public class ImmortalCacheValue implements InternalCacheValue, Cloneable {
 
    Object value;
 
+   /** written after the value, so a reader that sees the new version also sees the new value */
+   volatile EntryVersion version;
+
    ImmortalCacheValue(Object value) {
       this.value = value;
    }
 
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new ImmortalCacheEntry(key, value);
+      return versioned(new ImmortalCacheEntry(key, value));
+   }
+
+   protected final InternalCacheEntry versioned(InternalCacheEntry entry) {
+      entry.setVersion(version);
+      return entry;
    }
 
    public final Object setValue(Object value) {
@@ -59,6 +67,14 @@ public Object getValue() {
       return value;
    }
 
+   public EntryVersion getVersion() {
+      return version;
+   }
+
+   public final void setVersion(EntryVersion version) {
+      this.version = version;
+   }
+
    public boolean isExpired(long now) {
       return false;
    }
@@ -89,6 +89,19 @@ public interface InternalCacheEntry extends CacheEntry, Cloneable {
     */
    void reincarnate();
 
+   /**
+    * @return the version of this entry, or null if the entry has not been written by a transaction since versioning
+    *         was enabled
+    * @see EntryVersion
+    */
+   EntryVersion getVersion();
+
+   /**
+    * Sets the version of this entry.  Only used when {@link org.infinispan.config.Configuration#isUseVersioning()} is
+    * enabled, when the entry is committed or received through state transfer.
+    */
+   void setVersion(EntryVersion version);
+
    /**
     * Creates a representation of this entry as an {@link org.infinispan.container.entries.InternalCacheValue}. The main
     * purpose of this is to provide a representation that does <i>not</i> have a reference to the key. This is useful in
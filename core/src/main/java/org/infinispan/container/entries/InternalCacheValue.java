@@ -83,4 +83,10 @@ public interface InternalCacheValue {
     */
    long getMaxIdle();
 
+   /**
+    * @return the version of the entry
+    * @see InternalCacheEntry#getVersion()
+    */
+   EntryVersion getVersion();
+
 }
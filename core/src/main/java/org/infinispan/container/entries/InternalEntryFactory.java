@@ -89,6 +89,12 @@ public InternalCacheEntry createNewEntry(Object key, Object value, long lifespan
     * @return a cache entry
     */
    public InternalCacheEntry update(InternalCacheEntry ice, long lifespan, long maxIdle) {
+      InternalCacheEntry updated = updateExpiration(ice, lifespan, maxIdle);
+      if (updated != ice) updated.setVersion(ice.getVersion());
+      return updated;
+   }
+
+   private InternalCacheEntry updateExpiration(InternalCacheEntry ice, long lifespan, long maxIdle) {
       if (ice instanceof ImmortalCacheEntry) {
          if (lifespan < 0) {
             if (maxIdle < 0) {
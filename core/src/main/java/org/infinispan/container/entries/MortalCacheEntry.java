@@ -102,6 +102,14 @@ public final void reincarnate() {
       cacheValue.created = System.currentTimeMillis();
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.getVersion();
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.setVersion(version);
+   }
+
    public InternalCacheValue toInternalCacheValue() {
       return cacheValue;
    }
@@ -84,7 +84,7 @@ public final boolean canExpire() {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new MortalCacheEntry(key, value, lifespan, created);
+      return versioned(new MortalCacheEntry(key, value, lifespan, created));
    }
 
    @Override
@@ -36,10 +36,24 @@
 public class RepeatableReadEntry extends ReadCommittedEntry {
    private static final Log log = LogFactory.getLog(RepeatableReadEntry.class);
 
+   private EntryVersion version;
+
    public RepeatableReadEntry(Object key, Object value, long lifespan) {
       super(key, value, lifespan);
    }
 
+   /**
+    * @return the version the entry had in the data container when this transaction first read it, or null if the key
+    *         did not exist or versioning is disabled
+    */
+   public final EntryVersion getVersion() {
+      return version;
+   }
+
+   public final void setVersion(EntryVersion version) {
+      this.version = version;
+   }
+
    @Override
    public void copyForUpdate(DataContainer container, boolean writeSkewCheck) {
       if (isChanged()) return; // already copied
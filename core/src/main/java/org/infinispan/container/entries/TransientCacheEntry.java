@@ -102,6 +102,14 @@ public final long getMaxIdle() {
       return cacheValue.maxIdle;
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.getVersion();
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.setVersion(version);
+   }
+
    public InternalCacheValue toInternalCacheValue() {
       return cacheValue;
    }
@@ -83,7 +83,7 @@ public boolean canExpire() {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new TransientCacheEntry(key, value, maxIdle, lastUsed);
+      return versioned(new TransientCacheEntry(key, value, maxIdle, lastUsed));
    }
 
    @Override
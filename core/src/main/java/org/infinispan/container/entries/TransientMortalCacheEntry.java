@@ -101,6 +101,14 @@ public final long getExpiryTime() {
       return min(lset, muet);
    }
 
+   public EntryVersion getVersion() {
+      return cacheValue.getVersion();
+   }
+
+   public void setVersion(EntryVersion version) {
+      cacheValue.setVersion(version);
+   }
+
    public InternalCacheValue toInternalCacheValue() {
       return cacheValue;
    }
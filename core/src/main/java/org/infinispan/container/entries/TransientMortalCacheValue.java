@@ -86,7 +86,7 @@ public boolean isExpired() {
 
    @Override
    public InternalCacheEntry toInternalCacheEntry(Object key) {
-      return new TransientMortalCacheEntry(key, value, maxIdle, lifespan, lastUsed, created);
+      return versioned(new TransientMortalCacheEntry(key, value, maxIdle, lifespan, lastUsed, created));
    }
 
    @Override
@@ -108,6 +108,18 @@ public interface DistributionManager {
     */
    InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext ctx, boolean acquireRemoteLock) throws Exception;
 
+   /**
+    * Retrieves several cache entries from remote sources. Keys are grouped by owner, and each owner is sent a single
+    * {@link org.infinispan.commands.remote.ClusteredGetAllCommand} for all of its keys, with the calls to the different
+    * owners issued in parallel.  Keys whose owner fails, or gives an unsuccessful response, are requested again from
+    * their next owner.  Callers should still fall back to {@link #retrieveFromRemoteSource(Object, InvocationContext,
+    * boolean)} for keys not found while a rehash is in progress.
+    *
+    * @param keys keys to look up
+    * @return the entries that were found, mapped by key
+    */
+   Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception;
+
    /**
     * Retrieves the consistent hash instance currently in use, an instance of the configured ConsistentHash
     * class (which defaults to {@link org.infinispan.distribution.ch.DefaultConsistentHash}.
@@ -22,7 +22,9 @@
  */
 package org.infinispan.distribution;
 
+import org.infinispan.CacheException;
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.container.entries.CacheEntry;
@@ -35,6 +37,7 @@
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
 import org.infinispan.remoting.responses.ClusteredGetResponseValidityFilter;
@@ -46,18 +49,35 @@
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.statetransfer.StateTransferManager;
 import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
 import org.rhq.helpers.pluginAnnotations.agent.Parameter;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 /**
  * The default distribution manager implementation
@@ -73,6 +93,8 @@
 public class DistributionManagerImpl implements DistributionManager {
    private static final Log log = LogFactory.getLog(DistributionManagerImpl.class);
    private static final boolean trace = log.isTraceEnabled();
+   // the percentile of recent remote get latencies a staggered get waits for before asking the next owner
+   private static final double STAGGER_PERCENTILE = 0.95;
 
    // Injected components
    private Configuration configuration;
@@ -84,6 +106,12 @@ public class DistributionManagerImpl implements DistributionManager {
    private volatile ConsistentHash consistentHash;
    private volatile Collection<Address> leavers;
 
+   private RemoteGetLatencyTracker remoteGetLatencies;
+   private RemoteReadRouter readRouter;
+   private final AtomicLong reroutedGets = new AtomicLong();
+   private final AtomicLong staggeredGets = new AtomicLong();
+   private final AtomicLong staggeredGetsEscalated = new AtomicLong();
+
    /**
     * Default constructor
     */
@@ -105,6 +133,10 @@ public void init(Configuration configuration, RpcManager rpcManager, CommandsFac
    private void start() throws Exception {
       if (trace) log.tracef("starting distribution manager on %s", getAddress());
       consistentHash = ConsistentHashHelper.createConsistentHash(configuration, Collections.singleton(rpcManager.getAddress()));
+      if (configuration.isPreferNearestOwner())
+         readRouter = new RemoteReadRouter(getAddress());
+      if (configuration.isStaggerRemoteGets() || readRouter != null)
+         remoteGetLatencies = new RemoteGetLatencyTracker(STAGGER_PERCENTILE, MILLISECONDS.toNanos(configuration.getSyncReplTimeout()));
    }
 
    private int getReplCount() {
@@ -138,11 +170,12 @@ public DataLocality getLocality(Object key) {
    }
 
    /**
-    * Modify the {@code nodes} list in-place to remove any invalid nodes.
-    * @return The input list
+    * The lists returned by the consistent hash may not be modifiable, so the leavers are removed from a copy.
     */
    private List<Address> pruneLeavers(List<Address> nodes) {
-      if (leavers != null) {
+      Collection<Address> leavers = this.leavers;
+      if (leavers != null && !leavers.isEmpty()) {
+         nodes = new ArrayList<Address>(nodes);
          nodes.removeAll(leavers);
       }
       return nodes;
@@ -158,8 +191,8 @@ public Map<Object, List<Address>> locateAll(Collection<Object> keys) {
 
    public Map<Object, List<Address>> locateAll(Collection<Object> keys, int numOwners) {
       Map<Object, List<Address>> owners = getConsistentHash().locateAll(keys, numOwners);
-      for (List<Address> keyOwners : owners.values()) {
-         pruneLeavers(keyOwners);
+      for (Map.Entry<Object, List<Address>> keyOwners : owners.entrySet()) {
+         keyOwners.setValue(pruneLeavers(keyOwners.getValue()));
       }
       return owners;
    }
@@ -173,10 +206,19 @@ public InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext
       GlobalTransaction gtx = acquireRemoteLock ? ((TxInvocationContext)ctx).getGlobalTransaction() : null;
       ClusteredGetCommand get = cf.buildClusteredGetCommand(key, ctx.getFlags(), acquireRemoteLock, gtx);
 
-      List<Address> targets = locate(key);
+      List<Address> targets = new ArrayList<Address>(locate(key));
       targets.remove(getAddress());
       // if any of the recipients has left the cluster since the command was issued, just don't wait for its response
       targets.retainAll(rpcManager.getTransport().getMembers());
+      if (readRouter != null && !acquireRemoteLock && targets.size() > 1) {
+         List<Address> routed = readRouter.route(targets);
+         if (!routed.get(0).equals(targets.get(0))) reroutedGets.incrementAndGet();
+         targets = routed;
+      }
+      // remote locks have to be acquired on all owners, so those gets are always broadcast
+      if (remoteGetLatencies != null && !acquireRemoteLock && targets.size() > 1)
+         return retrieveFromRemoteSourceStaggered(key, get, targets);
+
       ResponseFilter filter = new ClusteredGetResponseValidityFilter(targets);
       Map<Address, Response> responses = rpcManager.invokeRemotely(targets, get, ResponseMode.WAIT_FOR_VALID_RESPONSE,
                                                                    configuration.getSyncReplTimeout(), false, filter);
@@ -193,6 +235,190 @@ public InternalCacheEntry retrieveFromRemoteSource(Object key, InvocationContext
       return null;
    }
 
+   /**
+    * Sends the get to the owners one at a time, in the order of {@code targets}: consistent hash order, so the primary
+    * owner is asked first, unless the owners were reordered by the {@link RemoteReadRouter}. The
+    * next owner is contacted as soon as the previous one answers without a value, or once the adaptive stagger delay
+    * elapses without an answer. The first valid response wins; the outstanding requests are left to complete and their
+    * responses are discarded.
+    */
+   private InternalCacheEntry retrieveFromRemoteSourceStaggered(Object key, ClusteredGetCommand get, List<Address> targets) throws Exception {
+      staggeredGets.incrementAndGet();
+      final BlockingQueue<StaggeredGet> completed = new LinkedBlockingQueue<StaggeredGet>();
+      long deadline = System.nanoTime() + MILLISECONDS.toNanos(configuration.getSyncReplTimeout());
+      Exception failure = null;
+      int next = 0, pending = 0;
+      while (true) {
+         if (next < targets.size()) {
+            if (next == 1) staggeredGetsEscalated.incrementAndGet();
+            Address target = targets.get(next++);
+            if (trace) log.tracef("Staggered get of key %s sent to %s", key, target);
+            long sendTime = System.nanoTime();
+            final StaggeredGet sent = new StaggeredGet(target, sendTime,
+                  rpcManager.invokeRemotelyWithResponsesInFuture(Collections.singleton(target), get));
+            sent.responses.attachListener(new FutureListener<Map<Address, Response>>() {
+               @Override
+               public void futureDone(Future<Map<Address, Response>> f) {
+                  // the router also learns from the responses that arrive after the get has returned
+                  if (readRouter != null) readRouter.record(sent.target, System.nanoTime() - sent.sendTime);
+                  completed.add(sent);
+               }
+            });
+            pending++;
+         } else if (pending == 0) {
+            if (failure != null) throw failure;
+            return null;
+         }
+
+         long remaining = deadline - System.nanoTime();
+         if (remaining <= 0)
+            throw new TimeoutException("Timed out waiting for a valid response to the remote get of key " + key + " from " + targets);
+         long wait = next < targets.size() ? Math.min(remoteGetLatencies.getDelayNanos(), remaining) : remaining;
+         StaggeredGet done = completed.poll(wait, NANOSECONDS);
+         while (done != null) {
+            pending--;
+            try {
+               Response response = getResponses(done.responses).get(done.target);
+               remoteGetLatencies.record(System.nanoTime() - done.sendTime);
+               if (response instanceof SuccessfulResponse) {
+                  InternalCacheValue cacheValue = (InternalCacheValue) ((SuccessfulResponse) response).getResponseValue();
+                  return cacheValue.toInternalCacheEntry(key);
+               }
+            } catch (Exception e) {
+               // try the remaining owners before giving up
+               if (trace) log.tracef(e, "Staggered get of key %s from %s failed", key, done.target);
+               if (failure == null) failure = e;
+            }
+            done = completed.poll();
+         }
+      }
+   }
+
+   /**
+    * Each round asks every pending key's next owner, in consistent hash order or in the order chosen by the {@link
+    * RemoteReadRouter}, so that a key is only reported missing once all its owners have been tried.
+    */
+   public Map<Object, InternalCacheEntry> retrieveFromRemoteSources(Collection<Object> keys, InvocationContext ctx) throws Exception {
+      Address self = getAddress();
+      List<Address> members = rpcManager.getTransport().getMembers();
+      Map<Object, Iterator<Address>> remainingOwners = new HashMap<Object, Iterator<Address>>(keys.size() * 2);
+      for (Map.Entry<Object, List<Address>> location : locateAll(keys).entrySet()) {
+         List<Address> owners = new ArrayList<Address>(location.getValue());
+         owners.remove(self);
+         // if an owner has left the cluster since the command was issued, don't ask it
+         owners.retainAll(members);
+         if (readRouter != null && owners.size() > 1) owners = readRouter.route(owners);
+         remainingOwners.put(location.getKey(), owners.iterator());
+      }
+
+      Map<Object, InternalCacheEntry> entries = new HashMap<Object, InternalCacheEntry>(keys.size() * 2);
+      Collection<Object> pendingKeys = remainingOwners.keySet();
+      Set<Object> failedKeys = new HashSet<Object>();
+      Exception failure = null;
+      while (!pendingKeys.isEmpty()) {
+         Map<Address, List<Object>> keysByOwner = new HashMap<Address, List<Object>>();
+         for (Object key : pendingKeys) {
+            Iterator<Address> owners = remainingOwners.get(key);
+            if (!owners.hasNext()) continue;
+            Address owner = owners.next();
+            List<Object> ownerKeys = keysByOwner.get(owner);
+            if (ownerKeys == null) {
+               ownerKeys = new ArrayList<Object>();
+               keysByOwner.put(owner, ownerKeys);
+            }
+            ownerKeys.add(key);
+         }
+         if (keysByOwner.isEmpty()) break;
+
+         Map<Address, NotifyingFuture<Map<Address, Response>>> futures =
+               new HashMap<Address, NotifyingFuture<Map<Address, Response>>>(keysByOwner.size());
+         for (Map.Entry<Address, List<Object>> ownerKeys : keysByOwner.entrySet()) {
+            if (trace) log.tracef("Retrieving keys %s from %s", ownerKeys.getValue(), ownerKeys.getKey());
+            ClusteredGetAllCommand get = cf.buildClusteredGetAllCommand(ownerKeys.getValue(), ctx.getFlags());
+            futures.put(ownerKeys.getKey(), rpcManager.invokeRemotelyWithResponsesInFuture(Collections.singleton(ownerKeys.getKey()), get));
+         }
+
+         List<Object> retryKeys = new ArrayList<Object>();
+         for (Map.Entry<Address, NotifyingFuture<Map<Address, Response>>> future : futures.entrySet()) {
+            List<Object> ownerKeys = keysByOwner.get(future.getKey());
+            Response response;
+            try {
+               response = getResponses(future.getValue()).get(future.getKey());
+            } catch (Exception e) {
+               if (trace) log.tracef(e, "Retrieving keys %s from %s failed", ownerKeys, future.getKey());
+               failure = e;
+               failedKeys.addAll(ownerKeys);
+               response = null;
+            }
+            if (response instanceof SuccessfulResponse) {
+               InternalCacheValue[] values = (InternalCacheValue[]) ((SuccessfulResponse) response).getResponseValue();
+               for (int i = 0; i < values.length; i++) {
+                  if (values[i] != null) entries.put(ownerKeys.get(i), values[i].toInternalCacheEntry(ownerKeys.get(i)));
+               }
+            } else {
+               retryKeys.addAll(ownerKeys);
+            }
+         }
+         pendingKeys = retryKeys;
+      }
+
+      // a key whose last owner failed is not a miss
+      for (Object key : pendingKeys) {
+         if (failedKeys.contains(key)) throw failure;
+      }
+      return entries;
+   }
+
+   private static Map<Address, Response> getResponses(Future<Map<Address, Response>> future) throws Exception {
+      try {
+         return future.get();
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         if (cause instanceof Exception) throw (Exception) cause;
+         throw new CacheException(cause);
+      }
+   }
+
+   /**
+    * A remote get sent by {@link #retrieveFromRemoteSourceStaggered(Object, ClusteredGetCommand, List)}, with the owner
+    * it was sent to and when.
+    */
+   private static class StaggeredGet {
+      final Address target;
+      final long sendTime;
+      final NotifyingFuture<Map<Address, Response>> responses;
+
+      StaggeredGet(Address target, long sendTime, NotifyingFuture<Map<Address, Response>> responses) {
+         this.target = target;
+         this.sendTime = sendTime;
+         this.responses = responses;
+      }
+   }
+
+   @ManagedAttribute(description = "Delay, in microseconds, after which a staggered remote get contacts the next owner")
+   @Metric(displayName = "Staggered remote get delay (microseconds)", displayType = DisplayType.SUMMARY)
+   public long getStaggerDelay() {
+      return remoteGetLatencies == null ? -1 : NANOSECONDS.toMicros(remoteGetLatencies.getDelayNanos());
+   }
+
+   @ManagedAttribute(description = "Number of remote gets that asked another owner before the primary owner, because it was closer or faster")
+   @Metric(displayName = "Number of rerouted remote gets", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getReroutedGets() {
+      return reroutedGets.get();
+   }
+
+   @ManagedAttribute(description = "Number of remote gets sent to the owners one at a time")
+   @Metric(displayName = "Number of staggered remote gets", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getStaggeredGets() {
+      return staggeredGets.get();
+   }
+
+   @ManagedAttribute(description = "Number of staggered remote gets that had to contact more than one owner")
+   @Metric(displayName = "Number of escalated staggered remote gets", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getStaggeredGetsEscalated() {
+      return staggeredGetsEscalated.get();
+   }
+
    public ConsistentHash getConsistentHash() {
       return consistentHash;
    }
@@ -22,106 +22,244 @@
  */
 package org.infinispan.distribution;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.config.Configuration;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Stop;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
-import org.infinispan.util.concurrent.ConcurrentHashSet;
+import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
 
+/**
+ * L1Manager implementation.
+ * <p/>
+ * The nodes that requested a key are kept as a bitmap of node indexes, in buckets that each cover a quarter of the
+ * L1 lifespan. A bucket is dropped as a whole once all the L1 entries it could refer to have expired, so the memory
+ * used for tracking is bounded by the number of keys read during one L1 lifespan, and optionally by
+ * {@link Configuration#getL1MaxTrackedKeys()}. Past that limit new requestors are no longer tracked: the key is only
+ * remembered in one of a fixed number of slots of its bucket, and invalidations of the keys that map to a used slot go
+ * to the whole cluster. A slot holding a single key is freed once that key has been invalidated everywhere; a slot
+ * shared by several keys stays in use until its bucket expires, which never happens when L1 entries don't have a
+ * lifespan.
+ * <p/>
+ * Node indexes are reused: when a node is seen for the first time, the indexes of the nodes that have left the cluster
+ * are freed and their bits cleared from the bitmaps, so the number of indexes - and the sharing of bits between nodes -
+ * is bounded by the size of the cluster rather than by the number of nodes that ever joined it.
+ * <p/>
+ * With a non-zero {@link Configuration#getL1InvalidationBatchWindow()}, unicast invalidations directed at the same node
+ * are held for that long and then sent as a single multi-key invalidation command.
+ *
+ * @author Pete Muir
+ */
+@MBean(objectName = "L1Manager", description = "Tracks the nodes caching entries in L1 and invalidates them on writes")
 public class L1ManagerImpl implements L1Manager {
 	
 	private static final Log log = LogFactory.getLog(L1ManagerImpl.class);
 	private final boolean trace = log.isTraceEnabled();
+
+	private static final int BUCKETS_PER_LIFESPAN = 4;
+	private static final int UNTRACKED_KEY_SLOTS = 1024;
+	// an untracked key slot used by several keys
+	private static final Object SHARED_SLOT = new Object();
 	
 	private RpcManager rpcManager;
 	private CommandsFactory commandsFactory;
+	private ScheduledExecutorService scheduledExecutor;
 	private int threshold;
+	private long l1Lifespan;
+	private long bucketWidth;
+	private long batchWindow;
+	private int maxTrackedKeys;
 
-	private final ConcurrentMap<Object, Collection<Address>> requestors;
+	// requestor bitmaps by bucket index, the bucket index is the time of the request divided by bucketWidth
+	private final ConcurrentMap<Long, RequestorBucket> buckets;
+	private final AtomicInteger trackedKeys = new AtomicInteger();
+	// every address gets a bit in the requestor bitmaps; with more than 64 nodes a bit is shared by several nodes
+	private final ConcurrentMap<Address, Integer> addressIndexes = new ConcurrentHashMap<Address, Integer>();
+	// indexes freed by nodes that left the cluster hold null until they are reused
+	private final List<Address> indexedAddresses = new ArrayList<Address>();
+	private volatile Address[] indexedAddressesSnapshot = new Address[0];
+
+	// invalidations waiting for the batch window to expire, by target node
+	private final Map<Address, InvalidationBatch> pendingInvalidations = new HashMap<Address, InvalidationBatch>();
+
+	private final AtomicLong untrackedRequests = new AtomicLong();
+	private final AtomicLong invalidationCommands = new AtomicLong();
+	private final AtomicLong coalescedInvalidations = new AtomicLong();
 	
 	public L1ManagerImpl() {
-	   requestors = new ConcurrentHashMap<Object, Collection<Address>>();
+	   buckets = new ConcurrentHashMap<Long, RequestorBucket>();
    }
 	
    @Inject
-   public void init(Configuration configuration, RpcManager rpcManager, CommandsFactory commandsFactory) {
+   public void init(Configuration configuration, RpcManager rpcManager, CommandsFactory commandsFactory,
+                    @ComponentName(KnownComponentNames.ASYNC_REPLICATION_QUEUE_EXECUTOR) ScheduledExecutorService scheduledExecutor) {
    	this.rpcManager = rpcManager;
    	this.commandsFactory = commandsFactory;
+   	this.scheduledExecutor = scheduledExecutor;
    	this.threshold = configuration.getL1InvalidationThreshold();
+   	this.l1Lifespan = configuration.getL1Lifespan();
+   	// L1 entries without a lifespan are tracked in a single bucket that never expires
+   	this.bucketWidth = l1Lifespan > 0 ? Math.max(1, l1Lifespan / BUCKETS_PER_LIFESPAN) : Long.MAX_VALUE;
+   	this.batchWindow = configuration.getL1InvalidationBatchWindow();
+   	this.maxTrackedKeys = configuration.getL1MaxTrackedKeys();
+   }
+
+   @Stop
+   public void stop() {
+      // don't leave any writer waiting for the batch window
+      List<InvalidationBatch> batches;
+      synchronized (pendingInvalidations) {
+         batches = new ArrayList<InvalidationBatch>(pendingInvalidations.values());
+      }
+      for (InvalidationBatch batch : batches) batch.run();
    }
    
    public void addRequestor(Object key, Address origin) {
-      //we do a plain get first as that's likely to be enough
-      Collection<Address> as = requestors.get(key);
-      
-      if (as == null) {
-         // only if needed we create a new HashSet, but make sure we don't replace another one being created
-         as = new ConcurrentHashSet<Address>();
-         as.add(origin);
-         Collection<Address> previousAs = requestors.putIfAbsent(key, as);
-         if (previousAs != null) {
-            //another thread added it already, so use his copy and discard our proposed instance
-            previousAs.add(origin);
+      long bit = bitFor(origin);
+      RequestorBucket bucket = currentBucket();
+      while (true) {
+         //we do a plain get first as that's likely to be enough
+         Long requestors = bucket.requestors.get(key);
+         if (requestors == null) {
+            if (maxTrackedKeys > 0 && trackedKeys.get() >= maxTrackedKeys) {
+               // we can't remember this requestor, so the invalidations will have to go to everyone
+               addUntrackedKey(bucket, key);
+               untrackedRequests.incrementAndGet();
+               return;
+            }
+            if (bucket.requestors.putIfAbsent(key, bit) == null) {
+               trackedKeys.incrementAndGet();
+               return;
+            }
+         } else if ((requestors & bit) == bit || bucket.requestors.replace(key, requestors, requestors | bit)) {
+            return;
          }
-      } else {
-         as.add(origin);
+         // another thread changed the bitmap in the meantime, try again
       }
    }
    
    public NotifyingNotifiableFuture<Object> flushCache(Collection<Object> keys, Object retval, Address origin) {
       if (trace) log.tracef("Invalidating L1 caches for keys %s", keys);
       
-      NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(retval, 2);
+      expireBuckets();
+      boolean untrackedRequestors = removeUntrackedKeys(keys);
+      Map<Address, Set<Object>> invalidations = buildInvalidationKeysByRequestor(keys, origin);
       
-      Collection<Address> invalidationAddresses = buildInvalidationAddressList(keys, origin);
-      
-      int nodes = invalidationAddresses.size();
+      int nodes = invalidations.size();
 
-      if (nodes > 0) {
+      if (nodes > 0 || untrackedRequestors) {
          // No need to invalidate at all if there is no one to invalidate!
-         boolean multicast = isUseMulticast(nodes);
+         boolean multicast = untrackedRequestors || isUseMulticast(nodes);
 
          if (trace) log.tracef("There are %s nodes involved in invalidation. Threshold is: %s; using multicast: %s", nodes, threshold, multicast);
          
          if (multicast) {
          	if (trace) log.tracef("Invalidating keys %s via multicast", keys);
+            NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(retval, 2);
          	InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, keys);
       		rpcManager.broadcastRpcCommandInFuture(ic, future);
+            invalidationCommands.incrementAndGet();
+            return future;
+         } else if (batchWindow > 0) {
+            // Hold the keys until the batch window expires, so that writes to the same requestor share one command
+            NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(retval, nodes + 1);
+            for (Map.Entry<Address, Set<Object>> e : invalidations.entrySet()) {
+               addToBatch(e.getKey(), e.getValue(), future);
+            }
+            return future;
          } else {
-         	InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, keys);
-         	
-            // Ask the caches who have requested from us to remove
-            if (trace) log.tracef("Keys %s needs invalidation on %s", keys, invalidationAddresses);
-            rpcManager.invokeRemotelyInFuture(invalidationAddresses, ic, future);
+            // Ask the caches who have requested from us to remove only the keys they requested. Requestors
+            // of the same keys share a single command.
+            Map<Set<Object>, Collection<Address>> requestorsByKeys = groupRequestorsByKeys(invalidations);
+            // One future per invalidation command, plus one for the caller's own replication call
+            NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(retval, requestorsByKeys.size() + 1);
+            for (Map.Entry<Set<Object>, Collection<Address>> e : requestorsByKeys.entrySet()) {
+               if (trace) log.tracef("Keys %s needs invalidation on %s", e.getKey(), e.getValue());
+               InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, e.getKey());
+               rpcManager.invokeRemotelyInFuture(e.getValue(), ic, future);
+               invalidationCommands.incrementAndGet();
+            }
             return future;
          }    
       } else
          if (trace) log.trace("No L1 caches to invalidate");
-      return future;
+      return new AggregatingNotifyingFutureImpl(retval, 2);
    }
    
-   private Collection<Address> buildInvalidationAddressList(Collection<Object> keys, Address origin) {
-   	Collection<Address> addresses = new HashSet<Address>();
+   private Map<Address, Set<Object>> buildInvalidationKeysByRequestor(Collection<Object> keys, Address origin) {
+      Map<Address, Set<Object>> invalidations = new HashMap<Address, Set<Object>>();
+      List<Address> members = rpcManager.getTransport().getMembers();
    	
    	for (Object key : keys) {
-   	   Collection<Address> as = requestors.remove(key);
-   	   if (as != null)
-   		   addresses.addAll(as);
+   	   long requestors = 0;
+   	   for (RequestorBucket bucket : buckets.values()) {
+   	      Long bucketRequestors = bucket.requestors.remove(key);
+   	      if (bucketRequestors != null) {
+   	         requestors |= bucketRequestors;
+   	         trackedKeys.decrementAndGet();
+   	      }
+   	   }
+   	   if (requestors != 0) {
+   	      for (Address a : addressesFor(requestors, members)) {
+   	         Set<Object> requested = invalidations.get(a);
+   	         if (requested == null) {
+   	            requested = new HashSet<Object>();
+   	            invalidations.put(a, requested);
+   	         }
+   	         requested.add(key);
+   	      }
+   	   }
    	}
    	if (origin != null)
-   		addresses.remove(origin);
-   	return addresses;
+   		invalidations.remove(origin);
+   	return invalidations;
+   }
+
+   private Map<Set<Object>, Collection<Address>> groupRequestorsByKeys(Map<Address, Set<Object>> invalidations) {
+      Map<Set<Object>, Collection<Address>> requestorsByKeys = new HashMap<Set<Object>, Collection<Address>>();
+      for (Map.Entry<Address, Set<Object>> e : invalidations.entrySet()) {
+         Collection<Address> addresses = requestorsByKeys.get(e.getValue());
+         if (addresses == null) {
+            addresses = new ArrayList<Address>();
+            requestorsByKeys.put(e.getValue(), addresses);
+         }
+         addresses.add(e.getKey());
+      }
+      return requestorsByKeys;
    }
    
    private boolean isUseMulticast(int nodes) {
@@ -133,4 +271,292 @@ private boolean isUseMulticast(int nodes) {
    	return nodes > threshold;
    }
 
+   private void addToBatch(Address target, Set<Object> keys, NotifyingNotifiableFuture<Object> future) {
+      synchronized (pendingInvalidations) {
+         InvalidationBatch batch = pendingInvalidations.get(target);
+         if (batch == null) {
+            batch = new InvalidationBatch(target);
+            pendingInvalidations.put(target, batch);
+            scheduledExecutor.schedule(batch, batchWindow, TimeUnit.MILLISECONDS);
+         }
+         if (trace) log.tracef("Adding keys %s to the pending invalidation for %s", keys, target);
+         batch.keys.addAll(keys);
+         batch.waiters.add(future);
+         future.setNetworkFuture(batch.result);
+      }
+   }
+
+   private RequestorBucket currentBucket() {
+      long index = bucketIndex(System.currentTimeMillis());
+      RequestorBucket bucket = buckets.get(index);
+      if (bucket == null) {
+         bucket = new RequestorBucket();
+         RequestorBucket existing = buckets.putIfAbsent(index, bucket);
+         if (existing != null) {
+            bucket = existing;
+         }
+      }
+      return bucket;
+   }
+
+   private long bucketIndex(long millis) {
+      return bucketWidth == Long.MAX_VALUE ? 0 : millis / bucketWidth;
+   }
+
+   private void addUntrackedKey(RequestorBucket bucket, Object key) {
+      AtomicReferenceArray<Object> slots = bucket.untrackedKeys;
+      if (slots == null) {
+         synchronized (bucket) {
+            slots = bucket.untrackedKeys;
+            if (slots == null) {
+               slots = new AtomicReferenceArray<Object>(UNTRACKED_KEY_SLOTS);
+               bucket.untrackedKeys = slots;
+            }
+         }
+      }
+      int slot = slotFor(key);
+      while (true) {
+         Object current = slots.get(slot);
+         if (current == SHARED_SLOT || key.equals(current)
+               || slots.compareAndSet(slot, current, current == null ? key : SHARED_SLOT))
+            return;
+      }
+   }
+
+   /**
+    * Frees the untracked key slots of <code>keys</code>, which are about to be invalidated on the whole cluster if any
+    * of them may have an untracked requestor.
+    *
+    * @return true if some of the keys may have been requested by a node that was not tracked
+    */
+   private boolean removeUntrackedKeys(Collection<Object> keys) {
+      boolean untracked = false;
+      for (RequestorBucket bucket : buckets.values()) {
+         AtomicReferenceArray<Object> slots = bucket.untrackedKeys;
+         if (slots == null) continue;
+         for (Object key : keys) {
+            int slot = slotFor(key);
+            Object current = slots.get(slot);
+            if (current == SHARED_SLOT) {
+               untracked = true;
+            } else if (current != null && current.equals(key)) {
+               slots.compareAndSet(slot, current, null);
+               untracked = true;
+            }
+         }
+      }
+      return untracked;
+   }
+
+   private static int slotFor(Object key) {
+      int h = key.hashCode();
+      h ^= (h >>> 20) ^ (h >>> 12);
+      h ^= (h >>> 7) ^ (h >>> 4);
+      return h & (UNTRACKED_KEY_SLOTS - 1);
+   }
+
+   /**
+    * Drops the buckets whose L1 entries have all expired on the requestors.
+    */
+   private void expireBuckets() {
+      if (bucketWidth == Long.MAX_VALUE)
+         return;
+
+      // a request made during bucket i may be cached until (i + 1) * bucketWidth + l1Lifespan
+      long oldestLiveIndex = bucketIndex(System.currentTimeMillis() - l1Lifespan) - 1;
+      for (Map.Entry<Long, RequestorBucket> e : buckets.entrySet()) {
+         if (e.getKey() < oldestLiveIndex) {
+            if (buckets.remove(e.getKey(), e.getValue())) {
+               trackedKeys.addAndGet(-e.getValue().requestors.size());
+            }
+         }
+      }
+   }
+
+   private long bitFor(Address address) {
+      Integer index = addressIndexes.get(address);
+      if (index == null) {
+         synchronized (indexedAddresses) {
+            index = addressIndexes.get(address);
+            if (index == null) {
+               reclaimDepartedIndexes();
+               index = indexedAddresses.indexOf(null);
+               if (index < 0) {
+                  index = indexedAddresses.size();
+                  indexedAddresses.add(address);
+               } else {
+                  indexedAddresses.set(index, address);
+               }
+               indexedAddressesSnapshot = indexedAddresses.toArray(new Address[indexedAddresses.size()]);
+               addressIndexes.put(address, index);
+            }
+         }
+      }
+      return 1L << (index & 63);
+   }
+
+   /**
+    * Frees the indexes of the nodes that left the cluster and clears their bits from the requestor bitmaps, unless a
+    * bit is still shared with a member. Must be called with the {@link #indexedAddresses} lock held.
+    */
+   private void reclaimDepartedIndexes() {
+      Set<Address> members = new HashSet<Address>(rpcManager.getTransport().getMembers());
+      long departedBits = 0;
+      long memberBits = 0;
+      for (int i = 0; i < indexedAddresses.size(); i++) {
+         Address a = indexedAddresses.get(i);
+         if (a == null) continue;
+         if (members.contains(a)) {
+            memberBits |= 1L << (i & 63);
+         } else {
+            indexedAddresses.set(i, null);
+            addressIndexes.remove(a);
+            departedBits |= 1L << (i & 63);
+         }
+      }
+      long cleared = departedBits & ~memberBits;
+      if (cleared != 0) {
+         if (trace) log.tracef("Clearing the L1 requestor bits %s of the nodes that left", Long.toBinaryString(cleared));
+         clearRequestorBits(cleared);
+      }
+   }
+
+   private void clearRequestorBits(long bits) {
+      for (RequestorBucket bucket : buckets.values()) {
+         for (Object key : bucket.requestors.keySet()) {
+            while (true) {
+               Long requestors = bucket.requestors.get(key);
+               if (requestors == null || (requestors & bits) == 0) break;
+               long remaining = requestors & ~bits;
+               if (remaining == 0) {
+                  if (bucket.requestors.remove(key, requestors)) {
+                     trackedKeys.decrementAndGet();
+                     break;
+                  }
+               } else if (bucket.requestors.replace(key, requestors, remaining)) {
+                  break;
+               }
+            }
+         }
+      }
+   }
+
+   private Collection<Address> addressesFor(long requestors, List<Address> members) {
+      Address[] addresses = indexedAddressesSnapshot;
+      Collection<Address> result = new ArrayList<Address>();
+      for (int i = 0; i < addresses.length; i++) {
+         // nodes that left the cluster don't need to be invalidated
+         if (addresses[i] != null && (requestors & (1L << (i & 63))) != 0 && members.contains(addresses[i])) {
+            result.add(addresses[i]);
+         }
+      }
+      return result;
+   }
+
+   @ManagedAttribute(description = "Number of keys whose L1 requestors are currently tracked")
+   @Metric(displayName = "Tracked L1 keys", displayType = DisplayType.SUMMARY)
+   public int getTrackedKeys() {
+      return Math.max(0, trackedKeys.get());
+   }
+
+   @ManagedAttribute(description = "Number of remote reads whose requestor could not be tracked because the limit was reached")
+   @Metric(displayName = "Untracked L1 requests", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getUntrackedRequests() {
+      return untrackedRequests.get();
+   }
+
+   @ManagedAttribute(description = "Number of L1 invalidation commands sent")
+   @Metric(displayName = "L1 invalidation commands", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getInvalidationCommands() {
+      return invalidationCommands.get();
+   }
+
+   @ManagedAttribute(description = "Number of L1 invalidations merged into a batched command sent to the same node")
+   @Metric(displayName = "Coalesced L1 invalidations", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getCoalescedInvalidations() {
+      return coalescedInvalidations.get();
+   }
+
+   @ManagedOperation(description = "Resets the L1 invalidation statistics")
+   @Operation(displayName = "Reset statistics")
+   public void resetStatistics() {
+      untrackedRequests.set(0);
+      invalidationCommands.set(0);
+      coalescedInvalidations.set(0);
+   }
+
+   /**
+    * The requestors recorded during one time interval.
+    */
+   private static final class RequestorBucket {
+      final ConcurrentMap<Object, Long> requestors = new ConcurrentHashMap<Object, Long>();
+      // keys whose requestors were not recorded because the tracking limit was reached, created on the first one
+      volatile AtomicReferenceArray<Object> untrackedKeys;
+   }
+
+   /**
+    * The keys that will be invalidated on a node once the batch window expires, and the futures of the writes
+    * that are waiting for them.
+    */
+   private final class InvalidationBatch implements Runnable {
+      final Address target;
+      final Set<Object> keys = new HashSet<Object>();
+      final List<NotifyingNotifiableFuture<Object>> waiters = new ArrayList<NotifyingNotifiableFuture<Object>>();
+      final SettableNotifyingFuture<Object> result = new SettableNotifyingFuture<Object>();
+
+      InvalidationBatch(Address target) {
+         this.target = target;
+      }
+
+      @Override
+      public void run() {
+         synchronized (pendingInvalidations) {
+            // already sent by stop()
+            if (pendingInvalidations.get(target) != this) return;
+            pendingInvalidations.remove(target);
+         }
+
+         if (trace) log.tracef("Keys %s needs invalidation on %s", keys, target);
+         invalidationCommands.incrementAndGet();
+         coalescedInvalidations.addAndGet(waiters.size() - 1);
+         try {
+            InvalidateCommand ic = commandsFactory.buildInvalidateFromL1Command(false, keys);
+            rpcManager.invokeRemotelyInFuture(Collections.singleton(target), ic, new NotifyingFutureImpl(null) {
+               private volatile Future<Object> networkFuture;
+
+               @Override
+               public void setNetworkFuture(Future<Object> future) {
+                  super.setNetworkFuture(future);
+                  networkFuture = future;
+               }
+
+               @Override
+               public void notifyDone() {
+                  super.notifyDone();
+                  complete(networkFuture);
+               }
+            });
+         } catch (Throwable t) {
+            result.setException(t);
+            notifyWaiters();
+         }
+      }
+
+      private void complete(Future<Object> networkFuture) {
+         try {
+            networkFuture.get();
+            result.set(null);
+         } catch (ExecutionException e) {
+            result.setException(e.getCause());
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.setException(e);
+         }
+         notifyWaiters();
+      }
+
+      private void notifyWaiters() {
+         for (NotifyingNotifiableFuture<Object> waiter : waiters) waiter.notifyDone();
+      }
+   }
 }
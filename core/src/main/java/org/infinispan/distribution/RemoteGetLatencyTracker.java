@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Keeps a sliding window of the latencies of recent remote gets and derives from it the delay after which a
+ * staggered remote get contacts the next owner.
+ * <p/>
+ * The delay is a high percentile of the observed latencies, so under normal conditions almost every get is answered
+ * by the first owner contacted, while a slow or stalled owner only costs the caller roughly one typical round trip
+ * before a backup owner is asked. The percentile is recomputed every {@link #RECOMPUTE_INTERVAL} samples, which keeps
+ * the cost of {@link #record(long)} negligible.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+class RemoteGetLatencyTracker {
+   static final int WINDOW_SIZE = 256;
+   static final int RECOMPUTE_INTERVAL = 32;
+   static final long DEFAULT_DELAY_NANOS = MILLISECONDS.toNanos(10);
+   static final long MIN_DELAY_NANOS = MICROSECONDS.toNanos(500);
+
+   private final AtomicLongArray samples = new AtomicLongArray(WINDOW_SIZE);
+   private final AtomicLong sampleCount = new AtomicLong();
+   private final double percentile;
+   private final long maxDelayNanos;
+   private volatile long delayNanos;
+
+   /**
+    * @param percentile    the percentile of the observed latencies used as the delay, between 0 and 1
+    * @param maxDelayNanos upper bound for the delay
+    */
+   RemoteGetLatencyTracker(double percentile, long maxDelayNanos) {
+      if (percentile <= 0 || percentile > 1) throw new IllegalArgumentException("Percentile must be in (0, 1]: " + percentile);
+      this.percentile = percentile;
+      this.maxDelayNanos = Math.max(maxDelayNanos, MIN_DELAY_NANOS);
+      this.delayNanos = Math.min(DEFAULT_DELAY_NANOS, this.maxDelayNanos);
+   }
+
+   /**
+    * Records the latency of a remote get that was answered.
+    */
+   void record(long latencyNanos) {
+      long n = sampleCount.getAndIncrement();
+      samples.set((int) (n % WINDOW_SIZE), latencyNanos);
+      if ((n + 1) % RECOMPUTE_INTERVAL == 0) recompute((int) Math.min(n + 1, WINDOW_SIZE));
+   }
+
+   /**
+    * @return how long a staggered remote get waits for a response before contacting the next owner
+    */
+   long getDelayNanos() {
+      return delayNanos;
+   }
+
+   long getSampleCount() {
+      return sampleCount.get();
+   }
+
+   private void recompute(int size) {
+      long[] window = new long[size];
+      for (int i = 0; i < size; i++) window[i] = samples.get(i);
+      Arrays.sort(window);
+      int index = Math.max(0, (int) Math.ceil(percentile * size) - 1);
+      delayNanos = Math.min(maxDelayNanos, Math.max(MIN_DELAY_NANOS, window[index]));
+   }
+}
@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.TopologyAwareAddress;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Decides the order in which the owners of a key are asked for it by a remote get.
+ * <p/>
+ * Owners closer to the local node in the cluster topology come first: the same machine, then the same rack, then the
+ * same site. Owners at the same distance are ordered by their recently observed response time, grouped in powers of
+ * two, so that a noticeably slower owner is asked last while owners with similar latencies keep the consistent hash
+ * order (and the primary owner is still preferred). Latency observations expire after {@link #SAMPLE_TTL_NANOS}, so a
+ * node that was slow for a while is tried again once it had time to recover.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+class RemoteReadRouter {
+   // weight of a new sample in the moving average, as a right shift: 1/4
+   static final int EWMA_SHIFT = 2;
+   static final long SAMPLE_TTL_NANOS = SECONDS.toNanos(10);
+   // latencies below this are considered equal
+   static final long LATENCY_RESOLUTION_NANOS = MICROSECONDS.toNanos(100);
+
+   private final Address self;
+   private final ConcurrentMap<Address, Latency> latencies = new ConcurrentHashMap<Address, Latency>();
+
+   RemoteReadRouter(Address self) {
+      this.self = self;
+   }
+
+   /**
+    * Records the time it took an owner to answer a remote get.
+    */
+   void record(Address owner, long latencyNanos) {
+      Latency latency = latencies.get(owner);
+      if (latency == null) {
+         latency = new Latency(latencyNanos);
+         Latency existing = latencies.putIfAbsent(owner, latency);
+         if (existing == null) return;
+         latency = existing;
+      }
+      latency.record(latencyNanos);
+   }
+
+   /**
+    * @return A copy of {@code owners}, sorted so that the preferred owner comes first.
+    */
+   List<Address> route(List<Address> owners) {
+      List<Address> routed = new ArrayList<Address>(owners);
+      if (routed.size() > 1) {
+         // compute the ranks up front, the latencies may change while sorting
+         long now = System.nanoTime();
+         final Map<Address, Integer> ranks = new HashMap<Address, Integer>(routed.size() * 2);
+         for (Address owner : routed) {
+            ranks.put(owner, distance(owner) * 128 + latencyClass(owner, now));
+         }
+         // the sort is stable, so owners with the same rank keep the consistent hash order
+         Collections.sort(routed, new Comparator<Address>() {
+            @Override
+            public int compare(Address a1, Address a2) {
+               return ranks.get(a1) - ranks.get(a2);
+            }
+         });
+      }
+      return routed;
+   }
+
+   /**
+    * @return The preferred owner, or {@code null} if {@code owners} is empty.
+    */
+   Address preferredOwner(List<Address> owners) {
+      return owners.isEmpty() ? null : route(owners).get(0);
+   }
+
+   /**
+    * @return The average response time of an owner, in nanoseconds, or -1 if it's not known.
+    */
+   long getLatencyNanos(Address owner) {
+      Latency latency = latencies.get(owner);
+      return latency == null || latency.isExpired(System.nanoTime()) ? -1 : latency.averageNanos;
+   }
+
+   void reset() {
+      latencies.clear();
+   }
+
+   /**
+    * @return 0 for the same machine, 1 for the same rack, 2 for the same site and 3 for a remote site.
+    */
+   int distance(Address owner) {
+      if (!(self instanceof TopologyAwareAddress) || !(owner instanceof TopologyAwareAddress))
+         return 0;
+
+      TopologyAwareAddress local = (TopologyAwareAddress) self;
+      TopologyAwareAddress remote = (TopologyAwareAddress) owner;
+      if (local.isSameMachine(remote)) return 0;
+      if (local.isSameRack(remote)) return 1;
+      if (local.isSameSite(remote)) return 2;
+      return 3;
+   }
+
+   private int latencyClass(Address owner, long now) {
+      Latency latency = latencies.get(owner);
+      // owners we don't know about (anymore) are as good as the fastest ones, so that they get sampled
+      if (latency == null || latency.isExpired(now)) return 0;
+      long units = latency.averageNanos / LATENCY_RESOLUTION_NANOS;
+      return 64 - Long.numberOfLeadingZeros(units);
+   }
+
+   private static class Latency {
+      volatile long averageNanos;
+      volatile long lastSampleNanos;
+
+      Latency(long latencyNanos) {
+         this.averageNanos = latencyNanos;
+         this.lastSampleNanos = System.nanoTime();
+      }
+
+      void record(long latencyNanos) {
+         long now = System.nanoTime();
+         // start over if the previous samples are too old to be relevant
+         if (isExpired(now)) {
+            averageNanos = latencyNanos;
+         } else {
+            // lost updates under contention are fine, this is only an estimate
+            averageNanos += (latencyNanos - averageNanos) >> EWMA_SHIFT;
+         }
+         lastSampleNanos = now;
+      }
+
+      boolean isExpired(long now) {
+         return now - lastSampleNanos > SAMPLE_TTL_NANOS;
+      }
+   }
+}
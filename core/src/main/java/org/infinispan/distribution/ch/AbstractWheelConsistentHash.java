@@ -83,7 +83,7 @@ public void setHashFunction(Hash h) {
       hashFunction = h;
    }
 
-   private void checkCachesUninitialized(String property) {
+   protected void checkCachesUninitialized(String property) {
       if (caches != null) {
          throw new IllegalStateException(format(
                "Must configure the %s before adding the caches", property));
@@ -61,7 +61,8 @@ public interface ConsistentHash {
     * @param replCount replication count (number of copies)
     * @return a list of addresses where the key resides, where this list is a subset of the addresses set in {@link
     *         #setCaches(java.util.Set)}.  Should never be null, and should contain replCount elements or the max
-    *         number of caches available, whichever is smaller.
+    *         number of caches available, whichever is smaller.  The list may not be modifiable, callers that need
+    *         to change it must copy it first.
     */
    List<Address> locate(Object key, int replCount);
 
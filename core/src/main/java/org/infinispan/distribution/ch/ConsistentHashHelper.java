@@ -68,7 +68,10 @@ private static ConsistentHash constructConsistentHashInstance(Configuration c) {
       Hash h = (Hash) Util.getInstance(c.getHashFunctionClass(), c.getClassLoader());
       HashSeed hs = c.getHashSeed() != null ? c.getHashSeed() :
             (HashSeed) Util.getInstance(c.getHashSeedClass(), c.getClassLoader());
-      return constructConsistentHashInstance(chClass, h, hs, c.getNumVirtualNodes(), new GroupManagerImpl(c.getGroupers()));
+      ConsistentHash ch = constructConsistentHashInstance(chClass, h, hs, c.getNumVirtualNodes(), new GroupManagerImpl(c.getGroupers()));
+      if (ch instanceof SegmentedConsistentHash)
+         ((SegmentedConsistentHash) ch).setNumOwners(c.getNumOwners());
+      return ch;
    }
 
    private static ConsistentHash constructConsistentHashInstance(
@@ -168,6 +171,12 @@ public static ConsistentHash createConsistentHash(ConsistentHash template, Colle
          groupManager = wTemplate.groupManager;
       }
       ConsistentHash ch = constructConsistentHashInstance(template.getClass(), hf, hs, numVirtualNodes, groupManager);
+      if (template instanceof SegmentedConsistentHash) {
+         SegmentedConsistentHash sTemplate = (SegmentedConsistentHash) template;
+         SegmentedConsistentHash sch = (SegmentedConsistentHash) ch;
+         sch.setNumSegments(sTemplate.getNumSegments());
+         sch.setNumOwners(sTemplate.getNumOwners());
+      }
       if (addresses != null && !addresses.isEmpty())  ch.setCaches(toSet(addresses));
       return ch;
    }
@@ -0,0 +1,250 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.ch;
+
+import org.infinispan.commons.hash.Hash;
+import org.infinispan.marshall.Ids;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.Util;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>
+ * A wheel-based consistent hash that splits the hash space into a fixed number of equally sized segments, and maps
+ * every key in a segment to the owners of the segment's last hash position.
+ * </p>
+ *
+ * <p>
+ * The owners of each segment are computed once, when the caches are set, for every replication count up to
+ * <code>numOwners</code>, and stored as immutable lists. {@link #locate(Object, int)} and
+ * {@link #isKeyLocalToAddress(Address, Object, int)} then only hash the key and look its segment up in an array,
+ * without walking the wheel or allocating anything. Larger replication counts are still supported, by walking the
+ * wheel as {@link DefaultConsistentHash} does.
+ * </p>
+ *
+ * <p>
+ * The lists returned by {@link #locate(Object, int)} cannot be modified. The number of segments should be much larger
+ * than the number of positions on the wheel (caches times virtual nodes), otherwise some caches may not own any
+ * segment.
+ * </p>
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class SegmentedConsistentHash extends AbstractWheelConsistentHash {
+
+   public static final int DEFAULT_NUM_SEGMENTS = 4096;
+   public static final int DEFAULT_NUM_OWNERS = 2;
+
+   private int numSegments = DEFAULT_NUM_SEGMENTS;
+   private int numOwners = DEFAULT_NUM_OWNERS;
+   private int segmentSize;
+   // segmentOwners[segment][replCount - 1] holds the first replCount owners of the segment
+   private List<Address>[][] segmentOwners;
+
+   public SegmentedConsistentHash() {
+   }
+
+   public SegmentedConsistentHash(Hash hash) {
+      setHashFunction(hash);
+      setHashSeed(new DefaultHashSeed());
+   }
+
+   public void setNumSegments(Integer numSegments) {
+      checkCachesUninitialized("number of segments");
+      if (numSegments < 1)
+         throw new IllegalArgumentException("The number of segments must be strictly positive");
+      this.numSegments = numSegments;
+   }
+
+   public int getNumSegments() {
+      return numSegments;
+   }
+
+   /**
+    * Sets the largest replication count for which the owners of each segment are precomputed. This is normally the
+    * cache's <code>numOwners</code>.
+    */
+   public void setNumOwners(Integer numOwners) {
+      checkCachesUninitialized("number of owners");
+      if (numOwners < 1)
+         throw new IllegalArgumentException("The number of owners must be strictly positive");
+      this.numOwners = numOwners;
+   }
+
+   public int getNumOwners() {
+      return numOwners;
+   }
+
+   @Override
+   @SuppressWarnings("unchecked")
+   public void setCaches(Set<Address> newCaches) {
+      super.setCaches(newCaches);
+
+      // the normalized hash space is [0, Integer.MAX_VALUE], so it holds Integer.MAX_VALUE + 1 hashes
+      segmentSize = (int) ((Integer.MAX_VALUE + (long) numSegments) / numSegments);
+      int precomputedOwners = Math.min(numOwners, caches.size());
+      List<Address>[][] owners = new List[numSegments][];
+      for (int segment = 0; segment < numSegments; segment++) {
+         Address[] segmentAddresses = locateOnWheel(getLastHash(segment), precomputedOwners);
+         owners[segment] = new List[precomputedOwners];
+         for (int i = 0; i < precomputedOwners; i++) {
+            owners[segment][i] = Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(segmentAddresses, i + 1)));
+         }
+      }
+      segmentOwners = owners;
+   }
+
+   public List<Address> locate(Object key, int replCount) {
+      int actualReplCount = Math.min(replCount, caches.size());
+      if (actualReplCount <= 0) return Collections.emptyList();
+
+      int segment = getSegment(key);
+      if (actualReplCount <= segmentOwners[segment].length)
+         return segmentOwners[segment][actualReplCount - 1];
+
+      // not precomputed, so walk the wheel from the end of the segment
+      return Collections.unmodifiableList(Arrays.asList(locateOnWheel(getLastHash(segment), actualReplCount)));
+   }
+
+   @Override
+   public boolean isKeyLocalToAddress(Address target, Object key, int replCount) {
+      List<Address> owners = locate(key, replCount);
+      for (int i = 0; i < owners.size(); i++) {
+         if (owners.get(i).equals(target)) return true;
+      }
+      return false;
+   }
+
+   /**
+    * @return the segment the key belongs to, between 0 and <code>numSegments - 1</code>
+    */
+   public int getSegment(Object key) {
+      int normalizedHash;
+      if (key instanceof Address)
+         normalizedHash = getNormalizedHash(hashSeed.getHashSeed((Address) key));
+      else
+         normalizedHash = getNormalizedHash(getGrouping(key));
+      return normalizedHash / segmentSize;
+   }
+
+   private int getLastHash(int segment) {
+      return (int) Math.min((long) segment * segmentSize + segmentSize - 1, Integer.MAX_VALUE);
+   }
+
+   /**
+    * @return the first <code>count</code> distinct caches found on the wheel, starting at <code>normalizedHash</code>
+    */
+   private Address[] locateOnWheel(int normalizedHash, int count) {
+      Address[] owners = new Address[count];
+      int found = 0;
+      int startIndex = getPositionIndex(normalizedHash);
+      int i = startIndex;
+      do {
+         Address a = positionValues[i];
+         boolean duplicate = false;
+         // if virtual nodes are enabled we have to avoid duplicate addresses
+         if (isVirtualNodesEnabled()) {
+            for (int j = 0; j < found && !duplicate; j++) duplicate = owners[j].equals(a);
+         }
+         if (!duplicate) owners[found++] = a;
+
+         if (++i == positionKeys.length) i = 0;
+      } while (found < count && i != startIndex);
+
+      return found == count ? owners : Arrays.copyOf(owners, found);
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+
+      SegmentedConsistentHash that = (SegmentedConsistentHash) o;
+
+      if (hashFunction != null ? !hashFunction.equals(that.hashFunction) : that.hashFunction != null) return false;
+      if (numVirtualNodes != that.numVirtualNodes) return false;
+      if (numSegments != that.numSegments) return false;
+      if (numOwners != that.numOwners) return false;
+      if (caches != null ? !caches.equals(that.caches) : that.caches != null) return false;
+
+      return true;
+   }
+
+   @Override
+   public int hashCode() {
+      int result = caches != null ? caches.hashCode() : 0;
+      result = 31 * result + hashFunction.hashCode();
+      result = 31 * result + numVirtualNodes;
+      result = 31 * result + numSegments;
+      result = 31 * result + numOwners;
+      return result;
+   }
+
+   public static class Externalizer extends AbstractWheelConsistentHash.Externalizer<SegmentedConsistentHash> {
+      @Override
+      protected SegmentedConsistentHash instance() {
+         return new SegmentedConsistentHash();
+      }
+
+      @Override
+      public void writeObject(ObjectOutput output, SegmentedConsistentHash ch) throws IOException {
+         output.writeInt(ch.numVirtualNodes);
+         output.writeInt(ch.numSegments);
+         output.writeInt(ch.numOwners);
+         output.writeObject(ch.hashFunction);
+         output.writeObject(ch.caches);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public SegmentedConsistentHash readObject(ObjectInput unmarshaller) throws IOException, ClassNotFoundException {
+         SegmentedConsistentHash instance = instance();
+         instance.numVirtualNodes = unmarshaller.readInt();
+         instance.numSegments = unmarshaller.readInt();
+         instance.numOwners = unmarshaller.readInt();
+         Hash hash = (Hash) unmarshaller.readObject();
+         instance.setHashFunction(hash);
+         Set<Address> caches = (Set<Address>) unmarshaller.readObject();
+         instance.setCaches(caches);
+         return instance;
+      }
+
+      @Override
+      public Integer getId() {
+         return Ids.SEGMENTED_CONSISTENT_HASH;
+      }
+
+      @Override
+      public Set<Class<? extends SegmentedConsistentHash>> getTypeClasses() {
+         return Util.<Class<? extends SegmentedConsistentHash>>asSet(SegmentedConsistentHash.class);
+      }
+   }
+}
@@ -22,6 +22,7 @@
  */
 package org.infinispan.interceptors;
 
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.EvictCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
@@ -94,6 +95,24 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       return retval;
    }
 
+   @Override
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      long t1 = System.nanoTime();
+      Map<?, ?> retval = (Map<?, ?>) invokeNextInterceptor(ctx, command);
+      long t2 = System.nanoTime();
+      int requested = command.getKeys().size();
+      if (requested > 0) {
+         // split the time of the whole call evenly between the keys
+         long intervalMilliseconds = nanosecondsIntervalToMilliseconds(t1, t2);
+         int found = retval.size();
+         hitTimes.getAndAdd(intervalMilliseconds * found / requested);
+         hits.getAndAdd(found);
+         missTimes.getAndAdd(intervalMilliseconds * (requested - found) / requested);
+         misses.getAndAdd(requested - found);
+      }
+      return retval;
+   }
+
    @Override
    public Object visitPutMapCommand(InvocationContext ctx, PutMapCommand command) throws Throwable {
       Map data = command.getMap();
@@ -30,9 +30,12 @@
 import org.infinispan.commands.write.ReplaceCommand;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.interceptors.base.CommandInterceptor;
 import org.infinispan.transaction.xa.DldGlobalTransaction;
+import org.infinispan.util.concurrent.locks.DeadlockDetectingLockManager;
+import org.infinispan.util.concurrent.locks.LockManager;
 
 import static java.util.Collections.emptySet;
 
@@ -49,6 +52,13 @@
  */
 public class DeadlockDetectingInterceptor extends CommandInterceptor {
 
+   private DeadlockDetectingLockManager lockManager;
+
+   @Inject
+   public void injectLockManager(LockManager lockManager) {
+      this.lockManager = (DeadlockDetectingLockManager) lockManager;
+   }
+
    /**
     * Only does a sanity check.
     */
@@ -79,6 +89,7 @@ public Object visitLockControlCommand(TxInvocationContext ctx, LockControlComman
       DldGlobalTransaction globalTransaction = (DldGlobalTransaction) ctx.getGlobalTransaction();
       if (ctx.isOriginLocal()) {
          globalTransaction.setRemoteLockIntention(command.getKeys());
+         lockManager.remoteLockIntentionChanged(globalTransaction);
          //in the case of DIST we need to propagate the list of keys. In all other situations in can be determined
          // based on the actual command
          if (configuration.getCacheMode().isDistributed()) {
@@ -94,6 +105,7 @@ public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand comman
       DldGlobalTransaction globalTransaction = (DldGlobalTransaction) ctx.getGlobalTransaction();
       if (ctx.isOriginLocal()) {
          globalTransaction.setRemoteLockIntention(command.getAffectedKeys());
+         lockManager.remoteLockIntentionChanged(globalTransaction);
       }
       Object result = invokeNextInterceptor(ctx, command);
       if (ctx.isOriginLocal()) {
@@ -23,7 +23,9 @@
 package org.infinispan.interceptors;
 
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -37,6 +39,7 @@
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.EntryFactory;
 import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.EntryVersion;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
@@ -55,17 +58,23 @@
 import org.infinispan.statetransfer.StateTransferLock;
 import org.infinispan.transaction.LockingMode;
 import org.infinispan.util.Immutables;
+import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
+import org.infinispan.util.concurrent.FutureListener;
 import org.infinispan.util.concurrent.NotifyingFutureImpl;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.concurrent.locks.LockManager;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -97,6 +106,7 @@ public Collection<Object> getKeys() {
       }
    };
    private boolean isPessimisticCache;
+   private boolean useVersioning;
 
    @Inject
    public void injectDependencies(DistributionManager distributionManager, StateTransferLock stateTransferLock,
@@ -116,6 +126,7 @@ public void start() {
       isL1CacheEnabled = configuration.isL1CacheEnabled();
       needReliableReturnValues = !configuration.isUnsafeUnreliableReturnValues();
       isPessimisticCache = configuration.getTransactionLockingMode() == LockingMode.PESSIMISTIC;
+      useVersioning = configuration.isUseVersioning();
    }
 
    // ---- READ commands
@@ -146,6 +157,59 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       }
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         Map<Object, Object> result = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+
+         // If L1 caching is enabled and this is a remote command, record the requestor of every key we found
+         if (isL1CacheEnabled && !ctx.isOriginLocal()) {
+            for (Object key : result.keySet()) l1Manager.addRequestor(key, ctx.getOrigin());
+         }
+
+         List<Object> remoteKeys = new ArrayList<Object>();
+         List<Object> uncertainKeys = new ArrayList<Object>();
+         for (Object key : command.getKeys()) {
+            if (result.containsKey(key) || !needsRemoteGet(ctx, key, true)) continue;
+            DataLocality locality = dm.getLocality(key);
+            if (ctx.isOriginLocal() && !locality.isLocal() && isNotInL1(key)) {
+               remoteKeys.add(key);
+            } else if (locality.isUncertain()) {
+               // maybe we are still rehashing as a joiner? ISPN-258
+               uncertainKeys.add(key);
+            }
+         }
+
+         if (!remoteKeys.isEmpty()) {
+            // one parallel call per owner rather than one call per key
+            Map<Object, InternalCacheEntry> entries = dm.retrieveFromRemoteSources(remoteKeys, ctx);
+            for (Object key : remoteKeys) {
+               InternalCacheEntry ice = entries.get(key);
+               if (ice != null) {
+                  storeRemoteEntry(ctx, key, ice, true, false);
+                  result.put(key, command.isReturnCacheEntries() ? ice : ice.getValue());
+               } else if (dm.isRehashInProgress()) {
+                  // the owner we asked might not have received the entry yet, so ask all owners
+                  Object value = realRemoteGet(ctx, key, true, false);
+                  if (value != null) result.put(key, value);
+               }
+            }
+         }
+
+         for (Object key : uncertainKeys) {
+            if (trace)
+               log.tracef("Key %s is mapped to local node %s, but a rehash is in progress so may need to look elsewhere", key, rpcManager.getAddress());
+            Object value = realRemoteGet(ctx, key, false, false);
+            if (value != null) result.put(key, value);
+         }
+         return result;
+      } catch (SuspectException e) {
+         // retry
+         return visitGetAllCommand(ctx, command);
+      }
+   }
+
    private boolean needsRemoteGet(InvocationContext ctx, Object key, boolean retvalCheck) {
       final CacheEntry entry;
       return retvalCheck
@@ -205,32 +269,39 @@ private Object realRemoteGet(InvocationContext ctx, Object key, boolean storeInL
 
 
       if (ice != null) {
-         if (storeInL1) {
-            if (isL1CacheEnabled) {
-               if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
-               long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
-               PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
-               lockAndWrap(ctx, key, ice);
-               invokeNextInterceptor(ctx, put);
-            } else {
-               CacheEntry ce = ctx.lookupEntry(key);
-               if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
-                  if (ce != null && ce.isChanged()) {
-                     ce.setValue(ice.getValue());
-                  } else {
-                     if (isWrite)
-                        lockAndWrap(ctx, key, ice);
-                     else
-                        ctx.putLookedUpEntry(key, ice);
-                  }
+         storeRemoteEntry(ctx, key, ice, storeInL1, isWrite);
+         return ice.getValue();
+      }
+      return null;
+   }
+
+   /**
+    * Stores a remotely retrieved entry in L1 if L1 is enabled, or in the invocation context otherwise.
+    */
+   private void storeRemoteEntry(InvocationContext ctx, Object key, InternalCacheEntry ice, boolean storeInL1, boolean isWrite) throws Throwable {
+      if (storeInL1) {
+         if (isL1CacheEnabled) {
+            if (trace) log.tracef("Caching remotely retrieved entry for key %s in L1", key);
+            long lifespan = ice.getLifespan() < 0 ? configuration.getL1Lifespan() : Math.min(ice.getLifespan(), configuration.getL1Lifespan());
+            PutKeyValueCommand put = cf.buildPutKeyValueCommand(ice.getKey(), ice.getValue(), lifespan, -1, ctx.getFlags());
+            lockAndWrap(ctx, key, ice);
+            invokeNextInterceptor(ctx, put);
+         } else {
+            CacheEntry ce = ctx.lookupEntry(key);
+            if (ce == null || ce.isNull() || ce.isLockPlaceholder() || ce.getValue() == null) {
+               if (ce != null && ce.isChanged()) {
+                  ce.setValue(ice.getValue());
+               } else {
+                  if (isWrite)
+                     lockAndWrap(ctx, key, ice);
+                  else
+                     ctx.putLookedUpEntry(key, ice);
                }
             }
-         } else {
-            if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
          }
-         return ice.getValue();
+      } else {
+         if (trace) log.tracef("Not caching remotely retrieved entry for key %s in L1", key);
       }
-      return null;
    }
 
    private void lockAndWrap(InvocationContext ctx, Object key, InternalCacheEntry ice) throws InterruptedException {
@@ -334,7 +405,7 @@ public Object visitCommitCommand(TxInvocationContext ctx, CommitCommand command)
    private void sendCommitCommand(TxInvocationContext ctx, CommitCommand command, Collection<Address> preparedOn)
          throws TimeoutException, InterruptedException {
       // we only send the commit command to the nodes that 
-      Collection<Address> recipients = dm.getAffectedNodes(ctx.getAffectedKeys());
+      Collection<Address> recipients = getTxRecipients(ctx);
 
       // By default, use the configured commit sync settings
       boolean syncCommitPhase = configuration.isSyncCommitPhase();
@@ -378,9 +449,14 @@ public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand comman
          if (isL1CacheEnabled && command.isOnePhaseCommit())
             f = l1Manager.flushCache(ctx.getLockedKeys(), null, null);
 
-         Collection<Address> recipients = dm.getAffectedNodes(ctx.getAffectedKeys());
-         // this method will return immediately if we're the only member (because exclude_self=true)
-         rpcManager.invokeRemotely(recipients, command, sync);
+         Collection<Address> recipients = getTxRecipients(ctx);
+         Map<Address, PrepareCommand> commandsByOwner = splitPrepareByOwner(command, recipients);
+         if (commandsByOwner == null) {
+            // this method will return immediately if we're the only member (because exclude_self=true)
+            rpcManager.invokeRemotely(recipients, command, sync);
+         } else {
+            invokeRemotelyPerOwner(commandsByOwner, sync);
+         }
 
          ((LocalTxInvocationContext) ctx).remoteLocksAcquired(recipients);
          if (f != null) f.get();
@@ -391,12 +467,30 @@ public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand comman
    @Override
    public Object visitRollbackCommand(TxInvocationContext ctx, RollbackCommand command) throws Throwable {
       if (shouldInvokeRemoteTxCommand(ctx)) {
-         rpcManager.invokeRemotely(dm.getAffectedNodes(ctx.getAffectedKeys()), command, configuration.isSyncRollbackPhase(), true);
+         rpcManager.invokeRemotely(getTxRecipients(ctx), command, configuration.isSyncRollbackPhase(), true);
       }
 
       return invokeNextInterceptor(ctx, command);
    }
 
+   /**
+    * @return the nodes taking part in a transaction: the owners of the keys it wrote and, with versioning, the primary
+    *         owners of the keys it only read, as they validate the versions the transaction saw
+    */
+   private Collection<Address> getTxRecipients(TxInvocationContext ctx) {
+      Collection<Address> recipients = dm.getAffectedNodes(ctx.getAffectedKeys());
+      if (!useVersioning) return recipients;
+      Set<Address> withValidators = null;
+      for (Object key : ctx.getLookedUpEntries().keySet()) {
+         Address primaryOwner = dm.locate(key).get(0);
+         if (!recipients.contains(primaryOwner)) {
+            if (withValidators == null) withValidators = new HashSet<Address>(recipients);
+            withValidators.add(primaryOwner);
+         }
+      }
+      return withValidators == null ? recipients : withValidators;
+   }
+
    private void remoteGetBeforeWrite(InvocationContext ctx, boolean isConditionalCommand, KeyGenerator keygen) throws Throwable {
       // this should only happen if:
       //   a) unsafeUnreliableReturnValues is false
@@ -451,7 +545,20 @@ private Object handleWriteCommand(InvocationContext ctx, WriteCommand command, R
                      if (trace) log.tracef("Not performing invalidation! numCallRecipients=%s", numCallRecipients);
                   }
                if (!isSingleOwnerAndLocal(recipientGenerator)) {
-                  if (useFuture) {
+                  if (command instanceof PutMapCommand) {
+                     // ship each owner only the entries it owns rather than the whole map
+                     Map<Address, PutMapCommand> commandsByOwner = splitPutMapByOwner((PutMapCommand) command);
+                     if (useFuture && !commandsByOwner.isEmpty()) {
+                        NotifyingNotifiableFuture<Object> splitFuture = invokeRemotelyPerOwnerInFuture(commandsByOwner, returnValue);
+                        if (future == null) return splitFuture;
+                        chainFuture(future, splitFuture);
+                        return future;
+                     } else if (useFuture && future != null) {
+                        return future;
+                     } else {
+                        invokeRemotelyPerOwner(commandsByOwner, sync);
+                     }
+                  } else if (useFuture) {
                      if (future == null) future = new NotifyingFutureImpl(returnValue);
                      rpcManager.invokeRemotelyInFuture(rec, command, future);
                      return future;
@@ -482,6 +589,137 @@ private Object handleWriteCommand(InvocationContext ctx, WriteCommand command, R
       return returnValue;
    }
 
+   /**
+    * Splits a {@link PutMapCommand} so that each remote owner only receives the entries it owns.
+    */
+   private Map<Address, PutMapCommand> splitPutMapByOwner(PutMapCommand command) {
+      Map<Object, Object> map = command.getMap();
+      Map<Address, Map<Object, Object>> entriesByOwner = new HashMap<Address, Map<Object, Object>>();
+      for (Map.Entry<Object, List<Address>> location : dm.locateAll(map.keySet()).entrySet()) {
+         Object key = location.getKey();
+         for (Address owner : location.getValue()) {
+            Map<Object, Object> entries = entriesByOwner.get(owner);
+            if (entries == null) {
+               entries = new HashMap<Object, Object>();
+               entriesByOwner.put(owner, entries);
+            }
+            entries.put(key, map.get(key));
+         }
+      }
+      entriesByOwner.remove(rpcManager.getAddress());
+
+      Map<Address, PutMapCommand> commandsByOwner = new HashMap<Address, PutMapCommand>(entriesByOwner.size());
+      for (Map.Entry<Address, Map<Object, Object>> entries : entriesByOwner.entrySet()) {
+         commandsByOwner.put(entries.getKey(), cf.buildPutMapCommand(entries.getValue(),
+               command.getLifespanMillis(), command.getMaxIdleTimeMillis(), command.getFlags()));
+      }
+      return commandsByOwner;
+   }
+
+   /**
+    * Splits the modifications of a {@link PrepareCommand} so that each recipient only receives the modifications that
+    * touch keys it owns. Modifications without affected keys, such as a clear, go to every recipient. Each recipient
+    * also receives the versions seen by the transaction for the keys it is the primary owner of, as it validates them.
+    *
+    * @return the prepare command for each recipient, or null if every recipient needs all the modifications
+    */
+   private Map<Address, PrepareCommand> splitPrepareByOwner(PrepareCommand command, Collection<Address> recipients) {
+      Map<Address, List<WriteCommand>> modsByOwner = new HashMap<Address, List<WriteCommand>>(recipients.size());
+      for (Address recipient : recipients) {
+         if (!recipient.equals(rpcManager.getAddress()))
+            modsByOwner.put(recipient, new ArrayList<WriteCommand>());
+      }
+      if (modsByOwner.isEmpty()) return null;
+
+      boolean filtered = false;
+      for (WriteCommand mod : command.getModifications()) {
+         if (mod instanceof PutMapCommand) {
+            PutMapCommand putMap = (PutMapCommand) mod;
+            Map<Address, PutMapCommand> split = splitPutMapByOwner(putMap);
+            for (Map.Entry<Address, List<WriteCommand>> mods : modsByOwner.entrySet()) {
+               PutMapCommand ownerMod = split.get(mods.getKey());
+               if (ownerMod != null) mods.getValue().add(ownerMod);
+               if (ownerMod == null || ownerMod.getMap().size() < putMap.getMap().size()) filtered = true;
+            }
+         } else {
+            Set<Object> keys = mod.getAffectedKeys();
+            Collection<Address> owners = keys == null || keys.isEmpty() ? null : dm.getAffectedNodes(keys);
+            for (Map.Entry<Address, List<WriteCommand>> mods : modsByOwner.entrySet()) {
+               if (owners == null || owners.contains(mods.getKey()))
+                  mods.getValue().add(mod);
+               else
+                  filtered = true;
+            }
+         }
+      }
+      if (!filtered) return null;
+
+      Map<Address, Map<Object, EntryVersion>> versionsByOwner = splitVersionsSeenByPrimaryOwner(command.getVersionsSeen());
+      Map<Address, PrepareCommand> commandsByOwner = new HashMap<Address, PrepareCommand>(modsByOwner.size());
+      for (Map.Entry<Address, List<WriteCommand>> mods : modsByOwner.entrySet()) {
+         PrepareCommand ownerCommand = cf.buildPrepareCommand(command.getGlobalTransaction(), mods.getValue(),
+               command.isOnePhaseCommit());
+         if (versionsByOwner != null) {
+            Map<Object, EntryVersion> versions = versionsByOwner.get(mods.getKey());
+            ownerCommand.setVersionsSeen(versions == null ? Collections.<Object, EntryVersion>emptyMap() : versions);
+         }
+         commandsByOwner.put(mods.getKey(), ownerCommand);
+      }
+      return commandsByOwner;
+   }
+
+   private Map<Address, Map<Object, EntryVersion>> splitVersionsSeenByPrimaryOwner(Map<Object, EntryVersion> versionsSeen) {
+      if (versionsSeen == null) return null;
+      Map<Address, Map<Object, EntryVersion>> versionsByOwner = new HashMap<Address, Map<Object, EntryVersion>>();
+      for (Map.Entry<Object, EntryVersion> e : versionsSeen.entrySet()) {
+         Address primaryOwner = dm.locate(e.getKey()).get(0);
+         Map<Object, EntryVersion> versions = versionsByOwner.get(primaryOwner);
+         if (versions == null) {
+            versions = new HashMap<Object, EntryVersion>();
+            versionsByOwner.put(primaryOwner, versions);
+         }
+         // null values stand for keys that didn't exist, so they must be copied too
+         versions.put(e.getKey(), e.getValue());
+      }
+      return versionsByOwner;
+   }
+
+   /**
+    * Sends each command to its owner. Synchronous calls are issued in parallel, and the first failure is rethrown.
+    */
+   private void invokeRemotelyPerOwner(Map<Address, ? extends ReplicableCommand> commandsByOwner, boolean sync) throws Throwable {
+      if (!sync || commandsByOwner.size() == 1) {
+         for (Map.Entry<Address, ? extends ReplicableCommand> e : commandsByOwner.entrySet())
+            rpcManager.invokeRemotely(Collections.singleton(e.getKey()), e.getValue(), sync);
+      } else if (!commandsByOwner.isEmpty()) {
+         try {
+            invokeRemotelyPerOwnerInFuture(commandsByOwner, null).get();
+         } catch (ExecutionException e) {
+            throw e.getCause();
+         }
+      }
+   }
+
+   private NotifyingNotifiableFuture<Object> invokeRemotelyPerOwnerInFuture(Map<Address, ? extends ReplicableCommand> commandsByOwner, Object returnValue) {
+      NotifyingNotifiableFuture<Object> future = new AggregatingNotifyingFutureImpl(returnValue, commandsByOwner.size());
+      for (Map.Entry<Address, ? extends ReplicableCommand> e : commandsByOwner.entrySet())
+         rpcManager.invokeRemotelyInFuture(Collections.singleton(e.getKey()), e.getValue(), future);
+      return future;
+   }
+
+   /**
+    * Makes <tt>future</tt> wait for, and be notified by, <tt>networkFuture</tt>.
+    */
+   private void chainFuture(final NotifyingNotifiableFuture<Object> future, NotifyingNotifiableFuture<Object> networkFuture) {
+      future.setNetworkFuture(networkFuture);
+      networkFuture.attachListener(new FutureListener<Object>() {
+         @Override
+         public void futureDone(Future<Object> f) {
+            future.notifyDone();
+         }
+      });
+   }
+
    /**
     * If a single owner has been configured and the target for the key is the local address, it returns true.
     */
@@ -25,6 +25,7 @@
 
 import org.infinispan.commands.AbstractVisitor;
 import org.infinispan.commands.VisitableCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.tx.CommitCommand;
 import org.infinispan.commands.tx.PrepareCommand;
@@ -41,6 +42,7 @@
 import org.infinispan.container.DataContainer;
 import org.infinispan.container.EntryFactory;
 import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.EntryVersion;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
@@ -107,6 +109,18 @@ public final Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCo
       }
    }
 
+   @Override
+   public final Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      try {
+         for (Object key : command.getKeys())
+            entryFactory.wrapEntryForReading(ctx, key);
+         return invokeNextInterceptor(ctx, command);
+      } finally {
+         //needed because entries might be added in L1
+         if (!ctx.isInTxScope()) commitContextEntries(ctx);
+      }
+   }
+
    @Override
    public final Object visitInvalidateCommand(InvocationContext ctx, InvalidateCommand command) throws Throwable {
       if (command.getKeys() != null) {
@@ -172,11 +186,15 @@ private void commitContextEntries(InvocationContext ctx) {
       Set<Map.Entry<Object, CacheEntry>> entries = ctx.getLookedUpEntries().entrySet();
       Iterator<Map.Entry<Object, CacheEntry>> it = entries.iterator();
       if (trace) log.tracef("Number of entries in context: %s", entries.size());
+      final boolean useVersioning = configuration.isUseVersioning();
+      EntryVersion version = useVersioning && ctx.isInTxScope() ?
+            EntryVersion.of(((TxInvocationContext) ctx).getGlobalTransaction()) : null;
       while (it.hasNext()) {
          Map.Entry<Object, CacheEntry> e = it.next();
          CacheEntry entry = e.getValue();
          if (entry != null && entry.isChanged()) {
             cll.commitEntry(entry, ctx.hasFlag(Flag.SKIP_OWNERSHIP_CHECK));
+            if (useVersioning) installVersion(e.getKey(), version);
             if (trace) log.tracef("Committed entry %s", entry);
          } else {
             if (trace) log.tracef("Entry for key %s is null or not changed(%s), not calling commitUpdate", e.getKey(), entry);
@@ -184,6 +202,15 @@ private void commitContextEntries(InvocationContext ctx) {
       }
    }
 
+   /**
+    * Stamps the committed entry with the version of the transaction that wrote it.  The key is still locked, and the
+    * version is written after the value, so concurrent readers never see the new version with the old value.
+    */
+   private void installVersion(Object key, EntryVersion version) {
+      InternalCacheEntry ice = dataContainer.peek(key);
+      if (ice != null) ice.setVersion(version);
+   }
+
    private Object invokeNextAndApplyChanges(InvocationContext ctx, VisitableCommand command) throws Throwable {
       final Object result = invokeNextInterceptor(ctx, command);
       if (!ctx.isInTxScope()) commitContextEntries(ctx);
@@ -24,6 +24,7 @@
 
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.EntrySetCommand;
+import org.infinispan.commands.read.GetAllCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.read.KeySetCommand;
 import org.infinispan.commands.read.ValuesCommand;
@@ -49,6 +50,7 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -193,6 +195,37 @@ public Object visitGetKeyValueCommand(InvocationContext ctx, GetKeyValueCommand
       return processRetVal(retVal, ctx);
    }
 
+   @Override
+   @SuppressWarnings("unchecked")
+   public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+      List<Object> keys = command.getKeys();
+      List<MarshalledValue> marshalledKeys = null;
+      if (wrapKeys) {
+         marshalledKeys = new ArrayList<MarshalledValue>(keys.size());
+         for (int i = 0; i < keys.size(); i++) {
+            Object key = keys.get(i);
+            if (!isTypeExcluded(key.getClass())) {
+               MarshalledValue mv = createMarshalledValue(key, ctx);
+               keys.set(i, mv);
+               marshalledKeys.add(mv);
+               compact(mv);
+            }
+         }
+      }
+      Map<Object, Object> retVal = (Map<Object, Object>) invokeNextInterceptor(ctx, command);
+      if (marshalledKeys != null) {
+         for (MarshalledValue mv : marshalledKeys) compact(mv);
+      }
+      if (!ctx.isOriginLocal() || command.isReturnCacheEntries()) return retVal;
+
+      Map<Object, Object> unwrapped = new HashMap<Object, Object>(retVal.size() * 2);
+      for (Map.Entry<Object, Object> entry : retVal.entrySet()) {
+         Object key = entry.getKey() instanceof MarshalledValue ? ((MarshalledValue) entry.getKey()).get() : entry.getKey();
+         unwrapped.put(key, processRetVal(entry.getValue(), ctx));
+      }
+      return unwrapped;
+   }
+
    @Override
    @SuppressWarnings("unchecked")
    public Object visitKeySetCommand(InvocationContext ctx, KeySetCommand command) throws Throwable {
@@ -37,13 +37,21 @@
 import org.infinispan.commands.write.WriteCommand;
 import org.infinispan.commons.hash.MurmurHash3;
 import org.infinispan.container.EntryFactory;
+import org.infinispan.container.entries.CacheEntry;
+import org.infinispan.container.entries.EntryVersion;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.RepeatableReadEntry;
+import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.factories.annotations.Start;
 
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -69,16 +77,30 @@ public int compare(Object o1, Object o2) {
 
    EntryFactory entryFactory;
 
+   private boolean useVersioning;
+
    @Inject
    public void setDependencies(EntryFactory entryFactory) {
       this.entryFactory = entryFactory;
    }
 
+   @Start
+   public void start() {
+      useVersioning = configuration.isUseVersioning();
+   }
+
    @Override
    public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
       try {
          abortIfRemoteTransactionInvalid(ctx, command);
 
+         if (useVersioning) {
+            // a transaction holding one of our keys would change its version and fail our validation anyway, so rather
+            // than waiting for its commit we give up straight away
+            ctx.setFlags(Flag.ZERO_LOCK_ACQUISITION_TIMEOUT);
+            if (ctx.isOriginLocal()) command.setVersionsSeen(getVersionsSeen(ctx));
+         }
+
          if (command.writesToASingleKey()) {
             //optimisation: don't create another LockReorderingVisitor here as it is not needed.
             log.trace("Not using lock reordering as we have a single key.");
@@ -95,6 +117,8 @@ public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand comman
             }
          }
 
+         if (useVersioning) validateVersions(ctx, command.getVersionsSeen());
+
          return invokeNextAndCommitIf1Pc(ctx, command);
       } catch (Throwable te) {
          // don't remove the locks here, the rollback command will clear them
@@ -278,6 +302,57 @@ protected Object handleDefault(InvocationContext ctx, VisitableCommand command)
       }
    }
 
+   /**
+    * @return the versions of all the entries the transaction read or wrote, as it first saw them.  Keys that didn't
+    *         exist are mapped to null.
+    */
+   private Map<Object, EntryVersion> getVersionsSeen(TxInvocationContext ctx) {
+      Map<Object, EntryVersion> versions = new HashMap<Object, EntryVersion>();
+      for (Map.Entry<Object, CacheEntry> e : ctx.getLookedUpEntries().entrySet()) {
+         CacheEntry entry = e.getValue();
+         if (entry == null) {
+            versions.put(e.getKey(), null);
+         } else if (entry instanceof RepeatableReadEntry) {
+            versions.put(e.getKey(), ((RepeatableReadEntry) entry).getVersion());
+         } else if (entry instanceof InternalCacheEntry) {
+            // keys that were only read are stored in the context as they were found in the data container
+            versions.put(e.getKey(), ((InternalCacheEntry) entry).getVersion());
+         }
+      }
+      return versions;
+   }
+
+   /**
+    * Checks that none of the entries the transaction saw have been changed since. Only the primary owner of a key
+    * checks it, as that's where the key is locked.  The keys the transaction wrote are locked at this point, so
+    * their versions can't change until the transaction completes.  The keys it only read are not locked: they
+    * must not be locked by another transaction either, as that transaction is about to change them.
+    */
+   private void validateVersions(TxInvocationContext ctx, Map<Object, EntryVersion> versionsSeen) {
+      if (versionsSeen == null) return;
+      for (Map.Entry<Object, EntryVersion> e : versionsSeen.entrySet()) {
+         Object key = e.getKey();
+         if (!cdl.localNodeIsPrimaryOwner(key)) continue;
+         EntryVersion current = getCurrentVersion(key);
+         if (!lockManager.ownsLock(key, ctx.getLockOwner())) {
+            // re-read the version after checking the lock, in case another transaction wrote and released it meanwhile
+            if (lockManager.isLocked(key) || !EntryVersion.same(current, getCurrentVersion(key)))
+               throw newWriteSkewException(ctx, key);
+         }
+         if (!EntryVersion.same(e.getValue(), current)) throw newWriteSkewException(ctx, key);
+      }
+   }
+
+   private EntryVersion getCurrentVersion(Object key) {
+      InternalCacheEntry ice = dataContainer.peek(key);
+      return ice == null ? null : ice.getVersion();
+   }
+
+   private CacheException newWriteSkewException(TxInvocationContext ctx, Object key) {
+      log.tracef("Version of key %s changed since it was read by transaction %s", key, ctx.getGlobalTransaction());
+      return new CacheException("Detected write skew on key " + key + " for transaction " + ctx.getGlobalTransaction());
+   }
+
    private void acquireAllLocks(TxInvocationContext ctx, Iterator<Object> orderedKeys) throws InterruptedException {
       while (orderedKeys.hasNext()) {
          lockAndRegisterBackupLock(ctx, orderedKeys.next());
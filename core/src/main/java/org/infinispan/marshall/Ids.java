@@ -96,4 +96,10 @@ public interface Ids {
    int CACHE_RPC_COMMAND = 74;
 
    int CACHE_VIEW = 75;
+
+   int SEGMENTED_CONSISTENT_HASH = 76;
+
+   int ENTRY_VERSION = 77;
+
+   int VERSIONED_ENTRY = 78;
 }
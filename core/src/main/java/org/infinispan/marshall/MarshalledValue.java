@@ -38,6 +38,7 @@
 import java.io.ObjectOutput;
 import java.util.Arrays;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 /**
  * Wrapper that wraps cached data, providing lazy deserialization using the calling thread's context class loader.
@@ -72,6 +73,11 @@ public class MarshalledValue {
    private transient volatile boolean equalityPreferenceForInstance = true;
    // A marshaller is needed at construction time to handle equals/hashCode impls
    private final StreamingMarshaller marshaller;
+   // guards compact() so that concurrent compactions cannot drop both representations
+   private volatile int compacting = 0;
+
+   private static final AtomicIntegerFieldUpdater<MarshalledValue> COMPACTING_UPDATER =
+         AtomicIntegerFieldUpdater.newUpdater(MarshalledValue.class, "compacting");
 
    public MarshalledValue(Object instance, boolean equalityPreferenceForInstance, StreamingMarshaller marshaller) {
       if (instance == null) throw new NullPointerException("Null values cannot be wrapped as MarshalledValues!");
@@ -93,63 +99,72 @@ private void init(byte[] raw, int cachedHashCode) {
       this.cachedHashCode = cachedHashCode;
    }
 
-   public synchronized byte[] serialize() {
-      return serialize0();
-   }
-
    /**
-    * Should only be called from a synchronized method
+    * Returns the serialized form of the wrapped instance, marshalling it if necessary.  This method does not lock:
+    * concurrent callers may each marshall the instance, but the resulting byte arrays are equivalent and whichever is
+    * published last via the volatile field wins.
     */
-   private byte[] serialize0() {
+   public byte[] serialize() {
       byte[] rawValue = raw;
-      if (rawValue == null) {
-         try {
-            // Do NOT set instance to null over here, since it may be used elsewhere (e.g., in a cache listener).
-            // this will be compacted by the MarshalledValueInterceptor when the call returns.
-            ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(this.serialisedSize);
-            ObjectOutput out = marshaller.startObjectOutput(baos, true);
-            try {
-               marshaller.objectToObjectStream(instance, out);
-            } finally {
-               marshaller.finishObjectOutput(out);
-            }
-            final byte[] buf = baos.getRawBuffer();
-            final int length = baos.size();
-            if (buf.length == length) {
-               // in this case we can avoid duplicating the buffer
-               rawValue = buf;
-            }
-            else {
-               serialisedSize = length;
-               rawValue = new byte[length];
-               System.arraycopy(buf, 0, rawValue, 0, length);
-            }
+      while (rawValue == null) {
+         Object instanceValue = instance;
+         if (instanceValue != null) {
+            rawValue = marshall(instanceValue);
             raw = rawValue;
-         } catch (Exception e) {
-            throw new CacheException("Unable to marshall value " + instance, e);
+         } else {
+            // a concurrent compact() swapped representations between our two reads, so the raw form is there now
+            rawValue = raw;
          }
       }
       return rawValue;
    }
 
-   public synchronized Object deserialize() {
-      return deserialize0();
+   private byte[] marshall(Object instanceValue) {
+      try {
+         // Do NOT set instance to null over here, since it may be used elsewhere (e.g., in a cache listener).
+         // this will be compacted by the MarshalledValueInterceptor when the call returns.
+         ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(this.serialisedSize);
+         ObjectOutput out = marshaller.startObjectOutput(baos, true);
+         try {
+            marshaller.objectToObjectStream(instanceValue, out);
+         } finally {
+            marshaller.finishObjectOutput(out);
+         }
+         final byte[] buf = baos.getRawBuffer();
+         final int length = baos.size();
+         if (buf.length == length) {
+            // in this case we can avoid duplicating the buffer
+            return buf;
+         }
+         serialisedSize = length;
+         byte[] rawValue = new byte[length];
+         System.arraycopy(buf, 0, rawValue, 0, length);
+         return rawValue;
+      } catch (Exception e) {
+         throw new CacheException("Unable to marshall value " + instanceValue, e);
+      }
    }
 
    /**
-    * Should only be called from a synchronized method
+    * Returns the deserialized instance, unmarshalling it if necessary.  Like {@link #serialize()}, this method does not
+    * lock and tolerates several threads unmarshalling the same bytes concurrently.
     */
-   private Object deserialize0() {
+   public Object deserialize() {
       Object instanceValue = instance;
-      if (instanceValue == null) {
-         try {
-            // StreamingMarshaller underneath deals with making sure the right classloader is set.
-            instanceValue = marshaller.objectFromByteBuffer(raw);
+      while (instanceValue == null) {
+         byte[] rawValue = raw;
+         if (rawValue != null) {
+            try {
+               // StreamingMarshaller underneath deals with making sure the right classloader is set.
+               instanceValue = marshaller.objectFromByteBuffer(rawValue);
+            }
+            catch (Exception e) {
+               throw new CacheException("Unable to unmarshall value", e);
+            }
             instance = instanceValue;
-            return instanceValue;
-         }
-         catch (Exception e) {
-            throw new CacheException("Unable to unmarshall value", e);
+         } else {
+            // a concurrent compact() swapped representations between our two reads, so the instance is there now
+            instanceValue = instance;
          }
       }
       return instanceValue;
@@ -160,7 +175,8 @@ private Object deserialize0() {
     * is a no-op unless the 'force' parameter is used, in which case the reference held is forcefully switched to the
     * 'preferred representation'.
     * <p/>
-    * Either way, a call to compact() will ensure that only one representation is held.
+    * Either way, a call to compact() will ensure that only one representation is held, unless another thread is
+    * compacting this instance at the same time, in which case this call leaves the choice to that thread.
     * <p/>
     *
     * @param preferSerializedRepresentation if true and both representations exist, the serialized representation is
@@ -168,35 +184,31 @@ private Object deserialize0() {
     * @param force                          ensures the preferred representation is maintained and the other released,
     *                                       even if this means serializing or deserializing.
     */
-   public synchronized void compact(boolean preferSerializedRepresentation, boolean force) {
+   public void compact(boolean preferSerializedRepresentation, boolean force) {
       // reset the equalityPreference
       equalityPreferenceForInstance = true;
-      Object thisInstance = this.instance;
-      byte[] thisRaw = this.raw;
       if (force) {
-         if (preferSerializedRepresentation && thisRaw == null) {
-            // Accessing a synchronized method from an already synchronized
-            // method is expensive, so delegate to a private not synched method.
-            thisRaw = serialize0();
-         }
-         else if (!preferSerializedRepresentation && thisInstance == null){
-            // Accessing a synchronized method from an already synchronized
-            // method is expensive, so delegate to a private not synched method.
-            thisInstance = deserialize0();
-         }
+         if (preferSerializedRepresentation)
+            serialize();
+         else
+            deserialize();
       }
 
-      if (thisInstance != null && thisRaw != null) {
-         // need to loose one representation!
-         if (preferSerializedRepresentation) {
-            //in both branches we first set one then null the other, so that there's always one available
-            //to read from those methods not being synchronized
-            raw = thisRaw;
-            instance = null;
-         } else {
-            instance = thisInstance;
-            raw = null;
+      // Only compact() ever nulls out a representation, and it always checks that the other one is present first.
+      // Allowing a single compacting thread at a time therefore guarantees at least one representation survives.
+      if (!COMPACTING_UPDATER.compareAndSet(this, 0, 1)) return;
+      try {
+         Object thisInstance = this.instance;
+         byte[] thisRaw = this.raw;
+         if (thisInstance != null && thisRaw != null) {
+            // need to loose one representation!
+            if (preferSerializedRepresentation)
+               instance = null;
+            else
+               raw = null;
          }
+      } finally {
+         compacting = 0;
       }
    }
 
@@ -26,6 +26,7 @@
 import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.read.MapReduceCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
 import org.infinispan.commands.remote.ClusteredGetCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
 import org.infinispan.commands.remote.SingleRpcCommand;
@@ -76,7 +77,7 @@ public void inject(RemoteCommandsFactory cmdFactory, GlobalComponentRegistry gcr
    public Set<Class<? extends CacheRpcCommand>> getTypeClasses() {
       Set<Class<? extends CacheRpcCommand>> coreCommands = Util.asSet(
             MapReduceCommand.class, LockControlCommand.class,
-            StateTransferControlCommand.class, ClusteredGetCommand.class,
+            StateTransferControlCommand.class, ClusteredGetCommand.class, ClusteredGetAllCommand.class,
             MultipleRpcCommand.class, SingleRpcCommand.class, CommitCommand.class,
             PrepareCommand.class, RollbackCommand.class, RemoveCacheCommand.class,
             TxCompletionNotificationCommand.class, GetInDoubtTransactionsCommand.class,
@@ -160,6 +161,11 @@ public CacheRpcCommand readObject(ObjectInput input) throws IOException, ClassNo
          ((ExtendedRiverUnmarshaller) paramsInput).setInfinispanMarshaller(marshaller);
 
       try {
+         if (type == 0) {
+            CacheRpcCommand command = commandExt.cmdFactory.createCoreCacheRpcCommand(methodId, cacheName);
+            commandExt.readCommandParameters(paramsInput, command, methodId);
+            return command;
+         }
          Object[] args = commandExt.readParameters(paramsInput);
          return commandExt.cmdFactory.fromStream(methodId, args, type, cacheName);
       } catch (IOException e) {
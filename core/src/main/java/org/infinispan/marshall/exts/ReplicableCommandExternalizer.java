@@ -25,6 +25,7 @@
 import org.infinispan.atomic.DeltaAware;
 import org.infinispan.commands.RemoteCommandsFactory;
 import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.StreamingCommand;
 import org.infinispan.commands.read.DistributedExecuteCommand;
 import org.infinispan.commands.read.GetKeyValueCommand;
 import org.infinispan.commands.write.ApplyDeltaCommand;
@@ -70,6 +71,12 @@ public void writeObject(ObjectOutput output, ReplicableCommand command) throws I
    }
 
    protected void writeCommandParameters(ObjectOutput output, ReplicableCommand command) throws IOException {
+      if (command instanceof StreamingCommand) {
+         // No need to box the parameters into an array, the command knows how to write itself
+         ((StreamingCommand) command).writeTo(output);
+         return;
+      }
+
       Object[] args = command.getParameters();
       int numArgs = (args == null ? 0 : args.length);
 
@@ -103,10 +110,22 @@ protected void writeCommandHeader(ObjectOutput output, ReplicableCommand command
    public ReplicableCommand readObject(ObjectInput input) throws IOException, ClassNotFoundException {
       byte type = input.readByte();
       short methodId = input.readShort();
+      if (type == 0) {
+         ReplicableCommand command = cmdFactory.createCoreCommand((byte) methodId);
+         readCommandParameters(input, command, (byte) methodId);
+         return command;
+      }
       Object[] args = readParameters(input);
       return cmdFactory.fromStream((byte) methodId, args, type);
    }
 
+   protected void readCommandParameters(ObjectInput input, ReplicableCommand command, byte methodId) throws IOException, ClassNotFoundException {
+      if (command instanceof StreamingCommand)
+         ((StreamingCommand) command).readFrom(input);
+      else
+         command.setParameters(methodId, readParameters(input));
+   }
+
    protected Object[] readParameters(ObjectInput input) throws IOException, ClassNotFoundException {
       int numArgs = UnsignedNumeric.readUnsignedInt(input);
       Object[] args = null;
@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall.jboss;
+
+import org.infinispan.io.UnsignedNumeric;
+import org.jboss.marshalling.ClassTable;
+import org.jboss.marshalling.Marshaller;
+import org.jboss.marshalling.Unmarshaller;
+
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ClassTable} backed by the class dictionary configured via
+ * {@link org.infinispan.config.GlobalConfiguration#setClassDictionary(String)}. Classes present in the dictionary are
+ * written as a compact, variable length identifier (their position in the dictionary) rather than as a full class
+ * descriptor, which for typical user key and value types saves the class name and field metadata on every payload.
+ * <p />
+ * Since identifiers are derived from the configured order, all nodes in the cluster must share the same dictionary,
+ * in the same way they must share the same user {@link org.infinispan.marshall.AdvancedExternalizer} identifiers.
+ * Classes are resolved by name on reading, using the same class loader the marshaller would otherwise use, so that
+ * classloaders injected via {@link org.infinispan.AdvancedCache#with(ClassLoader)} are honoured.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+public class ClassDictionary implements ClassTable {
+
+   private final ExternalizerTable externalizerTable;
+   private final DefaultContextClassResolver classResolver;
+   private volatile Index index = new Index(Collections.<String>emptyList());
+
+   public ClassDictionary(ExternalizerTable externalizerTable, DefaultContextClassResolver classResolver) {
+      this.externalizerTable = externalizerTable;
+      this.classResolver = classResolver;
+   }
+
+   @Override
+   public Writer getClassWriter(Class<?> clazz) throws IOException {
+      return index().writers.get(clazz.getName());
+   }
+
+   @Override
+   public Class<?> readClass(Unmarshaller unmarshaller) throws IOException, ClassNotFoundException {
+      int id = UnsignedNumeric.readUnsignedInt(unmarshaller);
+      List<String> classNames = index().classNames;
+      if (id >= classNames.size())
+         throw new InvalidClassException(String.format(
+               "Class dictionary id %d is unknown, make sure all nodes are configured with the same class dictionary", id));
+
+      return Class.forName(classNames.get(id), false, classResolver.getClassLoader());
+   }
+
+   private Index index() {
+      Index current = index;
+      List<String> classNames = externalizerTable.getClassDictionary();
+      if (current.classNames != classNames) {
+         // The externalizer table was (re)started since the last lookup, so rebuild the index
+         current = new Index(classNames);
+         index = current;
+      }
+      return current;
+   }
+
+   private static class Index {
+      final List<String> classNames;
+      final Map<String, Writer> writers;
+
+      Index(List<String> classNames) {
+         this.classNames = classNames;
+         this.writers = new HashMap<String, Writer>(classNames.size() * 2);
+         for (int i = 0; i < classNames.size(); i++)
+            writers.put(classNames.get(i), new IdWriter(i));
+      }
+   }
+
+   private static class IdWriter implements Writer {
+      private final int id;
+
+      IdWriter(int id) {
+         this.id = id;
+      }
+
+      @Override
+      public void writeClass(Marshaller marshaller, Class<?> clazz) throws IOException {
+         UnsignedNumeric.writeUnsignedInt(marshaller, id);
+      }
+   }
+}
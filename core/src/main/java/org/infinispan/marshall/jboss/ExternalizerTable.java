@@ -37,8 +37,11 @@
 import org.infinispan.config.AdvancedExternalizerConfig;
 import org.infinispan.config.ConfigurationException;
 import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.container.entries.EntryVersion;
 import org.infinispan.container.entries.ImmortalCacheEntry;
 import org.infinispan.container.entries.ImmortalCacheValue;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.container.entries.MortalCacheEntry;
 import org.infinispan.container.entries.MortalCacheValue;
 import org.infinispan.container.entries.TransientCacheEntry;
@@ -47,6 +50,7 @@
 import org.infinispan.container.entries.TransientMortalCacheValue;
 import org.infinispan.distribution.RemoteTransactionLogDetails;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.distribution.ch.TopologyAwareConsistentHash;
 import org.infinispan.distribution.ch.UnionConsistentHash;
 import org.infinispan.factories.GlobalComponentRegistry;
@@ -92,6 +96,7 @@
 import org.jboss.marshalling.Unmarshaller;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -133,6 +138,11 @@ public class ExternalizerTable implements ObjectTable {
 
    private volatile boolean started;
 
+   /**
+    * Class names registered in the class dictionary, indexed by their dictionary id.
+    */
+   private volatile List<String> classDictionary = Collections.emptyList();
+
    private RemoteCommandsFactory cmdFactory;
    private GlobalComponentRegistry gcr;
 
@@ -181,6 +191,7 @@ private void initInternalExternalizers() {
       internalExternalizers.add(new UnionConsistentHash.Externalizer());
       internalExternalizers.add(new JGroupsTopologyAwareAddress.Externalizer());
       internalExternalizers.add(new TopologyAwareConsistentHash.Externalizer());
+      internalExternalizers.add(new SegmentedConsistentHash.Externalizer());
       internalExternalizers.add(new ByteArrayKey.Externalizer());
 
       internalExternalizers.add(new RemoteTransactionLogDetails.Externalizer());
@@ -192,6 +203,8 @@ private void initInternalExternalizers() {
       internalExternalizers.add(new MurmurHash3.Externalizer());
 
       internalExternalizers.add(new CacheView.Externalizer());
+
+      internalExternalizers.add(new EntryVersion.Externalizer());
    }
 
    void addInternalExternalizer(AdvancedExternalizer ext) {
@@ -209,6 +222,7 @@ public void start() {
       initInternalExternalizers();
       loadInternalMarshallables(cmdFactory, gcr);
       loadForeignMarshallables(gcr.getGlobalConfiguration());
+      classDictionary = Collections.unmodifiableList(gcr.getGlobalConfiguration().getClassDictionary());
       started = true;
       if (log.isTraceEnabled()) {
          log.tracef("Constant object table was started and contains these externalizer readers: %s", readers);
@@ -221,6 +235,7 @@ public void stop() {
       internalExternalizers.clear();
       writers.clear();
       readers.clear();
+      classDictionary = Collections.emptyList();
       started = false;
       if (log.isTraceEnabled())
          log.trace("Externalizer reader and writer maps have been cleared and constant object table was stopped");
@@ -234,6 +249,8 @@ public Writer getObjectWriter(Object o) throws IOException {
             throw new IOException(new InterruptedException(String.format(
                   "Cache manager is shutting down, so type write externalizer for type=%s cannot be resolved. Interruption being pushed up.",
                   clazz.getName())));
+      } else if (versionOf(o) != null) {
+         return new VersionedEntryWriter((ExternalizerAdapter) writer);
       }
       return writer;
    }
@@ -242,6 +259,8 @@ public Object readObject(Unmarshaller input) throws IOException, ClassNotFoundEx
       int readerIndex = input.readUnsignedByte();
       if (readerIndex == Ids.MAX_ID) // User defined externalizer
          readerIndex = generateForeignReaderIndex(UnsignedNumeric.readUnsignedInt(input));
+      else if (readerIndex == Ids.VERSIONED_ENTRY)
+         return readVersionedEntry(input);
 
       ExternalizerAdapter adapter = readers.get(readerIndex);
       if (adapter == null) {
@@ -272,6 +291,33 @@ public Object readObject(Unmarshaller input) throws IOException, ClassNotFoundEx
       return adapter.readObject(input);
    }
 
+   /**
+    * Entries and values only carry a version in caches that use versioning. Versioned ones are written under their
+    * own id, followed by the version and by the entry in its usual format, so entries without a version keep the
+    * format they had before versioning was introduced.
+    */
+   private static EntryVersion versionOf(Object o) {
+      if (o instanceof InternalCacheEntry)
+         return ((InternalCacheEntry) o).getVersion();
+      else if (o instanceof InternalCacheValue)
+         return ((InternalCacheValue) o).getVersion();
+      return null;
+   }
+
+   private Object readVersionedEntry(Unmarshaller input) throws IOException, ClassNotFoundException {
+      EntryVersion version = (EntryVersion) input.readObject();
+      Object entry = readObject(input);
+      if (entry instanceof InternalCacheEntry)
+         ((InternalCacheEntry) entry).setVersion(version);
+      else
+         ((ImmortalCacheValue) entry).setVersion(version);
+      return entry;
+   }
+
+   List<String> getClassDictionary() {
+      return classDictionary;
+   }
+
    boolean isMarshallableCandidate(Object o) {
       return writers.containsKey(o.getClass());
    }
@@ -417,6 +463,20 @@ public int hashCode() {
       }
    }
 
+   static class VersionedEntryWriter implements Writer {
+      final ExternalizerAdapter entryWriter;
+
+      VersionedEntryWriter(ExternalizerAdapter entryWriter) {
+         this.entryWriter = entryWriter;
+      }
+
+      public void writeObject(Marshaller output, Object object) throws IOException {
+         output.write(Ids.VERSIONED_ENTRY);
+         output.writeObject(versionOf(object));
+         entryWriter.writeObject(output, object);
+      }
+   }
+
    static class ForeignExternalizerAdapter extends ExternalizerAdapter {
       final int foreignId;
 
@@ -57,7 +57,10 @@ public void inject(ExternalizerTable externalizerTable, ClassLoader cl, Invocati
       baseCfg.setObjectTable(externalizerTable);
       // Override the class resolver with one that can detect injected
       // classloaders via AdvancedCache.with(ClassLoader) calls.
-      baseCfg.setClassResolver(new EmbeddedContextClassResolver(cl));
+      EmbeddedContextClassResolver classResolver = new EmbeddedContextClassResolver(cl);
+      baseCfg.setClassResolver(classResolver);
+      // Replace descriptors of classes in the configured class dictionary with compact ids
+      baseCfg.setClassTable(new ClassDictionary(externalizerTable, classResolver));
    }
 
    @Override
@@ -74,6 +77,7 @@ public void stop() {
       super.stop();
       // Just in case, to avoid leaking class resolver which references classloader
       baseCfg.setClassResolver(null);
+      baseCfg.setClassTable(null);
    }
 
    @Override
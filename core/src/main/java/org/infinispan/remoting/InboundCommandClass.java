@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting;
+
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.control.LockControlCommand;
+import org.infinispan.commands.control.StateTransferControlCommand;
+import org.infinispan.commands.read.DistributedExecuteCommand;
+import org.infinispan.commands.read.MapReduceCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.remote.MultipleRpcCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.remote.recovery.RecoveryCommand;
+import org.infinispan.commands.tx.TransactionBoundaryCommand;
+import org.infinispan.commands.write.WriteCommand;
+
+/**
+ * The classes of commands received from other nodes. Each class is handled by its own executor, so that a flood of
+ * commands of one class (e.g. state transfer or map/reduce) cannot starve latency sensitive ones such as remote gets
+ * and commits.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ * @see InboundInvocationHandlerImpl
+ */
+public enum InboundCommandClass {
+   READ("read", Thread.NORM_PRIORITY + 1),
+   WRITE("write", Thread.NORM_PRIORITY),
+   TX_CONTROL("txControl", Thread.NORM_PRIORITY + 1),
+   STATE_TRANSFER("stateTransfer", Thread.NORM_PRIORITY - 1),
+   DISTEXEC("distExec", Thread.MIN_PRIORITY),
+   QUERY("query", Thread.NORM_PRIORITY - 1);
+
+   // the query commands live in the query module, which core cannot depend on
+   private static final String QUERY_COMMAND_PACKAGE = "org.infinispan.query.";
+
+   private final String propertyPrefix;
+   private final int defaultThreadPriority;
+
+   InboundCommandClass(String propertyPrefix, int defaultThreadPriority) {
+      this.propertyPrefix = propertyPrefix;
+      this.defaultThreadPriority = defaultThreadPriority;
+   }
+
+   /**
+    * @return the prefix used to override the remote commands executor properties for this class, e.g. "read" for
+    *         "read.maxThreads"
+    */
+   public String getPropertyPrefix() {
+      return propertyPrefix;
+   }
+
+   public int getDefaultThreadPriority() {
+      return defaultThreadPriority;
+   }
+
+   /**
+    * Classifies a command received from another node.
+    *
+    * @return the class of the command, or null if it should always be handled on the thread that delivered it
+    */
+   public static InboundCommandClass classify(CacheRpcCommand command) {
+      if (command instanceof ClusteredGetCommand || command instanceof ClusteredGetAllCommand)
+         return READ;
+      if (command instanceof TransactionBoundaryCommand || command instanceof LockControlCommand
+            || command instanceof RecoveryCommand)
+         return TX_CONTROL;
+      if (command instanceof StateTransferControlCommand)
+         return STATE_TRANSFER;
+      if (command instanceof MapReduceCommand)
+         return DISTEXEC;
+      if (command instanceof MultipleRpcCommand)
+         return WRITE;
+      if (command instanceof SingleRpcCommand) {
+         ReplicableCommand wrapped = ((SingleRpcCommand) command).getCommand();
+         if (wrapped instanceof DistributedExecuteCommand) return DISTEXEC;
+         return wrapped instanceof WriteCommand ? WRITE : READ;
+      }
+      if (command.getClass().getName().startsWith(QUERY_COMMAND_PACKAGE))
+         return QUERY;
+      return null;
+   }
+}
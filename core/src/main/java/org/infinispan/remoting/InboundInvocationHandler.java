@@ -46,8 +46,12 @@ public interface InboundInvocationHandler {
     * Invokes a command on the cache, from a remote source.
     *
     * @param command command to invoke
+    * @param origin the node that sent the command
+    * @param responseExpected true if the sender waits for the response
+    * @param outOfBand true if the command was delivered out of band. If nobody waits for the response either, the
+    *                  command may still be running when this method returns
     * @return results, if any, from the invocation
     * @throws Throwable in the event of problems executing the command
     */
-   Response handle(CacheRpcCommand command, Address origin) throws Throwable;
+   Response handle(CacheRpcCommand command, Address origin, boolean responseExpected, boolean outOfBand) throws Throwable;
 }
@@ -22,13 +22,20 @@
  */
 package org.infinispan.remoting;
 
+import org.infinispan.CacheException;
 import org.infinispan.cacheviews.CacheViewsManager;
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.control.CacheViewControlCommand;
+import org.infinispan.commands.control.LockControlCommand;
 import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.recovery.CompleteTransactionCommand;
+import org.infinispan.commands.remote.recovery.TxCompletionNotificationCommand;
+import org.infinispan.commands.tx.CommitCommand;
+import org.infinispan.commands.tx.RollbackCommand;
 import org.infinispan.config.Configuration;
 import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.executors.ExecutorFactory;
 import org.infinispan.factories.ComponentRegistry;
 import org.infinispan.factories.GlobalComponentRegistry;
 import org.infinispan.factories.annotations.ComponentName;
@@ -37,6 +44,8 @@
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.manager.CacheContainer;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.manager.NamedCacheNotFoundException;
@@ -48,18 +57,51 @@
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
 import org.infinispan.statetransfer.StateTransferManager;
+import org.infinispan.util.TypedProperties;
+import org.infinispan.util.Util;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+import org.rhq.helpers.pluginAnnotations.agent.Parameter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.factories.KnownComponentNames.GLOBAL_MARSHALLER;
 
 /**
  * Sets the cache interceptor chain on an RPCCommand before calling it to perform
+ * <p />
+ * Commands are classified with {@link InboundCommandClass#classify(CacheRpcCommand)}. If the remote commands executor
+ * is configured with a positive <tt>maxThreads</tt> for a class, commands of that class are performed on a dedicated
+ * executor built from the remote commands executor factory, with properties prefixed by the class name (e.g.
+ * <tt>read.maxThreads</tt> or <tt>stateTransfer.queueSize</tt>) taking precedence over the unprefixed ones.
+ * <p />
+ * The JGroups request handler has to return the response of a command, so the delivering thread waits for the result
+ * of the commands whose sender waits for a response, or which were delivered in order with the other commands of
+ * their sender. Out of band commands nobody waits for are queued and the delivering thread returns at once.
+ * <p />
+ * The <tt>maxThreads</tt> and <tt>queueSize</tt> of a class bound the commands it can have pending. Once they are all
+ * taken, out of band requests whose sender waits for the response are answered straight away with an
+ * {@link ExceptionResponse}, which fails the sender's operation. All the other commands are never refused, as losing
+ * them would break the transaction or the replication stream they belong to: commits, rollbacks and unlocks, whose
+ * prepare has already succeeded, commands delivered in order and asynchronous commands nobody would hear about. Their
+ * delivering thread waits until the executor has room for them instead, which slows their sender down.
  *
  * @author Manik Surtani
  * @since 4.0
  */
 @Scope(Scopes.GLOBAL)
+@MBean(objectName = "InboundInvocationHandler", description = "Handles commands received from other nodes in the cluster")
 public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
    GlobalComponentRegistry gcr;
    private static final Log log = LogFactory.getLog(InboundInvocationHandlerImpl.class);
@@ -75,6 +117,9 @@ public class InboundInvocationHandlerImpl implements InboundInvocationHandler {
 
    private volatile boolean stopping;
 
+   private static final int DEFAULT_QUEUE_SIZE = 1000;
+   private final Map<InboundCommandClass, CommandClassExecutor> executors = new EnumMap<InboundCommandClass, CommandClassExecutor>(InboundCommandClass.class);
+
    /**
     * How to handle an invocation based on the join status of a given cache *
     */
@@ -98,11 +143,56 @@ public void inject(GlobalComponentRegistry gcr,
    @Start
    public void start() {
       stopping = false;
+      Properties properties = globalConfiguration.getRemoteCommandsExecutorProperties();
+      for (InboundCommandClass commandClass : InboundCommandClass.values()) {
+         Properties classProperties = getExecutorProperties(commandClass, properties);
+         TypedProperties typedProperties = TypedProperties.toTypedProperties(classProperties);
+         int maxThreads = typedProperties.getIntProperty("maxThreads", 0);
+         if (maxThreads <= 0) continue;
+         ExecutorFactory factory = (ExecutorFactory) Util.getInstance(globalConfiguration.getRemoteCommandsExecutorFactoryClass(),
+                                                                      globalConfiguration.getClassLoader());
+         int capacity = maxThreads + typedProperties.getIntProperty("queueSize", DEFAULT_QUEUE_SIZE);
+         executors.put(commandClass, new CommandClassExecutor(commandClass, factory.getExecutor(classProperties), capacity));
+      }
+      if (!executors.isEmpty()) log.debugf("Handling remote commands of classes %s on dedicated executors", executors.keySet());
    }
 
    @Stop
    public void stop() {
       stopping = true;
+      for (CommandClassExecutor executor : executors.values()) {
+         // release the delivering threads still waiting for commands that never got to run
+         for (Runnable pending : executor.executor.shutdownNow()) {
+            if (pending instanceof Future) ((Future<?>) pending).cancel(true);
+         }
+         // and the ones waiting for room in the executor, the executor will refuse their commands
+         executor.permits.release(Integer.MAX_VALUE / 2);
+      }
+      executors.clear();
+   }
+
+   static Properties getExecutorProperties(InboundCommandClass commandClass, Properties properties) {
+      Properties classProperties = new Properties();
+      classProperties.setProperty("queueSize", String.valueOf(DEFAULT_QUEUE_SIZE));
+      classProperties.setProperty("threadPriority", String.valueOf(commandClass.getDefaultThreadPriority()));
+      classProperties.setProperty("threadNamePrefix", "RemoteCommands-" + commandClass.getPropertyPrefix());
+      if (properties != null) {
+         String prefix = commandClass.getPropertyPrefix() + ".";
+         for (String name : properties.stringPropertyNames()) {
+            if (!isClassPrefixed(name)) classProperties.setProperty(name, properties.getProperty(name));
+         }
+         for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(prefix)) classProperties.setProperty(name.substring(prefix.length()), properties.getProperty(name));
+         }
+      }
+      return classProperties;
+   }
+
+   private static boolean isClassPrefixed(String propertyName) {
+      for (InboundCommandClass commandClass : InboundCommandClass.values()) {
+         if (propertyName.startsWith(commandClass.getPropertyPrefix() + ".")) return true;
+      }
+      return false;
    }
 
    private boolean isDefined(String cacheName) {
@@ -126,7 +216,7 @@ public boolean hasJoinStarted(ComponentRegistry componentRegistry) throws Interr
    }
 
    @Override
-   public Response handle(final CacheRpcCommand cmd, Address origin) throws Throwable {
+   public Response handle(final CacheRpcCommand cmd, Address origin, boolean responseExpected, boolean outOfBand) throws Throwable {
       cmd.setOrigin(origin);
 
       // TODO Support global commands separately
@@ -153,7 +243,19 @@ public Response handle(final CacheRpcCommand cmd, Address origin) throws Throwab
       final Configuration localConfig = cr.getComponent(Configuration.class);
       cmd.injectComponents(localConfig, cr);
 
-      return handleWithRetry(cmd);
+      CommandClassExecutor executor = executors.isEmpty() ? null : executors.get(InboundCommandClass.classify(cmd));
+      if (executor == null) return handleWithRetry(cmd);
+      return executor.execute(cmd, responseExpected, outOfBand);
+   }
+
+   /**
+    * @return true if the command ends a transaction whose prepare or lock has already succeeded, so refusing it would
+    *         leave the transaction half done
+    */
+   private static boolean completesTransaction(CacheRpcCommand cmd) {
+      return cmd instanceof CommitCommand || cmd instanceof RollbackCommand
+            || cmd instanceof TxCompletionNotificationCommand || cmd instanceof CompleteTransactionCommand
+            || (cmd instanceof LockControlCommand && ((LockControlCommand) cmd).isUnlock());
    }
 
 
@@ -207,4 +309,111 @@ private Response handleWithRetry(final CacheRpcCommand cmd) throws Throwable {
       }
       return handleWithWaitForBlocks(cmd);
    }
+
+   long getQueueDepth(InboundCommandClass commandClass) {
+      CommandClassExecutor executor = executors.get(commandClass);
+      return executor == null ? 0 : executor.queued.get();
+   }
+
+   long getRejectedCommands(InboundCommandClass commandClass) {
+      CommandClassExecutor executor = executors.get(commandClass);
+      return executor == null ? 0 : executor.rejected.get();
+   }
+
+   private double getAverageWaitTime(CommandClassExecutor executor) {
+      long executed = executor.executed.get();
+      return executed == 0 ? 0 : (double) executor.waitNanos.get() / executed / 1000000;
+   }
+
+   @ManagedOperation(description = "Shows the queue depth, the average time in milliseconds commands waited for a thread and the number of rejected commands of the executor of a class of remote commands")
+   @Operation(displayName = "Show statistics of a remote commands executor")
+   public String showExecutorStatistics(@Parameter(name = "commandClass", description = "Class of remote commands: read, write, txControl, stateTransfer, distExec or query") String commandClass) {
+      for (InboundCommandClass c : InboundCommandClass.values()) {
+         if (!c.getPropertyPrefix().equals(commandClass)) continue;
+         CommandClassExecutor executor = executors.get(c);
+         if (executor == null) return "Remote " + commandClass + " commands are handled on the delivering thread";
+         return String.format("queueDepth=%d, averageWaitTime=%.3f, rejected=%d", executor.queued.get(),
+                              getAverageWaitTime(executor), executor.rejected.get());
+      }
+      return "Unknown class of remote commands " + commandClass;
+   }
+
+   /**
+    * The executor of a class of inbound commands, along with its queue depth and wait time counters.
+    */
+   private class CommandClassExecutor {
+      final InboundCommandClass commandClass;
+      final ExecutorService executor;
+      final AtomicInteger queued = new AtomicInteger();
+      final AtomicLong executed = new AtomicLong();
+      final AtomicLong waitNanos = new AtomicLong();
+      final AtomicLong rejected = new AtomicLong();
+      // one per command running or queued, so the executor itself never has to refuse a command
+      final Semaphore permits;
+
+      CommandClassExecutor(InboundCommandClass commandClass, ExecutorService executor, int capacity) {
+         this.commandClass = commandClass;
+         this.executor = executor;
+         this.permits = new Semaphore(capacity);
+      }
+
+      Response execute(final CacheRpcCommand cmd, boolean responseExpected, boolean outOfBand) throws Throwable {
+         // in order commands must be done before the next command of their sender is delivered
+         final boolean waitForResult = responseExpected || !outOfBand;
+         if (!permits.tryAcquire()) {
+            if (responseExpected && outOfBand && !completesTransaction(cmd)) {
+               // the sender gets the exception, failing its operation
+               rejected.incrementAndGet();
+               if (trace) log.tracef("Executor full, rejecting %s", cmd);
+               return new ExceptionResponse(new CacheException("Too many remote " + commandClass.getPropertyPrefix()
+                     + " commands pending on node " + transport.getAddress()));
+            }
+            // the command can't be lost, hold the delivering thread to slow its sender down
+            if (trace) log.tracef("Executor full, waiting for room to queue %s", cmd);
+            permits.acquire();
+         }
+
+         final long submitted = System.nanoTime();
+         queued.incrementAndGet();
+         Future<Response> future;
+         try {
+            future = executor.submit(new Callable<Response>() {
+               @Override
+               public Response call() throws Exception {
+                  queued.decrementAndGet();
+                  waitNanos.addAndGet(System.nanoTime() - submitted);
+                  executed.incrementAndGet();
+                  try {
+                     return handleWithRetry(cmd);
+                  } catch (Throwable t) {
+                     if (!waitForResult) {
+                        log.warnf(t, "Problems invoking command %s", cmd);
+                        return null;
+                     }
+                     if (t instanceof Exception) throw (Exception) t;
+                     throw new ExecutionException(t);
+                  } finally {
+                     permits.release();
+                  }
+               }
+            });
+         } catch (RejectedExecutionException e) {
+            // the permits keep the executor from filling up, so it only refuses commands once it has been shut down
+            queued.decrementAndGet();
+            permits.release();
+            throw new CacheException("The remote " + commandClass.getPropertyPrefix() + " commands executor of node "
+                  + transport.getAddress() + " refused " + cmd, e);
+         }
+         if (!waitForResult) return null;
+         try {
+            return future.get();
+         } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof ExecutionException && cause.getCause() != null ? cause.getCause() : cause;
+         } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+         }
+      }
+   }
 }
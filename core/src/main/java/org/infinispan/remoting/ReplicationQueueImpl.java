@@ -25,27 +25,52 @@
 import org.infinispan.commands.CommandsFactory;
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.remote.MultipleRpcCommand;
+import org.infinispan.commands.write.ClearCommand;
+import org.infinispan.commands.write.DataWriteCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.PutMapCommand;
+import org.infinispan.commands.write.RemoveCommand;
+import org.infinispan.commands.write.ReplaceCommand;
 import org.infinispan.config.Configuration;
+import org.infinispan.context.Flag;
 import org.infinispan.factories.KnownComponentNames;
 import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
+import org.infinispan.marshall.MarshalledValue;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A default implementation of the ReplicationQueue interface.
+ * <p />
+ * When {@link Configuration#isReplQueueCoalescing()} is enabled, an unconditional put or remove of a key replaces the
+ * previous unconditional put or remove of the same key still sitting in the queue, provided both were issued with
+ * the same flags. Conditional writes and any other command act as barriers: writes queued before them are never
+ * coalesced with writes queued after them, so the order in which remote nodes apply dependent modifications is
+ * preserved. A clear drops the key-level writes that precede it, since it would wipe them out anyway.
+ * <p />
+ * When {@link Configuration#getReplQueueMaxBytes()} is positive, the queue is also flushed once the estimated size of
+ * the queued commands reaches that many bytes. The estimate only looks at byte arrays, strings and marshalled values
+ * and charges a fixed cost for anything else. It is computed once when a command is queued and kept with it, so
+ * coalescing and flushing don't need to estimate the command again.
  *
  * @author Manik Surtani
  * @version 4.2
@@ -61,7 +86,27 @@ public class ReplicationQueueImpl implements ReplicationQueue {
    /**
     * Holds the replication jobs.
     */
-   private final BlockingQueue<ReplicableCommand> elements = new LinkedBlockingQueue<ReplicableCommand>();
+   private final BlockingQueue<QueuedCommand> elements = new LinkedBlockingQueue<QueuedCommand>();
+
+   /**
+    * Holds the replication jobs in coalescing mode. Coalesced jobs are nulled out rather than removed, so that the
+    * positions held in {@link #latestWrites} stay valid. Both are guarded by {@link #coalescingLock}.
+    */
+   private final List<QueuedCommand> coalescedElements = new ArrayList<QueuedCommand>();
+   private final Map<Object, Integer> latestWrites = new HashMap<Object, Integer>();
+   private final Object coalescingLock = new Object();
+   private int coalescedElementsCount;
+
+   /**
+    * Estimated number of bytes currently queued, only maintained if a byte threshold is configured.
+    */
+   private final AtomicLong queuedBytes = new AtomicLong();
+
+   private static final int COMMAND_OVERHEAD = 16;
+   private static final int DEFAULT_OBJECT_SIZE = 64;
+
+   private boolean coalescing;
+   private long maxBytes;
 
    /**
     * For periodical replication
@@ -102,6 +147,8 @@ public void start() {
          log.tracef("Starting replication queue, with interval %d and maxElements %s", interval, maxElements);
 
       this.maxElements = configuration.getReplQueueMaxElements();
+      this.coalescing = configuration.isReplQueueCoalescing();
+      this.maxBytes = configuration.getReplQueueMaxBytes();
       // check again
       enabled = configuration.isUseReplQueue();
       if (enabled && interval > 0) {
@@ -138,13 +185,126 @@ public void add(ReplicableCommand job) {
       if (job == null)
          throw new NullPointerException("job is null");
       try {
-         elements.put(job);
-         if (elements.size() >= maxElements) flush();
+         QueuedCommand queued = new QueuedCommand(job, maxBytes > 0 ? estimateSize(job) : 0);
+         int size;
+         long dropped = 0;
+         if (coalescing) {
+            synchronized (coalescingLock) {
+               dropped = coalesce(queued);
+               size = coalescedElementsCount;
+            }
+         } else {
+            elements.put(queued);
+            size = elements.size();
+         }
+         boolean exceedsBytes = false;
+         if (maxBytes > 0)
+            exceedsBytes = queuedBytes.addAndGet(queued.size - dropped) >= maxBytes;
+         if (size >= maxElements || exceedsBytes) flush();
       } catch (InterruptedException ie) {
          Thread.interrupted();
       }
    }
 
+   /**
+    * Appends the job to the coalesced elements, dropping any earlier job that it makes redundant.
+    *
+    * @return the estimated size of the dropped jobs, if a byte threshold is configured
+    */
+   private long coalesce(QueuedCommand queued) {
+      ReplicableCommand job = queued.command;
+      long dropped = 0;
+      if (job instanceof ClearCommand) {
+         Set<Flag> flags = ((ClearCommand) job).getFlags();
+         for (Integer position : latestWrites.values()) {
+            if (sameFlags(flags, ((DataWriteCommand) coalescedElements.get(position).command).getFlags()))
+               dropped += drop(position);
+         }
+         latestWrites.clear();
+      } else if (job instanceof PutKeyValueCommand || job instanceof RemoveCommand) {
+         DataWriteCommand write = (DataWriteCommand) job;
+         Object key = write.getKey();
+         Integer previous = latestWrites.remove(key);
+         // a conditional write depends on what is queued before it, so it never supersedes anything
+         if (!write.isConditional()) {
+            if (previous != null && sameFlags(write.getFlags(), ((DataWriteCommand) coalescedElements.get(previous).command).getFlags()))
+               dropped += drop(previous);
+            latestWrites.put(key, coalescedElements.size());
+         }
+      } else {
+         latestWrites.clear();
+      }
+      coalescedElements.add(queued);
+      coalescedElementsCount++;
+      return dropped;
+   }
+
+   private long drop(int position) {
+      QueuedCommand superseded = coalescedElements.set(position, null);
+      coalescedElementsCount--;
+      if (trace) log.tracef("Coalesced %s", superseded.command);
+      return superseded.size;
+   }
+
+   private static boolean sameFlags(Set<Flag> flags, Set<Flag> other) {
+      boolean noFlags = flags == null || flags.isEmpty();
+      boolean noOtherFlags = other == null || other.isEmpty();
+      if (noFlags || noOtherFlags) return noFlags == noOtherFlags;
+      return flags.equals(other);
+   }
+
+   /**
+    * Estimates the number of bytes needed to marshall a command, without actually marshalling it. The common write
+    * commands are estimated from their fields, other commands from their parameters.
+    */
+   static long estimateSize(ReplicableCommand command) {
+      if (command instanceof PutKeyValueCommand) {
+         PutKeyValueCommand put = (PutKeyValueCommand) command;
+         // the lifespan and max idle time
+         return COMMAND_OVERHEAD + 16 + estimateSize(put.getKey()) + estimateSize(put.getValue());
+      }
+      if (command instanceof RemoveCommand) {
+         return COMMAND_OVERHEAD + estimateSize(((RemoveCommand) command).getKey());
+      }
+      if (command instanceof ReplaceCommand) {
+         ReplaceCommand replace = (ReplaceCommand) command;
+         return COMMAND_OVERHEAD + 16 + estimateSize(replace.getKey()) + estimateSize(replace.getOldValue())
+               + estimateSize(replace.getNewValue());
+      }
+      if (command instanceof PutMapCommand) {
+         return COMMAND_OVERHEAD + 16 + estimateSize(((PutMapCommand) command).getMap());
+      }
+      if (command instanceof ClearCommand) {
+         return COMMAND_OVERHEAD;
+      }
+      return COMMAND_OVERHEAD + estimateSize(command.getParameters());
+   }
+
+   private static long estimateSize(Object o) {
+      if (o == null) return 1;
+      if (o instanceof byte[]) return ((byte[]) o).length;
+      if (o instanceof String) return ((String) o).length();
+      if (o instanceof MarshalledValue) return ((MarshalledValue) o).getRaw().length;
+      if (o instanceof ReplicableCommand) return estimateSize((ReplicableCommand) o);
+      if (o instanceof Object[]) {
+         long size = 0;
+         for (Object element : (Object[]) o) size += estimateSize(element);
+         return size;
+      }
+      if (o instanceof Collection) {
+         long size = 0;
+         for (Object element : (Collection<?>) o) size += estimateSize(element);
+         return size;
+      }
+      if (o instanceof Map) {
+         long size = 0;
+         for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) size += estimateSize(e.getKey()) + estimateSize(e.getValue());
+         return size;
+      }
+      if (o instanceof Number || o instanceof Boolean || o instanceof Character) return 8;
+      return DEFAULT_OBJECT_SIZE;
+   }
+
    @Override
    public synchronized int flush() {
       List<ReplicableCommand> toReplicate = drainReplQueue();
@@ -166,18 +326,62 @@ public synchronized int flush() {
    }
 
    protected List<ReplicableCommand> drainReplQueue() {
+      List<QueuedCommand> drained = new ArrayList<QueuedCommand>();
+      if (coalescing) {
+         synchronized (coalescingLock) {
+            for (QueuedCommand queued : coalescedElements) {
+               if (queued != null) drained.add(queued);
+            }
+            clearCoalescedElements();
+         }
+      } else {
+         elements.drainTo(drained);
+      }
       List<ReplicableCommand> toReplicate = new LinkedList<ReplicableCommand>();
-      elements.drainTo(toReplicate);
+      long drainedBytes = 0;
+      for (QueuedCommand queued : drained) {
+         toReplicate.add(queued.command);
+         drainedBytes += queued.size;
+      }
+      if (maxBytes > 0) queuedBytes.addAndGet(-drainedBytes);
       return toReplicate;
    }
 
+   private void clearCoalescedElements() {
+      coalescedElements.clear();
+      latestWrites.clear();
+      coalescedElementsCount = 0;
+   }
+
    @Override
    public int getElementsCount() {
+      if (coalescing) {
+         synchronized (coalescingLock) {
+            return coalescedElementsCount;
+         }
+      }
       return elements.size();
    }
 
    @Override
    public void reset() {
       elements.clear();
+      synchronized (coalescingLock) {
+         clearCoalescedElements();
+      }
+      queuedBytes.set(0);
+   }
+
+   /**
+    * A queued command, along with its estimated size if a byte threshold is configured.
+    */
+   private static final class QueuedCommand {
+      final ReplicableCommand command;
+      final long size;
+
+      QueuedCommand(ReplicableCommand command, long size) {
+         this.command = command;
+         this.size = size;
+      }
    }
 }
@@ -41,6 +41,11 @@ public class SuccessfulResponse extends ValidResponse {
 
    private Object responseValue;
 
+   /**
+    * Size of the buffer this response was unmarshalled from, only known on the node that received it.
+    */
+   private transient int marshalledSize;
+
    public SuccessfulResponse() {
    }
 
@@ -60,6 +65,17 @@ public void setResponseValue(Object responseValue) {
       this.responseValue = responseValue;
    }
 
+   /**
+    * @return the number of bytes this response was received as, or 0 if it was not received from another node
+    */
+   public int getMarshalledSize() {
+      return marshalledSize;
+   }
+
+   public void setMarshalledSize(int marshalledSize) {
+      this.marshalledSize = marshalledSize;
+   }
+
    @Override
    public boolean equals(Object o) {
       if (this == o) return true;
@@ -0,0 +1,246 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting.rpc;
+
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.remoting.responses.Response;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.util.concurrent.TimeoutException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Statistics about the remote invocations of a cache, broken down by command type. A {@link SingleRpcCommand} is
+ * accounted for under the type of the command it wraps.
+ * <p />
+ * Bytes sent are the marshalled size of each invocation, recorded by the transport through the {@link
+ * RpcStatisticsRegistry}; a command sent to several nodes is only counted once. Bytes received are the marshalled size
+ * of the successful responses. Latencies per target node are only recorded for invocations with a single recipient,
+ * since the latency of a multicast is that of its slowest responder.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class RpcCommandStatistics {
+
+   /**
+    * Upper bounds, in milliseconds, of the latency histogram buckets. The last bucket holds everything slower.
+    */
+   static final long[] LATENCY_BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 5000};
+
+   private final ConcurrentMap<String, CommandTypeStatistics> commandTypes = new ConcurrentHashMap<String, CommandTypeStatistics>();
+
+   public static String getCommandType(ReplicableCommand command) {
+      if (command instanceof SingleRpcCommand && ((SingleRpcCommand) command).getCommand() != null)
+         command = ((SingleRpcCommand) command).getCommand();
+      return command.getClass().getSimpleName();
+   }
+
+   public void recordBytesSent(ReplicableCommand command, int bytes) {
+      getOrCreate(getCommandType(command)).bytesSent.addAndGet(bytes);
+   }
+
+   /**
+    * Records a completed remote invocation.
+    *
+    * @param recipients the intended recipients, or null for a broadcast
+    * @param responses  the responses received, or null if the invocation failed
+    * @param failure    the reason the invocation failed, or null if it succeeded
+    */
+   public void recordInvocation(ReplicableCommand command, Collection<Address> recipients, Map<Address, Response> responses,
+                                long durationNanos, Throwable failure) {
+      CommandTypeStatistics stats = getOrCreate(getCommandType(command));
+      stats.count.incrementAndGet();
+      stats.totalNanos.addAndGet(durationNanos);
+      stats.latencies.incrementAndGet(getBucket(NANOSECONDS.toMillis(durationNanos)));
+      if (failure != null) {
+         stats.failures.incrementAndGet();
+         if (isTimeout(failure)) stats.timeouts.incrementAndGet();
+      }
+      if (responses != null) {
+         for (Response response : responses.values()) {
+            if (response instanceof SuccessfulResponse) {
+               stats.responses.incrementAndGet();
+               stats.bytesReceived.addAndGet(((SuccessfulResponse) response).getMarshalledSize());
+            }
+         }
+      }
+      if (recipients != null && recipients.size() == 1) {
+         Address target = recipients.iterator().next();
+         TargetStatistics targetStats = stats.targets.get(target);
+         if (targetStats == null) {
+            targetStats = new TargetStatistics();
+            TargetStatistics existing = stats.targets.putIfAbsent(target, targetStats);
+            if (existing != null) targetStats = existing;
+         }
+         targetStats.count.incrementAndGet();
+         targetStats.totalNanos.addAndGet(durationNanos);
+      }
+   }
+
+   public Set<String> getCommandTypes() {
+      return new TreeSet<String>(commandTypes.keySet());
+   }
+
+   /**
+    * @return one line per command type, with its count, failures, timeouts, average latency and average sizes
+    */
+   public String getSummary() {
+      StringBuilder sb = new StringBuilder();
+      for (String type : getCommandTypes()) {
+         CommandTypeStatistics stats = commandTypes.get(type);
+         long count = stats.count.get();
+         sb.append(type).append(": count=").append(count)
+               .append(", failures=").append(stats.failures.get())
+               .append(", timeouts=").append(stats.timeouts.get())
+               .append(", averageLatencyMillis=").append(average(stats.totalNanos.get(), count) / 1000000)
+               .append(", averageBytesSent=").append(average(stats.bytesSent.get(), count))
+               .append(", averageResponseBytes=").append(average(stats.bytesReceived.get(), stats.responses.get()))
+               .append('\n');
+      }
+      return sb.toString();
+   }
+
+   /**
+    * @return the summary line, latency histogram and per target latencies of a command type, or null if no such
+    *         command was invoked
+    */
+   public String getDetails(String commandType) {
+      CommandTypeStatistics stats = commandTypes.get(commandType);
+      if (stats == null) return null;
+      long count = stats.count.get();
+      StringBuilder sb = new StringBuilder(commandType).append('\n');
+      sb.append("count=").append(count)
+            .append(", failures=").append(stats.failures.get())
+            .append(", timeouts=").append(stats.timeouts.get()).append('\n');
+      sb.append("bytesSent=").append(stats.bytesSent.get())
+            .append(", responses=").append(stats.responses.get())
+            .append(", bytesReceived=").append(stats.bytesReceived.get()).append('\n');
+      sb.append("latency histogram (ms):\n");
+      for (int i = 0; i <= LATENCY_BUCKETS.length; i++) {
+         sb.append(i < LATENCY_BUCKETS.length ? "  <" + LATENCY_BUCKETS[i] : "  >=" + LATENCY_BUCKETS[i - 1])
+               .append(": ").append(stats.latencies.get(i)).append('\n');
+      }
+      if (!stats.targets.isEmpty()) {
+         sb.append("average latency per target (ms):\n");
+         for (Map.Entry<Address, TargetStatistics> e : stats.targets.entrySet()) {
+            TargetStatistics t = e.getValue();
+            sb.append("  ").append(e.getKey()).append(": ")
+                  .append(average(t.totalNanos.get(), t.count.get()) / 1000000)
+                  .append(" (").append(t.count.get()).append(" invocations)\n");
+         }
+      }
+      return sb.toString();
+   }
+
+   public long getCount(String commandType) {
+      CommandTypeStatistics stats = commandTypes.get(commandType);
+      return stats == null ? 0 : stats.count.get();
+   }
+
+   public long getBytesSent(String commandType) {
+      CommandTypeStatistics stats = commandTypes.get(commandType);
+      return stats == null ? 0 : stats.bytesSent.get();
+   }
+
+   public long getBytesReceived(String commandType) {
+      CommandTypeStatistics stats = commandTypes.get(commandType);
+      return stats == null ? 0 : stats.bytesReceived.get();
+   }
+
+   public long getTimeouts(String commandType) {
+      CommandTypeStatistics stats = commandTypes.get(commandType);
+      return stats == null ? 0 : stats.timeouts.get();
+   }
+
+   /**
+    * @return the average latency, in milliseconds, of the invocations of a command type sent only to the given target
+    */
+   public double getAverageLatency(String commandType, Address target) {
+      CommandTypeStatistics stats = commandTypes.get(commandType);
+      TargetStatistics targetStats = stats == null ? null : stats.targets.get(target);
+      if (targetStats == null) return 0;
+      return average(targetStats.totalNanos.get(), targetStats.count.get()) / MILLISECONDS.toNanos(1);
+   }
+
+   public void reset() {
+      commandTypes.clear();
+   }
+
+   static int getBucket(long millis) {
+      for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+         if (millis < LATENCY_BUCKETS[i]) return i;
+      }
+      return LATENCY_BUCKETS.length;
+   }
+
+   private static double average(long total, long count) {
+      return count == 0 ? 0 : (double) total / count;
+   }
+
+   private static boolean isTimeout(Throwable failure) {
+      for (Throwable t = failure; t != null; t = t.getCause()) {
+         if (t instanceof TimeoutException) return true;
+      }
+      return false;
+   }
+
+   private CommandTypeStatistics getOrCreate(String commandType) {
+      CommandTypeStatistics stats = commandTypes.get(commandType);
+      if (stats == null) {
+         stats = new CommandTypeStatistics();
+         CommandTypeStatistics existing = commandTypes.putIfAbsent(commandType, stats);
+         if (existing != null) stats = existing;
+      }
+      return stats;
+   }
+
+   private static class CommandTypeStatistics {
+      final AtomicLong count = new AtomicLong();
+      final AtomicLong failures = new AtomicLong();
+      final AtomicLong timeouts = new AtomicLong();
+      final AtomicLong totalNanos = new AtomicLong();
+      final AtomicLong bytesSent = new AtomicLong();
+      final AtomicLong responses = new AtomicLong();
+      final AtomicLong bytesReceived = new AtomicLong();
+      final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+      final ConcurrentMap<Address, TargetStatistics> targets = new ConcurrentHashMap<Address, TargetStatistics>();
+   }
+
+   private static class TargetStatistics {
+      final AtomicLong count = new AtomicLong();
+      final AtomicLong totalNanos = new AtomicLong();
+   }
+}
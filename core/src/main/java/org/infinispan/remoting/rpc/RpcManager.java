@@ -27,6 +27,7 @@
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 
 import java.util.Collection;
@@ -182,6 +183,18 @@ public interface RpcManager {
     */
    void invokeRemotelyInFuture(final Collection<Address> recipients, final ReplicableCommand rpc, final boolean usePriorityQueue, final NotifyingNotifiableFuture<Object> future, final long timeout);
 
+   /**
+    * The same as {@link #invokeRemotelyInFuture(java.util.Collection, org.infinispan.commands.ReplicableCommand,
+    * org.infinispan.util.concurrent.NotifyingNotifiableFuture)} except that the returned future carries the responses
+    * of the recipients, so that the caller can read them, or be notified of them, once the call completes.  Listeners
+    * of the returned future are notified by the thread that receives the responses, so they must not block.
+    *
+    * @param recipients recipients to invoke remote call on
+    * @param rpc        command to execute remotely
+    * @return a future holding the responses, indexed by recipient, or the exception that failed the call
+    */
+   NotifyingFuture<Map<Address, Response>> invokeRemotelyWithResponsesInFuture(Collection<Address> recipients, ReplicableCommand rpc);
+
    /**
     * @return a reference to the underlying transport.
     */
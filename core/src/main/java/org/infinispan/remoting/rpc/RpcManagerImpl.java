@@ -31,6 +31,7 @@
 import org.infinispan.factories.annotations.ComponentName;
 import org.infinispan.factories.annotations.Inject;
 import org.infinispan.factories.annotations.Start;
+import org.infinispan.factories.annotations.Stop;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.jmx.annotations.ManagedOperation;
@@ -41,7 +42,10 @@
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
@@ -57,9 +61,10 @@
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.factories.KnownComponentNames.ASYNC_TRANSPORT_EXECUTOR;
@@ -96,13 +101,15 @@ public class RpcManagerImpl implements RpcManager {
    private CommandsFactory cf;
    private StreamingMarshaller marshaller;
    private CacheViewsManager cvm;
+   private RpcStatisticsRegistry rpcStatisticsRegistry;
+   private final RpcCommandStatistics commandStatistics = new RpcCommandStatistics();
 
 
    @Inject
    public void injectDependencies(Transport t, Configuration configuration, ReplicationQueue replicationQueue, CommandsFactory cf,
                                   @ComponentName(ASYNC_TRANSPORT_EXECUTOR) ExecutorService e,
                                   @ComponentName(CACHE_MARSHALLER) StreamingMarshaller marshaller,
-                                  CacheViewsManager cvm) {
+                                  CacheViewsManager cvm, RpcStatisticsRegistry rpcStatisticsRegistry) {
       this.t = t;
       this.configuration = configuration;
       this.replicationQueue = replicationQueue;
@@ -110,12 +117,19 @@ public void injectDependencies(Transport t, Configuration configuration, Replica
       this.cf = cf;
       this.marshaller = marshaller;
       this.cvm = cvm;
+      this.rpcStatisticsRegistry = rpcStatisticsRegistry;
    }
 
    @Start(priority = 9)
    private void start() {
       stateTransferEnabled = configuration.isStateTransferEnabled();
       statisticsEnabled = configuration.isExposeJmxStatistics();
+      rpcStatisticsRegistry.register(configuration.getName(), commandStatistics);
+   }
+
+   @Stop
+   private void stop() {
+      rpcStatisticsRegistry.unregister(configuration.getName());
    }
 
    private boolean useReplicationQueue(boolean sync) {
@@ -131,14 +145,16 @@ public final Map<Address, Response> invokeRemotely(Collection<Address> recipient
          log.debug("We're the only member in the cluster; Don't invoke remotely.");
          return Collections.emptyMap();
       } else {
-         long startTime = 0;
-         if (statisticsEnabled) startTime = System.currentTimeMillis();
+         long startTime = 0, startNanos = 0;
+         if (statisticsEnabled) {
+            startTime = System.currentTimeMillis();
+            startNanos = System.nanoTime();
+         }
+         Map<Address, Response> result = null;
+         Throwable failure = null;
          try {
-            // add a response filter that will ensure we don't wait for replies from non-members
-            // but only if the target is the whole cluster and the call is synchronous
-            // if strict peer-to-peer is enabled we have to wait for replies from everyone, not just cache members
-            if (recipients == null && mode.isSynchronous() && !configuration.getGlobalConfiguration().isStrictPeerToPeer()) {
-               List<Address> cacheMembers =  cvm.getCommittedView(configuration.getName()).getMembers();
+            List<Address> cacheMembers = getCacheMembersToFilter(recipients, mode);
+            if (cacheMembers != null) {
                // the filter won't work if there is no other member in the cache, so we have to 
                if (cacheMembers.size() < 2) {
                   log.debugf("We're the only member of cache %s; Don't invoke remotely.", configuration.getName());
@@ -150,7 +166,7 @@ public final Map<Address, Response> invokeRemotely(Collection<Address> recipient
                   responseFilter = new IgnoreExtraResponsesValidityFilter(cacheMembers, getAddress());
                }
             }
-            Map<Address, Response> result = t.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, stateTransferEnabled);
+            result = t.invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, stateTransferEnabled);
             if (isStatisticsEnabled()) replicationCount.incrementAndGet();
             return result;
          } catch (CacheException e) {
@@ -159,20 +175,36 @@ public final Map<Address, Response> invokeRemotely(Collection<Address> recipient
             }
 
             if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+            failure = e;
             throw e;
          } catch (Throwable th) {
             log.unexpectedErrorReplicating(th);
             if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+            failure = th;
             throw new CacheException(th);
          } finally {
             if (statisticsEnabled) {
                long timeTaken = System.currentTimeMillis() - startTime;
                totalReplicationTime.getAndAdd(timeTaken);
+               commandStatistics.recordInvocation(rpcCommand, recipients, result, System.nanoTime() - startNanos, failure);
             }
          }
       }
    }
 
+   /**
+    * A response filter is added to ensure we don't wait for replies from non-members, but only if the target is the
+    * whole cluster and the call is synchronous.  If strict peer-to-peer is enabled we have to wait for replies from
+    * everyone, not just cache members.
+    *
+    * @return the cache members to filter responses by, or null if responses should not be filtered
+    */
+   private List<Address> getCacheMembersToFilter(Collection<Address> recipients, ResponseMode mode) {
+      if (recipients == null && mode.isSynchronous() && !configuration.getGlobalConfiguration().isStrictPeerToPeer())
+         return cvm.getCommittedView(configuration.getName()).getMembers();
+      return null;
+   }
+
    public final Map<Address, Response> invokeRemotely(Collection<Address> recipients, ReplicableCommand rpcCommand, ResponseMode mode, long timeout, boolean usePriorityQueue) {
       return invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, null);
    }
@@ -234,28 +266,120 @@ public final void invokeRemotelyInFuture(final Collection<Address> recipients, f
       invokeRemotelyInFuture(recipients, rpc, usePriorityQueue, l, configuration.getSyncReplTimeout());
    }
 
+   /**
+    * The call is made synchronously, but nothing waits for its responses: the transport completes the network future
+    * passed to <tt>l</tt> as soon as the responses are in, and {@link NotifyingNotifiableFuture#notifyDone()} is then
+    * invoked from the async transport executor, so the future's listeners never run on a JGroups thread.
+    */
    public final void invokeRemotelyInFuture(final Collection<Address> recipients, final ReplicableCommand rpc, final boolean usePriorityQueue, final NotifyingNotifiableFuture<Object> l, final long timeout) {
+      SettableNotifyingFuture<Object> networkFuture = new SettableNotifyingFuture<Object>();
+      l.setNetworkFuture(networkFuture);
+      invokeInFuture(recipients, rpc, usePriorityQueue, timeout, networkFuture, l);
+   }
+
+   public final NotifyingFuture<Map<Address, Response>> invokeRemotelyWithResponsesInFuture(Collection<Address> recipients, ReplicableCommand rpc) {
+      SettableNotifyingFuture<Map<Address, Response>> responses = new SettableNotifyingFuture<Map<Address, Response>>();
+      invokeInFuture(recipients, rpc, false, configuration.getSyncReplTimeout(), responses, null);
+      return responses;
+   }
+
+   /**
+    * Completes <tt>result</tt> with the responses, then notifies <tt>l</tt> if there is one.
+    */
+   private void invokeInFuture(final Collection<Address> recipients, final ReplicableCommand rpc, boolean usePriorityQueue, long timeout,
+                               final SettableNotifyingFuture<? super Map<Address, Response>> result, final NotifyingNotifiableFuture<Object> l) {
       if (trace) log.tracef("%s invoking in future call %s to recipient list %s", t.getAddress(), rpc, recipients);
-      final CountDownLatch futureSet = new CountDownLatch(1);
-      Callable<Object> c = new Callable<Object>() {
-         public Object call() throws Exception {
-            Object result = null;
+      final long startTime = statisticsEnabled ? System.currentTimeMillis() : 0;
+      final long startNanos = statisticsEnabled ? System.nanoTime() : 0;
+      NotifyingFuture<Map<Address, Response>> responses;
+      try {
+         responses = invokeTransportInFuture(recipients, rpc, usePriorityQueue, timeout);
+      } catch (Throwable th) {
+         SettableNotifyingFuture<Map<Address, Response>> failed = new SettableNotifyingFuture<Map<Address, Response>>();
+         failed.setException(th);
+         responses = failed;
+      }
+
+      responses.attachListener(new FutureListener<Map<Address, Response>>() {
+         @Override
+         public void futureDone(Future<Map<Address, Response>> future) {
+            Map<Address, Response> rsps = null;
+            Throwable failure = null;
             try {
-               result = invokeRemotely(recipients, rpc, true, usePriorityQueue, timeout);
+               rsps = future.get();
+               if (trace) log.tracef("Response(s) to %s is %s", rpc, rsps);
+               checkResponses(rsps);
+               if (isStatisticsEnabled()) replicationCount.incrementAndGet();
+               result.set(rsps);
+            } catch (Throwable th) {
+               if (th instanceof ExecutionException && th.getCause() != null) th = th.getCause();
+               if (th instanceof CacheException) {
+                  if (log.isTraceEnabled()) log.trace("replication exception: ", th);
+               } else {
+                  log.unexpectedErrorReplicating(th);
+                  th = new CacheException(th);
+               }
+               if (isStatisticsEnabled()) replicationFailures.incrementAndGet();
+               failure = th;
+               result.setException(th);
             } finally {
-               try {
-                  futureSet.await();
-               } catch (InterruptedException e) {
-                  Thread.currentThread().interrupt();
-               } finally {
-                  l.notifyDone();
+               if (statisticsEnabled) {
+                  totalReplicationTime.getAndAdd(System.currentTimeMillis() - startTime);
+                  commandStatistics.recordInvocation(rpc, recipients, rsps, System.nanoTime() - startNanos, failure);
                }
+               if (l != null) notifyDone(l);
             }
-            return result;
+         }
+      });
+   }
+
+   /**
+    * The network future is completed on the thread that received the responses, which unblocks callers waiting on
+    * <tt>l</tt> right away, but <tt>l</tt>'s listeners belong to the user and may block, so they are notified from the
+    * async transport executor.
+    */
+   private void notifyDone(final NotifyingNotifiableFuture<Object> l) {
+      Runnable notification = new Runnable() {
+         @Override
+         public void run() {
+            l.notifyDone();
          }
       };
-      l.setNetworkFuture(asyncExecutor.submit(c));
-      futureSet.countDown();      
+      try {
+         asyncExecutor.execute(notification);
+      } catch (RejectedExecutionException e) {
+         // the transport is shutting down
+         notification.run();
+      }
+   }
+
+   /**
+    * The non-blocking counterpart of {@link #invokeRemotely(java.util.Collection, org.infinispan.commands.ReplicableCommand,
+    * ResponseMode, long, boolean, org.infinispan.remoting.rpc.ResponseFilter)} for synchronous calls.
+    */
+   private NotifyingFuture<Map<Address, Response>> invokeTransportInFuture(Collection<Address> recipients, ReplicableCommand rpc,
+                                                                          boolean usePriorityQueue, long timeout) throws Exception {
+      if (!configuration.getCacheMode().isClustered())
+         throw new IllegalStateException("Trying to invoke a remote command but the cache is not clustered");
+
+      ResponseFilter responseFilter = null;
+      boolean noOtherMembers = t.getMembers().size() < 2;
+      List<Address> cacheMembers = noOtherMembers ? null : getCacheMembersToFilter(recipients, ResponseMode.SYNCHRONOUS);
+      if (cacheMembers != null) {
+         noOtherMembers = cacheMembers.size() < 2;
+         responseFilter = new IgnoreExtraResponsesValidityFilter(cacheMembers, getAddress());
+      }
+      if (noOtherMembers) {
+         log.debug("We're the only member in the cluster; Don't invoke remotely.");
+         SettableNotifyingFuture<Map<Address, Response>> empty = new SettableNotifyingFuture<Map<Address, Response>>();
+         empty.set(Collections.<Address, Response>emptyMap());
+         return empty;
+      }
+
+      if (!(rpc instanceof CacheRpcCommand)) {
+         rpc = cf.buildSingleRpcCommand(rpc);
+      }
+      return t.invokeRemotelyInFuture(recipients, rpc, ResponseMode.SYNCHRONOUS, timeout, usePriorityQueue, responseFilter, stateTransferEnabled);
    }
 
    public Transport getTransport() {
@@ -291,6 +415,24 @@ public void resetStatistics() {
       replicationCount.set(0);
       replicationFailures.set(0);
       totalReplicationTime.set(0);
+      commandStatistics.reset();
+   }
+
+   @ManagedAttribute(description = "Count, failures, timeouts, average latency and average marshalled sizes of the remote invocations, per command type")
+   public String getCommandStatistics() {
+      if (!isStatisticsEnabled()) return "N/A";
+      return commandStatistics.getSummary();
+   }
+
+   @ManagedOperation(description = "Shows the latency histogram, the bytes sent and received and the average latency per target node of a command type")
+   @Operation(displayName = "Show statistics of a command type")
+   public String showCommandStatistics(@Parameter(name = "commandType", description = "Simple class name of the command, e.g. PutKeyValueCommand") String commandType) {
+      String details = commandStatistics.getDetails(commandType);
+      return details == null ? "No invocations of " + commandType + " recorded" : details;
+   }
+
+   public RpcCommandStatistics getRpcCommandStatistics() {
+      return commandStatistics;
    }
 
    @ManagedAttribute(description = "Number of successful replications")
@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting.rpc;
+
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.factories.scopes.Scope;
+import org.infinispan.factories.scopes.Scopes;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Lets the transport, which is shared by all the caches of a cache manager, record the marshalled size of the
+ * commands it sends into the {@link RpcCommandStatistics} of the cache they belong to, and report it to the
+ * {@link BytesSentListener} of that cache, if any.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Scope(Scopes.GLOBAL)
+public class RpcStatisticsRegistry {
+
+   private final ConcurrentMap<String, RpcCommandStatistics> caches = new ConcurrentHashMap<String, RpcCommandStatistics>();
+   private final ConcurrentMap<String, BytesSentListener> listeners = new ConcurrentHashMap<String, BytesSentListener>();
+
+   /**
+    * Notified of the marshalled size of every command sent for a cache, on the thread that marshalled it.
+    */
+   public interface BytesSentListener {
+      void bytesSent(ReplicableCommand command, int bytes);
+   }
+
+   public void register(String cacheName, RpcCommandStatistics statistics) {
+      caches.put(cacheName, statistics);
+   }
+
+   public void unregister(String cacheName) {
+      caches.remove(cacheName);
+   }
+
+   public void addBytesSentListener(String cacheName, BytesSentListener listener) {
+      listeners.put(cacheName, listener);
+   }
+
+   public void removeBytesSentListener(String cacheName) {
+      listeners.remove(cacheName);
+   }
+
+   public void recordBytesSent(ReplicableCommand command, int bytes) {
+      if (command instanceof CacheRpcCommand) {
+         String cacheName = ((CacheRpcCommand) command).getCacheName();
+         RpcCommandStatistics statistics = caches.get(cacheName);
+         if (statistics != null) statistics.recordBytesSent(command, bytes);
+         BytesSentListener listener = listeners.get(cacheName);
+         if (listener != null) listener.bytesSent(command, bytes);
+      }
+   }
+}
@@ -38,6 +38,7 @@
 import org.infinispan.remoting.rpc.ResponseFilter;
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.statetransfer.StateTransferException;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.logging.Log;
 
 import java.util.Collection;
@@ -93,6 +94,31 @@ void initialize(@ComponentName(GLOBAL_MARSHALLER) StreamingMarshaller marshaller
    Map<Address, Response> invokeRemotely(Collection<Address> recipients, ReplicableCommand rpcCommand, ResponseMode mode, long timeout,
                                  boolean usePriorityQueue, ResponseFilter responseFilter, boolean supportReplay) throws Exception;
 
+   /**
+    * Invokes an RPC call on other caches in the cluster without blocking while the responses are awaited.  Unlike
+    * submitting {@link #invokeRemotely(java.util.Collection, org.infinispan.commands.ReplicableCommand, ResponseMode,
+    * long, boolean, ResponseFilter, boolean)} to an executor, no thread is parked for the duration of the call: the
+    * returned future is completed by the thread that delivers the last response needed, or when the timeout elapses.
+    * <p/>
+    * Listeners attached to the returned future therefore run on a transport thread, and must not block.
+    *
+    * @param recipients       a list of Addresses to invoke the call on.  If this is null, the call is broadcast to the
+    *                         entire cluster.
+    * @param rpcCommand       the cache command to invoke
+    * @param mode             the response mode to use
+    * @param timeout          a timeout after which the future fails with a {@link org.infinispan.util.concurrent.TimeoutException}
+    * @param usePriorityQueue if true, a priority queue is used to deliver messages.  May not be supported by all
+    *                         implementations.
+    * @param responseFilter   a response filter with which to filter out failed/unwanted/invalid responses.
+    * @param supportReplay    whether replays of missed messages is supported
+    * @return a future holding the map of responses from each member contacted, or the exception that
+    *         {@link #invokeRemotely(java.util.Collection, org.infinispan.commands.ReplicableCommand, ResponseMode,
+    *         long, boolean, ResponseFilter, boolean)} would have thrown.
+    */
+   NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                 ResponseMode mode, long timeout, boolean usePriorityQueue,
+                                                                 ResponseFilter responseFilter, boolean supportReplay);
+
    /**
     * @return true if the current Channel is the coordinator of the cluster.
     */
@@ -32,12 +32,14 @@
 import org.infinispan.remoting.responses.RequestIgnoredResponse;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.jgroups.Address;
 import org.jgroups.Channel;
 import org.jgroups.Message;
+import org.jgroups.SuspectedException;
 import org.jgroups.blocks.RequestOptions;
 import org.jgroups.blocks.ResponseMode;
 import org.jgroups.blocks.RpcDispatcher;
@@ -47,8 +49,10 @@
 import org.jgroups.util.NotifyingFuture;
 import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
+import org.jgroups.util.TimeScheduler;
 
 import java.io.NotSerializableException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -121,6 +125,22 @@ public RspList invokeRemoteCommands(Vector<Address> dests, ReplicableCommand com
       }
    }
 
+   /**
+    * Like {@link #invokeRemoteCommands(Vector, ReplicableCommand, ResponseMode, long, boolean, boolean, RspFilter,
+    * boolean, boolean, boolean)}, but returns as soon as the command has been sent, without any thread waiting for
+    * the responses.  The returned future is completed by the thread that receives the last response needed, or by the
+    * JGroups timer if the timeout elapses first.  As with the synchronous call, the future's value is null if no
+    * non-null response was received.
+    */
+   public org.infinispan.util.concurrent.NotifyingFuture<RspList<Object>> invokeRemoteCommandsInFuture(
+         Vector<Address> dests, ReplicableCommand command, ResponseMode mode, long timeout, boolean anycasting,
+         boolean oob, RspFilter filter, boolean supportReplay, boolean broadcast) {
+      if (mode == ResponseMode.GET_NONE)
+         throw new IllegalArgumentException("Asynchronous calls have no responses to wait for");
+      ReplicationTask task = new ReplicationTask(command, oob, dests, mode, timeout, anycasting, filter, supportReplay, broadcast);
+      return task.callInFuture();
+   }
+
    private boolean containsOnlyNulls(RspList<Object> l) {
       for (Rsp r : l.values()) {
          if (r.getValue() != null || !r.wasReceived() || r.wasSuspected()) return false;
@@ -159,7 +179,20 @@ public Object handle(Message req) {
    private Response executeCommand(CacheRpcCommand cmd, Message req) throws Throwable {
       if (cmd == null) throw new NullPointerException("Unable to execute a null command!  Message was " + req);
       if (trace) log.tracef("Attempting to execute command: %s [sender=%s]", cmd, req.getSrc());
-      return inboundInvocationHandler.handle(cmd, JGroupsTransport.fromJGroupsAddress(req.getSrc()));
+      // only the requests of senders waiting for a response are sent with NO_FC, see ReplicationTask.constructMessage()
+      return inboundInvocationHandler.handle(cmd, JGroupsTransport.fromJGroupsAddress(req.getSrc()),
+                                             req.isFlagSet(Message.NO_FC), req.isFlagSet(Message.OOB));
+   }
+
+   private TimeScheduler getTimer() {
+      return channel.getProtocolStack().getTransport().getTimer();
+   }
+
+   private static Exception unwrap(Throwable t) {
+      if (t instanceof ExecutionException && t.getCause() != null) t = t.getCause();
+      if (t instanceof org.jgroups.TimeoutException) return new TimeoutException("Timeout!", t);
+      if (t instanceof Exception) return (Exception) t;
+      return new CacheException("Caught a throwable", t);
    }
 
    @Override
@@ -289,33 +322,9 @@ public RspList call() throws Exception {
                                                         + command.getClass().getSimpleName() + " not being serializable.");
 
             if (supportReplay) {
-               boolean replay = false;
-               Vector<Address> ignorers = new Vector<Address>();
-               for (Map.Entry<Address, Rsp<Object>> entry : retval.entrySet()) {
-                  Object value = entry.getValue().getValue();
-                  if (value instanceof RequestIgnoredResponse) {
-                     ignorers.add(entry.getKey());
-                  } else if (value instanceof ExtendedResponse) {
-                     ExtendedResponse extended = (ExtendedResponse) value;
-                     replay |= extended.isReplayIgnoredRequests();
-                     entry.getValue().setValue(extended.getResponse());
-                  }
-               }
-
-               if (replay && !ignorers.isEmpty()) {
-                  Message msg = constructMessage(buf, null);
-                  //Since we are making a sync call make sure we don't bundle
-                  //See ISPN-192 for more details
-                  msg.setFlag(Message.DONT_BUNDLE);
-
-                  if (trace)
-                     log.tracef("Replaying message to ignoring senders: %s", ignorers);
-                  RequestOptions opts = new RequestOptions();
-                  opts.setMode(ResponseMode.GET_ALL);
-                  opts.setTimeout(timeout);
-                  opts.setAnycasting(anycasting);
-                  opts.setRspFilter(filter);
-                  RspList responses = castMessage(ignorers, msg, opts);
+               Vector<Address> ignorers = getIgnorersToReplay(retval);
+               if (ignorers != null) {
+                  RspList responses = castMessage(ignorers, constructReplayMessage(buf), getReplayOptions());
                   if (responses != null)
                      retval.putAll(responses);
                }
@@ -324,6 +333,288 @@ public RspList call() throws Exception {
 
          return retval;
       }
+
+      /**
+       * Sends the command and returns a future that is completed from the JGroups response callbacks, so no thread
+       * waits for the responses.
+       */
+      org.infinispan.util.concurrent.NotifyingFuture<RspList<Object>> callInFuture() {
+         if (trace) log.tracef("Replication task sending %s to addresses %s in future", command, dests);
+
+         SettableNotifyingFuture<RspList<Object>> result = new SettableNotifyingFuture<RspList<Object>>();
+         RequestOptions opts = new RequestOptions();
+         // Replay capability requires responses from all members!
+         opts.setMode(supportReplay ? ResponseMode.GET_ALL : mode);
+         opts.setTimeout(timeout);
+
+         if (broadcast || FORCE_MCAST) {
+            opts.setRspFilter(filter);
+            opts.setAnycasting(false);
+            Buffer buf = marshallCall();
+            NotifyingFuture<RspList<Object>> request = castMessageWithFuture(dests, constructMessage(buf, null), opts);
+            new BroadcastCollector(result, buf, request, dests).watch();
+         } else {
+            Set<Address> targets = new HashSet<Address>(dests);
+            targets.remove(channel.getAddress()); // just in case
+            if (targets.isEmpty()) {
+               result.set(null);
+               return result;
+            }
+            Buffer buf = marshallCall();
+            UnicastCollector collector = new UnicastCollector(result, buf, targets.size());
+            for (Address a : targets) collector.watch(a, sendMessageWithFuture(constructMessage(buf, a), opts));
+            collector.scheduleTimeout();
+         }
+         return result;
+      }
+
+      /**
+       * Unwraps any {@link ExtendedResponse}s in the response list and returns the members that ignored the request
+       * and need it replayed, or null if there is nothing to replay.
+       */
+      private Vector<Address> getIgnorersToReplay(RspList<Object> retval) {
+         boolean replay = false;
+         Vector<Address> ignorers = new Vector<Address>();
+         for (Map.Entry<Address, Rsp<Object>> entry : retval.entrySet()) {
+            Object value = entry.getValue().getValue();
+            if (value instanceof RequestIgnoredResponse) {
+               ignorers.add(entry.getKey());
+            } else if (value instanceof ExtendedResponse) {
+               ExtendedResponse extended = (ExtendedResponse) value;
+               replay |= extended.isReplayIgnoredRequests();
+               entry.getValue().setValue(extended.getResponse());
+            }
+         }
+         if (!replay || ignorers.isEmpty()) return null;
+
+         if (trace)
+            log.tracef("Replaying message to ignoring senders: %s", ignorers);
+         return ignorers;
+      }
+
+      private Message constructReplayMessage(Buffer buf) {
+         Message msg = constructMessage(buf, null);
+         //Since we are making a sync call make sure we don't bundle
+         //See ISPN-192 for more details
+         msg.setFlag(Message.DONT_BUNDLE);
+         msg.setFlag(Message.NO_FC);
+         return msg;
+      }
+
+      private RequestOptions getReplayOptions() {
+         RequestOptions opts = new RequestOptions();
+         opts.setMode(ResponseMode.GET_ALL);
+         opts.setTimeout(timeout);
+         opts.setAnycasting(anycasting);
+         opts.setRspFilter(filter);
+         return opts;
+      }
+
+      /**
+       * Completes the future with the response list, once any requests ignored during state transfer have been
+       * replayed.  The replay is itself sent in future, so this never blocks.
+       */
+      private void complete(final SettableNotifyingFuture<RspList<Object>> result, final RspList<Object> retval, Buffer buf) {
+         if (trace) log.tracef("Responses: %s", retval);
+         Vector<Address> ignorers = supportReplay ? getIgnorersToReplay(retval) : null;
+         if (ignorers == null) {
+            completeNormally(result, retval);
+            return;
+         }
+
+         NotifyingFuture<RspList<Object>> replay = castMessageWithFuture(ignorers, constructReplayMessage(buf), getReplayOptions());
+         final Future<?> timeoutTask = scheduleTimeout(result, replay, ignorers);
+         replay.setListener(new FutureListener<RspList<Object>>() {
+            @Override
+            public void futureDone(Future<RspList<Object>> future) {
+               timeoutTask.cancel(false);
+               try {
+                  RspList<Object> responses = future.get();
+                  if (responses != null) retval.putAll(responses);
+                  completeNormally(result, retval);
+               } catch (Throwable t) {
+                  result.setException(unwrap(t));
+               }
+            }
+         });
+      }
+
+      private void completeNormally(SettableNotifyingFuture<RspList<Object>> result, RspList<Object> retval) {
+         // same as the synchronous call: no responses worth parsing are reported as null
+         result.set(retval.isEmpty() || containsOnlyNulls(retval) ? null : retval);
+      }
+
+      private Future<?> scheduleTimeout(final SettableNotifyingFuture<RspList<Object>> result, final Future<?> request,
+                                        final Collection<Address> targets) {
+         return getTimer().schedule(new Runnable() {
+            @Override
+            public void run() {
+               TimeoutException te = new TimeoutException(formatString("Timed out after %s waiting for responses from %s",
+                                                                       prettyPrintTime(timeout), targets));
+               if (result.setException(te)) request.cancel(true);
+            }
+         }, timeout, MILLISECONDS);
+      }
+
+      /**
+       * Completes the future once the {@link org.jgroups.blocks.GroupRequest} of a broadcast is done.
+       */
+      private class BroadcastCollector implements FutureListener<RspList<Object>> {
+         final SettableNotifyingFuture<RspList<Object>> result;
+         final Buffer buf;
+         final NotifyingFuture<RspList<Object>> request;
+         final Collection<Address> targets;
+         volatile Future<?> timeoutTask;
+
+         BroadcastCollector(SettableNotifyingFuture<RspList<Object>> result, Buffer buf,
+                            NotifyingFuture<RspList<Object>> request, Collection<Address> targets) {
+            this.result = result;
+            this.buf = buf;
+            this.request = request;
+            this.targets = targets;
+         }
+
+         void watch() {
+            timeoutTask = scheduleTimeout(result, request, targets);
+            request.setListener(this);
+         }
+
+         @Override
+         public void futureDone(Future<RspList<Object>> future) {
+            if (timeoutTask != null) timeoutTask.cancel(false);
+            if (result.isDone()) return;
+            try {
+               RspList<Object> retval = future.get();
+               // see the synchronous call
+               if (retval == null)
+                  throw new NotSerializableException("RpcDispatcher returned a null.  This is most often caused by args for "
+                                                           + command.getClass().getSimpleName() + " not being serializable.");
+               complete(result, retval, buf);
+            } catch (Throwable t) {
+               result.setException(unwrap(t));
+            }
+         }
+      }
+
+      /**
+       * Collects the responses to parallel unicasts as the JGroups callbacks deliver them.  With a response filter the
+       * first acceptable response completes the future, as with {@link FutureCollator}; otherwise the future is
+       * completed once every target has answered or been suspected.
+       */
+      private class UnicastCollector implements FutureListener<Object> {
+         final SettableNotifyingFuture<RspList<Object>> result;
+         final Buffer buf;
+         final Map<Future<Object>, SenderContainer> futures = new HashMap<Future<Object>, SenderContainer>(4);
+         final RspList<Object> responses = new RspList<Object>();
+         int expectedResponses;
+         Exception exception;
+         volatile Future<?> timeoutTask;
+
+         UnicastCollector(SettableNotifyingFuture<RspList<Object>> result, Buffer buf, int expectedResponses) {
+            this.result = result;
+            this.buf = buf;
+            this.expectedResponses = expectedResponses;
+         }
+
+         void watch(Address address, NotifyingFuture<Object> f) {
+            synchronized (this) {
+               futures.put(f, new SenderContainer(address));
+            }
+            f.setListener(this);
+         }
+
+         void scheduleTimeout() {
+            Future<?> task = getTimer().schedule(new Runnable() {
+               @Override
+               public void run() {
+                  String senders;
+                  synchronized (UnicastCollector.this) {
+                     senders = futures.values().toString();
+                  }
+                  String message = filter != null ?
+                        format("Timed out waiting for %s for valid responses from any of %s.", prettyPrintTime(timeout), senders) :
+                        formatString("Timed out after %s waiting for a response from %s", prettyPrintTime(timeout), senders);
+                  if (result.setException(new TimeoutException(message))) cancelRequests();
+               }
+            }, timeout, MILLISECONDS);
+            synchronized (this) {
+               timeoutTask = task;
+               if (result.isDone()) task.cancel(false);
+            }
+         }
+
+         @Override
+         public void futureDone(Future<Object> future) {
+            // only record the outcome under the monitor: completing the future may send a replay
+            RspList<Object> completion = null;
+            Exception failure = null;
+            boolean cancel = false;
+            synchronized (this) {
+               SenderContainer sc = futures.get(future);
+               // JGroups may notify a listener twice, see FutureCollator
+               if (sc == null || sc.processed) return;
+               sc.processed = true;
+               expectedResponses--;
+               if (result.isDone()) return;
+
+               Address sender = sc.address;
+               try {
+                  Object response = future.get();
+                  if (trace) log.tracef("Received response: %s from %s", response, sender);
+                  if (filter != null) {
+                     filter.isAcceptable(response, sender);
+                     if (!filter.needMoreResponses())
+                        completion = new RspList<Object>(Collections.singleton(new Rsp<Object>(sender, response)));
+                  } else {
+                     responses.addRsp(sender, response);
+                  }
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               } catch (ExecutionException e) {
+                  if (e.getCause() instanceof SuspectedException) {
+                     responses.put(sender, new Rsp<Object>(sender, true));
+                  } else if (filter != null) {
+                     // skip this response and wait for the others
+                     exception = unwrap(e);
+                     if (log.isDebugEnabled())
+                        log.debugf("Caught exception %s from sender %s.  Will skip this response.", exception.getClass().getName(), sender);
+                  } else {
+                     failure = unwrap(e);
+                     cancel = true;
+                  }
+               }
+
+               if (completion == null && failure == null && expectedResponses == 0) {
+                  if (filter == null) {
+                     completion = responses;
+                  } else {
+                     failure = exception != null ? exception :
+                           new RpcException(format("No more valid responses.  Received invalid responses from all of %s", futures.values()));
+                  }
+               }
+            }
+
+            if (completion != null) {
+               finish(completion);
+            } else if (failure != null) {
+               if (timeoutTask != null) timeoutTask.cancel(false);
+               result.setException(failure);
+               if (cancel) cancelRequests();
+            }
+         }
+
+         private void finish(RspList<Object> retval) {
+            if (timeoutTask != null) timeoutTask.cancel(false);
+            complete(result, retval, buf);
+         }
+
+         private void cancelRequests() {
+            synchronized (this) {
+               if (timeoutTask != null) timeoutTask.cancel(false);
+               for (Future<Object> f : futures.keySet()) if (!f.isDone()) f.cancel(true);
+            }
+         }
+      }
    }
 
    static class SenderContainer {
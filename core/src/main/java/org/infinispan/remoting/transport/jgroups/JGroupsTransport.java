@@ -26,18 +26,26 @@
 import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.config.parsing.XmlConfigHelper;
 import org.infinispan.factories.annotations.ComponentName;
+import org.infinispan.factories.annotations.Inject;
 import org.infinispan.jmx.JmxUtil;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.marshall.StreamingMarshaller;
 import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
 import org.infinispan.remoting.InboundInvocationHandler;
 import org.infinispan.remoting.responses.Response;
 import org.infinispan.remoting.rpc.ResponseFilter;
 import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcStatisticsRegistry;
 import org.infinispan.remoting.transport.AbstractTransport;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.FileLookupFactory;
 import org.infinispan.util.TypedProperties;
 import org.infinispan.util.Util;
+import org.infinispan.util.concurrent.FutureListener;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.infinispan.util.concurrent.SettableNotifyingFuture;
 import org.infinispan.util.concurrent.TimeoutException;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -53,6 +61,10 @@
 import org.jgroups.util.Rsp;
 import org.jgroups.util.RspList;
 import org.jgroups.util.TopologyUUID;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
 
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
@@ -66,7 +78,11 @@
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
 
 import static org.infinispan.factories.KnownComponentNames.GLOBAL_MARSHALLER;
 
@@ -78,16 +94,25 @@
  * a {@link org.infinispan.remoting.transport.jgroups.JGroupsChannelLookup} instance</li> </ul> These are normally
  * passed in as Properties in {@link org.infinispan.config.GlobalConfiguration#setTransportProperties(java.util.Properties)}
  * or in the Infinispan XML configuration file.
+ * <p />
+ * RPC payloads whose marshalled size, in bytes, reaches the <tt>compressionThreshold</tt> property are deflated with
+ * the <tt>compressionLevel</tt> property (defaults to {@link java.util.zip.Deflater#BEST_SPEED}) before being sent.
+ * Compression is disabled by default. Enabling it adds a one byte trailer to every payload, which nodes without
+ * compression don't understand, so all the nodes of a cluster must enable it; their thresholds may differ, and a
+ * very large threshold makes a node accept compressed payloads without compressing its own.
  *
  * @author Manik Surtani
  * @author Galder Zamarreño
  * @since 4.0
  */
+@MBean(objectName = "Transport", description = "Transport used to communicate with the other nodes in the cluster")
 public class JGroupsTransport extends AbstractTransport implements MembershipListener {
    public static final String CONFIGURATION_STRING = "configurationString";
    public static final String CONFIGURATION_XML = "configurationXml";
    public static final String CONFIGURATION_FILE = "configurationFile";
    public static final String CHANNEL_LOOKUP = "channelLookup";
+   public static final String COMPRESSION_THRESHOLD = "compressionThreshold";
+   public static final String COMPRESSION_LEVEL = "compressionLevel";
    protected static final String DEFAULT_JGROUPS_CONFIGURATION_FILE = "jgroups-udp.xml";
 
    static final Log log = LogFactory.getLog(JGroupsTransport.class);
@@ -96,11 +121,13 @@ public class JGroupsTransport extends AbstractTransport implements MembershipLis
 
    protected boolean startChannel = true, stopChannel = true;
    private CommandAwareRpcDispatcher dispatcher;
+   private MarshallerAdapter marshallerAdapter;
    protected TypedProperties props;
    protected InboundInvocationHandler inboundInvocationHandler;
    protected StreamingMarshaller marshaller;
    protected ExecutorService asyncExecutor;
    protected CacheManagerNotifier notifier;
+   protected RpcStatisticsRegistry rpcStatisticsRegistry;
 
    private boolean globalStatsEnabled;
    private MBeanServer mbeanServer;
@@ -148,6 +175,11 @@ public void initialize(@ComponentName(GLOBAL_MARSHALLER) StreamingMarshaller mar
       this.notifier = notifier;
    }
 
+   @Inject
+   public void injectRpcStatisticsRegistry(RpcStatisticsRegistry rpcStatisticsRegistry) {
+      this.rpcStatisticsRegistry = rpcStatisticsRegistry;
+   }
+
    public void start() {
       props = TypedProperties.toTypedProperties(configuration.getTransportProperties());
 
@@ -266,9 +298,11 @@ private void initChannelAndRPCDispatcher() throws CacheException {
       initChannel();
       dispatcher = new CommandAwareRpcDispatcher(channel, this,
               asyncExecutor, inboundInvocationHandler);
-      MarshallerAdapter adapter = new MarshallerAdapter(marshaller);
-      dispatcher.setRequestMarshaller(adapter);
-      dispatcher.setResponseMarshaller(adapter);
+      int compressionThreshold = props == null ? 0 : props.getIntProperty(COMPRESSION_THRESHOLD, 0);
+      int compressionLevel = props == null ? Deflater.BEST_SPEED : props.getIntProperty(COMPRESSION_LEVEL, Deflater.BEST_SPEED);
+      marshallerAdapter = new MarshallerAdapter(marshaller, rpcStatisticsRegistry, compressionThreshold, compressionLevel);
+      dispatcher.setRequestMarshaller(marshallerAdapter);
+      dispatcher.setResponseMarshaller(marshallerAdapter);
    }
 
    // This is per CM, so the CL in use should be the CM CL
@@ -414,6 +448,51 @@ public Map<Address, Response> invokeRemotely(Collection<Address> recipients, Rep
 
       if (mode.isAsynchronous()) return Collections.emptyMap();// async case
 
+      return parseResponses(rsps, mode, responseFilter);
+   }
+
+   @Override
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(Collection<Address> recipients, ReplicableCommand rpcCommand,
+                                                                        final ResponseMode mode, long timeout, boolean usePriorityQueue,
+                                                                        final ResponseFilter responseFilter, boolean supportReplay) {
+      final SettableNotifyingFuture<Map<Address, Response>> result = new SettableNotifyingFuture<Map<Address, Response>>();
+      try {
+         if (mode.isAsynchronous() || (recipients != null && recipients.isEmpty())) {
+            // nothing to wait for
+            result.set(invokeRemotely(recipients, rpcCommand, mode, timeout, usePriorityQueue, responseFilter, supportReplay));
+            return result;
+         }
+
+         if (trace) log.tracef("dests=%s, command=%s, mode=%s, timeout=%s, in future", recipients, rpcCommand, mode, timeout);
+
+         if (mode == ResponseMode.SYNCHRONOUS && recipients != null && !getMembers().containsAll(recipients)) {
+            throw new SuspectException("One or more nodes have left the cluster while replicating command " + rpcCommand);
+         }
+         if (!usePriorityQueue && (ResponseMode.SYNCHRONOUS == mode || ResponseMode.SYNCHRONOUS_IGNORE_LEAVERS == mode))
+            usePriorityQueue = true;
+
+         boolean broadcast = recipients == null || recipients.size() == members.size();
+         dispatcher.invokeRemoteCommandsInFuture(toJGroupsAddressVector(recipients), rpcCommand, toJGroupsMode(mode),
+               timeout, recipients != null, usePriorityQueue, toJGroupsFilter(responseFilter), supportReplay, broadcast)
+               .attachListener(new FutureListener<RspList<Object>>() {
+                  @Override
+                  public void futureDone(Future<RspList<Object>> future) {
+                     try {
+                        result.set(parseResponses(future.get(), mode, responseFilter));
+                     } catch (ExecutionException e) {
+                        result.setException(Util.rewrapAsCacheException(e.getCause()));
+                     } catch (Throwable t) {
+                        result.setException(t);
+                     }
+                  }
+               });
+      } catch (Throwable t) {
+         result.setException(t);
+      }
+      return result;
+   }
+
+   private Map<Address, Response> parseResponses(RspList<Object> rsps, ResponseMode mode, ResponseFilter responseFilter) throws Exception {
       // short-circuit no-return-value calls.
       if (rsps == null) return Collections.emptyMap();
       Map<Address, Response> retval = new HashMap<Address, Response>(rsps.size());
@@ -565,8 +644,52 @@ private static List<Address> fromJGroupsAddressList(List<org.jgroups.Address> li
       return Collections.unmodifiableList(retval);
    }
 
+   // ------------------------------------------------------------------------------------------------------------------
+   // JMX statistics
+   // ------------------------------------------------------------------------------------------------------------------
+
+   @ManagedAttribute(description = "Number of RPC payloads sent compressed")
+   @Metric(displayName = "Compressed payloads", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getCompressedMessages() {
+      return marshallerAdapter == null ? 0 : marshallerAdapter.getCompressedMessages();
+   }
+
+   @ManagedAttribute(description = "Bytes saved by compressing RPC payloads")
+   @Metric(displayName = "Bytes saved by compression", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getCompressionBytesSaved() {
+      return marshallerAdapter == null ? 0 : marshallerAdapter.getCompressionBytesSaved();
+   }
+
+   @ManagedAttribute(description = "Compressed size of the payloads sent compressed, as a ratio of their marshalled size")
+   @Metric(displayName = "Compression ratio", displayType = DisplayType.SUMMARY)
+   public double getCompressionRatio() {
+      return marshallerAdapter == null ? 1 : marshallerAdapter.getCompressionRatio();
+   }
+
+   @ManagedAttribute(description = "Time spent compressing outgoing RPC payloads, in milliseconds")
+   @Metric(displayName = "Time spent compressing", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getCompressionTime() {
+      return marshallerAdapter == null ? 0 : TimeUnit.NANOSECONDS.toMillis(marshallerAdapter.getCompressionTime());
+   }
+
+   @ManagedAttribute(description = "Time spent decompressing incoming RPC payloads, in milliseconds")
+   @Metric(displayName = "Time spent decompressing", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getDecompressionTime() {
+      return marshallerAdapter == null ? 0 : TimeUnit.NANOSECONDS.toMillis(marshallerAdapter.getDecompressionTime());
+   }
+
+   @ManagedOperation(description = "Resets the compression statistics")
+   @Operation(displayName = "Reset compression statistics")
+   public void resetStatistics() {
+      if (marshallerAdapter != null) marshallerAdapter.resetStatistics();
+   }
+
    // mainly for unit testing
 
+   public MarshallerAdapter getMarshallerAdapter() {
+      return marshallerAdapter;
+   }
+
    public CommandAwareRpcDispatcher getCommandAwareRpcDispatcher() {
       return dispatcher;
    }
@@ -22,35 +22,225 @@
  */
 package org.infinispan.remoting.transport.jgroups;
 
+import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.io.ByteBuffer;
 import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.remoting.responses.SuccessfulResponse;
+import org.infinispan.remoting.rpc.RpcStatisticsRegistry;
 import org.jgroups.blocks.RpcDispatcher;
 import org.jgroups.util.Buffer;
 
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
 /**
  * Bridge between JGroups and Infinispan marshallers
+ * <p />
+ * When compression is enabled, every buffer ends with a one byte trailer that tells whether the payload before it is
+ * compressed, so that nodes with different compression thresholds can talk to each other. Payloads whose marshalled
+ * size reaches the compression threshold are deflated, and sent compressed only if that makes them smaller; a
+ * compressed payload is followed by its uncompressed length, as an int, before the trailer.
+ * <p />
+ * Without compression, buffers are exactly the marshaller's output. The two formats are incompatible, so either every
+ * node of a cluster enables compression or none does.
  *
  * @author Manik Surtani
  * @since 4.0
  */
 public class MarshallerAdapter implements RpcDispatcher.Marshaller {
+   static final byte PLAIN = 0;
+   static final byte COMPRESSED = 1;
+   private static final int COMPRESSED_TRAILER_LENGTH = 5;
+   // deflate cannot compress better than about 1032:1, so a larger declared length means a corrupted payload
+   private static final int MAX_DEFLATE_RATIO = 1032;
+
    StreamingMarshaller m;
+   RpcStatisticsRegistry statisticsRegistry;
+   private final int compressionThreshold;
+   private final int compressionLevel;
+
+   private final AtomicLong compressedMessages = new AtomicLong(0);
+   private final AtomicLong uncompressedBytes = new AtomicLong(0);
+   private final AtomicLong compressedBytes = new AtomicLong(0);
+   private final AtomicLong compressionTime = new AtomicLong(0);
+   private final AtomicLong decompressionTime = new AtomicLong(0);
 
    public MarshallerAdapter(StreamingMarshaller m) {
+      this(m, null);
+   }
+
+   public MarshallerAdapter(StreamingMarshaller m, RpcStatisticsRegistry statisticsRegistry) {
+      this(m, statisticsRegistry, 0, Deflater.BEST_SPEED);
+   }
+
+   /**
+    * @param compressionThreshold marshalled size, in bytes, from which payloads are compressed; 0 or less disables
+    *                             compression, and the payload trailer along with it
+    * @param compressionLevel     the {@link Deflater} compression level
+    */
+   public MarshallerAdapter(StreamingMarshaller m, RpcStatisticsRegistry statisticsRegistry, int compressionThreshold, int compressionLevel) {
       this.m = m;
+      this.statisticsRegistry = statisticsRegistry;
+      this.compressionThreshold = compressionThreshold;
+      this.compressionLevel = compressionLevel;
    }
 
    @Override
    public Buffer objectToBuffer(Object obj) throws Exception {
-      return toBuffer(m.objectToBuffer(obj));
+      ByteBuffer bb = m.objectToBuffer(obj);
+      Buffer buffer;
+      if (compressionThreshold <= 0) {
+         buffer = new Buffer(bb.getBuf(), bb.getOffset(), bb.getLength());
+      } else {
+         buffer = bb.getLength() >= compressionThreshold ? compress(bb) : null;
+         if (buffer == null) buffer = appendTrailer(bb);
+      }
+      if (statisticsRegistry != null && obj instanceof ReplicableCommand)
+         statisticsRegistry.recordBytesSent((ReplicableCommand) obj, buffer.getLength());
+      return buffer;
    }
 
    @Override
    public Object objectFromBuffer(byte[] buf, int offset, int length) throws Exception {
-      return m.objectFromByteBuffer(buf, offset, length);
+      Object o;
+      if (compressionThreshold <= 0) {
+         o = m.objectFromByteBuffer(buf, offset, length);
+      } else {
+         byte flag = buf[offset + length - 1];
+         if (flag == PLAIN) {
+            o = m.objectFromByteBuffer(buf, offset, length - 1);
+         } else if (flag == COMPRESSED) {
+            byte[] uncompressed = decompress(buf, offset, length);
+            o = m.objectFromByteBuffer(uncompressed, 0, uncompressed.length);
+         } else {
+            throw new StreamCorruptedException("Unknown payload trailer " + flag);
+         }
+      }
+      if (o instanceof SuccessfulResponse) ((SuccessfulResponse) o).setMarshalledSize(length);
+      return o;
+   }
+
+   /**
+    * Adds the {@link #PLAIN} trailer, in place when the marshaller's buffer has some spare capacity.
+    */
+   private Buffer appendTrailer(ByteBuffer bb) {
+      byte[] buf = bb.getBuf();
+      int offset = bb.getOffset();
+      int length = bb.getLength();
+      if (buf.length <= offset + length) {
+         buf = Arrays.copyOfRange(buf, offset, offset + length + 1);
+         offset = 0;
+      }
+      buf[offset + length] = PLAIN;
+      return new Buffer(buf, offset, length + 1);
+   }
+
+   /**
+    * @return the compressed payload with its trailer, or null if compressing doesn't make it smaller
+    */
+   private Buffer compress(ByteBuffer bb) {
+      long start = System.nanoTime();
+      int length = bb.getLength();
+      byte[] out = new byte[length];
+      int maxCompressedLength = length - COMPRESSED_TRAILER_LENGTH;
+      Deflater deflater = new Deflater(compressionLevel);
+      int compressedLength = 0;
+      try {
+         deflater.setInput(bb.getBuf(), bb.getOffset(), length);
+         deflater.finish();
+         while (!deflater.finished() && compressedLength < maxCompressedLength) {
+            compressedLength += deflater.deflate(out, compressedLength, maxCompressedLength - compressedLength);
+         }
+         if (!deflater.finished()) return null;
+      } finally {
+         deflater.end();
+         compressionTime.addAndGet(System.nanoTime() - start);
+      }
+      writeInt(out, compressedLength, length);
+      out[compressedLength + 4] = COMPRESSED;
+      compressedMessages.incrementAndGet();
+      uncompressedBytes.addAndGet(length);
+      compressedBytes.addAndGet(compressedLength + COMPRESSED_TRAILER_LENGTH);
+      return new Buffer(out, 0, compressedLength + COMPRESSED_TRAILER_LENGTH);
+   }
+
+   private byte[] decompress(byte[] buf, int offset, int length) throws DataFormatException, StreamCorruptedException {
+      int compressedLength = length - COMPRESSED_TRAILER_LENGTH;
+      if (compressedLength <= 0) throw new StreamCorruptedException("Truncated compressed payload");
+      int uncompressedLength = readInt(buf, offset + compressedLength);
+      if (uncompressedLength < 0 || uncompressedLength > (long) compressedLength * MAX_DEFLATE_RATIO)
+         throw new StreamCorruptedException("Invalid uncompressed length " + uncompressedLength + " for a "
+                                                  + compressedLength + " bytes compressed payload");
+      long start = System.nanoTime();
+      byte[] out = new byte[uncompressedLength];
+      Inflater inflater = new Inflater();
+      try {
+         inflater.setInput(buf, offset, compressedLength);
+         int read = 0;
+         while (read < out.length && !inflater.finished()) {
+            int n = inflater.inflate(out, read, out.length - read);
+            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+               throw new StreamCorruptedException("Truncated compressed payload");
+            read += n;
+         }
+         if (read < out.length) throw new StreamCorruptedException("Truncated compressed payload");
+      } finally {
+         inflater.end();
+         decompressionTime.addAndGet(System.nanoTime() - start);
+      }
+      return out;
+   }
+
+   private static void writeInt(byte[] buf, int offset, int value) {
+      buf[offset] = (byte) (value >>> 24);
+      buf[offset + 1] = (byte) (value >>> 16);
+      buf[offset + 2] = (byte) (value >>> 8);
+      buf[offset + 3] = (byte) value;
+   }
+
+   private static int readInt(byte[] buf, int offset) {
+      return ((buf[offset] & 0xFF) << 24) | ((buf[offset + 1] & 0xFF) << 16) | ((buf[offset + 2] & 0xFF) << 8) | (buf[offset + 3] & 0xFF);
+   }
+
+   public long getCompressedMessages() {
+      return compressedMessages.get();
+   }
+
+   /**
+    * @return the bytes saved by compressing outgoing payloads, trailers included
+    */
+   public long getCompressionBytesSaved() {
+      return uncompressedBytes.get() - compressedBytes.get();
+   }
+
+   /**
+    * @return the compressed size of the payloads sent compressed, as a ratio of their marshalled size
+    */
+   public double getCompressionRatio() {
+      long uncompressed = uncompressedBytes.get();
+      return uncompressed == 0 ? 1 : (double) compressedBytes.get() / uncompressed;
+   }
+
+   /**
+    * @return the time spent compressing, in nanoseconds, including attempts that were discarded
+    */
+   public long getCompressionTime() {
+      return compressionTime.get();
+   }
+
+   public long getDecompressionTime() {
+      return decompressionTime.get();
    }
 
-   private Buffer toBuffer(ByteBuffer bb) {
-      return new Buffer(bb.getBuf(), bb.getOffset(), bb.getLength());
+   public void resetStatistics() {
+      compressedMessages.set(0);
+      uncompressedBytes.set(0);
+      compressedBytes.set(0);
+      compressionTime.set(0);
+      decompressionTime.set(0);
    }
 }
@@ -23,6 +23,7 @@
 import org.infinispan.cacheviews.CacheView;
 import org.infinispan.cacheviews.CacheViewsManager;
 import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
 import org.infinispan.commands.control.StateTransferControlCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.config.Configuration;
@@ -35,16 +36,22 @@
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.factories.annotations.Stop;
 import org.infinispan.interceptors.InterceptorChain;
+import org.infinispan.jmx.annotations.ManagedAttribute;
 import org.infinispan.loaders.CacheLoaderManager;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
 import org.infinispan.notifications.cachemanagerlistener.CacheManagerNotifier;
 import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.rpc.RpcStatisticsRegistry;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.concurrent.ReclosableLatch;
+import org.infinispan.util.concurrent.locks.LockManager;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
+import org.rhq.helpers.pluginAnnotations.agent.DataType;
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -53,6 +60,7 @@
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.infinispan.context.Flag.*;
 
@@ -76,6 +84,8 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
    protected CacheNotifier cacheNotifier;
    private CacheViewsManager cacheViewsManager;
    protected StateTransferLock stateTransferLock;
+   private LockManager lockManager;
+   private RpcStatisticsRegistry rpcStatisticsRegistry;
    protected volatile ConsistentHash chOld;
    private volatile CacheView oldView;
    protected volatile ConsistentHash chNew;
@@ -89,6 +99,22 @@ public abstract class BaseStateTransferManagerImpl implements StateTransferManag
    private final ReclosableLatch stateTransferInProgressLatch = new ReclosableLatch(false);
    private volatile BaseStateTransferTask stateTransferTask;
 
+   // progress of the current (or last) state transfer, reset when a state transfer starts
+   private final AtomicLong pushedChunks = new AtomicLong();
+   private final AtomicLong pushedEntries = new AtomicLong();
+   private final AtomicLong appliedChunks = new AtomicLong();
+   private final AtomicLong appliedEntries = new AtomicLong();
+   private final AtomicLong skippedEntries = new AtomicLong();
+   private final AtomicLong pushedBytes = new AtomicLong();
+   private final AtomicLong throttledNanos = new AtomicLong();
+
+   // limits for pushing state, initialized from the configuration and adjustable through JMX
+   private volatile int maxInFlightChunks;
+   private volatile long maxBandwidth;
+   // the earliest time the next chunk may be pushed without going over maxBandwidth
+   private long nextPushNanos;
+   private final Object bandwidthLock = new Object();
+
    public BaseStateTransferManagerImpl() {
    }
 
@@ -108,6 +134,18 @@ public void init(Configuration configuration, RpcManager rpcManager, CacheManage
       this.icc = icc;
       this.cacheNotifier = cacheNotifier;
       this.cacheViewsManager = cacheViewsManager;
+      this.maxInFlightChunks = configuration.getStateRetrievalMaxInFlightChunks();
+      this.maxBandwidth = configuration.getStateRetrievalMaxBandwidth();
+   }
+
+   @Inject
+   public void injectLockManager(LockManager lockManager) {
+      this.lockManager = lockManager;
+   }
+
+   @Inject
+   public void injectRpcStatisticsRegistry(RpcStatisticsRegistry rpcStatisticsRegistry) {
+      this.rpcStatisticsRegistry = rpcStatisticsRegistry;
    }
 
    // needs to be AFTER the DistributionManager and *after* the cache loader manager (if any) inits and preloads
@@ -115,6 +153,16 @@ public void init(Configuration configuration, RpcManager rpcManager, CacheManage
    private void start() throws Exception {
       if (trace) log.tracef("Starting state transfer manager on " + getAddress());
 
+      // the transport reports the size of every chunk it marshals, so we don't have to marshal them to measure them
+      rpcStatisticsRegistry.addBytesSentListener(configuration.getName(), new RpcStatisticsRegistry.BytesSentListener() {
+         @Override
+         public void bytesSent(ReplicableCommand command, int bytes) {
+            if (command instanceof StateTransferControlCommand
+                  && ((StateTransferControlCommand) command).getType() == StateTransferControlCommand.Type.APPLY_STATE)
+               recordPushedBytes(bytes);
+         }
+      });
+
       // set up the old CH, but it shouldn't be used until we get the prepare call
       cacheViewsManager.join(configuration.getName(), this);
    }
@@ -129,6 +177,7 @@ public void waitForJoinToComplete() throws InterruptedException {
 
    @Stop(priority = 20)
    public void stop() {
+      rpcStatisticsRegistry.removeBytesSentListener(configuration.getName());
       chOld = null;
       chNew = null;
       cacheViewsManager.leave(configuration.getName());
@@ -161,6 +210,8 @@ public boolean isJoinComplete() {
    }
 
    @Override
+   @ManagedAttribute(description = "Whether a state transfer is in progress")
+   @Metric(displayName = "State transfer in progress", dataType = DataType.TRAIT)
    public boolean isStateTransferInProgress() {
       return !isLatchOpen(stateTransferInProgressLatch);
    }
@@ -210,19 +261,38 @@ public void applyState(Collection<InternalCacheEntry> state,
 
       log.debugf("Applying new state from %s: received %d keys", sender, state.size());
       if (trace) log.tracef("Received keys: %s", keys(state));
+      boolean nonBlocking = isNonBlockingStateTransfer();
       for (InternalCacheEntry e : state) {
          InvocationContext ctx = icc.createInvocationContext(false, 1);
-         // locking not necessary as during rehashing we block all transactions
-         ctx.setFlags(CACHE_MODE_LOCAL, SKIP_CACHE_LOAD, SKIP_REMOTE_LOOKUP, SKIP_SHARED_CACHE_STORE, SKIP_LOCKING,
-                      SKIP_OWNERSHIP_CHECK);
          try {
+            if (nonBlocking) {
+               // writes are not blocked, so hold the key lock while checking that the local value isn't newer
+               lockManager.acquireLock(ctx, e.getKey());
+               if (stateTransferLock.isKeyWrittenDuringStateTransfer(e.getKey())) {
+                  if (trace) log.tracef("Not applying state for key %s, it was written during the state transfer", e.getKey());
+                  skippedEntries.incrementAndGet();
+                  continue;
+               }
+            }
+            // otherwise locking is not necessary as during rehashing we block all transactions
+            ctx.setFlags(CACHE_MODE_LOCAL, SKIP_CACHE_LOAD, SKIP_REMOTE_LOOKUP, SKIP_SHARED_CACHE_STORE, SKIP_LOCKING,
+                         SKIP_OWNERSHIP_CHECK);
             PutKeyValueCommand put = cf.buildPutKeyValueCommand(e.getKey(), e.getValue(), e.getLifespan(), e.getMaxIdle(), ctx.getFlags());
             interceptorChain.invoke(ctx, put);
+            if (e.getVersion() != null) {
+               // keep the version of the pushed entry, so transactions that read it from the old owner still validate
+               InternalCacheEntry ice = dataContainer.peek(e.getKey());
+               if (ice != null) ice.setVersion(e.getVersion());
+            }
          } catch (Exception ee) {
             log.problemApplyingStateForKey(ee.getMessage(), e.getKey());
+         } finally {
+            if (nonBlocking) lockManager.unlockAll(ctx);
          }
       }
 
+      appliedChunks.incrementAndGet();
+      appliedEntries.addAndGet(state.size());
       if(trace) log.tracef("After applying state data container has %d keys", dataContainer.size());
    }
 
@@ -259,10 +329,14 @@ public void endStateTransfer() {
 
    public abstract CacheStore getCacheStoreForStateTransfer();
 
-   public void pushStateToNode(NotifyingNotifiableFuture<Object> stateTransferFuture, int viewId, Address target, Collection<InternalCacheEntry> state) throws StateTransferCancelledException {
+   /**
+    * @return <code>true</code> if the state was pushed, <code>false</code> if the target has already left and
+    *         <code>stateTransferFuture</code> will never complete
+    */
+   public boolean pushStateToNode(NotifyingNotifiableFuture<Object> stateTransferFuture, int viewId, Address target, Collection<InternalCacheEntry> state) throws StateTransferCancelledException {
       if (leavers.contains(target)) {
          log.debugf("Not pushing state to node %s since it has already left", target);
-         return;
+         return false;
       }
 
       log.debugf("Pushing to node %s %d keys", target, state.size());
@@ -270,8 +344,46 @@ public void pushStateToNode(NotifyingNotifiableFuture<Object> stateTransferFutur
 
       final StateTransferControlCommand cmd = cf.buildStateTransferCommand(StateTransferControlCommand.Type.APPLY_STATE, getAddress(), viewId, state);
 
+      // the size of the chunk is recorded when the transport marshals it, see start()
       rpcManager.invokeRemotelyInFuture(Collections.singleton(target), cmd,
             false, stateTransferFuture, configuration.getRehashRpcTimeout());
+      pushedChunks.incrementAndGet();
+      pushedEntries.addAndGet(state.size());
+      return true;
+   }
+
+   private void recordPushedBytes(long bytes) {
+      pushedBytes.addAndGet(bytes);
+      long bandwidth = maxBandwidth;
+      if (bandwidth <= 0)
+         return;
+
+      synchronized (bandwidthLock) {
+         long now = System.nanoTime();
+         if (nextPushNanos < now)
+            nextPushNanos = now;
+         nextPushNanos += TimeUnit.SECONDS.toNanos(bytes) / bandwidth;
+      }
+   }
+
+   /**
+    * Waits until the state pushed so far fits within the bandwidth limit, checking periodically if the state transfer
+    * was cancelled.
+    */
+   void waitForBandwidth(BaseStateTransferTask task) throws InterruptedException, StateTransferCancelledException {
+      while (maxBandwidth > 0) {
+         long delay;
+         synchronized (bandwidthLock) {
+            delay = nextPushNanos - System.nanoTime();
+         }
+         if (delay <= 0)
+            return;
+
+         long sleepNanos = Math.min(delay, TimeUnit.MILLISECONDS.toNanos(100));
+         TimeUnit.NANOSECONDS.sleep(sleepNanos);
+         throttledNanos.addAndGet(sleepNanos);
+         task.checkIfCancelled();
+      }
    }
 
    public boolean isLastViewId(int viewId) {
@@ -284,6 +396,14 @@ public void prepareView(CacheView pendingView, CacheView committedView) throws E
 
       joinStartedLatch.countDown();
 
+      // reset the progress before publishing the new view, state for it may be applied as soon as it is published
+      pushedChunks.set(0);
+      pushedEntries.set(0);
+      appliedChunks.set(0);
+      appliedEntries.set(0);
+      skippedEntries.set(0);
+      pushedBytes.set(0);
+      throttledNanos.set(0);
       newView = pendingView;
       chNew = createConsistentHash(pendingView.getMembers());
 
@@ -314,6 +434,8 @@ public void rollbackView(int committedViewId) {
          if (committedViewId == oldView.getViewId()) {
             log.tracef("Ignoring rollback for cache view %d as we don't have a state transfer in progress",
                   committedViewId);
+            // writes from nodes that did start the state transfer may have been recorded
+            stateTransferLock.stopTrackingWrites();
             return;
          } else {
             throw new IllegalArgumentException(String.format("Cannot rollback to view %d, we are at view %d",
@@ -343,4 +465,102 @@ public void pruneInvalidMembers(Collection<Address> targets) {
    }
 
    protected abstract BaseStateTransferTask createStateTransferTask(int viewId, List<Address> members, boolean initialView);
+
+   /**
+    * @return <code>true</code> if write commands keep running during the state transfer, in which case received state
+    *         must not overwrite keys written in the meantime
+    */
+   public boolean isNonBlockingStateTransfer() {
+      return false;
+   }
+
+   @ManagedAttribute(description = "Number of state chunks pushed by this node in the current or last state transfer")
+   @Metric(displayName = "Pushed state chunks", displayType = DisplayType.SUMMARY)
+   public long getPushedChunks() {
+      return pushedChunks.get();
+   }
+
+   @ManagedAttribute(description = "Number of entries pushed by this node in the current or last state transfer")
+   @Metric(displayName = "Pushed state entries", displayType = DisplayType.SUMMARY)
+   public long getPushedEntries() {
+      return pushedEntries.get();
+   }
+
+   @ManagedAttribute(description = "Number of state chunks pushed by this node that haven't been applied yet")
+   @Metric(displayName = "Pending state chunks", displayType = DisplayType.SUMMARY)
+   public int getPendingChunks() {
+      BaseStateTransferTask task = stateTransferTask;
+      return task == null ? 0 : task.getPendingChunks();
+   }
+
+   @ManagedAttribute(description = "Number of state chunks applied by this node in the current or last state transfer")
+   @Metric(displayName = "Applied state chunks", displayType = DisplayType.SUMMARY)
+   public long getAppliedChunks() {
+      return appliedChunks.get();
+   }
+
+   @ManagedAttribute(description = "Number of entries applied by this node in the current or last state transfer")
+   @Metric(displayName = "Applied state entries", displayType = DisplayType.SUMMARY)
+   public long getAppliedEntries() {
+      return appliedEntries.get();
+   }
+
+   @ManagedAttribute(description = "Number of bytes pushed by this node in the current or last state transfer")
+   @Metric(displayName = "Pushed state bytes", displayType = DisplayType.SUMMARY)
+   public long getPushedBytes() {
+      return pushedBytes.get();
+   }
+
+   @ManagedAttribute(description = "Time (in milliseconds) this node waited in the current or last state transfer to stay within the bandwidth limit")
+   @Metric(displayName = "State transfer throttled time", displayType = DisplayType.SUMMARY)
+   public long getThrottledTime() {
+      return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+   }
+
+   @ManagedAttribute(description = "Percentage of the local entries scanned by the current state transfer, 100 if no state transfer is in progress")
+   @Metric(displayName = "State transfer progress", displayType = DisplayType.SUMMARY)
+   public int getStateTransferProgress() {
+      BaseStateTransferTask task = stateTransferTask;
+      return task == null || !isStateTransferInProgress() ? 100 : task.getProgress();
+   }
+
+   @ManagedAttribute(description = "Estimated time (in milliseconds) until the current state transfer finishes scanning the local entries, -1 if unknown or if no state transfer is in progress")
+   @Metric(displayName = "State transfer estimated time remaining", displayType = DisplayType.SUMMARY)
+   public long getEstimatedTimeRemaining() {
+      BaseStateTransferTask task = stateTransferTask;
+      return task == null || !isStateTransferInProgress() ? -1 : task.getEstimatedTimeRemaining();
+   }
+
+   @ManagedAttribute(description = "Maximum number of state chunks pushed to a node that the node hasn't applied yet", writable = true)
+   public int getMaxInFlightChunks() {
+      return maxInFlightChunks;
+   }
+
+   @ManagedAttribute(description = "Maximum number of state chunks pushed to a node that the node hasn't applied yet", writable = true)
+   public void setMaxInFlightChunks(int maxInFlightChunks) {
+      if (maxInFlightChunks < 1)
+         throw new IllegalArgumentException("At least one chunk must be allowed in flight, got " + maxInFlightChunks);
+      this.maxInFlightChunks = maxInFlightChunks;
+   }
+
+   @ManagedAttribute(description = "Maximum rate (in bytes per second) at which this node pushes state, 0 if unlimited", writable = true)
+   public long getMaxBandwidth() {
+      return maxBandwidth;
+   }
+
+   @ManagedAttribute(description = "Maximum rate (in bytes per second) at which this node pushes state, 0 if unlimited", writable = true)
+   public void setMaxBandwidth(long maxBandwidth) {
+      this.maxBandwidth = maxBandwidth;
+      if (maxBandwidth <= 0) {
+         synchronized (bandwidthLock) {
+            nextPushNanos = 0;
+         }
+      }
+   }
+
+   @ManagedAttribute(description = "Number of received entries that were not applied because the key was written during the current or last state transfer")
+   @Metric(displayName = "Skipped state entries", displayType = DisplayType.SUMMARY)
+   public long getSkippedEntries() {
+      return skippedEntries.get();
+   }
 }
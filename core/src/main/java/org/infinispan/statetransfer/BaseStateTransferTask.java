@@ -28,19 +28,33 @@
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.util.Util;
 import org.infinispan.util.concurrent.AggregatingNotifyingFutureImpl;
+import org.infinispan.util.concurrent.FutureListener;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Push state from the existing members of the cluster to the new members.
  * This is a base class, extended by the distributed an replicated versions.
+ * <p/>
+ * Subclasses add the entries to push with {@link #addToChunk(Address, InternalCacheEntry)} as they iterate over them,
+ * and the entries are pushed to each node in chunks of {@link Configuration#getStateRetrievalChunkSize()} entries, so
+ * only the chunks being built or in flight are held in memory. At most
+ * {@link BaseStateTransferManagerImpl#getMaxInFlightChunks()} chunks pushed to a node may wait to be applied; when a
+ * node falls behind, the task waits for it before reading more entries. If a bandwidth limit is set, the task also
+ * waits before every chunk until the bytes pushed so far fit within the limit.
  */
 public abstract class BaseStateTransferTask {
    private static final Log log = LogFactory.getLog(BaseStateTransferTask.class);
@@ -61,8 +75,20 @@ public abstract class BaseStateTransferTask {
 
    private boolean running;
    private boolean cancelled;
+   private volatile boolean writesUnblocked;
    private final Object lock = new Object();
 
+   private final int chunkSize;
+   // the chunks being built, per target; only touched by the thread performing the state transfer
+   private final Map<Address, Collection<InternalCacheEntry>> chunks = new HashMap<Address, Collection<InternalCacheEntry>>();
+   private final Map<Address, Queue<Future<Object>>> inFlightChunks = new HashMap<Address, Queue<Future<Object>>>();
+   private final AtomicInteger pendingChunks = new AtomicInteger();
+
+   // progress of the scan over the local entries, only written by the thread performing the state transfer
+   private volatile long scanStartMillis;
+   private volatile int entriesToScan;
+   private volatile int scannedEntries;
+
    public BaseStateTransferTask(BaseStateTransferManagerImpl stateTransferManager, RpcManager rpcManager,
                                 StateTransferLock stateTransferLock, CacheNotifier cacheNotifier,
                                 Configuration configuration, DataContainer dataContainer, Collection<Address> members,
@@ -78,6 +104,7 @@ public BaseStateTransferTask(BaseStateTransferManagerImpl stateTransferManager,
       this.dataContainer = dataContainer;
       this.chNew = chNew;
       this.chOld = chOld;
+      this.chunkSize = configuration.getStateRetrievalChunkSize();
    }
 
    public void performStateTransfer() throws Exception {
@@ -102,10 +129,13 @@ public void commitStateTransfer() {
       if (running)
          throw new IllegalStateException("State transfer has not finished, cannot commit");
 
-      try {
-         stateTransferLock.unblockNewTransactions(newViewId);
-      } catch (Exception e) {
-         log.errorUnblockingTransactions(e);
+      stateTransferLock.stopTrackingWrites();
+      if (!writesUnblocked) {
+         try {
+            stateTransferLock.unblockNewTransactions(newViewId);
+         } catch (Exception e) {
+            log.errorUnblockingTransactions(e);
+         }
       }
       stateTransferManager.endStateTransfer();
       log.debugf("Node %s completed state transfer for view %d in %s!", self, newViewId,
@@ -126,31 +156,150 @@ public void cancelStateTransfer() {
          }
       }
 
-      try {
-         stateTransferLock.unblockNewTransactions(newViewId);
-      } catch (Exception e) {
-         log.errorUnblockingTransactions(e);
+      stateTransferLock.stopTrackingWrites();
+      if (!writesUnblocked) {
+         try {
+            stateTransferLock.unblockNewTransactions(newViewId);
+         } catch (Exception e) {
+            log.errorUnblockingTransactions(e);
+         }
       }
       log.debugf("Node %s cancelled state transfer for view %d after %s!", self, newViewId,
             Util.prettyPrintTime(System.currentTimeMillis() - stateTransferStartMillis));
    }
 
 
-   protected void pushState(Map<Address, Collection<InternalCacheEntry>> states)
+   /**
+    * Lets write commands proceed before the state transfer is committed. Only used by a non-blocking state transfer,
+    * which must make sure that the writes reach both the old and the new owners.
+    */
+   protected void unblockWrites() throws InterruptedException {
+      stateTransferLock.unblockNewTransactions(newViewId);
+      writesUnblocked = true;
+   }
+
+   /**
+    * Adds an entry to the chunk being built for <code>target</code>, and pushes the chunk once it is full.
+    *
+    * @param entry the entry to push, or <code>null</code> to only make sure that <code>target</code> receives state,
+    *              even if it's empty
+    */
+   protected void addToChunk(Address target, InternalCacheEntry entry)
          throws InterruptedException, ExecutionException, StateTransferCancelledException, TimeoutException {
-      NotifyingNotifiableFuture<Object> stateTransferFuture = new AggregatingNotifyingFutureImpl(null, states.size());
-      for (Map.Entry<Address, Collection<InternalCacheEntry>> entry : states.entrySet()) {
-         checkIfCancelled();
-         final Address target = entry.getKey();
-         Collection<InternalCacheEntry> state = entry.getValue();
-         stateTransferManager.pushStateToNode(stateTransferFuture, newViewId, target, state);
+      Collection<InternalCacheEntry> chunk = chunks.get(target);
+      if (chunk == null) {
+         chunk = new ArrayList<InternalCacheEntry>();
+         chunks.put(target, chunk);
       }
+      if (entry != null) {
+         chunk.add(entry);
+         if (chunkSize > 0 && chunk.size() >= chunkSize) {
+            chunks.remove(target);
+            pushChunk(target, chunk);
+         }
+      }
+   }
+
+   /**
+    * Pushes the chunks that are not full yet and waits until all the targets have applied all their chunks.
+    */
+   protected void finishPushingState()
+         throws InterruptedException, ExecutionException, StateTransferCancelledException, TimeoutException {
+      for (Map.Entry<Address, Collection<InternalCacheEntry>> entry : chunks.entrySet()) {
+         // a target that already received some state doesn't need an empty chunk
+         if (!entry.getValue().isEmpty() || !inFlightChunks.containsKey(entry.getKey()))
+            pushChunk(entry.getKey(), entry.getValue());
+      }
+      chunks.clear();
 
       // wait to see if all servers received the new state
-      stateTransferFuture.get(configuration.getRehashRpcTimeout(), TimeUnit.MILLISECONDS);
+      for (Queue<Future<Object>> targetChunks : inFlightChunks.values()) {
+         while (!targetChunks.isEmpty()) {
+            checkIfCancelled();
+            targetChunks.remove().get(configuration.getRehashRpcTimeout(), TimeUnit.MILLISECONDS);
+         }
+      }
+      inFlightChunks.clear();
       log.debugf("Node finished pushing data for cache views %d.", newViewId);
    }
 
+   private void pushChunk(Address target, Collection<InternalCacheEntry> chunk)
+         throws InterruptedException, ExecutionException, StateTransferCancelledException, TimeoutException {
+      checkIfCancelled();
+      Queue<Future<Object>> targetChunks = inFlightChunks.get(target);
+      if (targetChunks == null) {
+         targetChunks = new LinkedList<Future<Object>>();
+         inFlightChunks.put(target, targetChunks);
+      }
+      // flow control: don't push more chunks than the target can keep up with
+      while (targetChunks.size() >= Math.max(1, stateTransferManager.getMaxInFlightChunks())) {
+         targetChunks.remove().get(configuration.getRehashRpcTimeout(), TimeUnit.MILLISECONDS);
+         checkIfCancelled();
+      }
+      // and don't use more bandwidth than allowed
+      stateTransferManager.waitForBandwidth(this);
+
+      NotifyingNotifiableFuture<Object> chunkFuture = new AggregatingNotifyingFutureImpl(null, 1);
+      if (stateTransferManager.pushStateToNode(chunkFuture, newViewId, target, chunk)) {
+         pendingChunks.incrementAndGet();
+         chunkFuture.attachListener(new FutureListener<Object>() {
+            @Override
+            public void futureDone(Future<Object> future) {
+               pendingChunks.decrementAndGet();
+            }
+         });
+         targetChunks.add(chunkFuture);
+      }
+   }
+
+   /**
+    * Starts tracking the progress of the scan over the local entries.
+    *
+    * @param entriesToScan the number of entries that will be scanned, as far as we know
+    */
+   protected void startScan(int entriesToScan) {
+      this.scannedEntries = 0;
+      this.entriesToScan = entriesToScan;
+      this.scanStartMillis = System.currentTimeMillis();
+   }
+
+   protected void entryScanned() {
+      scannedEntries++;
+   }
+
+   /**
+    * @return the percentage of the local entries that were already scanned, or 100 if the scan hasn't started
+    */
+   public int getProgress() {
+      int total = entriesToScan;
+      if (scanStartMillis == 0 || total <= 0)
+         return 100;
+      return (int) Math.min(100, 100L * scannedEntries / total);
+   }
+
+   /**
+    * @return the estimated time, in milliseconds, until the scan over the local entries completes, based on the
+    *         rate at which entries were scanned so far, or -1 if it cannot be estimated yet
+    */
+   public long getEstimatedTimeRemaining() {
+      int total = entriesToScan;
+      int scanned = scannedEntries;
+      long start = scanStartMillis;
+      if (start == 0 || scanned == 0)
+         return -1;
+      if (scanned >= total)
+         return 0;
+      long elapsed = System.currentTimeMillis() - start;
+      return elapsed * (total - scanned) / scanned;
+   }
+
+   /**
+    * @return the number of chunks pushed by this node that haven't been applied yet
+    */
+   public int getPendingChunks() {
+      return pendingChunks.get();
+   }
+
    protected void checkIfCancelled() throws StateTransferCancelledException {
       synchronized (lock) {
          if (cancelled)
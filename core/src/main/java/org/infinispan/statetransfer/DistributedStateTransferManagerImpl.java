@@ -97,6 +97,11 @@ public CacheStore getCacheStoreForStateTransfer() {
       return cacheLoaderManager.getCacheStore();
    }
 
+   @Override
+   public boolean isNonBlockingStateTransfer() {
+      return configuration.isNonBlockingRehash() && !configuration.isTransactionalCache();
+   }
+
    public boolean isLocationInDoubt(Object key) {
       return isStateTransferInProgress() && !chOld.locate(key, configuration.getNumOwners()).contains(getAddress())
             && chNew.locate(key, configuration.getNumOwners()).contains(getAddress());
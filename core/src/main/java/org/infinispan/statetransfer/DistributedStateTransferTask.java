@@ -24,6 +24,7 @@
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.distribution.DistributionManager;
 import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.UnionConsistentHash;
 import org.infinispan.loaders.CacheLoaderException;
 import org.infinispan.loaders.CacheStore;
 import org.infinispan.notifications.cachelistener.CacheNotifier;
@@ -37,9 +38,9 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * Task which handles view changes (joins, merges or leaves) and rebalances keys using a push based approach.
@@ -56,6 +57,11 @@
  * - For K2, the old CH is A,B and the new CH is B,C
  * - B (since it is the backup owner and A left) pushes K2 to C
  * </pre>
+ * <p/>
+ * Normally write commands are blocked for the whole duration of the task. With a non-blocking rehash writes are only
+ * blocked while the union of the old and the new CH is installed, and after that they are sent to both the old and the
+ * new owners of a key. Keys written in the meantime are pushed again once the initial pass is done, and the receivers
+ * ignore the state of keys they have been written to directly.
  *
  * @author Bela Ban
  * @author Dan Berindei <dan@infinispan.org>
@@ -69,6 +75,7 @@ public class DistributedStateTransferTask extends BaseStateTransferTask {
    private List<Object> keysToRemove;
    private Collection<Address> oldCacheSet;
    private Collection<Address> newCacheSet;
+   private final boolean nonBlocking;
 
    public DistributedStateTransferTask(RpcManager rpcManager, Configuration configuration, DataContainer dataContainer,
                                        DistributedStateTransferManagerImpl stateTransferManager,
@@ -78,6 +85,7 @@ public DistributedStateTransferTask(RpcManager rpcManager, Configuration configu
       super(stateTransferManager, rpcManager, stateTransferLock, cacheNotifier, configuration, dataContainer, members, newViewId, chNew, chOld, initialView);
       this.dm = dm;
       this.stateTransferManager = stateTransferManager;
+      this.nonBlocking = stateTransferManager.isNonBlockingStateTransfer();
 
       // Cache sets for notification
       oldCacheSet = chOld != null ? Immutables.immutableCollectionWrap(chOld.getCaches()) : Collections.<Address>emptySet();
@@ -101,6 +109,14 @@ public void doPerformStateTransfer() throws Exception {
       //distributionManager.getTransactionLogger().enable();
       stateTransferLock.blockNewTransactions(newViewId);
 
+      if (nonBlocking) {
+         // route writes to both the old and the new owners until the state transfer is committed
+         if (configuration.isRehashEnabled() && !initialView)
+            dm.setConsistentHash(new UnionConsistentHash(chOld, chNew));
+         stateTransferLock.startTrackingWrites();
+         unblockWrites();
+      }
+
       if (trace) {
          log.tracef("Rebalancing: chOld = %s, chNew = %s", chOld, chNew);
       }
@@ -112,11 +128,11 @@ public void doPerformStateTransfer() throws Exception {
 
          int numOwners = configuration.getNumOwners();
 
-         // Contains the state to be pushed to various servers. The state is a hashmap of keys and values
-         final Map<Address, Collection<InternalCacheEntry>> states = new HashMap<Address, Collection<InternalCacheEntry>>();
-
+         // The state to be pushed to the various servers is added to their chunks as we go
+         startScan(dataContainer.size());
          for (InternalCacheEntry ice : dataContainer) {
-            rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, states, keysToRemove);
+            rebalance(ice.getKey(), ice, numOwners, chOld, chNew, null, keysToRemove);
+            entryScanned();
          }
 
          checkIfCancelled();
@@ -125,7 +141,7 @@ public void doPerformStateTransfer() throws Exception {
          CacheStore cacheStore = stateTransferManager.getCacheStoreForStateTransfer();
          if (cacheStore != null) {
             for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-               rebalance(key, null, numOwners, chOld, chNew, cacheStore, states, keysToRemove);
+               rebalance(key, null, numOwners, chOld, chNew, cacheStore, keysToRemove);
             }
          } else {
             if (trace) log.trace("No cache store or cache store is shared, not rebalancing stored keys");
@@ -133,8 +149,19 @@ public void doPerformStateTransfer() throws Exception {
 
          checkIfCancelled();
 
-         // Now for each server S in states.keys(): push states.get(S) to S via RPC
-         pushState(states);
+         // Writes that raced with the first pass may not have reached the new owners, so push those keys again
+         if (nonBlocking) {
+            // keys written during the state transfer are invalidated on commit, if necessary
+            List<Object> ignored = new ArrayList<Object>();
+            for (Object key : stateTransferLock.getKeysWrittenDuringStateTransfer()) {
+               InternalCacheEntry ice = dataContainer.get(key);
+               if (ice != null)
+                  rebalance(key, ice, numOwners, chOld, chNew, null, ignored);
+            }
+         }
+
+         // Now push the remaining chunks and wait for all the servers to apply them
+         finishPushingState();
       } else {
          if (!initialView) log.trace("Rehash not enabled, so not pushing state");
       }
@@ -145,6 +172,15 @@ public void commitStateTransfer() {
       dm.setConsistentHash(chNew);
 
       if (configuration.isRehashEnabled() && !initialView) {
+         if (nonBlocking) {
+            // keys created during the state transfer weren't seen by the first pass
+            Set<Object> removed = new HashSet<Object>(keysToRemove);
+            for (Object key : stateTransferLock.getKeysWrittenDuringStateTransfer()) {
+               if (!chNew.isKeyLocalToAddress(self, key, configuration.getNumOwners()) && removed.add(key))
+                  keysToRemove.add(key);
+            }
+         }
+
          // now we can invalidate the keys
          stateTransferManager.invalidateKeys(keysToRemove, newViewId);
 
@@ -154,11 +190,19 @@ public void commitStateTransfer() {
       super.commitStateTransfer();
    }
 
+   @Override
+   public void cancelStateTransfer() {
+      super.cancelStateTransfer();
+
+      // stop sending writes to the new owners
+      if (nonBlocking && configuration.isRehashEnabled() && !initialView)
+         dm.setConsistentHash(chOld);
+   }
+
 
    /**
-    * Computes the list of old and new servers for a given key K and value V. Adds (K, V) to the <code>states</code> map
-    * if K should be pushed to other servers. Adds K to the <code>keysToRemove</code> list if this node is no longer an
-    * owner for K.
+    * Computes the list of old and new servers for a given key K and value V. Adds (K, V) to the chunks of the servers
+    * K should be pushed to. Adds K to the <code>keysToRemove</code> list if this node is no longer an owner for K.
     *
     * @param key          The key
     * @param value        The value; <code>null</code> if the value is not in the data container
@@ -166,11 +210,10 @@ public void commitStateTransfer() {
     * @param chOld        The old (current) consistent hash
     * @param chNew        The new consistent hash
     * @param cacheStore   If the value is <code>null</code>, try to load it from this cache store
-    * @param states       The result hashmap. Keys are servers, values are states (hashmaps) to be pushed to them
     * @param keysToRemove A list that the keys that we need to remove will be added to
     */
    private void rebalance(Object key, InternalCacheEntry value, int numOwners, ConsistentHash chOld, ConsistentHash chNew,
-                            CacheStore cacheStore, Map<Address, Collection<InternalCacheEntry>> states, List<Object> keysToRemove) {
+                          CacheStore cacheStore, List<Object> keysToRemove) throws Exception {
       // 1. Get the old and new servers for key K
       List<Address> oldOwners = chOld.locate(key, numOwners);
       List<Address> newOwners = chNew.locate(key, numOwners);
@@ -205,13 +248,7 @@ private void rebalance(Object key, InternalCacheEntry value, int numOwners, Cons
 
          for (Address server : newOwners) {
             if (!oldOwners.contains(server)) { // server doesn't have K
-               Collection<InternalCacheEntry> map = states.get(server);
-               if (map == null) {
-                  map = new ArrayList<InternalCacheEntry>();
-                  states.put(server, map);
-               }
-               if (value != null)
-                  map.add(value);
+               addToChunk(server, value);
             }
          }
       }
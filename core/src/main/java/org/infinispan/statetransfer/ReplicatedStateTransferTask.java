@@ -33,11 +33,8 @@
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -93,30 +90,30 @@ public void doPerformStateTransfer() throws Exception {
          log.tracef("Replicating: chOld = %s, chNew = %s", chOld, chNew);
 
          if (configuration.isStateTransferEnabled() && !initialView) {
-            // Contains the state to be pushed to various servers. The state is a hashmap of keys and values
-            final Collection<InternalCacheEntry> state = new ArrayList<InternalCacheEntry>();
+            // The state is added to the chunks of every joiner as we go
+            // TODO We are sending the same stuff to all the joiners, we should use multicast instead
+            for (Address joiner : joiners) {
+               addToChunk(joiner, null);
+            }
 
+            startScan(dataContainer.size());
             for (InternalCacheEntry ice : dataContainer) {
-               replicate(ice.getKey(), ice, chOld, chNew, null, state);
+               replicate(ice.getKey(), ice, chOld, chNew, null, joiners);
+               entryScanned();
             }
 
             // Only fetch the data from the cache store if the cache store is not shared
             CacheStore cacheStore = stateTransferManager.getCacheStoreForStateTransfer();
             if (cacheStore != null) {
                for (Object key : cacheStore.loadAllKeys(new ReadOnlyDataContainerBackedKeySet(dataContainer))) {
-                  replicate(key, null, chOld, chNew, cacheStore, state);
+                  replicate(key, null, chOld, chNew, cacheStore, joiners);
                }
             } else {
                if (trace) log.trace("No cache store or cache store is shared, not replicating stored keys");
             }
 
-            // Now for each joiner S : push state to S via RPC
-            // TODO We are sending the same stuff to all the joiners, we should use multicast instead
-            final Map<Address, Collection<InternalCacheEntry>> states = new HashMap<Address, Collection<InternalCacheEntry>>();
-            for (Address joiner : joiners) {
-               states.put(joiner, state);
-            }
-            pushState(states);
+            // Now push the remaining chunks and wait for all the joiners to apply them
+            finishPushingState();
          } else {
             if (!initialView) log.trace("State transfer not enabled, so not pushing state");
          }
@@ -125,19 +122,18 @@ public void doPerformStateTransfer() throws Exception {
 
 
    /**
-    * Computes the list of old and new servers for a given key K and value V. Adds (K, V) to the <code>states</code> map
-    * if K should be pushed to other servers. Adds K to the <code>keysToRemove</code> list if this node is no longer an
-    * owner for K.
+    * Computes the old primary owner for a given key K and value V. Adds (K, V) to the chunks of all the joiners if this
+    * node is that owner.
     *
     * @param key          The key
     * @param value        The value; <code>null</code> if the value is not in the data container
     * @param chOld        The old (current) consistent hash
     * @param chNew        The new consistent hash
     * @param cacheStore   If the value is <code>null</code>, try to load it from this cache store
-    * @param state       The result collection of entries to be pushed to the joiners
+    * @param joiners      The nodes to push the entries to
     */
    private void replicate(Object key, InternalCacheEntry value, ConsistentHash chOld, ConsistentHash chNew,
-                          CacheStore cacheStore, Collection<InternalCacheEntry> state) {
+                          CacheStore cacheStore, Collection<Address> joiners) throws Exception {
       // 1. Get the old primary owner for key K
       // That node will be the "pushing owner" for key K
       List<Address> oldOwners = chOld.locate(key, 1);
@@ -156,8 +152,11 @@ private void replicate(Object key, InternalCacheEntry value, ConsistentHash chOl
             }
          }
 
-         if (value != null)
-            state.add(value);
+         if (value != null) {
+            for (Address joiner : joiners) {
+               addToChunk(joiner, value);
+            }
+         }
       }
    }
 
@@ -29,6 +29,7 @@
 import org.infinispan.factories.scopes.Scope;
 import org.infinispan.factories.scopes.Scopes;
 
+import java.util.Set;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -81,4 +82,26 @@ public interface StateTransferLock {
    int getBlockingCacheViewId();
 
    void waitForStateTransferToEnd(InvocationContext ctx, VisitableCommand command, int newCacheViewId) throws TimeoutException, InterruptedException;
+
+   /**
+    * Start recording the keys modified by the write commands that acquire this lock. Used by a non-blocking state
+    * transfer, which lets writes proceed while state is being pushed. Keys already being recorded are kept.
+    */
+   void startTrackingWrites();
+
+   /**
+    * Stop recording modified keys and forget the keys recorded so far.
+    */
+   void stopTrackingWrites();
+
+   /**
+    * @return <code>true</code> if <code>key</code> was modified since {@link #startTrackingWrites()} was called, in
+    *         which case state received for it is older than the local value and must not be applied
+    */
+   boolean isKeyWrittenDuringStateTransfer(Object key);
+
+   /**
+    * @return a snapshot of the keys modified since {@link #startTrackingWrites()} was called
+    */
+   Set<Object> getKeysWrittenDuringStateTransfer();
 }
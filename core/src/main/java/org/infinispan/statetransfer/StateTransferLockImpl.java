@@ -26,6 +26,7 @@
 import org.infinispan.commands.tx.PrepareCommand;
 import org.infinispan.commands.tx.RollbackCommand;
 import org.infinispan.commands.write.ClearCommand;
+import org.infinispan.commands.write.InvalidateCommand;
 import org.infinispan.commands.write.PutKeyValueCommand;
 import org.infinispan.commands.write.PutMapCommand;
 import org.infinispan.commands.write.RemoveCommand;
@@ -35,13 +36,27 @@
 import org.infinispan.context.Flag;
 import org.infinispan.context.InvocationContext;
 import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.distribution.DistributionManager;
 import org.infinispan.factories.annotations.Inject;
+import org.infinispan.jmx.annotations.MBean;
+import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
-
+import org.rhq.helpers.pluginAnnotations.agent.DisplayType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
+import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class implements a specialized lock that allows the state transfer process (which is not a single thread)
@@ -55,11 +70,17 @@
  * Commit commands, rollback commands and unlock commands are special in that letting them proceed may speed up other
  * running commands, so they are allowed to proceed as long as there are any running write commands. Commit is also
  * a write command, so the block call will wait until all commit commands have finished.
+ * <p/>
+ * During a non-blocking state transfer the lock also records the keys modified by the write commands that acquire
+ * it, so that state pushed by other nodes doesn't overwrite newer values. Other nodes may install the union of the
+ * old and the new consistent hash before this node's state transfer task starts, so recording also starts when a
+ * remote write arrives for a key this node doesn't own yet.
  *
  * @author Manik Surtani
  * @author Dan Berindei &lt;dan@infinispan.org&gt;
  * @since 5.1
  */
+@MBean(objectName = "StateTransferLock", description = "Blocks write commands while a new cache view is installed")
 public class StateTransferLockImpl implements StateTransferLock {
    private static final Log log = LogFactory.getLog(StateTransferLockImpl.class);
    private static final boolean trace = log.isTraceEnabled();
@@ -75,10 +96,24 @@ public class StateTransferLockImpl implements StateTransferLock {
    // blockingCacheViewId, writesShouldBlock and writesBlocked should only be modified while holding lock and always in this order
    private final Object lock = new Object();
 
+   // keys written during a non-blocking state transfer, null when we're not tracking writes
+   private volatile Set<Object> writtenKeys;
+   private volatile boolean clearedDuringStateTransfer;
+
+   // statistics
+   private long writesBlockedSince;
+   private final AtomicLong writeBlockingCount = new AtomicLong(0);
+   private final AtomicLong writeBlockingNanos = new AtomicLong(0);
+   private volatile long lastWriteBlockingNanos;
+   private final AtomicLong delayedWrites = new AtomicLong(0);
+   private final AtomicLong writeDelayNanos = new AtomicLong(0);
+
    // stored configuration options
    private boolean stateTransferEnabled;
    private boolean pessimisticLocking;
    private long lockTimeout;
+   private boolean nonBlockingStateTransfer;
+   private DistributionManager dm;
 
    public StateTransferLockImpl() {
    }
@@ -89,6 +124,13 @@ public void injectDependencies(Configuration config) {
             || (config.getCacheMode().isReplicated() && config.isStateTransferEnabled());
       pessimisticLocking =  config.getTransactionLockingMode() == LockingMode.PESSIMISTIC;
       lockTimeout = config.getRehashWaitTime();
+      nonBlockingStateTransfer = config.getCacheMode().isDistributed() && config.isRehashEnabled()
+            && config.isNonBlockingRehash() && !config.isTransactionalCache();
+   }
+
+   @Inject
+   public void injectDistributionManager(DistributionManager dm) {
+      this.dm = dm;
    }
 
    @Override
@@ -125,7 +167,24 @@ public boolean acquireForCommand(InvocationContext ctx, WriteCommand command) th
       if (!shouldAcquireLock(ctx, command))
          return true;
 
-      return acquireLockForWriteCommand(ctx);
+      if (!acquireLockForWriteCommand(ctx))
+         return false;
+
+      Set<Object> keys = writtenKeys;
+      if (keys == null && nonBlockingStateTransfer && !ctx.isOriginLocal() && isWriteForNewOwner(command)) {
+         // the originator already writes to the new owners, so the state it pushes later must not overwrite this write
+         if (trace) log.tracef("Received %s before our state transfer started, tracking writes", command);
+         startTrackingWrites();
+         keys = writtenKeys;
+      }
+      if (keys != null) {
+         if (command instanceof ClearCommand) {
+            clearedDuringStateTransfer = true;
+         } else {
+            keys.addAll(command.getAffectedKeys());
+         }
+      }
+      return true;
    }
 
    @Override
@@ -159,6 +218,20 @@ public boolean acquireForCommand(TxInvocationContext ctx, LockControlCommand com
    }
 
 
+   /**
+    * @return <code>true</code> if <code>command</code> modifies a key this node doesn't own according to its installed
+    *         consistent hash, i.e. the originator is routing writes with the union of the old and the new one
+    */
+   private boolean isWriteForNewOwner(WriteCommand command) {
+      // L1 invalidations go to non-owners anyway, and clears go to everybody
+      if (command instanceof InvalidateCommand || command instanceof ClearCommand) return false;
+      if (dm.getConsistentHash() == null) return true;
+      for (Object key : command.getAffectedKeys()) {
+         if (!dm.getLocality(key).isLocal()) return true;
+      }
+      return false;
+   }
+
    private boolean shouldAcquireLock(InvocationContext ctx, WriteCommand command) {
       // For transactions with optimistic locking the real work starts with the prepare command, so don't block here.
       // With pessimistic locking an implicit lock command is created, but the invocation skips some interceptors
@@ -231,6 +304,7 @@ public void blockNewTransactions(int cacheViewId) throws InterruptedException {
          writesShouldBlock = true;
          if (writesBlocked == true)
             throw new IllegalStateException("Trying to block write commands but they are already blocked");
+         writesBlockedSince = System.nanoTime();
 
          // TODO Add a timeout parameter
          while (runningWritesCount.get() != 0) {
@@ -251,6 +325,11 @@ public void unblockNewTransactions(int cacheViewId) {
          writesBlocked = false;
          lock.notifyAll();
 
+         long blockingNanos = System.nanoTime() - writesBlockedSince;
+         lastWriteBlockingNanos = blockingNanos;
+         writeBlockingNanos.addAndGet(blockingNanos);
+         writeBlockingCount.incrementAndGet();
+
          // throw the view id mismatch exception only after we have released the lock
          // so that a future state transfer will be able to proceed normally
          if (cacheViewId != blockingCacheViewId && blockingCacheViewId != NO_BLOCKING_CACHE_VIEW)
@@ -261,10 +340,80 @@ public void unblockNewTransactions(int cacheViewId) {
    }
 
    @Override
+   @ManagedAttribute(description = "Whether new write commands are blocked")
    public boolean areNewTransactionsBlocked() {
       return writesShouldBlock;
    }
 
+   @Override
+   public void startTrackingWrites() {
+      synchronized (lock) {
+         // keep the keys recorded since a remote write told us another node started the state transfer
+         if (writtenKeys != null) return;
+         clearedDuringStateTransfer = false;
+         writtenKeys = new ConcurrentHashSet<Object>();
+      }
+   }
+
+   @Override
+   public void stopTrackingWrites() {
+      writtenKeys = null;
+      clearedDuringStateTransfer = false;
+   }
+
+   @Override
+   public boolean isKeyWrittenDuringStateTransfer(Object key) {
+      Set<Object> keys = writtenKeys;
+      return keys != null && (clearedDuringStateTransfer || keys.contains(key));
+   }
+
+   @Override
+   public Set<Object> getKeysWrittenDuringStateTransfer() {
+      Set<Object> keys = writtenKeys;
+      return keys == null ? Collections.emptySet() : new HashSet<Object>(keys);
+   }
+
+   @ManagedAttribute(description = "Number of times write commands were blocked for a cache view installation")
+   @Metric(displayName = "Number of times writes were blocked", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getWriteBlockingCount() {
+      return writeBlockingCount.get();
+   }
+
+   @ManagedAttribute(description = "Total time (in milliseconds) during which write commands were blocked")
+   @Metric(displayName = "Total time writes were blocked", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getTotalWriteBlockingTime() {
+      return TimeUnit.NANOSECONDS.toMillis(writeBlockingNanos.get());
+   }
+
+   @ManagedAttribute(description = "Time (in milliseconds) during which write commands were blocked by the last cache view installation")
+   @Metric(displayName = "Last time writes were blocked", displayType = DisplayType.SUMMARY)
+   public long getLastWriteBlockingTime() {
+      return TimeUnit.NANOSECONDS.toMillis(lastWriteBlockingNanos);
+   }
+
+   @ManagedAttribute(description = "Number of local write commands that had to wait for a state transfer")
+   @Metric(displayName = "Number of delayed writes", measurementType = MeasurementType.TRENDSUP, displayType = DisplayType.SUMMARY)
+   public long getDelayedWrites() {
+      return delayedWrites.get();
+   }
+
+   @ManagedAttribute(description = "Average time (in milliseconds) a delayed write command waited for a state transfer")
+   @Metric(displayName = "Average write delay", displayType = DisplayType.SUMMARY)
+   public long getAverageWriteDelay() {
+      long count = delayedWrites.get();
+      return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(writeDelayNanos.get() / count);
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset statistics")
+   public void resetStatistics() {
+      writeBlockingCount.set(0);
+      writeBlockingNanos.set(0);
+      lastWriteBlockingNanos = 0;
+      delayedWrites.set(0);
+      writeDelayNanos.set(0);
+   }
+
    @Override
    public int getBlockingCacheViewId() {
       return blockingCacheViewId;
@@ -283,24 +432,34 @@ private boolean acquireLockForWriteCommand(InvocationContext ctx) throws Interru
          return false;
 
       // A state transfer is in progress, wait for it to end
+      long start = System.nanoTime();
       long timeout = lockTimeout;
       long endTime = System.currentTimeMillis() + lockTimeout;
-      synchronized (lock) {
-         while (true) {
-            // wait for the unblocker thread to notify us
-            lock.wait(timeout);
+      try {
+         synchronized (lock) {
+            while (true) {
+               // wait for the unblocker thread to notify us
+               lock.wait(timeout);
 
-            if (acquireLockForWriteNoWait())
-               return true;
+               if (acquireLockForWriteNoWait())
+                  return true;
 
-            // retry, unless the timeout expired
-            timeout = endTime - System.currentTimeMillis();
-            if (timeout < 0)
-               return false;
+               // retry, unless the timeout expired
+               timeout = endTime - System.currentTimeMillis();
+               if (timeout < 0)
+                  return false;
+            }
          }
+      } finally {
+         recordWriteDelay(start);
       }
    }
 
+   private void recordWriteDelay(long start) {
+      delayedWrites.incrementAndGet();
+      writeDelayNanos.addAndGet(System.nanoTime() - start);
+   }
+
    private boolean acquireLockForWriteNoWait() {
       // Because we use multiple volatile variables for the state this involves a lot of volatile reads
       // (at least 2 reads of writesShouldBlock, 1 read+write of runningWritesCount)
@@ -339,14 +498,19 @@ private boolean acquireLockForCommitCommand(InvocationContext ctx) throws Interr
 
       // A state transfer is in progress, wait for it to end
       // A commit command should never fail on the originator, so wait forever
-      synchronized (lock) {
-         while (true) {
-            // wait for the unblocker thread to notify us
-            lock.wait();
+      long start = System.nanoTime();
+      try {
+         synchronized (lock) {
+            while (true) {
+               // wait for the unblocker thread to notify us
+               lock.wait();
 
-            if (acquireLockForCommitNoWait())
-               return true;
+               if (acquireLockForCommitNoWait())
+                  return true;
+            }
          }
+      } finally {
+         recordWriteDelay(start);
       }
    }
 
@@ -61,6 +61,9 @@ public abstract class LocalTransaction extends AbstractCacheTransaction {
 
    private final boolean implicitTransaction;
 
+   /** set by the {@link TransactionTable} when this transaction is removed, so that cached references are discarded */
+   private volatile boolean removed;
+
    public LocalTransaction(Transaction transaction, GlobalTransaction tx, boolean implicitTransaction) {
       super(tx);
       this.transaction = transaction;
@@ -98,6 +101,14 @@ public final boolean isMarkedForRollback() {
       return isMarkedForRollback;
    }
 
+   final boolean isRemoved() {
+      return removed;
+   }
+
+   final void markRemoved() {
+      removed = true;
+   }
+
    public Transaction getTransaction() {
       return transaction;
    }
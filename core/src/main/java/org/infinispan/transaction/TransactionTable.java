@@ -47,11 +47,13 @@
 import org.infinispan.transaction.xa.CacheTransaction;
 import org.infinispan.transaction.xa.GlobalTransaction;
 import org.infinispan.transaction.xa.TransactionFactory;
+import org.infinispan.util.concurrent.ConcurrentHashSet;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 
 import javax.transaction.Transaction;
 import javax.transaction.TransactionSynchronizationRegistry;
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -80,6 +82,20 @@ public class TransactionTable {
     */
    private final ConcurrentMap<GlobalTransaction, RemoteTransaction> remoteTransactions = new ConcurrentHashMap<GlobalTransaction, RemoteTransaction>();
 
+   /**
+    * Index of {@link #remoteTransactions} by originator, so that the transactions of a node leaving the cluster are
+    * found without scanning the whole table.
+    */
+   private final ConcurrentMap<Address, Set<GlobalTransaction>> remoteTransactionsByOrigin = new ConcurrentHashMap<Address, Set<GlobalTransaction>>();
+
+   /**
+    * The local transaction last looked up by each thread. A thread usually issues all the operations of a transaction,
+    * so this saves hashing the {@link Transaction} - which is expensive with some transaction managers - on every
+    * invocation. Only a weak reference is kept: the transaction is reachable through {@link #localTransactions} for as
+    * long as it is running, and pooled threads must not keep completed transactions - nor their modifications - alive
+    * after they have been removed from the table or after the cache has stopped.
+    */
+   private final ThreadLocal<WeakReference<LocalTransaction>> lastLocalTransaction = new ThreadLocal<WeakReference<LocalTransaction>>();
 
    private final StaleTransactionCleanupService cleanupService = new StaleTransactionCleanupService(this);
 
@@ -141,6 +157,7 @@ private void stop() {
       cleanupService.stop();
       cm.removeListener(this);
       shutDownGracefully();
+      lastLocalTransaction.remove();
    }
 
    public Set<Object> getLockedKeysForRemoteTransaction(GlobalTransaction gtx) {
@@ -184,7 +201,7 @@ public void enlist(Transaction transaction, LocalTransaction localTransaction) {
    }
 
    public void failureCompletingTransaction(Transaction tx) {
-      final LocalTransaction localTransaction = localTransactions.get(tx);
+      final LocalTransaction localTransaction = getLocalTransaction(tx);
       if (localTransaction != null) {
          removeLocalTransaction(localTransaction);
       }
@@ -195,7 +212,7 @@ public void failureCompletingTransaction(Transaction tx) {
     * @param tx if null false is returned
     */
    public boolean containsLocalTx(Transaction tx) {
-      return tx != null && localTransactions.containsKey(tx);
+      return tx != null && getLocalTransaction(tx) != null;
    }
 
    public Integer getMinViewId() {
@@ -219,8 +236,9 @@ public Set<CacheTransaction> getTransactionsStartedBefore(Integer viewId) {
 
    protected void updateStateOnNodesLeaving(Collection<Address> leavers) {
       Set<GlobalTransaction> toKill = new HashSet<GlobalTransaction>();
-      for (GlobalTransaction gt : remoteTransactions.keySet()) {
-         if (leavers.contains(gt.getAddress())) toKill.add(gt);
+      for (Address leaver : leavers) {
+         Set<GlobalTransaction> originated = remoteTransactionsByOrigin.remove(leaver);
+         if (originated != null) toKill.addAll(originated);
       }
 
       if (toKill.isEmpty())
@@ -277,6 +295,16 @@ private void registerRemoteTransaction(GlobalTransaction gtx, RemoteTransaction
          log.remoteTxAlreadyRegistered();
          throw new IllegalStateException("A remote transaction with the given id was already registered!!!");
       }
+      Address origin = gtx.getAddress();
+      if (origin != null) {
+         Set<GlobalTransaction> originated = remoteTransactionsByOrigin.get(origin);
+         if (originated == null) {
+            originated = new ConcurrentHashSet<GlobalTransaction>();
+            Set<GlobalTransaction> existing = remoteTransactionsByOrigin.putIfAbsent(origin, originated);
+            if (existing != null) originated = existing;
+         }
+         originated.add(gtx);
+      }
 
       log.trace("Created and registered remote transaction " + rtx);
    }
@@ -286,7 +314,10 @@ private void registerRemoteTransaction(GlobalTransaction gtx, RemoteTransaction
     * If none exists, will be created first.
     */
    public LocalTransaction getOrCreateLocalTransaction(Transaction transaction, TxInvocationContext ctx) {
-      LocalTransaction current = localTransactions.get(transaction);
+      LocalTransaction current = ctx.isOriginLocal() ? (LocalTransaction) ctx.getCacheTransaction() : null;
+      if (current == null || current.isRemoved() || current.getTransaction() != transaction) {
+         current = getLocalTransaction(transaction);
+      }
       if (current == null) {
          Address localAddress = rpcManager != null ? rpcManager.getTransport().getAddress() : null;
          GlobalTransaction tx = txFactory.newGlobalTransaction(localAddress, false);
@@ -294,6 +325,7 @@ public LocalTransaction getOrCreateLocalTransaction(Transaction transaction, TxI
          updateViewId(current);
          log.tracef("Created a new tx: %s", current);
          localTransactions.put(transaction, current);
+         lastLocalTransaction.set(new WeakReference<LocalTransaction>(current));
          notifier.notifyTransactionRegistered(tx, ctx);
       }
       return current;
@@ -316,6 +348,8 @@ protected final LocalTransaction removeLocalTransactionInternal(Transaction tx)
       synchronized (minViewIdInvariant) {
          removed = localTransactions.remove(tx);
          if (removed != null) {
+            removed.markRemoved();
+            if (getLastLocalTransaction() == removed) lastLocalTransaction.remove();
             recalculateMinViewIdIfNeeded(removed);
             removed.notifyOnTransactionFinished();
          }
@@ -337,6 +371,8 @@ public final RemoteTransaction removeRemoteTransaction(GlobalTransaction txId) {
       synchronized (minViewIdInvariant) {
          result = remoteTransactions.remove(txId);
          if (result == null) return null;
+         Set<GlobalTransaction> originated = txId.getAddress() == null ? null : remoteTransactionsByOrigin.get(txId.getAddress());
+         if (originated != null) originated.remove(txId);
          recalculateMinViewIdIfNeeded(result);
       }
       log.tracef("Removed %s from transaction table. Transaction %s", txId, result);
@@ -353,7 +389,16 @@ public int getLocalTxCount() {
    }
 
    public LocalTransaction getLocalTransaction(Transaction tx) {
-      return localTransactions.get(tx);
+      LocalTransaction last = getLastLocalTransaction();
+      if (last != null && last.getTransaction() == tx && !last.isRemoved()) return last;
+      LocalTransaction current = localTransactions.get(tx);
+      if (current != null) lastLocalTransaction.set(new WeakReference<LocalTransaction>(current));
+      return current;
+   }
+
+   private LocalTransaction getLastLocalTransaction() {
+      WeakReference<LocalTransaction> ref = lastLocalTransaction.get();
+      return ref == null ? null : ref.get();
    }
 
    public boolean containRemoteTx(GlobalTransaction globalTransaction) {
@@ -365,7 +410,7 @@ public Collection<RemoteTransaction> getRemoteTransactions() {
    }
 
    protected final LocalTransaction getLocalTx(Transaction tx) {
-      return localTransactions.get(tx);
+      return getLocalTransaction(tx);
    }
 
    private boolean isStandaloneCache() {
@@ -23,6 +23,7 @@
 package org.infinispan.util;
 
 import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.EntryVersion;
 import org.infinispan.container.entries.InternalCacheEntry;
 import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.marshall.AbstractExternalizer;
@@ -524,6 +525,14 @@ public void reincarnate() {
          throw new UnsupportedOperationException();
       }
 
+      public EntryVersion getVersion() {
+         return entry.getVersion();
+      }
+
+      public void setVersion(EntryVersion version) {
+         throw new UnsupportedOperationException();
+      }
+
       public void commit(DataContainer container) {
          throw new UnsupportedOperationException();
       }
@@ -621,6 +630,10 @@ public Object getValue() {
          return entry.getValue();
       }
 
+      public EntryVersion getVersion() {
+         return entry.getVersion();
+      }
+
       public boolean isExpired(long now) {
          return entry.isExpired(now);
       }
@@ -0,0 +1,139 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link NotifyingFuture} that is completed explicitly, through {@link #set(Object)} or {@link
+ * #setException(Throwable)}, rather than by a thread running a task.  This allows an operation that completes in a
+ * callback, such as a remote call completed by the thread that received the last response, to be exposed as a future
+ * without any thread blocking on its behalf.
+ * <p/>
+ * Only the first call to {@link #set(Object)}, {@link #setException(Throwable)} or {@link #cancel(boolean)} has any
+ * effect.  Listeners are notified by the thread that completes the future, or by the thread attaching them if the
+ * future is already done, so they should not block.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+public class SettableNotifyingFuture<T> implements NotifyingFuture<T> {
+
+   private final CountDownLatch done = new CountDownLatch(1);
+   private final List<FutureListener<T>> listeners = new CopyOnWriteArrayList<FutureListener<T>>();
+   private volatile T value;
+   private volatile Throwable exception;
+   private volatile boolean cancelled;
+   private boolean completed;
+
+   /**
+    * Completes the future with the given value.
+    *
+    * @return true if this call completed the future, false if it had already been completed
+    */
+   public boolean set(T value) {
+      synchronized (this) {
+         if (completed) return false;
+         this.value = value;
+         completed = true;
+      }
+      complete();
+      return true;
+   }
+
+   /**
+    * Completes the future with the given exception, which {@link #get()} rethrows wrapped in an {@link
+    * ExecutionException}.
+    *
+    * @return true if this call completed the future, false if it had already been completed
+    */
+   public boolean setException(Throwable exception) {
+      synchronized (this) {
+         if (completed) return false;
+         this.exception = exception;
+         completed = true;
+      }
+      complete();
+      return true;
+   }
+
+   @Override
+   public boolean cancel(boolean mayInterruptIfRunning) {
+      synchronized (this) {
+         if (completed) return false;
+         cancelled = true;
+         completed = true;
+      }
+      complete();
+      return true;
+   }
+
+   @Override
+   public boolean isCancelled() {
+      return cancelled;
+   }
+
+   @Override
+   public boolean isDone() {
+      return done.getCount() == 0;
+   }
+
+   @Override
+   public T get() throws InterruptedException, ExecutionException {
+      done.await();
+      return getValue();
+   }
+
+   @Override
+   public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, java.util.concurrent.TimeoutException {
+      if (!done.await(timeout, unit))
+         throw new java.util.concurrent.TimeoutException("Timed out after " + timeout + " " + unit);
+      return getValue();
+   }
+
+   @Override
+   public NotifyingFuture<T> attachListener(FutureListener<T> listener) {
+      listeners.add(listener);
+      // the listener may or may not have been seen by complete(), so make sure it is notified exactly once
+      if (isDone() && listeners.remove(listener)) listener.futureDone(this);
+      return this;
+   }
+
+   private T getValue() throws ExecutionException {
+      if (cancelled) throw new CancellationException();
+      if (exception != null) throw new ExecutionException(exception);
+      return value;
+   }
+
+   private void complete() {
+      done.countDown();
+      for (FutureListener<T> l : listeners) {
+         if (listeners.remove(l)) l.futureDone(this);
+      }
+   }
+}
@@ -34,6 +34,12 @@
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
 import org.rhq.helpers.pluginAnnotations.agent.Operation;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -42,14 +48,22 @@
  * Lock manager in charge with processing deadlock detections.
  * Implementation notes: if a deadlock is detected, then one of the transactions has to rollback. The transaction that
  * rollbacks is determined by comparing the coin toss from {@link org.infinispan.transaction.xa.DldGlobalTransaction}.
- * A thread calling {@link LockManager#lockAndRecord(Object, org.infinispan.context.InvocationContext, long)}
- * would run the deadlock detection algorithm only if all of the following take place:
- * - the call is made in the scope of a transaction (either locally originated or remotely originated)
- * - it cannot acquire lock on the given key and the lock owner is another transaction
- * - when comparing coin toss, this thread would loose against the other one - so it's always the potential loser that runs DLD.
- * If deadlock is detected then {@link LockManager#lockAndRecord(Object, org.infinispan.context.InvocationContext, long)} would throw an
- * {@link org.infinispan.util.concurrent.locks.DeadlockDetectedException}. This is subsequently handled in
- * in the interceptor chain - locks owned by this tx are released.
+ * <p/>
+ * A transaction (either locally originated or remotely originated) that cannot acquire a lock straight away is added
+ * to a wait-for graph, with an edge to the transaction that owns the lock, and then parks until it gets the lock or
+ * the lock acquisition timeout expires.  The graph is checked for deadlocks only when it changes:
+ * - when a transaction starts waiting for a lock
+ * - when a lock is acquired or released, and the waiters for that lock get a new owner
+ * - when the owner of a lock starts acquiring locks on other nodes (see {@link #remoteLockIntentionChanged(DldGlobalTransaction)})
+ * A cycle in the graph is a deadlock between transactions on this node, and the member of the cycle that loses the
+ * coin toss is rolled back.  A deadlock with a transaction that's waiting for locks on another node is detected
+ * from the locks held at the origin and the remote lock intention of the transactions, and is only resolved by the
+ * transaction that would lose, as before.
+ * <p/>
+ * If the victim is not the thread that found the deadlock, it is woken up by interrupting it.  The thread that is
+ * rolled back gets a {@link org.infinispan.util.concurrent.locks.DeadlockDetectedException} from
+ * {@link LockManager#lockAndRecord(Object, org.infinispan.context.InvocationContext, long)}. This is subsequently
+ * handled in the interceptor chain - locks owned by this tx are released.
  *
  * @author Mircea.Markus@jboss.com
  */
@@ -58,8 +72,6 @@ public class DeadlockDetectingLockManager extends LockManagerImpl {
 
    private static final Log log = LogFactory.getLog(DeadlockDetectingLockManager.class);
 
-   protected volatile long spinDuration;
-
    protected volatile boolean exposeJmxStats;
 
    private AtomicLong localTxStopped = new AtomicLong(0);
@@ -68,64 +80,236 @@ public class DeadlockDetectingLockManager extends LockManagerImpl {
 
    private AtomicLong cannotRunDld = new AtomicLong(0);
 
+   // the wait-for graph: the waiting transactions, and the same waiters indexed by the key they wait for
+   private final Map<DldGlobalTransaction, Waiter> waiters = new HashMap<DldGlobalTransaction, Waiter>();
+   private final Map<Object, List<Waiter>> waitersByKey = new HashMap<Object, List<Waiter>>();
+
+   // number of waiters in the graph, read without synchronization to skip the graph updates when nobody waits
+   private volatile int waiting;
+
    @Start
    public void init() {
-      spinDuration = configuration.getDeadlockDetectionSpinDuration();
       exposeJmxStats = configuration.isExposeJmxStatistics();
    }
 
    public boolean lockAndRecord(Object key, InvocationContext ctx, long lockTimeout) throws InterruptedException {
       if (trace) log.tracef("Attempting to lock %s with acquisition timeout of %s millis", key, lockTimeout);
-
-
-      if (ctx.isInTxScope()) {
-         if (trace) log.trace("Using early dead lock detection");
-         final long start = System.currentTimeMillis();
-         DldGlobalTransaction thisTx = (DldGlobalTransaction) ctx.getLockOwner();
-         thisTx.setLockIntention(key);
-         if (trace) log.tracef("Setting lock intention to %s for %s (%s)", key, thisTx, System.identityHashCode(thisTx));
-
-         while (System.currentTimeMillis() < (start + lockTimeout)) {
-            if (lockContainer.acquireLock(ctx.getLockOwner(), key, spinDuration, MILLISECONDS) != null) {
-               thisTx.setLockIntention(null); //clear lock intention
-               if (trace) log.tracef("successfully acquired lock on %s on behalf of %s, returning ...", key, ctx.getLockOwner());
+      LockContentionProfiler profiler = this.profiler;
+
+      if (!ctx.isInTxScope()) {
+         Object holder = null;
+         long waitStart = 0;
+         if (profiler != null) {
+            if (lockContainer.acquireLock(ctx.getLockOwner(), key, 0, MILLISECONDS) != null) {
+               profiler.lockAcquired(key, ctx.getLockOwner());
                return true;
-            } else {
-               Object owner = getOwner(key);
-               if (!(owner instanceof DldGlobalTransaction)) {
-                  if (trace) log.tracef("Not running DLD as lock owner(%s) is not a transaction", owner);
-                  cannotRunDld.incrementAndGet();
-                  continue;
-               }
-               DldGlobalTransaction lockOwnerTx = (DldGlobalTransaction) owner;
-               if (trace) log.tracef("Could not acquire lock as %s is locked by %s (%s)", key, owner, System.identityHashCode(owner));
-               if (isDeadlockAndIAmLoosing(lockOwnerTx, thisTx, key)) {
-                  updateStats(thisTx);
-                  String message = String.format("Deadlock found and we %s shall not continue. Other tx is %s",
-                                                 thisTx, lockOwnerTx);
-                  if (trace) log.trace(message);
-                  throw new DeadlockDetectedException(message);
-               }
             }
+            holder = getOwner(key);
+            waitStart = System.nanoTime();
          }
-      } else {
          if (lockContainer.acquireLock(ctx.getLockOwner(), key, lockTimeout, MILLISECONDS) != null) {
+            if (profiler != null) profiler.contendedLockAcquired(key, ctx.getLockOwner(), holder, System.nanoTime() - waitStart);
+            if (waiting > 0) ownerChanged(key, ctx.getLockOwner());
             return true;
          }
+         if (profiler != null) profiler.lockNotAcquired(key, holder, System.nanoTime() - waitStart);
+         return false;
       }
-      // couldn't acquire lock!
-      return false;
+
+      if (trace) log.trace("Using early dead lock detection");
+      DldGlobalTransaction thisTx = (DldGlobalTransaction) ctx.getLockOwner();
+      if (lockContainer.acquireLock(thisTx, key, 0, MILLISECONDS) != null) {
+         if (profiler != null) profiler.lockAcquired(key, thisTx);
+         if (waiting > 0) ownerChanged(key, thisTx);
+         return true;
+      }
+
+      long waitStart = System.nanoTime();
+      Waiter waiter = new Waiter(thisTx, key);
+      thisTx.setLockIntention(key);
+      if (trace) log.tracef("Setting lock intention to %s for %s (%s)", key, thisTx, System.identityHashCode(thisTx));
+      boolean locked = false;
+      boolean deadlocked;
+      try {
+         if (!enqueue(waiter)) {
+            try {
+               locked = lockContainer.acquireLock(thisTx, key, lockTimeout, MILLISECONDS) != null;
+            } catch (InterruptedException ie) {
+               // we were woken up because we are part of a deadlock, otherwise somebody else interrupted us
+               if (!waiter.aborted) throw ie;
+            }
+         }
+      } finally {
+         deadlocked = dequeue(waiter, locked);
+         thisTx.setLockIntention(null); //clear lock intention
+      }
+
+      if (deadlocked) {
+         if (locked) lockContainer.releaseLock(thisTx, key);
+         // the interrupt may have arrived after we stopped waiting for the lock
+         if (waiter.interrupted) Thread.interrupted();
+         if (profiler != null) profiler.lockNotAcquired(key, waiter.owner, System.nanoTime() - waitStart);
+         updateStats(thisTx);
+         String message = String.format("Deadlock found and we %s shall not continue. Other tx is %s",
+                                        thisTx, waiter.owner);
+         if (trace) log.trace(message);
+         throw new DeadlockDetectedException(message);
+      }
+
+      if (profiler != null) {
+         if (locked)
+            profiler.contendedLockAcquired(key, thisTx, waiter.owner, System.nanoTime() - waitStart);
+         else
+            profiler.lockNotAcquired(key, waiter.owner, System.nanoTime() - waitStart);
+      }
+      if (trace) {
+         if (locked) log.tracef("successfully acquired lock on %s on behalf of %s, returning ...", key, thisTx);
+         else log.tracef("Could not acquire lock on %s on behalf of %s within %s millis", key, thisTx, lockTimeout);
+      }
+      return locked;
    }
 
-   private boolean isDeadlockAndIAmLoosing(DldGlobalTransaction lockOwnerTx, DldGlobalTransaction thisTx, Object key) {
-      //run the lose check first as it is cheaper
-      boolean wouldWeLoose = thisTx.wouldLose(lockOwnerTx);
-      if (!wouldWeLoose) {
-         if (trace) log.tracef("We (%s) win against the other (%s) transaction, so no point running rest of DLD", thisTx, lockOwnerTx);
-         return false;
+   @Override
+   public void unlock(Collection<Object> lockedKeys, Object lockOwner) {
+      super.unlock(lockedKeys, lockOwner);
+      if (waiting > 0) locksReleased(lockedKeys, lockOwner);
+   }
+
+   @Override
+   public void unlockAll(InvocationContext ctx) {
+      // clearing the locked keys replaces the set, so we can still use it after the unlock
+      Set<Object> lockedKeys = ctx.getLockedKeys();
+      Object lockOwner = ctx.getLockOwner();
+      super.unlockAll(ctx);
+      if (waiting > 0) locksReleased(lockedKeys, lockOwner);
+   }
+
+   /**
+    * Must be called when the owner of a lock starts acquiring locks on other nodes, as the waiters for its locks may
+    * now be deadlocked with it.
+    */
+   public void remoteLockIntentionChanged(DldGlobalTransaction tx) {
+      if (waiting == 0) return;
+      synchronized (waiters) {
+         for (Waiter waiter : waiters.values()) {
+            if (tx.equals(waiter.owner)) resolveDeadlock(waiter);
+         }
+      }
+   }
+
+   /**
+    * Adds the waiter to the wait-for graph.
+    *
+    * @return true if the waiter is already part of a deadlock, and it was chosen to roll back
+    */
+   private boolean enqueue(Waiter waiter) {
+      synchronized (waiters) {
+         waiters.put(waiter.tx, waiter);
+         List<Waiter> sameKey = waitersByKey.get(waiter.key);
+         if (sameKey == null) {
+            sameKey = new ArrayList<Waiter>(2);
+            waitersByKey.put(waiter.key, sameKey);
+         }
+         sameKey.add(waiter);
+         waiting++;
+         // read the owner only after announcing that we wait, so that we are notified of any later release
+         waiter.owner = getOwner(waiter.key);
+         if (waiter.owner != null && !(waiter.owner instanceof DldGlobalTransaction)) {
+            if (trace) log.tracef("Not running DLD as lock owner(%s) is not a transaction", waiter.owner);
+            cannotRunDld.incrementAndGet();
+         }
+         resolveDeadlock(waiter);
+         return waiter.aborted;
       }
-      //do we have lock on what other tx intends to acquire?
-      return ownsLocalIntention(thisTx, lockOwnerTx.getLockIntention()) || ownsRemoteIntention(lockOwnerTx, thisTx, key) || isSameKeyDeadlock(key, thisTx, lockOwnerTx);
+   }
+
+   /**
+    * Removes the waiter from the wait-for graph, and if it got the lock makes it the owner the other waiters wait for.
+    *
+    * @return true if the waiter was chosen to roll back
+    */
+   private boolean dequeue(Waiter waiter, boolean locked) {
+      synchronized (waiters) {
+         if (waiters.get(waiter.tx) == waiter) waiters.remove(waiter.tx);
+         List<Waiter> sameKey = waitersByKey.get(waiter.key);
+         sameKey.remove(waiter);
+         if (sameKey.isEmpty()) waitersByKey.remove(waiter.key);
+         waiting--;
+         if (locked && !waiter.aborted) updateOwner(waiter.key, waiter.tx);
+         return waiter.aborted;
+      }
+   }
+
+   private void ownerChanged(Object key, Object newOwner) {
+      synchronized (waiters) {
+         updateOwner(key, newOwner);
+      }
+   }
+
+   private void locksReleased(Collection<Object> keys, Object lockOwner) {
+      synchronized (waiters) {
+         for (Object key : keys) {
+            List<Waiter> sameKey = waitersByKey.get(key);
+            if (sameKey == null) continue;
+            // nobody owns the lock until one of the waiters (or another thread) gets it and updates the graph
+            for (Waiter waiter : sameKey) {
+               if (lockOwner.equals(waiter.owner)) waiter.owner = null;
+            }
+         }
+      }
+   }
+
+   private void updateOwner(Object key, Object newOwner) {
+      List<Waiter> sameKey = waitersByKey.get(key);
+      if (sameKey == null) return;
+      for (Waiter waiter : sameKey) {
+         waiter.owner = newOwner;
+         resolveDeadlock(waiter);
+      }
+   }
+
+   /**
+    * Checks whether the waiter is part of a deadlock, and if so rolls back the losing transaction.  Must be called
+    * while holding the monitor of the graph.
+    */
+   private void resolveDeadlock(Waiter waiter) {
+      Waiter victim = findVictim(waiter);
+      if (victim == null || victim.aborted) return;
+      if (trace) log.tracef("Deadlock found, %s will roll back as it waits for %s", victim.tx, victim.owner);
+      victim.aborted = true;
+      if (victim.thread != Thread.currentThread()) {
+         victim.interrupted = true;
+         victim.thread.interrupt();
+      }
+   }
+
+   private Waiter findVictim(Waiter waiter) {
+      if (waiter.aborted || !(waiter.owner instanceof DldGlobalTransaction)) return null;
+      DldGlobalTransaction thisTx = waiter.tx;
+      DldGlobalTransaction lockOwnerTx = (DldGlobalTransaction) waiter.owner;
+      if (lockOwnerTx.equals(thisTx)) return null;
+
+      // deadlocks with a transaction acquiring locks on other nodes are resolved by the transaction that would lose
+      if (thisTx.wouldLose(lockOwnerTx)
+            && (ownsRemoteIntention(lockOwnerTx, thisTx, waiter.key) || isSameKeyDeadlock(waiter.key, thisTx, lockOwnerTx))) {
+         return waiter;
+      }
+
+      // local deadlocks: follow the wait-for edges from the lock owner, looking for a path back to this waiter.
+      // Every cycle is found when it is closed, so we can't loop for more steps than there are waiters.
+      Waiter victim = waiter;
+      Waiter current = waiters.get(lockOwnerTx);
+      for (int steps = waiting; current != null && steps > 0; steps--) {
+         if (current.aborted) return null; // this cycle is already being broken
+         if (current.tx.wouldLose(victim.tx)) victim = current;
+         if (!(current.owner instanceof DldGlobalTransaction)) return null;
+         if (thisTx.equals(current.owner)) {
+            if (trace) log.tracef("Local deadlock detected between %s and %s on key %s", thisTx, lockOwnerTx, waiter.key);
+            return victim;
+         }
+         current = waiters.get(current.owner);
+      }
+      return null;
    }
 
    private boolean isSameKeyDeadlock(Object key, DldGlobalTransaction thisTx, DldGlobalTransaction lockOwnerTx) {
@@ -159,12 +343,6 @@ private boolean ownsRemoteIntention(DldGlobalTransaction lockOwnerTx, DldGlobalT
       return false;
    }
 
-   private boolean ownsLocalIntention(DldGlobalTransaction thisTx, Object lockOwnerTxIntention) {
-      boolean result = lockOwnerTxIntention != null && ownsLock(lockOwnerTxIntention, thisTx);
-      if (trace) log.tracef("Local intention is '%s'. Do we own lock for it? %s, We == %s", lockOwnerTxIntention, result, thisTx);
-      return result;
-   }
-
    public void setExposeJmxStats(boolean exposeJmxStats) {
       this.exposeJmxStats = exposeJmxStats;
    }
@@ -176,9 +354,11 @@ public long getTotalNumberOfDetectedDeadlocks() {
       return localTxStopped.get() + remoteTxStopped.get();
    }
 
+   @Override
    @ManagedOperation(description = "Resets statistics gathered by this component")
    @Operation(displayName = "Reset statistics")
    public void resetStatistics() {
+      super.resetStatistics();
       localTxStopped.set(0);
       remoteTxStopped.set(0);
       cannotRunDld.set(0); 
@@ -196,6 +376,12 @@ public long getDetectedLocalDeadlocks() {
       return localTxStopped.get();
    }
 
+   @ManagedAttribute(description = "Number of transactions currently waiting for a lock")
+   @Metric(displayName = "Number of transactions waiting for a lock")
+   public int getWaitingTransactions() {
+      return waiting;
+   }
+
    @ManagedAttribute(description = "Number of situations when we try to determine a deadlock and the other lock owner is NOT a transaction. In this scenario we cannot run the deadlock detection mechanism")
    @Metric(displayName = "Number of unsolvable deadlock situations", measurementType = MeasurementType.TRENDSUP)
    public long getOverlapWithNotDeadlockAwareLockOwners() {
@@ -221,4 +407,21 @@ public long getLocallyInterruptedTransactions() {
       return -1;
    }
 
+   /**
+    * A transaction waiting for a lock, i.e. a node of the wait-for graph with an edge to the lock owner.  All the
+    * fields except the final ones are guarded by the monitor of the graph.
+    */
+   private static final class Waiter {
+      final DldGlobalTransaction tx;
+      final Object key;
+      final Thread thread = Thread.currentThread();
+      Object owner;
+      volatile boolean aborted;
+      boolean interrupted;
+
+      Waiter(DldGlobalTransaction tx, Object key) {
+         this.tx = tx;
+         this.key = key;
+      }
+   }
 }
@@ -0,0 +1,312 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks;
+
+import org.infinispan.marshall.MarshalledValue;
+import org.infinispan.util.Util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects lock contention statistics on behalf of a {@link LockManagerImpl}: a histogram of the time spent waiting
+ * for contended locks, the most contended keys and the owners that held contended locks the longest.
+ * <p/>
+ * An acquisition is considered contended if the lock could not be acquired without waiting.  The most contended keys
+ * are tracked with a Space-Saving sketch, so the memory used is bounded no matter how many keys are locked: the counts
+ * reported may over-estimate the real count by at most the reported error.  Hold times are only reported for locks
+ * that somebody else waited for.
+ * <p/>
+ * The lock manager only creates a profiler while profiling is enabled, so none of this costs anything otherwise.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+final class LockContentionProfiler {
+
+   // bucket 0 counts waits under 1 microsecond, bucket i waits in [2^(i-1), 2^i) microseconds
+   private static final int HISTOGRAM_BUCKETS = 32;
+
+   private final int topK;
+
+   private final AtomicLong acquisitions = new AtomicLong(0);
+   private final AtomicLong contendedAcquisitions = new AtomicLong(0);
+   private final AtomicLong timeouts = new AtomicLong(0);
+   private final AtomicLong totalWaitNanos = new AtomicLong(0);
+   private final AtomicLong maxWaitNanos = new AtomicLong(0);
+   private final AtomicLongArray waitHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+   private final SpaceSavingSketch contendedKeys;
+   private final ConcurrentMap<HeldLock, Hold> holds = new ConcurrentHashMap<HeldLock, Hold>();
+   private final PriorityQueue<HoldRecord> longestHolds;
+
+   LockContentionProfiler(int topK) {
+      this.topK = topK;
+      this.contendedKeys = new SpaceSavingSketch(topK * 4);
+      this.longestHolds = new PriorityQueue<HoldRecord>(topK, HOLD_RECORD_COMPARATOR);
+   }
+
+   /**
+    * Records a lock acquired without waiting.
+    */
+   void lockAcquired(Object key, Object owner) {
+      acquisitions.incrementAndGet();
+      holds.put(new HeldLock(key, owner), new Hold());
+   }
+
+   /**
+    * Records a lock acquired after waiting for the given time.
+    *
+    * @param holder the owner of the lock when the acquisition started waiting, if known
+    */
+   void contendedLockAcquired(Object key, Object owner, Object holder, long waitNanos) {
+      contended(key, holder, waitNanos);
+      acquisitions.incrementAndGet();
+      holds.put(new HeldLock(key, owner), new Hold());
+   }
+
+   /**
+    * Records an acquisition that timed out, or was aborted, after waiting for the given time.
+    */
+   void lockNotAcquired(Object key, Object holder, long waitNanos) {
+      contended(key, holder, waitNanos);
+      timeouts.incrementAndGet();
+   }
+
+   void lockReleased(Object key, Object owner) {
+      Hold hold = holds.remove(new HeldLock(key, owner));
+      if (hold != null && hold.contended) {
+         HoldRecord record = new HoldRecord(key, owner, System.nanoTime() - hold.start);
+         synchronized (longestHolds) {
+            if (longestHolds.size() < topK) {
+               longestHolds.add(record);
+            } else if (longestHolds.peek().nanos < record.nanos) {
+               longestHolds.poll();
+               longestHolds.add(record);
+            }
+         }
+      }
+   }
+
+   private void contended(Object key, Object holder, long waitNanos) {
+      contendedAcquisitions.incrementAndGet();
+      totalWaitNanos.addAndGet(waitNanos);
+      long max;
+      while ((max = maxWaitNanos.get()) < waitNanos && !maxWaitNanos.compareAndSet(max, waitNanos)) ;
+      waitHistogram.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(waitNanos)));
+      contendedKeys.offer(key);
+      if (holder != null) {
+         Hold hold = holds.get(new HeldLock(key, holder));
+         if (hold != null) hold.contended = true;
+      }
+   }
+
+   private static int bucket(long micros) {
+      int bucket = 64 - Long.numberOfLeadingZeros(micros);
+      return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+   }
+
+   long getAcquisitions() {
+      return acquisitions.get();
+   }
+
+   long getContendedAcquisitions() {
+      return contendedAcquisitions.get();
+   }
+
+   long getTimeouts() {
+      return timeouts.get();
+   }
+
+   long getAverageWaitMicros() {
+      long contended = contendedAcquisitions.get();
+      return contended == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.get()) / contended;
+   }
+
+   long getMaxWaitMicros() {
+      return TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get());
+   }
+
+   String printWaitHistogram() {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+         long count = waitHistogram.get(i);
+         if (count == 0) continue;
+         if (sb.length() > 0) sb.append(", ");
+         if (i == HISTOGRAM_BUCKETS - 1)
+            sb.append(">=").append(printMicros(1L << (i - 1)));
+         else
+            sb.append("<").append(printMicros(1L << i));
+         sb.append(": ").append(count);
+      }
+      return sb.toString();
+   }
+
+   String printMostContendedKeys() {
+      StringBuilder sb = new StringBuilder();
+      List<Map.Entry<Object, long[]>> top = contendedKeys.top(topK);
+      for (Map.Entry<Object, long[]> e : top) {
+         if (sb.length() > 0) sb.append(", ");
+         sb.append(printable(e.getKey())).append('=').append(e.getValue()[0]);
+         if (e.getValue()[1] > 0) sb.append(" (+/-").append(e.getValue()[1]).append(')');
+      }
+      return sb.toString();
+   }
+
+   String printLongestContendedHolds() {
+      List<HoldRecord> records;
+      synchronized (longestHolds) {
+         records = new ArrayList<HoldRecord>(longestHolds);
+      }
+      Collections.sort(records, Collections.reverseOrder(HOLD_RECORD_COMPARATOR));
+      StringBuilder sb = new StringBuilder();
+      for (HoldRecord r : records) {
+         if (sb.length() > 0) sb.append(", ");
+         sb.append(r.owner).append(" held ").append(printable(r.key)).append(" for ")
+               .append(printMicros(TimeUnit.NANOSECONDS.toMicros(r.nanos)));
+      }
+      return sb.toString();
+   }
+
+   private static String printMicros(long micros) {
+      return micros < 1000 ? micros + " microseconds" : Util.prettyPrintTime(micros / 1000);
+   }
+
+   private static Object printable(Object key) {
+      return key instanceof MarshalledValue ? ((MarshalledValue) key).get() : key;
+   }
+
+   private static final Comparator<HoldRecord> HOLD_RECORD_COMPARATOR = new Comparator<HoldRecord>() {
+      @Override
+      public int compare(HoldRecord o1, HoldRecord o2) {
+         return o1.nanos < o2.nanos ? -1 : (o1.nanos == o2.nanos ? 0 : 1);
+      }
+   };
+
+   private static final class HeldLock {
+      final Object key;
+      final Object owner;
+
+      HeldLock(Object key, Object owner) {
+         this.key = key;
+         this.owner = owner;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (!(o instanceof HeldLock)) return false;
+         HeldLock other = (HeldLock) o;
+         return key.equals(other.key) && (owner == null ? other.owner == null : owner.equals(other.owner));
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * key.hashCode() + (owner != null ? owner.hashCode() : 0);
+      }
+   }
+
+   private static final class Hold {
+      final long start = System.nanoTime();
+      volatile boolean contended;
+   }
+
+   private static final class HoldRecord {
+      final Object key;
+      final Object owner;
+      final long nanos;
+
+      HoldRecord(Object key, Object owner, long nanos) {
+         this.key = key;
+         this.owner = owner;
+         this.nanos = nanos;
+      }
+   }
+
+   /**
+    * Approximate top-k counter, see Metwally et al., "Efficient Computation of Frequent and Top-k Elements in Data
+    * Streams".  Keeps at most {@code capacity} counters; a new item replaces the item with the lowest count and
+    * inherits that count as its error.
+    */
+   private static final class SpaceSavingSketch {
+      private final int capacity;
+      // item -> {count, error}
+      private final Map<Object, long[]> counters;
+
+      SpaceSavingSketch(int capacity) {
+         this.capacity = capacity;
+         this.counters = new HashMap<Object, long[]>(capacity * 2);
+      }
+
+      synchronized void offer(Object item) {
+         long[] counter = counters.get(item);
+         if (counter != null) {
+            counter[0]++;
+         } else if (counters.size() < capacity) {
+            counters.put(item, new long[]{1, 0});
+         } else {
+            Object minItem = null;
+            long[] min = null;
+            for (Map.Entry<Object, long[]> e : counters.entrySet()) {
+               if (min == null || e.getValue()[0] < min[0]) {
+                  minItem = e.getKey();
+                  min = e.getValue();
+               }
+            }
+            counters.remove(minItem);
+            counters.put(item, new long[]{min[0] + 1, min[0]});
+         }
+      }
+
+      synchronized List<Map.Entry<Object, long[]>> top(int k) {
+         List<Map.Entry<Object, long[]>> entries = new ArrayList<Map.Entry<Object, long[]>>();
+         for (Map.Entry<Object, long[]> e : counters.entrySet()) {
+            final Object item = e.getKey();
+            final long[] counter = e.getValue().clone();
+            entries.add(new Map.Entry<Object, long[]>() {
+               public Object getKey() { return item; }
+               public long[] getValue() { return counter; }
+               public long[] setValue(long[] value) { throw new UnsupportedOperationException(); }
+            });
+         }
+         Collections.sort(entries, new Comparator<Map.Entry<Object, long[]>>() {
+            @Override
+            public int compare(Map.Entry<Object, long[]> o1, Map.Entry<Object, long[]> o2) {
+               long c1 = o1.getValue()[0], c2 = o2.getValue()[0];
+               return c1 > c2 ? -1 : (c1 == c2 ? 0 : 1);
+            }
+         });
+         return entries.size() > k ? entries.subList(0, k) : entries;
+      }
+   }
+}
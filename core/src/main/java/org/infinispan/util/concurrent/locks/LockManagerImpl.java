@@ -30,6 +30,7 @@
 import org.infinispan.factories.annotations.Start;
 import org.infinispan.jmx.annotations.MBean;
 import org.infinispan.jmx.annotations.ManagedAttribute;
+import org.infinispan.jmx.annotations.ManagedOperation;
 import org.infinispan.marshall.MarshalledValue;
 import org.infinispan.util.Util;
 import org.infinispan.util.concurrent.TimeoutException;
@@ -37,7 +38,9 @@
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.rhq.helpers.pluginAnnotations.agent.DataType;
+import org.rhq.helpers.pluginAnnotations.agent.MeasurementType;
 import org.rhq.helpers.pluginAnnotations.agent.Metric;
+import org.rhq.helpers.pluginAnnotations.agent.Operation;
 
 import javax.transaction.TransactionManager;
 import java.util.ArrayList;
@@ -64,6 +67,10 @@ public class LockManagerImpl implements LockManager {
    private static final Log log = LogFactory.getLog(LockManagerImpl.class);
    protected static final boolean trace = log.isTraceEnabled();
    private static final String ANOTHER_THREAD = "(another thread)";
+   private static final int PROFILING_TOP_K = 10;
+
+   // only set while lock contention profiling is enabled
+   volatile LockContentionProfiler profiler;
 
    @Inject
    public void injectDependencies(Configuration configuration, TransactionManager transactionManager) {
@@ -73,17 +80,36 @@ public void injectDependencies(Configuration configuration, TransactionManager t
 
    @Start (priority = 8)
    public void startLockManager() {
-      lockContainer = configuration.isUseLockStriping() ?
-      transactionManager == null ? new ReentrantStripedLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantStripedLockContainer(configuration.getConcurrencyLevel()) :
-      transactionManager == null ? new ReentrantPerEntryLockContainer(configuration.getConcurrencyLevel()) : new OwnableReentrantPerEntryLockContainer(configuration.getConcurrencyLevel());
+      int concurrencyLevel = configuration.getConcurrencyLevel();
+      if (configuration.isUseLockStriping()) {
+         lockContainer = transactionManager == null ? new ReentrantStripedLockContainer(concurrencyLevel) : new OwnableReentrantStripedLockContainer(concurrencyLevel);
+      } else if (configuration.isUseLockPooling()) {
+         lockContainer = transactionManager == null ? new ReentrantPooledPerEntryLockContainer(concurrencyLevel) : new OwnableReentrantPooledPerEntryLockContainer(concurrencyLevel);
+      } else {
+         lockContainer = transactionManager == null ? new ReentrantPerEntryLockContainer(concurrencyLevel) : new OwnableReentrantPerEntryLockContainer(concurrencyLevel);
+      }
    }
 
    public boolean lockAndRecord(Object key, InvocationContext ctx, long timeoutMillis) throws InterruptedException {
       if (trace) log.tracef("Attempting to lock %s with acquisition timeout of %s millis", key, timeoutMillis);
+      LockContentionProfiler profiler = this.profiler;
+      Object holder = null;
+      long waitStart = 0;
+      if (profiler != null) {
+         if (lockContainer.acquireLock(ctx.getLockOwner(), key, 0, MILLISECONDS) != null) {
+            profiler.lockAcquired(key, ctx.getLockOwner());
+            if (trace) log.tracef("Successfully acquired lock %s!", key);
+            return true;
+         }
+         holder = getOwner(key);
+         waitStart = System.nanoTime();
+      }
       if (lockContainer.acquireLock(ctx.getLockOwner(), key, timeoutMillis, MILLISECONDS) != null) {
+         if (profiler != null) profiler.contendedLockAcquired(key, ctx.getLockOwner(), holder, System.nanoTime() - waitStart);
          if (trace) log.tracef("Successfully acquired lock %s!", key);
          return true;
       }
+      if (profiler != null) profiler.lockNotAcquired(key, holder, System.nanoTime() - waitStart);
 
       // couldn't acquire lock!
       if (log.isDebugEnabled()) {
@@ -109,7 +135,11 @@ protected long getLockAcquisitionTimeout(InvocationContext ctx) {
 
    public void unlock(Collection<Object> lockedKeys, Object lockOwner) {
       log.tracef("Attempting to unlock keys %s", lockedKeys);
-      for (Object k : lockedKeys) lockContainer.releaseLock(lockOwner, k);
+      LockContentionProfiler profiler = this.profiler;
+      for (Object k : lockedKeys) {
+         lockContainer.releaseLock(lockOwner, k);
+         if (profiler != null) profiler.lockReleased(k, lockOwner);
+      }
    }
 
    @SuppressWarnings("unchecked")
@@ -117,6 +147,8 @@ public void unlockAll(InvocationContext ctx) {
       for (Object k : ctx.getLockedKeys()) {
          if (trace) log.tracef("Attempting to unlock %s", k);
          lockContainer.releaseLock(ctx.getLockOwner(), k);
+         LockContentionProfiler profiler = this.profiler;
+         if (profiler != null) profiler.lockReleased(k, ctx.getLockOwner());
       }
       ctx.clearLockedKeys();
    }
@@ -168,6 +200,80 @@ public int getNumberOfLocksAvailable() {
       return lockContainer.size() - lockContainer.getNumLocksHeld();
    }
 
+   @ManagedAttribute(description = "Enables or disables the lock contention profiling: wait time histogram, most contended keys and longest lock holders", writable = true)
+   @Metric(displayName = "Lock contention profiling enabled", dataType = DataType.TRAIT)
+   public boolean isProfilingEnabled() {
+      return profiler != null;
+   }
+
+   @ManagedAttribute(description = "Enables or disables the lock contention profiling: wait time histogram, most contended keys and longest lock holders", writable = true)
+   public synchronized void setProfilingEnabled(boolean enabled) {
+      if (enabled == (profiler != null)) return;
+      profiler = enabled ? new LockContentionProfiler(PROFILING_TOP_K) : null;
+   }
+
+   @ManagedAttribute(description = "Number of locks acquired since profiling was enabled")
+   @Metric(displayName = "Number of profiled lock acquisitions", measurementType = MeasurementType.TRENDSUP)
+   public long getProfiledLockAcquisitions() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? -1 : profiler.getAcquisitions();
+   }
+
+   @ManagedAttribute(description = "Number of lock acquisitions that had to wait for another owner to release the lock, since profiling was enabled")
+   @Metric(displayName = "Number of contended lock acquisitions", measurementType = MeasurementType.TRENDSUP)
+   public long getContendedLockAcquisitions() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? -1 : profiler.getContendedAcquisitions();
+   }
+
+   @ManagedAttribute(description = "Number of lock acquisitions that timed out, since profiling was enabled")
+   @Metric(displayName = "Number of lock acquisition timeouts", measurementType = MeasurementType.TRENDSUP)
+   public long getLockAcquisitionTimeouts() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? -1 : profiler.getTimeouts();
+   }
+
+   @ManagedAttribute(description = "Average time, in microseconds, spent waiting for a contended lock")
+   @Metric(displayName = "Average contended lock wait time (us)")
+   public long getAverageLockWaitTime() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? -1 : profiler.getAverageWaitMicros();
+   }
+
+   @ManagedAttribute(description = "Maximum time, in microseconds, spent waiting for a contended lock")
+   @Metric(displayName = "Maximum contended lock wait time (us)")
+   public long getMaxLockWaitTime() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? -1 : profiler.getMaxWaitMicros();
+   }
+
+   @ManagedAttribute(description = "Histogram of the time spent waiting for contended locks")
+   @Metric(displayName = "Contended lock wait time histogram", dataType = DataType.TRAIT)
+   public String getLockWaitTimeHistogram() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? "N/A" : profiler.printWaitHistogram();
+   }
+
+   @ManagedAttribute(description = "The keys with the most contended lock acquisitions, with their (approximate) number of contended acquisitions")
+   @Metric(displayName = "Most contended keys", dataType = DataType.TRAIT)
+   public String getMostContendedKeys() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? "N/A" : profiler.printMostContendedKeys();
+   }
+
+   @ManagedAttribute(description = "The lock owners that held contended locks the longest, with the keys and the hold times")
+   @Metric(displayName = "Longest contended lock holders", dataType = DataType.TRAIT)
+   public String getLongestContendedLockHolders() {
+      LockContentionProfiler profiler = this.profiler;
+      return profiler == null ? "N/A" : profiler.printLongestContendedHolds();
+   }
+
+   @ManagedOperation(description = "Resets statistics gathered by this component")
+   @Operation(displayName = "Reset statistics")
+   public synchronized void resetStatistics() {
+      if (profiler != null) profiler = new LockContentionProfiler(PROFILING_TOP_K);
+   }
+
    public int getLockId(Object key) {
       return lockContainer.getLockId(key);
    }
@@ -0,0 +1,329 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent.locks.containers;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * An abstract lock container that maintains a lock per entry, like {@link AbstractPerEntryLockContainer}, but recycles
+ * released locks through a pool instead of creating a new lock object every time a key is locked.
+ * <p/>
+ * Keys are mapped to locks in an open addressing (linear probing) table, split in segments according to the
+ * concurrency level.  Each mapping carries a count of the owners that acquired, or are waiting to acquire, its lock,
+ * and the mapping is only removed - and the lock returned to the pool - when that count drops to zero.  A lock
+ * therefore never changes keys while someone still holds a reference to it, so unlike the per entry container there is
+ * no need to check after acquiring a lock that it is still the one mapped to the key.
+ * <p/>
+ * An owner acquiring a lock it already holds doesn't take another reference, and releasing a lock releases it
+ * completely, however many times the owner acquired it.  This matches the per entry container, which discards the
+ * lock on release, and {@link org.infinispan.util.concurrent.locks.LockManager#unlockAll}, which releases every
+ * locked key once.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@ThreadSafe
+public abstract class AbstractPooledPerEntryLockContainer<L extends Lock> extends AbstractLockContainer<L> {
+
+   private static final int INITIAL_TABLE_CAPACITY = 16;
+   private static final int MAX_POOLED_LOCKS_PER_SEGMENT = 64;
+
+   private final LockTable<L>[] segments;
+   private final int segmentShift;
+   private final int segmentMask;
+
+   @SuppressWarnings("unchecked")
+   protected AbstractPooledPerEntryLockContainer(int concurrencyLevel) {
+      int shift = 0;
+      int numSegments = 1;
+      while (numSegments < concurrencyLevel) {
+         ++shift;
+         numSegments <<= 1;
+      }
+      segmentShift = 32 - shift;
+      segmentMask = numSegments - 1;
+      segments = new LockTable[numSegments];
+      for (int i = 0; i < numSegments; i++) segments[i] = new LockTable<L>();
+   }
+
+   protected abstract L newLock();
+
+   /**
+    * @return true if the lock is held by anyone
+    */
+   protected abstract boolean isHeld(L lock);
+
+   /**
+    * @return true if the lock is held by the given owner
+    */
+   protected abstract boolean isHeldBy(L lock, Object owner);
+
+   /**
+    * Same hash code spreader as {@link AbstractStripedLockContainer#hash(Object)}.  The high bits select the segment,
+    * the low bits the slot within the segment's table.
+    */
+   final int hash(Object object) {
+      int h = object.hashCode();
+      h += ~(h << 9);
+      h ^= (h >>> 14);
+      h += (h << 4);
+      h ^= (h >>> 10);
+      return h;
+   }
+
+   private LockTable<L> segmentFor(int hash) {
+      return segments[(hash >>> segmentShift) & segmentMask];
+   }
+
+   /**
+    * @return the lock currently mapped to the key, or null if nobody holds or waits for a lock on the key.
+    */
+   public final L getLock(Object key) {
+      int h = hash(key);
+      LockTable<L> table = segmentFor(h);
+      synchronized (table) {
+         return table.get(key, h);
+      }
+   }
+
+   public final boolean ownsLock(Object key, Object owner) {
+      int h = hash(key);
+      LockTable<L> table = segmentFor(h);
+      synchronized (table) {
+         L lock = table.get(key, h);
+         return lock != null && isHeldBy(lock, owner);
+      }
+   }
+
+   public final boolean isLocked(Object key) {
+      int h = hash(key);
+      LockTable<L> table = segmentFor(h);
+      synchronized (table) {
+         L lock = table.get(key, h);
+         return lock != null && isHeld(lock);
+      }
+   }
+
+   public int getNumLocksHeld() {
+      int held = 0;
+      for (LockTable<L> table : segments) {
+         synchronized (table) {
+            held += table.size;
+         }
+      }
+      return held;
+   }
+
+   /**
+    * @return the number of locks mapped to keys plus the number of locks waiting in the pools to be reused
+    */
+   public int size() {
+      int size = 0;
+      for (LockTable<L> table : segments) {
+         synchronized (table) {
+            size += table.size + table.pooled;
+         }
+      }
+      return size;
+   }
+
+   public L acquireLock(Object lockOwner, Object key, long timeout, TimeUnit unit) throws InterruptedException {
+      int h = hash(key);
+      LockTable<L> table = segmentFor(h);
+      L lock;
+      synchronized (table) {
+         lock = table.get(key, h);
+         if (lock != null && isHeldBy(lock, lockOwner)) {
+            // the owner's first acquisition keeps the lock mapped to the key, so just bump the hold count
+            return tryLock(lock, timeout, unit, lockOwner) ? lock : null;
+         }
+         lock = table.reference(key, h);
+         if (lock == null) {
+            lock = table.poll();
+            if (lock == null) lock = newLock();
+            table.insert(key, h, lock);
+         }
+      }
+
+      boolean locked = false;
+      try {
+         locked = tryLock(lock, timeout, unit, lockOwner);
+      } catch (InterruptedException ie) {
+         throw ie;
+      } catch (Throwable th) {
+         locked = false;
+      } finally {
+         if (!locked) dereference(table, key, h);
+      }
+      return locked ? lock : null;
+   }
+
+   public void releaseLock(Object lockOwner, Object key) {
+      int h = hash(key);
+      LockTable<L> table = segmentFor(h);
+      L lock;
+      synchronized (table) {
+         lock = table.get(key, h);
+         // the owner's reference keeps the lock mapped to this key until we dereference it below
+         if (lock == null || !isHeldBy(lock, lockOwner)) return;
+      }
+      do {
+         unlock(lock, lockOwner);
+      } while (isHeldBy(lock, lockOwner));
+      dereference(table, key, h);
+   }
+
+   private void dereference(LockTable<L> table, Object key, int h) {
+      synchronized (table) {
+         table.dereference(key, h);
+      }
+   }
+
+   public int getLockId(Object key) {
+      return hash(key);
+   }
+
+   /**
+    * One segment of the lock table.  Not thread safe, callers synchronize on the table itself.
+    */
+   private static final class LockTable<L> {
+      private Object[] keys = new Object[INITIAL_TABLE_CAPACITY];
+      private int[] hashes = new int[INITIAL_TABLE_CAPACITY];
+      private Object[] locks = new Object[INITIAL_TABLE_CAPACITY];
+      private int[] references = new int[INITIAL_TABLE_CAPACITY];
+      private int size;
+
+      private final Object[] pool = new Object[MAX_POOLED_LOCKS_PER_SEGMENT];
+      private int pooled;
+
+      private int indexOf(Object key, int h) {
+         int mask = keys.length - 1;
+         for (int i = h & mask; ; i = (i + 1) & mask) {
+            Object k = keys[i];
+            if (k == null) return -1;
+            if (hashes[i] == h && (k == key || k.equals(key))) return i;
+         }
+      }
+
+      @SuppressWarnings("unchecked")
+      L get(Object key, int h) {
+         int i = indexOf(key, h);
+         return i < 0 ? null : (L) locks[i];
+      }
+
+      /**
+       * Increments the reference count of the key's lock, if the key is mapped.
+       */
+      @SuppressWarnings("unchecked")
+      L reference(Object key, int h) {
+         int i = indexOf(key, h);
+         if (i < 0) return null;
+         references[i]++;
+         return (L) locks[i];
+      }
+
+      void insert(Object key, int h, L lock) {
+         if (size >= keys.length >> 1) resize(keys.length << 1);
+         int i = place(key, h, lock);
+         references[i] = 1;
+         size++;
+      }
+
+      /**
+       * Decrements the reference count of the key's lock, unmapping the key and returning the lock to the pool when
+       * the count reaches zero.
+       */
+      void dereference(Object key, int h) {
+         int i = indexOf(key, h);
+         if (i < 0 || --references[i] > 0) return;
+         Object lock = locks[i];
+         delete(i);
+         if (pooled < pool.length) pool[pooled++] = lock;
+         if (keys.length > INITIAL_TABLE_CAPACITY && size < keys.length >> 3) resize(keys.length >> 1);
+      }
+
+      @SuppressWarnings("unchecked")
+      L poll() {
+         if (pooled == 0) return null;
+         Object lock = pool[--pooled];
+         pool[pooled] = null;
+         return (L) lock;
+      }
+
+      private int place(Object key, int h, Object lock) {
+         int mask = keys.length - 1;
+         int i = h & mask;
+         while (keys[i] != null) i = (i + 1) & mask;
+         keys[i] = key;
+         hashes[i] = h;
+         locks[i] = lock;
+         return i;
+      }
+
+      /**
+       * Removes slot i, shifting back the following entries of the probe sequence so that no tombstones are needed.
+       */
+      private void delete(int i) {
+         int mask = keys.length - 1;
+         int j = i;
+         while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) break;
+            int home = hashes[j] & mask;
+            // the entry at j can only fill the hole at i if its home slot is not cyclically within (i, j]
+            boolean reachable = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!reachable) {
+               keys[i] = keys[j];
+               hashes[i] = hashes[j];
+               locks[i] = locks[j];
+               references[i] = references[j];
+               i = j;
+            }
+         }
+         keys[i] = null;
+         locks[i] = null;
+         references[i] = 0;
+         size--;
+      }
+
+      private void resize(int capacity) {
+         Object[] oldKeys = keys;
+         int[] oldHashes = hashes;
+         Object[] oldLocks = locks;
+         int[] oldReferences = references;
+         keys = new Object[capacity];
+         hashes = new int[capacity];
+         locks = new Object[capacity];
+         references = new int[capacity];
+         for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+               int j = place(oldKeys[i], oldHashes[i], oldLocks[i]);
+               references[j] = oldReferences[i];
+            }
+         }
+      }
+   }
+}
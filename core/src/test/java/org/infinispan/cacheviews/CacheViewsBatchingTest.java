@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.cacheviews;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Verifies that caches started on several nodes at the same time get their views installed in a single round,
+ * with only one view (and therefore one rebalance) per cache.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "cacheviews.CacheViewsBatchingTest")
+public class CacheViewsBatchingTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_NODES = 3;
+   private static final int NUM_CACHES = 4;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      createCluster(config, NUM_NODES);
+      for (int i = 0; i < NUM_CACHES; i++) {
+         defineConfigurationOnAllManagers("cache" + i, config);
+      }
+      waitForClusterToForm();
+   }
+
+   public void testConcurrentStartsAreBatched() throws Exception {
+      CacheViewsManagerImpl coordinatorCvm = (CacheViewsManagerImpl) TestingUtil.extractGlobalComponent(manager(0),
+            CacheViewsManager.class);
+      coordinatorCvm.setViewSettleTime(2000);
+      coordinatorCvm.resetStatistics();
+
+      List<Thread> threads = new ArrayList<Thread>();
+      for (int i = 0; i < NUM_NODES; i++) {
+         for (int j = 0; j < NUM_CACHES; j++) {
+            final int node = i;
+            final String cacheName = "cache" + j;
+            threads.add(fork(new Runnable() {
+               @Override
+               public void run() {
+                  manager(node).getCache(cacheName);
+               }
+            }, false));
+         }
+      }
+      for (Thread t : threads) {
+         t.join(60000);
+      }
+
+      for (int j = 0; j < NUM_CACHES; j++) {
+         TestingUtil.waitForRehashToComplete(caches("cache" + j));
+      }
+
+      assert coordinatorCvm.getInstalledViews() == NUM_CACHES : "Expected one view per cache, but "
+            + coordinatorCvm.getInstalledViews() + " views were installed";
+      assert coordinatorCvm.getInstallationRounds() == 1 : "Expected the views to be installed in a single round, but "
+            + coordinatorCvm.getInstallationRounds() + " rounds were needed";
+      assert coordinatorCvm.getBatchedViews() == NUM_CACHES;
+   }
+}
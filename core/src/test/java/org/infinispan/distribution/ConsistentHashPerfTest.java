@@ -22,7 +22,11 @@
  */
 package org.infinispan.distribution;
 
+import org.infinispan.config.Configuration;
 import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
 import org.infinispan.test.AbstractInfinispanTest;
@@ -54,20 +58,33 @@ private Set<Address> createAddresses(int numNodes) {
    public void testSpeed() {
       int[] numNodes = {1, 2, 3, 4, 10, 100, 1000};
       int iterations = 100000;
-      // warmup
-      doPerfTest(10, 2, iterations);
+      List<Class<? extends ConsistentHash>> chClasses = Arrays.<Class<? extends ConsistentHash>>asList(
+            DefaultConsistentHash.class, SegmentedConsistentHash.class);
+      for (Class<? extends ConsistentHash> chClass : chClasses) {
+         // warmup
+         doPerfTest(chClass, 10, 2, iterations);
+      }
 
       for (int numOwners = 1; numOwners < 5; numOwners++) {
          System.out.println("numOwners=" + numOwners);
          for (int nn: numNodes) {
-            Long duration = doPerfTest(nn, numOwners, iterations);
-            System.out.println("With "+nn+" cache(s), time to do " + iterations + " lookups was " + Util.prettyPrintTime(TimeUnit.NANOSECONDS.toMillis(duration)));
+            for (Class<? extends ConsistentHash> chClass : chClasses) {
+               Long duration = doPerfTest(chClass, nn, numOwners, iterations);
+               System.out.println(chClass.getSimpleName() + ": with "+nn+" cache(s), time to do " + iterations + " lookups was " + Util.prettyPrintTime(TimeUnit.NANOSECONDS.toMillis(duration)));
+            }
          }
       }
    }
 
-   private Long doPerfTest(int numNodes, int numOwners, int iterations) {
-      ConsistentHash ch = BaseDistFunctionalTest.createNewConsistentHash(createAddresses(numNodes));
+   private ConsistentHash createConsistentHash(Class<? extends ConsistentHash> chClass, int numNodes, int numOwners) {
+      Configuration c = new Configuration().fluent()
+            .hash().consistentHashClass(chClass).numOwners(numOwners)
+            .build();
+      return ConsistentHashHelper.createConsistentHash(c, createAddresses(numNodes));
+   }
+
+   private Long doPerfTest(Class<? extends ConsistentHash> chClass, int numNodes, int numOwners, int iterations) {
+      ConsistentHash ch = createConsistentHash(chClass, numNodes, numOwners);
       int dummy = 0;
       long start = System.nanoTime();
       for (int i = 0; i < iterations; i++) {
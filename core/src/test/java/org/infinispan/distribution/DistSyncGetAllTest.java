@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.CacheException;
+import org.infinispan.commands.read.GetAllCommand;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests {@link Cache#getAll(java.util.Set)} in DIST mode, where keys not owned locally are fetched from their owners
+ * in one batch per owner.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.DistSyncGetAllTest")
+public class DistSyncGetAllTest extends BaseDistFunctionalTest {
+
+   public DistSyncGetAllTest() {
+      sync = true;
+      tx = false;
+   }
+
+   public void testGetAllFromNonOwner() {
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 30; i++) {
+         String key = "k" + i;
+         keys.add(key);
+         getFirstOwner(key).put(key, "v" + i);
+      }
+      keys.add("missing");
+
+      Map<Object, String> result = c1.getAll(keys);
+
+      assert result.size() == 30 : "Expected 30 entries but got " + result;
+      assert !result.containsKey("missing");
+      for (int i = 0; i < 30; i++) {
+         String key = "k" + i;
+         assert ("v" + i).equals(result.get(key)) : "Wrong value for " + key + ": " + result.get(key);
+         if (!isOwner(c1, key)) assertIsInL1(c1, key);
+      }
+   }
+
+   public void testGetAllAsync() throws Exception {
+      Set<Object> keys = new HashSet<Object>();
+      for (int i = 0; i < 10; i++) {
+         String key = "a" + i;
+         keys.add(key);
+         c2.put(key, "v" + i);
+      }
+
+      Map<Object, String> result = c3.getAllAsync(keys).get();
+
+      assert result.size() == 10 : "Expected 10 entries but got " + result;
+      for (int i = 0; i < 10; i++) assert ("v" + i).equals(result.get("a" + i));
+   }
+
+   public void testGetAllEmpty() {
+      assert c1.getAll(new HashSet<Object>()).isEmpty();
+   }
+
+   public void testGetAllFallsBackToNextOwner() {
+      String key = "failover";
+      Cache<Object, String> firstOwner = getFirstOwner(key);
+      firstOwner.put(key, "value");
+      firstOwner.getAdvancedCache().addInterceptor(new FailingRemoteGetAllInterceptor(), 0);
+      try {
+         Map<Object, String> result = getFirstNonOwner(key).getAll(Collections.<Object>singleton(key));
+         assert "value".equals(result.get(key)) : "Expected the value from the second owner but got " + result;
+      } finally {
+         firstOwner.getAdvancedCache().removeInterceptor(FailingRemoteGetAllInterceptor.class);
+      }
+   }
+
+   static class FailingRemoteGetAllInterceptor extends CommandInterceptor {
+      @Override
+      public Object visitGetAllCommand(InvocationContext ctx, GetAllCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) throw new CacheException("Induced failure");
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+}
@@ -0,0 +1,78 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tests that a putAll only ships each owner the entries it owns, so non-owners
+ * other than the originator never see the entries, not even in L1.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.DistSyncPutMapSplitTest")
+public class DistSyncPutMapSplitTest extends BaseDistFunctionalTest {
+
+   public DistSyncPutMapSplitTest() {
+      sync = true;
+      tx = false;
+   }
+
+   public void testPutAllOnlyReachesOwners() throws Exception {
+      Map<Object, String> data = new HashMap<Object, String>();
+      for (int i = 0; i < 50; i++) data.put("k" + i, "v" + i);
+
+      putAll(c1, data);
+
+      for (Map.Entry<Object, String> e : data.entrySet()) {
+         for (Cache<Object, String> c : caches) {
+            if (isOwner(c, e.getKey())) {
+               assertIsInContainerImmortal(c, e.getKey());
+               assert e.getValue().equals(c.getAdvancedCache().getDataContainer().get(e.getKey()).getValue());
+            } else if (c != c1) {
+               assert !c.getAdvancedCache().getDataContainer().containsKey(e.getKey())
+                     : "Non-owner " + addressOf(c) + " received " + e.getKey();
+            }
+         }
+         assertOnAllCaches(e.getKey(), e.getValue());
+      }
+   }
+
+   protected void putAll(Cache<Object, String> cache, Map<Object, String> data) throws Exception {
+      if (tx) {
+         TransactionManager tm = TestingUtil.getTransactionManager(cache);
+         tm.begin();
+         cache.putAll(data);
+         tm.commit();
+      } else {
+         cache.putAll(data);
+      }
+   }
+}
@@ -0,0 +1,77 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.testng.annotations.Test;
+
+/**
+ * Tests remote gets with {@link Configuration#isStaggerRemoteGets()} enabled, where the owners are contacted one at a
+ * time rather than all at once.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.DistSyncStaggeredGetTest")
+public class DistSyncStaggeredGetTest extends BaseDistFunctionalTest {
+
+   public DistSyncStaggeredGetTest() {
+      sync = true;
+      tx = false;
+      numOwners = 3;
+      l1CacheEnabled = false;
+   }
+
+   @Override
+   protected Configuration buildConfiguration() {
+      Configuration configuration = super.buildConfiguration();
+      configuration.fluent().hash().staggerRemoteGets(true);
+      return configuration;
+   }
+
+   public void testStaggeredGetFromNonOwner() {
+      String key = "k1";
+      getFirstOwner(key).put(key, "value");
+
+      Cache<Object, String> nonOwner = getFirstNonOwner(key);
+      DistributionManagerImpl dm = (DistributionManagerImpl) getDistributionManager(nonOwner);
+      long before = dm.getStaggeredGets();
+
+      assert "value".equals(nonOwner.get(key));
+      assert dm.getStaggeredGets() == before + 1;
+      assert dm.getStaggeredGetsEscalated() <= dm.getStaggeredGets();
+      assert dm.getStaggerDelay() > 0;
+   }
+
+   public void testStaggeredGetOfMissingKeyAsksEveryOwner() {
+      String key = "missing";
+      Cache<Object, String> nonOwner = getFirstNonOwner(key);
+      DistributionManagerImpl dm = (DistributionManagerImpl) getDistributionManager(nonOwner);
+      long before = dm.getStaggeredGetsEscalated();
+
+      assert nonOwner.get(key) == null;
+      // the primary owner answers without a value, so the backups are asked straight away
+      assert dm.getStaggeredGetsEscalated() == before + 1;
+   }
+}
@@ -0,0 +1,108 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies that unicast L1 invalidations sent to the same node within the batch window are coalesced, and that every
+ * node which cached a key in L1 is still invalidated.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.L1InvalidationBatchingTest")
+public class L1InvalidationBatchingTest extends BaseDistFunctionalTest {
+
+   private static final int NUM_KEYS = 10;
+
+   public L1InvalidationBatchingTest() {
+      numOwners = 1;
+      l1Threshold = -1;
+   }
+
+   @Override
+   protected Configuration buildConfiguration() {
+      Configuration configuration = super.buildConfiguration();
+      configuration.setL1InvalidationBatchWindow(500);
+      return configuration;
+   }
+
+   public void testConcurrentWritesShareInvalidations() throws Exception {
+      final List<MagicKey> keys = new ArrayList<MagicKey>(NUM_KEYS);
+      for (int i = 0; i < NUM_KEYS; i++) {
+         MagicKey key = new MagicKey(c1, "k" + i);
+         keys.add(key);
+         c1.put(key, "v1");
+         // both readers cache the key in L1
+         assert "v1".equals(c3.get(key));
+         assert "v1".equals(c4.get(key));
+         assertIsInL1(c3, key);
+         assertIsInL1(c4, key);
+      }
+
+      L1ManagerImpl l1Manager = (L1ManagerImpl) TestingUtil.extractComponent(c1, L1Manager.class);
+      assert l1Manager.getTrackedKeys() >= NUM_KEYS;
+      l1Manager.resetStatistics();
+
+      final CountDownLatch start = new CountDownLatch(1);
+      ExecutorService executor = Executors.newFixedThreadPool(NUM_KEYS);
+      try {
+         List<Future<Object>> futures = new ArrayList<Future<Object>>(NUM_KEYS);
+         for (final MagicKey key : keys) {
+            futures.add(executor.submit(new Callable<Object>() {
+               @Override
+               public Object call() throws Exception {
+                  start.await();
+                  return c1.put(key, "v2");
+               }
+            }));
+         }
+         start.countDown();
+         for (Future<Object> f : futures) f.get(30, TimeUnit.SECONDS);
+      } finally {
+         executor.shutdownNow();
+      }
+
+      for (MagicKey key : keys) {
+         assertIsNotInL1(c3, key);
+         assertIsNotInL1(c4, key);
+      }
+      assert l1Manager.getTrackedKeys() == 0;
+      // without batching there would be one command per write
+      assert l1Manager.getInvalidationCommands() < NUM_KEYS : "Expected the invalidations to be coalesced, but "
+            + l1Manager.getInvalidationCommands() + " commands were sent";
+      assert l1Manager.getCoalescedInvalidations() > 0;
+   }
+}
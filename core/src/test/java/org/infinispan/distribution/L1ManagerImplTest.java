@@ -0,0 +1,162 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.easymock.IAnswer;
+import org.infinispan.commands.CommandsFactory;
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.remoting.rpc.RpcManager;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.remoting.transport.Transport;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ * Tests that L1 entries without a lifespan don't make every invalidation a multicast once the tracking limit has been
+ * reached.
+ *
+ * @author Pete Muir
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "distribution.L1ManagerImplTest")
+public class L1ManagerImplTest extends AbstractInfinispanTest {
+
+   private final Address self = new TestAddress(0);
+   private final Address tracked = new TestAddress(1);
+   private final Address untracked = new TestAddress(2);
+   private final AtomicInteger broadcasts = new AtomicInteger();
+   private final List<Address> members = new CopyOnWriteArrayList<Address>();
+   private final List<Address> invalidated = new CopyOnWriteArrayList<Address>();
+   private L1ManagerImpl l1Manager;
+
+   @BeforeMethod
+   public void setUp() {
+      l1Manager = createL1Manager(1);
+   }
+
+   @SuppressWarnings("unchecked")
+   private L1ManagerImpl createL1Manager(int maxTrackedKeys) {
+      Configuration config = new Configuration();
+      config.setCacheMode(Configuration.CacheMode.DIST_SYNC);
+      config.setL1Lifespan(-1);
+      config.setL1MaxTrackedKeys(maxTrackedKeys);
+      // only untracked requestors may cause a multicast
+      config.setL1InvalidationThreshold(-1);
+
+      members.clear();
+      members.addAll(Arrays.asList(self, tracked, untracked));
+      invalidated.clear();
+      Transport transport = createNiceMock(Transport.class);
+      expect(transport.getMembers()).andReturn(members).anyTimes();
+      RpcManager rpcManager = createNiceMock(RpcManager.class);
+      expect(rpcManager.getTransport()).andReturn(transport).anyTimes();
+      rpcManager.broadcastRpcCommandInFuture((ReplicableCommand) anyObject(), (NotifyingNotifiableFuture<Object>) anyObject());
+      expectLastCall().andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() {
+            broadcasts.incrementAndGet();
+            return null;
+         }
+      }).anyTimes();
+      rpcManager.invokeRemotelyInFuture((Collection<Address>) anyObject(), (ReplicableCommand) anyObject(), (NotifyingNotifiableFuture<Object>) anyObject());
+      expectLastCall().andAnswer(new IAnswer<Object>() {
+         @Override
+         public Object answer() {
+            invalidated.addAll((Collection<Address>) getCurrentArguments()[0]);
+            return null;
+         }
+      }).anyTimes();
+      replay(transport, rpcManager);
+
+      broadcasts.set(0);
+      L1ManagerImpl l1Manager = new L1ManagerImpl();
+      l1Manager.init(config, rpcManager, createNiceMock(CommandsFactory.class), null);
+      return l1Manager;
+   }
+
+   public void testUntrackedKeyIsForgottenOnceInvalidated() {
+      l1Manager.addRequestor("k1", tracked);
+      l1Manager.addRequestor("k2", untracked);
+      assert l1Manager.getTrackedKeys() == 1;
+      assert l1Manager.getUntrackedRequests() == 1;
+
+      // other keys are still invalidated precisely
+      l1Manager.flushCache(Collections.<Object>singleton("k3"), null, null);
+      assert broadcasts.get() == 0;
+
+      l1Manager.flushCache(Collections.<Object>singleton("k2"), null, null);
+      assert broadcasts.get() == 1;
+
+      // the untracked requestor has been invalidated, so the next write doesn't need a multicast
+      l1Manager.flushCache(Collections.<Object>singleton("k2"), null, null);
+      assert broadcasts.get() == 1;
+   }
+
+   public void testTrackingResumesAfterInvalidation() {
+      l1Manager.addRequestor("k1", tracked);
+      l1Manager.flushCache(Collections.<Object>singleton("k1"), null, null);
+      assert l1Manager.getTrackedKeys() == 0;
+
+      l1Manager.addRequestor("k2", untracked);
+      assert l1Manager.getTrackedKeys() == 1;
+      assert l1Manager.getUntrackedRequests() == 0;
+      l1Manager.flushCache(Collections.<Object>singleton("k2"), null, null);
+      assert broadcasts.get() == 0;
+   }
+
+   public void testIndexesOfDepartedNodesAreReused() {
+      l1Manager = createL1Manager(-1);
+      l1Manager.addRequestor("live", tracked);
+      // enough nodes come and go to use up every bit, if their indexes were never freed
+      for (int i = 0; i < 64; i++) {
+         Address departed = new TestAddress(100 + i);
+         members.add(departed);
+         l1Manager.addRequestor("departed" + i, departed);
+         members.remove(departed);
+      }
+
+      Address joiner = new TestAddress(200);
+      members.add(joiner);
+      l1Manager.addRequestor("joined", joiner);
+      assert l1Manager.getTrackedKeys() == 2 : "The keys requested by departed nodes should be forgotten, tracking " + l1Manager.getTrackedKeys();
+
+      l1Manager.flushCache(Collections.<Object>singleton("joined"), null, null);
+      assert invalidated.equals(Collections.singletonList(joiner)) : "Expected only the joiner to be invalidated, but was " + invalidated;
+
+      invalidated.clear();
+      l1Manager.flushCache(Collections.<Object>singleton("live"), null, null);
+      assert invalidated.equals(Collections.singletonList(tracked)) : "Expected only the live requestor to be invalidated, but was " + invalidated;
+   }
+}
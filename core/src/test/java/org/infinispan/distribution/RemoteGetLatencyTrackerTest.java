@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Tests the adaptive delay computed by {@link RemoteGetLatencyTracker}.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "distribution.RemoteGetLatencyTrackerTest")
+public class RemoteGetLatencyTrackerTest {
+
+   public void testDefaultDelayUntilEnoughSamples() {
+      RemoteGetLatencyTracker tracker = new RemoteGetLatencyTracker(0.95, SECONDS.toNanos(10));
+      for (int i = 0; i < RemoteGetLatencyTracker.RECOMPUTE_INTERVAL - 1; i++) tracker.record(MILLISECONDS.toNanos(1));
+      assert tracker.getDelayNanos() == RemoteGetLatencyTracker.DEFAULT_DELAY_NANOS;
+   }
+
+   public void testDelayFollowsPercentile() {
+      RemoteGetLatencyTracker tracker = new RemoteGetLatencyTracker(0.95, SECONDS.toNanos(10));
+      // 1..96 ms, so the 95th percentile is the 92nd sample
+      for (int i = 1; i <= 96; i++) tracker.record(MILLISECONDS.toNanos(i));
+      assert tracker.getDelayNanos() == MILLISECONDS.toNanos(92) : "Delay was " + tracker.getDelayNanos();
+   }
+
+   public void testDelayIsBounded() {
+      RemoteGetLatencyTracker tracker = new RemoteGetLatencyTracker(0.95, MILLISECONDS.toNanos(50));
+      for (int i = 0; i < RemoteGetLatencyTracker.WINDOW_SIZE; i++) tracker.record(SECONDS.toNanos(1));
+      assert tracker.getDelayNanos() == MILLISECONDS.toNanos(50);
+
+      for (int i = 0; i < RemoteGetLatencyTracker.WINDOW_SIZE; i++) tracker.record(1);
+      assert tracker.getDelayNanos() == RemoteGetLatencyTracker.MIN_DELAY_NANOS;
+   }
+
+   public void testOldSamplesAgeOut() {
+      RemoteGetLatencyTracker tracker = new RemoteGetLatencyTracker(0.95, SECONDS.toNanos(10));
+      for (int i = 0; i < RemoteGetLatencyTracker.WINDOW_SIZE; i++) tracker.record(MILLISECONDS.toNanos(100));
+      for (int i = 0; i < RemoteGetLatencyTracker.WINDOW_SIZE; i++) tracker.record(MILLISECONDS.toNanos(2));
+      assert tracker.getDelayNanos() == MILLISECONDS.toNanos(2);
+   }
+}
@@ -0,0 +1,101 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.remoting.transport.Address;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Tests the owner order chosen by {@link RemoteReadRouter}.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "distribution.RemoteReadRouterTest")
+public class RemoteReadRouterTest {
+
+   public void testCloserOwnersFirst() {
+      Address self = new TestTopologyAwareAddress(0, "s1", "r1", "m1");
+      Address sameMachine = new TestTopologyAwareAddress(1, "s1", "r1", "m1");
+      Address sameRack = new TestTopologyAwareAddress(2, "s1", "r1", "m2");
+      Address sameSite = new TestTopologyAwareAddress(3, "s1", "r2", "m3");
+      Address remoteSite = new TestTopologyAwareAddress(4, "s2", "r1", "m1");
+
+      RemoteReadRouter router = new RemoteReadRouter(self);
+      List<Address> routed = router.route(Arrays.asList(remoteSite, sameSite, sameRack, sameMachine));
+      assert routed.equals(Arrays.asList(sameMachine, sameRack, sameSite, remoteSite)) : "Routed " + routed;
+   }
+
+   public void testTopologyBeatsLatency() {
+      Address self = new TestTopologyAwareAddress(0, "s1", "r1", "m1");
+      Address sameRack = new TestTopologyAwareAddress(1, "s1", "r1", "m2");
+      Address otherRack = new TestTopologyAwareAddress(2, "s1", "r2", "m3");
+
+      RemoteReadRouter router = new RemoteReadRouter(self);
+      router.record(sameRack, MILLISECONDS.toNanos(20));
+      router.record(otherRack, MILLISECONDS.toNanos(1));
+      assert router.preferredOwner(Arrays.asList(otherRack, sameRack)).equals(sameRack);
+   }
+
+   public void testSlowOwnerLast() {
+      Address a1 = new TestAddress(1);
+      Address a2 = new TestAddress(2);
+      Address a3 = new TestAddress(3);
+
+      RemoteReadRouter router = new RemoteReadRouter(a3);
+      router.record(a1, MILLISECONDS.toNanos(10));
+      router.record(a2, MILLISECONDS.toNanos(1));
+      assert router.route(Arrays.asList(a1, a2)).equals(Arrays.asList(a2, a1));
+      assert router.getLatencyNanos(a1) == MILLISECONDS.toNanos(10);
+
+      // the slow owner recovers
+      for (int i = 0; i < 50; i++) router.record(a1, MILLISECONDS.toNanos(1));
+      assert router.route(Arrays.asList(a1, a2)).equals(Arrays.asList(a1, a2));
+   }
+
+   public void testSimilarLatenciesKeepConsistentHashOrder() {
+      Address a1 = new TestAddress(1);
+      Address a2 = new TestAddress(2);
+
+      RemoteReadRouter router = new RemoteReadRouter(new TestAddress(3));
+      router.record(a1, MICROSECONDS.toNanos(1000));
+      router.record(a2, MICROSECONDS.toNanos(900));
+      assert router.route(Arrays.asList(a1, a2)).equals(Arrays.asList(a1, a2));
+   }
+
+   public void testUnknownOwnersAreSampled() {
+      Address a1 = new TestAddress(1);
+      Address a2 = new TestAddress(2);
+
+      RemoteReadRouter router = new RemoteReadRouter(new TestAddress(3));
+      router.record(a1, MILLISECONDS.toNanos(5));
+      assert router.preferredOwner(Arrays.asList(a1, a2)).equals(a2);
+      assert router.getLatencyNanos(a2) == -1;
+   }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.distribution.ch.ConsistentHashHelper;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "distribution.SegmentedConsistentHashTest")
+public class SegmentedConsistentHashTest extends AbstractInfinispanTest {
+
+   private SegmentedConsistentHash createConsistentHash(int numNodes, int numVirtualNodes) {
+      Configuration c = new Configuration().fluent()
+            .hash().consistentHashClass(SegmentedConsistentHash.class).numOwners(2).numVirtualNodes(numVirtualNodes)
+            .build();
+      List<Address> servers = new ArrayList<Address>();
+      for (int i = 0; i < numNodes; i++) servers.add(new TestAddress(i));
+      return (SegmentedConsistentHash) ConsistentHashHelper.createConsistentHash(c, servers);
+   }
+
+   public void testLocateReturnsPrecomputedOwners() {
+      SegmentedConsistentHash ch = createConsistentHash(5, 1);
+      for (int i = 0; i < 1000; i++) {
+         Object key = "key" + i;
+         List<Address> owners = ch.locate(key, 2);
+         assertEquals(owners.size(), 2);
+         assert owners != ch.locate(key, 1);
+         assert owners == ch.locate(key, 2) : "Owners should not be recomputed";
+         assertEquals(ch.locate(key, 1), owners.subList(0, 1));
+         assert !owners.get(0).equals(owners.get(1));
+      }
+   }
+
+   public void testKeysInTheSameSegmentHaveTheSameOwners() {
+      SegmentedConsistentHash ch = createConsistentHash(10, 1);
+      for (int i = 0; i < 1000; i++) {
+         Object key = "key" + i;
+         assert ch.getSegment(key) >= 0 && ch.getSegment(key) < ch.getNumSegments();
+         for (int j = i + 1; j < 1000; j++) {
+            Object other = "key" + j;
+            if (ch.getSegment(key) == ch.getSegment(other))
+               assertEquals(ch.locate(key, 2), ch.locate(other, 2));
+         }
+      }
+   }
+
+   public void testLargerReplCountWalksTheWheel() {
+      SegmentedConsistentHash ch = createConsistentHash(4, 3);
+      for (int i = 0; i < 100; i++) {
+         Object key = "key" + i;
+         List<Address> owners = ch.locate(key, 10);
+         assertEquals(owners.size(), 4);
+         assertEquals(new HashSet<Address>(owners).size(), 4);
+         assertEquals(owners.subList(0, 2), ch.locate(key, 2));
+      }
+   }
+
+   public void testIsKeyLocalToAddress() {
+      SegmentedConsistentHash ch = createConsistentHash(6, 2);
+      for (int i = 0; i < 1000; i++) {
+         Object key = "key" + i;
+         List<Address> owners = ch.locate(key, 2);
+         for (Address a : ch.getCaches()) {
+            assertEquals(ch.isKeyLocalToAddress(a, key, 2), owners.contains(a));
+         }
+      }
+   }
+
+   @Test(expectedExceptions = UnsupportedOperationException.class)
+   public void testOwnersCannotBeModified() {
+      SegmentedConsistentHash ch = createConsistentHash(3, 1);
+      ch.locate("key", 2).clear();
+   }
+}
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.distribution.rehash;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.remoting.transport.Address;
+import org.infinispan.statetransfer.StateTransferLock;
+import org.infinispan.statetransfer.StateTransferLockImpl;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+
+/**
+ * Writes keys continuously while a node joins a cache with non-blocking rehash enabled, and checks that every owner
+ * ends up with the last value written for every key.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "distribution.rehash.NonBlockingRehashTest")
+public class NonBlockingRehashTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_KEYS = 200;
+
+   private Configuration config;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      config = getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC);
+      config.setL1CacheEnabled(false);
+      config.setNonBlockingRehash(true);
+      createCluster(config, 2);
+      waitForClusterToForm();
+   }
+
+   public void testWritesDuringJoin() throws Exception {
+      final Cache<Object, Object> writerCache = cache(0);
+      final Map<String, String> expected = new HashMap<String, String>();
+      for (int i = 0; i < NUM_KEYS; i++) {
+         writerCache.put("k" + i, "v0");
+         expected.put("k" + i, "v0");
+      }
+
+      final AtomicBoolean stop = new AtomicBoolean(false);
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+      Thread writer = new Thread("NonBlockingRehashTest-writer") {
+         @Override
+         public void run() {
+            try {
+               for (int round = 1; !stop.get(); round++) {
+                  for (int i = 0; i < NUM_KEYS; i++) {
+                     writerCache.put("k" + i, "v" + round);
+                     expected.put("k" + i, "v" + round);
+                  }
+               }
+            } catch (Throwable t) {
+               failure.set(t);
+            }
+         }
+      };
+      writer.start();
+
+      addClusterEnabledCacheManager(config);
+      Cache<Object, Object> joiner = cache(2);
+      TestingUtil.blockUntilViewsReceived(60000, cache(0), cache(1), joiner);
+      TestingUtil.waitForRehashToComplete(cache(0), cache(1), joiner);
+
+      stop.set(true);
+      writer.join();
+      assert failure.get() == null : "Writes failed during the rehash: " + failure.get();
+
+      for (int i = 0; i < NUM_KEYS; i++) {
+         String key = "k" + i;
+         List<Address> owners = writerCache.getAdvancedCache().getDistributionManager().locate(key);
+         for (Cache<Object, Object> c : caches()) {
+            if (owners.contains(address(c))) {
+               InternalCacheEntry ice = TestingUtil.extractComponent(c, DataContainer.class).get(key);
+               assertNotNull(ice, "Owner " + address(c) + " is missing key " + key);
+               assertEquals(ice.getValue(), expected.get(key), "Stale value for key " + key + " on " + address(c));
+            }
+         }
+      }
+
+      for (Cache<Object, Object> c : caches()) {
+         StateTransferLockImpl lock = (StateTransferLockImpl) TestingUtil.extractComponent(c, StateTransferLock.class);
+         assert !lock.areNewTransactionsBlocked();
+         assert lock.getWriteBlockingCount() > 0;
+      }
+   }
+}
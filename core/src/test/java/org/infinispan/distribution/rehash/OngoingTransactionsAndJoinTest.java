@@ -308,7 +308,7 @@ public ListeningHandler(InboundInvocationHandler delegate, CountDownLatch txsRea
       }
 
       @Override
-      public Response handle(CacheRpcCommand cmd, Address origin) throws Throwable {
+      public Response handle(CacheRpcCommand cmd, Address origin, boolean responseExpected, boolean outOfBand) throws Throwable {
          boolean notifyRehashStarted = false;
          if (cmd instanceof CacheViewControlCommand) {
             CacheViewControlCommand rcc = (CacheViewControlCommand) cmd;
@@ -324,7 +324,7 @@ public Response handle(CacheRpcCommand cmd, Address origin) throws Throwable {
             }
          }
 
-         Response r = delegate.handle(cmd, origin);
+         Response r = delegate.handle(cmd, origin, responseExpected, outOfBand);
          if (notifyRehashStarted) rehashStarted.countDown();
          return r;
       }
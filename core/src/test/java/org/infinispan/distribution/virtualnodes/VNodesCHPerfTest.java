@@ -23,6 +23,7 @@
 import org.infinispan.distribution.ch.ConsistentHash;
 import org.infinispan.distribution.ch.ConsistentHashHelper;
 import org.infinispan.distribution.ch.DefaultConsistentHash;
+import org.infinispan.distribution.ch.SegmentedConsistentHash;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
 import org.infinispan.test.AbstractInfinispanTest;
@@ -55,20 +56,26 @@ private Set<Address> createAddresses(int numNodes) {
    public void testSpeed() {
       int[] numNodes = {1, 2, 3, 4, 10, 100, 1000};
       int iterations = 100000;
-      // warmup
-      doPerfTest(10, 2, iterations);
+      List<Class<? extends ConsistentHash>> chClasses = Arrays.<Class<? extends ConsistentHash>>asList(
+            DefaultConsistentHash.class, SegmentedConsistentHash.class);
+      for (Class<? extends ConsistentHash> chClass : chClasses) {
+         // warmup
+         doPerfTest(chClass, 10, 2, iterations);
+      }
 
       for (int numOwners = 1; numOwners < 5; numOwners++) {
          System.out.println("numOwners=" + numOwners);
          for (int nn: numNodes) {
-            Long duration = doPerfTest(nn, numOwners, iterations);
-            System.out.println("With "+nn+" cache(s), time to do " + iterations + " lookups was " + Util.prettyPrintTime(TimeUnit.NANOSECONDS.toMillis(duration)));
+            for (Class<? extends ConsistentHash> chClass : chClasses) {
+               Long duration = doPerfTest(chClass, nn, numOwners, iterations);
+               System.out.println(chClass.getSimpleName() + ": with "+nn+" cache(s), time to do " + iterations + " lookups was " + Util.prettyPrintTime(TimeUnit.NANOSECONDS.toMillis(duration)));
+            }
          }
       }
    }
 
-   private Long doPerfTest(int numNodes, int numOwners, int iterations) {
-      ConsistentHash ch = createConsistentHash(numNodes);
+   private Long doPerfTest(Class<? extends ConsistentHash> chClass, int numNodes, int numOwners, int iterations) {
+      ConsistentHash ch = createConsistentHash(chClass, numNodes, numOwners);
 
       int dummy = 0;
       long start = System.nanoTime();
@@ -82,9 +89,14 @@ private Long doPerfTest(int numNodes, int numOwners, int iterations) {
    }
 
    private ConsistentHash createConsistentHash(int numNodes) {
+      return createConsistentHash(DefaultConsistentHash.class, numNodes, 2);
+   }
+
+   private ConsistentHash createConsistentHash(Class<? extends ConsistentHash> chClass, int numNodes, int numOwners) {
       Configuration c = new Configuration();
       c.fluent().hash()
-            .consistentHashClass(DefaultConsistentHash.class)
+            .consistentHashClass(chClass)
+            .numOwners(numOwners)
             .numVirtualNodes(10);
       Set<Address> addresses = createAddresses(numNodes);
       return ConsistentHashHelper.createConsistentHash(c, addresses);
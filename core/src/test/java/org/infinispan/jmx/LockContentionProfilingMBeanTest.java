@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.jmx;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.transaction.lookup.DummyTransactionManagerLookup;
+import org.infinispan.transaction.tm.DummyTransactionManager;
+import org.testng.annotations.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.transaction.TransactionManager;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.infinispan.test.TestingUtil.getCacheObjectName;
+
+/**
+ * Tests the lock contention profiling exposed by {@link org.infinispan.util.concurrent.locks.LockManagerImpl}.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "jmx.LockContentionProfilingMBeanTest")
+public class LockContentionProfilingMBeanTest extends SingleCacheManagerTest {
+
+   private ObjectName lockManagerObjName;
+   private MBeanServer threadMBeanServer;
+   private static final String JMX_DOMAIN = "LockContentionProfilingMBeanTest";
+
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      GlobalConfiguration globalConfiguration = GlobalConfiguration.getNonClusteredDefault().fluent()
+            .globalJmxStatistics()
+               .mBeanServerLookupClass(PerThreadMBeanServerLookup.class)
+               .jmxDomain(JMX_DOMAIN)
+            .build();
+
+      cacheManager = TestCacheManagerFactory.createCacheManagerEnforceJmxDomain(globalConfiguration);
+
+      Configuration configuration = getDefaultStandaloneConfig(true).fluent()
+            .jmxStatistics()
+            .transaction()
+               .transactionManagerLookup(new DummyTransactionManagerLookup())
+            .build();
+
+      cacheManager.defineConfiguration("test", configuration);
+      cache = cacheManager.getCache("test");
+      lockManagerObjName = getCacheObjectName(JMX_DOMAIN, "test(local)", "LockManager");
+
+      threadMBeanServer = PerThreadMBeanServerLookup.getThreadMBeanServer();
+      return cacheManager;
+   }
+
+   public void testProfilingDisabledByDefault() throws Exception {
+      assert !(Boolean) threadMBeanServer.getAttribute(lockManagerObjName, "ProfilingEnabled");
+      assert getLongAttr("ContendedLockAcquisitions") == -1;
+      assert "N/A".equals(threadMBeanServer.getAttribute(lockManagerObjName, "MostContendedKeys"));
+   }
+
+   public void testContendedKeyIsReported() throws Exception {
+      threadMBeanServer.setAttribute(lockManagerObjName, new Attribute("ProfilingEnabled", true));
+      try {
+         final DummyTransactionManager tm = (DummyTransactionManager) TestingUtil.extractComponent(cache, TransactionManager.class);
+         tm.begin();
+         cache.put("hot", "v1");
+         cache.put("cold", "v1");
+         tm.getTransaction().runPrepare();
+
+         final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+         Thread t = fork(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  tm.begin();
+                  cache.put("hot", "v2");
+                  tm.commit();
+               } catch (Throwable th) {
+                  failure.set(th);
+               }
+            }
+         }, false);
+
+         Thread.sleep(500);
+         tm.getTransaction().runCommitTx();
+         t.join(10000);
+         assert failure.get() == null : failure.get();
+         assert "v2".equals(cache.get("hot"));
+
+         assert getLongAttr("ProfiledLockAcquisitions") >= 3;
+         assert getLongAttr("ContendedLockAcquisitions") == 1;
+         assert getLongAttr("LockAcquisitionTimeouts") == 0;
+         assert getLongAttr("MaxLockWaitTime") > 0;
+         String keys = (String) threadMBeanServer.getAttribute(lockManagerObjName, "MostContendedKeys");
+         assert keys.startsWith("hot=1") : keys;
+         String histogram = (String) threadMBeanServer.getAttribute(lockManagerObjName, "LockWaitTimeHistogram");
+         assert histogram.length() > 0;
+         String holders = (String) threadMBeanServer.getAttribute(lockManagerObjName, "LongestContendedLockHolders");
+         assert holders.contains(" held hot for ") : holders;
+         assert !holders.contains("cold") : "Only contended locks should be reported, got " + holders;
+
+         threadMBeanServer.invoke(lockManagerObjName, "resetStatistics", new Object[0], new String[0]);
+         assert getLongAttr("ContendedLockAcquisitions") == 0;
+         assert "".equals(threadMBeanServer.getAttribute(lockManagerObjName, "MostContendedKeys"));
+      } finally {
+         threadMBeanServer.setAttribute(lockManagerObjName, new Attribute("ProfilingEnabled", false));
+      }
+      assert getLongAttr("ContendedLockAcquisitions") == -1;
+   }
+
+   private long getLongAttr(String attrName) throws Exception {
+      return Long.parseLong(threadMBeanServer.getAttribute(lockManagerObjName, attrName).toString());
+   }
+}
@@ -30,6 +30,7 @@
 import org.infinispan.manager.CacheContainer;
 import org.infinispan.remoting.rpc.ResponseFilter;
 import org.infinispan.remoting.rpc.ResponseMode;
+import org.infinispan.remoting.rpc.RpcCommandStatistics;
 import org.infinispan.remoting.rpc.RpcManager;
 import org.infinispan.remoting.rpc.RpcManagerImpl;
 import org.infinispan.remoting.transport.Address;
@@ -178,6 +179,35 @@ public void testSuccessRatio() throws Exception {
       }
    }
 
+   @Test(dependsOnMethods = "testSuccessRatio")
+   public void testCommandStatistics() throws Exception {
+      Cache cache1 = manager(0).getCache(cachename);
+      Cache cache2 = manager(1).getCache(cachename);
+      MBeanServer mBeanServer = PerThreadMBeanServerLookup.getThreadMBeanServer();
+      ObjectName rpcManager1 = getCacheObjectName(JMX_DOMAIN, cachename + "(repl_sync)", "RpcManager");
+      mBeanServer.invoke(rpcManager1, "resetStatistics", new Object[0], new String[0]);
+
+      cache1.put("k1", "v1");
+      cache1.put("k2", "v2");
+      cache1.remove("k1");
+      assert cache2.get("k2").equals("v2");
+
+      RpcCommandStatistics stats = ((RpcManagerImpl) TestingUtil.extractComponent(cache1, RpcManager.class)).getRpcCommandStatistics();
+      assertEquals(stats.getCount("PutKeyValueCommand"), 2);
+      assertEquals(stats.getCount("RemoveCommand"), 1);
+      assert stats.getBytesSent("PutKeyValueCommand") > 0;
+      assertEquals(stats.getTimeouts("PutKeyValueCommand"), 0);
+
+      String summary = (String) mBeanServer.getAttribute(rpcManager1, "CommandStatistics");
+      assert summary.contains("PutKeyValueCommand: count=2") : summary;
+      String details = (String) mBeanServer.invoke(rpcManager1, "showCommandStatistics", new Object[]{"PutKeyValueCommand"},
+                                                   new String[]{String.class.getName()});
+      assert details.contains("latency histogram") : details;
+
+      mBeanServer.invoke(rpcManager1, "resetStatistics", new Object[0], new String[0]);
+      assertEquals(stats.getCount("PutKeyValueCommand"), 0);
+   }
+
    public static class SlowToSerialize implements Externalizable {
       String val;
       transient long delay;
@@ -0,0 +1,218 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.lock;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.locks.LockManagerImpl;
+import org.infinispan.util.concurrent.locks.OwnableReentrantLock;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPooledPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantPooledPerEntryLockContainer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.transaction.TransactionManager;
+
+import static org.easymock.EasyMock.createNiceMock;
+
+/**
+ * Tests the lock recycling and the lock table of the pooled per-entry lock containers.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "lock.PooledPerEntryLockContainerTest")
+public class PooledPerEntryLockContainerTest extends AbstractInfinispanTest {
+
+   OwnableReentrantPooledPerEntryLockContainer lc;
+   ExecutorService executor;
+
+   @BeforeMethod
+   public void createContainer() {
+      lc = new OwnableReentrantPooledPerEntryLockContainer(4);
+      executor = Executors.newCachedThreadPool();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void shutdownExecutor() {
+      executor.shutdownNow();
+   }
+
+   public void testLocksAreRecycled() throws Exception {
+      Object owner = new Object();
+      OwnableReentrantLock first = lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS);
+      assert first != null;
+      assert lc.isLocked("k1");
+      assert lc.ownsLock("k1", owner);
+      assert lc.getNumLocksHeld() == 1;
+
+      lc.releaseLock(owner, "k1");
+      assert !lc.isLocked("k1");
+      assert lc.getLock("k1") == null;
+      assert lc.getNumLocksHeld() == 0;
+      assert lc.size() == 1 : "The released lock should be in the pool";
+
+      // same key, same segment: the pooled lock is handed out again
+      OwnableReentrantLock second = lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS);
+      assert second == first;
+      lc.releaseLock(owner, "k1");
+   }
+
+   public void testReentrancy() throws Exception {
+      Object owner = new Object();
+      assert lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS) != null;
+      assert lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS) != null;
+
+      lc.releaseLock(owner, "k1");
+      assert !lc.isLocked("k1") : "A release should unlock the key, however many times it was acquired";
+      assert lc.getNumLocksHeld() == 0;
+      assert lc.getLock("k1") == null;
+
+      // the lock can be acquired again and doesn't carry a stale reference
+      assert lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS) != null;
+      lc.releaseLock(owner, "k1");
+      assert !lc.isLocked("k1");
+      assert lc.getNumLocksHeld() == 0;
+   }
+
+   public void testUnlockAllAfterReentrantLocking() throws Exception {
+      Configuration config = new Configuration();
+      config.setUseLockStriping(false);
+      config.setUseLockPooling(true);
+      for (TransactionManager tm : new TransactionManager[]{null, createNiceMock(TransactionManager.class)}) {
+         LockManagerImpl lm = new LockManagerImpl();
+         lm.injectDependencies(config, tm);
+         lm.startLockManager();
+
+         NonTxInvocationContext ctx = new NonTxInvocationContext(1, true);
+         assert lm.acquireLockNoCheck(ctx, "k1");
+         assert lm.acquireLockNoCheck(ctx, "k1");
+         assert lm.isLocked("k1");
+
+         lm.unlockAll(ctx);
+         assert !lm.isLocked("k1") : "unlockAll should release a key locked twice";
+         assert lm.getNumberOfLocksHeld() == 0;
+      }
+   }
+
+   public void testReleaseByNonOwnerIsIgnored() throws Exception {
+      Object owner = new Object();
+      assert lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS) != null;
+      lc.releaseLock(new Object(), "k1");
+      lc.releaseLock(new Object(), "k2");
+      assert lc.ownsLock("k1", owner);
+      assert lc.getNumLocksHeld() == 1;
+      lc.releaseLock(owner, "k1");
+   }
+
+   public void testFailedAcquisitionDoesNotLeakMappings() throws Exception {
+      final Object owner = new Object();
+      assert lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS) != null;
+      Future<OwnableReentrantLock> f = executor.submit(new Callable<OwnableReentrantLock>() {
+         @Override
+         public OwnableReentrantLock call() throws Exception {
+            return lc.acquireLock(new Object(), "k1", 100, TimeUnit.MILLISECONDS);
+         }
+      });
+      assert f.get() == null;
+      lc.releaseLock(owner, "k1");
+      assert lc.getNumLocksHeld() == 0;
+   }
+
+   public void testWaiterAcquiresAfterRelease() throws Exception {
+      final Object owner = new Object();
+      final OwnableReentrantLock lock = lc.acquireLock(owner, "k1", 0, TimeUnit.MILLISECONDS);
+      Future<OwnableReentrantLock> f = executor.submit(new Callable<OwnableReentrantLock>() {
+         @Override
+         public OwnableReentrantLock call() throws Exception {
+            Object otherOwner = new Object();
+            OwnableReentrantLock l = lc.acquireLock(otherOwner, "k1", 10, TimeUnit.SECONDS);
+            lc.releaseLock(otherOwner, "k1");
+            return l;
+         }
+      });
+      Thread.sleep(100);
+      lc.releaseLock(owner, "k1");
+      assert f.get() == lock : "The waiter should get the same lock, the key stays mapped while it waits";
+      assert lc.getNumLocksHeld() == 0;
+   }
+
+   public void testTableGrowsAndShrinks() throws Exception {
+      Object owner = new Object();
+      int numKeys = 1000;
+      for (int i = 0; i < numKeys; i++) assert lc.acquireLock(owner, "k" + i, 0, TimeUnit.MILLISECONDS) != null;
+      assert lc.getNumLocksHeld() == numKeys;
+      for (int i = 0; i < numKeys; i++) assert lc.ownsLock("k" + i, owner) : "Lost lock on k" + i;
+
+      // release every other key, so that the remaining entries have to be shifted back in the probe sequences
+      for (int i = 0; i < numKeys; i += 2) lc.releaseLock(owner, "k" + i);
+      for (int i = 0; i < numKeys; i++) assert lc.isLocked("k" + i) == (i % 2 == 1) : "Wrong state for k" + i;
+
+      for (int i = 1; i < numKeys; i += 2) lc.releaseLock(owner, "k" + i);
+      assert lc.getNumLocksHeld() == 0;
+   }
+
+   public void testMutualExclusion() throws Exception {
+      final ReentrantPooledPerEntryLockContainer container = new ReentrantPooledPerEntryLockContainer(4);
+      final int[] counters = new int[8];
+      final AtomicInteger failures = new AtomicInteger();
+      Future<?>[] futures = new Future[8];
+      for (int t = 0; t < futures.length; t++) {
+         futures[t] = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               for (int i = 0; i < 10000; i++) {
+                  int k = i % counters.length;
+                  ReentrantLock l = container.acquireLock(null, k, 10, TimeUnit.SECONDS);
+                  if (l == null) {
+                     failures.incrementAndGet();
+                     continue;
+                  }
+                  try {
+                     counters[k]++;
+                  } finally {
+                     container.releaseLock(null, k);
+                  }
+               }
+               return null;
+            }
+         });
+      }
+      for (Future<?> f : futures) f.get();
+      assert failures.get() == 0;
+      int total = 0;
+      for (int c : counters) total += c;
+      assert total == futures.length * 10000 : "Lost updates, total is " + total;
+      assert container.getNumLocksHeld() == 0;
+   }
+}
@@ -36,6 +36,7 @@
 import org.infinispan.remoting.transport.Transport;
 import org.infinispan.test.MultipleCacheManagersTest;
 import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.concurrent.NotifyingNotifiableFuture;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
@@ -235,6 +236,12 @@ public void invokeRemotelyInFuture(Collection<Address> recipients, ReplicableCom
          realOne.invokeRemotelyInFuture(recipients, rpc, usePriorityQueue, future, timeout);
       }
 
+      public NotifyingFuture<Map<Address, Response>> invokeRemotelyWithResponsesInFuture(Collection<Address> recipients, ReplicableCommand rpc) {
+         log.trace("ControlledRpcManager.invokeRemotelyWithResponsesInFuture");
+         aboutToInvokeRpc(rpc);
+         return realOne.invokeRemotelyWithResponsesInFuture(recipients, rpc);
+      }
+
       public Transport getTransport() {
          return realOne.getTransport();
       }
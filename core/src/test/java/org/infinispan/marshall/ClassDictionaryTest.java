@@ -0,0 +1,104 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+/**
+ * Tests that classes registered in the marshaller's class dictionary are
+ * written with a compact identifier and can be read back.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "marshall.ClassDictionaryTest")
+public class ClassDictionaryTest extends AbstractInfinispanTest {
+
+   private EmbeddedCacheManager withDictionary;
+   private EmbeddedCacheManager withoutDictionary;
+
+   @BeforeClass
+   public void setUp() {
+      GlobalConfiguration globalCfg = GlobalConfiguration.getNonClusteredDefault();
+      globalCfg.fluent().serialization().classDictionary(Person.class);
+      withDictionary = TestCacheManagerFactory.createCacheManager(globalCfg);
+      withoutDictionary = TestCacheManagerFactory.createCacheManager(GlobalConfiguration.getNonClusteredDefault());
+   }
+
+   @AfterClass
+   public void tearDown() {
+      TestingUtil.killCacheManagers(withDictionary, withoutDictionary);
+   }
+
+   public void testClassDictionaryConfig() {
+      assertEquals(1, withDictionary.getGlobalConfiguration().getClassDictionary().size());
+      assertEquals(Person.class.getName(), withDictionary.getGlobalConfiguration().getClassDictionary().get(0));
+      assertTrue(withoutDictionary.getGlobalConfiguration().getClassDictionary().isEmpty());
+   }
+
+   public void testDictionaryClassRoundTrip() throws Exception {
+      StreamingMarshaller marshaller = TestingUtil.extractGlobalMarshaller(withDictionary);
+      Person person = new Person("Galder", 33);
+      byte[] bytes = marshaller.objectToByteBuffer(person);
+      assertEquals(person, marshaller.objectFromByteBuffer(bytes));
+
+      byte[] plainBytes = TestingUtil.extractGlobalMarshaller(withoutDictionary).objectToByteBuffer(person);
+      assertTrue("Expected " + bytes.length + " < " + plainBytes.length, bytes.length < plainBytes.length);
+   }
+
+   public static class Person implements Serializable {
+      private static final long serialVersionUID = 2315301487305728467L;
+      final String name;
+      final int age;
+
+      public Person(String name, int age) {
+         this.name = name;
+         this.age = age;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         if (this == o) return true;
+         if (o == null || getClass() != o.getClass()) return false;
+         Person person = (Person) o;
+         return age == person.age && name.equals(person.name);
+      }
+
+      @Override
+      public int hashCode() {
+         return 31 * name.hashCode() + age;
+      }
+   }
+}
@@ -0,0 +1,184 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.commands.StreamingCommand;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.context.Flag;
+import org.infinispan.io.ExposedByteArrayOutputStream;
+import org.infinispan.io.UnsignedNumeric;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.jgroups.stack.IpAddress;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.infinispan.test.TestingUtil.extractCacheMarshaller;
+
+/**
+ * Compares marshalling the parameters of the most frequently replicated commands directly to the stream, as done by
+ * {@link StreamingCommand}s, against boxing them into the <tt>Object[]</tt> returned by
+ * {@link org.infinispan.commands.ReplicableCommand#getParameters()}.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+@Test(groups = "profiling", testName = "marshall.CommandMarshallingPerfTest", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class CommandMarshallingPerfTest extends AbstractInfinispanTest {
+   private static final Log log = LogFactory.getLog(CommandMarshallingPerfTest.class);
+   private static final int WARMUP_LOOPS = 100000;
+   private static final int LOOPS = 1000000;
+   private static final String CACHE_NAME = "perfCache";
+
+   private EmbeddedCacheManager cm;
+   private StreamingMarshaller marshaller;
+   private final TransactionFactory gtf = new TransactionFactory();
+
+   @BeforeClass
+   public void setUp() {
+      gtf.init(false, false, true);
+      cm = TestCacheManagerFactory.createClusteredCacheManager();
+      cm.getDefaultConfiguration().fluent().clustering().mode(Configuration.CacheMode.DIST_SYNC);
+      marshaller = extractCacheMarshaller(cm.getCache());
+   }
+
+   @AfterClass
+   public void tearDown() {
+      cm.stop();
+   }
+
+   public void testPutKeyValueCommand() throws Exception {
+      doTest(new PutKeyValueCommand("key", "value", false, null, -1, -1, Collections.<Flag>emptySet()),
+             new CommandCreator() {
+                public StreamingCommand create() {
+                   return new PutKeyValueCommand();
+                }
+             });
+   }
+
+   public void testClusteredGetCommand() throws Exception {
+      doTest(new ClusteredGetCommand("key", CACHE_NAME, Collections.<Flag>emptySet()),
+             new CommandCreator() {
+                public StreamingCommand create() {
+                   return new ClusteredGetCommand(CACHE_NAME);
+                }
+             });
+   }
+
+   public void testPrepareCommand() throws Exception {
+      GlobalTransaction gtx = gtf.newGlobalTransaction(new JGroupsAddress(new IpAddress(12345)), false);
+      WriteCommand[] mods = new WriteCommand[10];
+      for (int i = 0; i < mods.length; i++)
+         mods[i] = new PutKeyValueCommand("key" + i, "value" + i, false, null, -1, -1, Collections.<Flag>emptySet());
+      doTest(new PrepareCommand(CACHE_NAME, gtx, true, mods),
+             new CommandCreator() {
+                public StreamingCommand create() {
+                   return new PrepareCommand(CACHE_NAME);
+                }
+             });
+   }
+
+   private void doTest(StreamingCommand command, CommandCreator creator) throws Exception {
+      // warm up both paths first
+      for (int i = 0; i < WARMUP_LOOPS; i++) {
+         parametersRoundTrip(command, creator);
+         streamingRoundTrip(command, creator);
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < LOOPS; i++) parametersRoundTrip(command, creator);
+      long parametersNanos = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < LOOPS; i++) streamingRoundTrip(command, creator);
+      long streamingNanos = System.nanoTime() - start;
+
+      log.warnf("%s: Object[] parameters %d ms, streamed parameters %d ms for %d round trips",
+                command.getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMillis(parametersNanos),
+                TimeUnit.NANOSECONDS.toMillis(streamingNanos), LOOPS);
+   }
+
+   private StreamingCommand parametersRoundTrip(StreamingCommand command, CommandCreator creator) throws Exception {
+      ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(128);
+      ObjectOutput out = marshaller.startObjectOutput(baos, false);
+      try {
+         Object[] args = command.getParameters();
+         UnsignedNumeric.writeUnsignedInt(out, args.length);
+         for (Object arg : args) out.writeObject(arg);
+      } finally {
+         marshaller.finishObjectOutput(out);
+      }
+
+      ObjectInput in = marshaller.startObjectInput(new ByteArrayInputStream(baos.getRawBuffer(), 0, baos.size()), false);
+      try {
+         Object[] args = new Object[UnsignedNumeric.readUnsignedInt(in)];
+         for (int i = 0; i < args.length; i++) args[i] = in.readObject();
+         StreamingCommand copy = creator.create();
+         copy.setParameters(command.getCommandId(), args);
+         return copy;
+      } finally {
+         marshaller.finishObjectInput(in);
+      }
+   }
+
+   private StreamingCommand streamingRoundTrip(StreamingCommand command, CommandCreator creator) throws Exception {
+      ExposedByteArrayOutputStream baos = new ExposedByteArrayOutputStream(128);
+      ObjectOutput out = marshaller.startObjectOutput(baos, false);
+      try {
+         command.writeTo(out);
+      } finally {
+         marshaller.finishObjectOutput(out);
+      }
+
+      ObjectInput in = marshaller.startObjectInput(new ByteArrayInputStream(baos.getRawBuffer(), 0, baos.size()), false);
+      try {
+         StreamingCommand copy = creator.create();
+         copy.readFrom(in);
+         return copy;
+      } finally {
+         marshaller.finishObjectInput(in);
+      }
+   }
+
+   private interface CommandCreator {
+      StreamingCommand create();
+   }
+}
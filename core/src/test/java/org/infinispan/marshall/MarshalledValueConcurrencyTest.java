@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.infinispan.test.TestingUtil.extractCacheMarshaller;
+
+/**
+ * Checks that concurrent serialization, deserialization and compaction of a single {@link MarshalledValue} never
+ * lose both representations, nor hand out a wrong one.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "marshall.MarshalledValueConcurrencyTest")
+public class MarshalledValueConcurrencyTest extends SingleCacheManagerTest {
+
+   private static final int NUM_THREADS = 8;
+   private static final int NUM_OPERATIONS = 20000;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      return TestCacheManagerFactory.createLocalCacheManager(false);
+   }
+
+   public void testConcurrentAccess() throws Exception {
+      final Pojo pojo = new Pojo(42);
+      final MarshalledValue mv = new MarshalledValue(pojo, true, extractCacheMarshaller(cache));
+      final byte[] expectedRaw = new MarshalledValue(pojo, true, extractCacheMarshaller(cache)).getRaw();
+      final int expectedHashCode = mv.hashCode();
+      final CyclicBarrier barrier = new CyclicBarrier(NUM_THREADS);
+
+      ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+      try {
+         List<Future<Void>> futures = new ArrayList<Future<Void>>(NUM_THREADS);
+         for (int i = 0; i < NUM_THREADS; i++) {
+            final int seed = i;
+            futures.add(executor.submit(new Callable<Void>() {
+               @Override
+               public Void call() throws Exception {
+                  Random r = new Random(seed);
+                  barrier.await();
+                  for (int j = 0; j < NUM_OPERATIONS; j++) {
+                     switch (r.nextInt(4)) {
+                        case 0:
+                           assert pojo.equals(mv.get()) : "Wrong instance " + mv.get();
+                           break;
+                        case 1:
+                           assert Arrays.equals(expectedRaw, mv.getRaw()) : "Wrong serialized form";
+                           break;
+                        case 2:
+                           mv.compact(r.nextBoolean(), r.nextBoolean());
+                           break;
+                        default:
+                           assert mv.hashCode() == expectedHashCode;
+                     }
+                  }
+                  return null;
+               }
+            }));
+         }
+         for (Future<Void> f : futures) f.get();
+      } finally {
+         executor.shutdownNow();
+      }
+
+      assert mv.instance != null || mv.raw != null : "Both representations were lost";
+      assert pojo.equals(mv.get());
+   }
+
+   public static class Pojo implements Serializable {
+      final int id;
+
+      Pojo(int id) {
+         this.id = id;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return this == o || o instanceof Pojo && ((Pojo) o).id == id;
+      }
+
+      @Override
+      public int hashCode() {
+         return id;
+      }
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.marshall;
+
+import org.infinispan.commands.ReplicableCommand;
+import org.infinispan.commands.StreamingCommand;
+import org.infinispan.commands.remote.CacheRpcCommand;
+import org.infinispan.commands.remote.ClusteredGetAllCommand;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.commands.write.WriteCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.EntryVersion;
+import org.infinispan.context.Flag;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.remoting.transport.jgroups.JGroupsAddress;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.transaction.xa.GlobalTransaction;
+import org.infinispan.transaction.xa.TransactionFactory;
+import org.jgroups.stack.IpAddress;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.infinispan.test.TestingUtil.extractCacheMarshaller;
+
+/**
+ * Checks that every {@link StreamingCommand} survives a round trip through the cache marshaller with all its
+ * parameters intact, including <tt>null</tt>, empty and flagged values.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "marshall.StreamingCommandMarshallingTest")
+public class StreamingCommandMarshallingTest extends AbstractInfinispanTest {
+   private static final String CACHE_NAME = "streamingCache";
+
+   private EmbeddedCacheManager cm;
+   private StreamingMarshaller marshaller;
+   private final TransactionFactory gtf = new TransactionFactory();
+
+   @BeforeClass
+   public void setUp() {
+      gtf.init(false, false, true);
+      cm = TestCacheManagerFactory.createClusteredCacheManager();
+      cm.getDefaultConfiguration().fluent().clustering().mode(Configuration.CacheMode.DIST_SYNC);
+      marshaller = extractCacheMarshaller(cm.getCache());
+   }
+
+   @AfterClass
+   public void tearDown() {
+      cm.stop();
+   }
+
+   public void testPutKeyValueCommand() throws Exception {
+      assertRoundTrip(new PutKeyValueCommand("key", "value", false, null, -1, -1, Collections.<Flag>emptySet()));
+      assertRoundTrip(new PutKeyValueCommand("key", null, false, null, 1000, 2000, null));
+      assertRoundTrip(new PutKeyValueCommand(42, new ArrayList<String>(Arrays.asList("a", "b")), true, null,
+                                             Long.MAX_VALUE, 0, EnumSet.of(Flag.SKIP_REMOTE_LOOKUP, Flag.FORCE_SYNCHRONOUS)));
+   }
+
+   public void testClusteredGetCommand() throws Exception {
+      assertRoundTrip(new ClusteredGetCommand("key", CACHE_NAME, Collections.<Flag>emptySet()));
+      assertRoundTrip(new ClusteredGetCommand("key", CACHE_NAME, null, false, null));
+      assertRoundTrip(new ClusteredGetCommand(13L, CACHE_NAME, EnumSet.of(Flag.SKIP_CACHE_LOAD), true, newGlobalTransaction()));
+   }
+
+   public void testClusteredGetAllCommand() throws Exception {
+      assertRoundTrip(new ClusteredGetAllCommand(Arrays.<Object>asList("k1", 2, "k3"), CACHE_NAME, Collections.<Flag>emptySet()));
+      assertRoundTrip(new ClusteredGetAllCommand(Collections.emptyList(), CACHE_NAME, null));
+      assertRoundTrip(new ClusteredGetAllCommand(Collections.<Object>singletonList("k"), CACHE_NAME, EnumSet.of(Flag.SKIP_CACHE_LOAD)));
+   }
+
+   public void testPrepareCommand() throws Exception {
+      GlobalTransaction gtx = newGlobalTransaction();
+      assertRoundTrip(new PrepareCommand(CACHE_NAME, gtx, false));
+      assertRoundTrip(new PrepareCommand(CACHE_NAME, gtx, true, (WriteCommand[]) null));
+
+      WriteCommand[] mods = new WriteCommand[3];
+      for (int i = 0; i < mods.length; i++)
+         mods[i] = new PutKeyValueCommand("key" + i, "value" + i, false, null, i, -1, EnumSet.of(Flag.SKIP_LOCKING));
+      PrepareCommand prepare = new PrepareCommand(CACHE_NAME, gtx, true, mods);
+      assertRoundTrip(prepare);
+
+      Map<Object, EntryVersion> versionsSeen = new HashMap<Object, EntryVersion>();
+      versionsSeen.put("key0", EntryVersion.of(gtx));
+      versionsSeen.put("key1", null);
+      prepare.setVersionsSeen(versionsSeen);
+      assertRoundTrip(prepare);
+   }
+
+   private GlobalTransaction newGlobalTransaction() {
+      return gtf.newGlobalTransaction(new JGroupsAddress(new IpAddress(12345)), false);
+   }
+
+   private void assertRoundTrip(StreamingCommand command) throws Exception {
+      ReplicableCommand copy = (ReplicableCommand) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(command));
+      assert copy.getClass() == command.getClass() : "Read back " + copy + " instead of " + command;
+      assert copy.getCommandId() == command.getCommandId();
+      if (command instanceof CacheRpcCommand)
+         assert CACHE_NAME.equals(((CacheRpcCommand) copy).getCacheName());
+      assertSameParameters(command.getParameters(), copy.getParameters());
+   }
+
+   private void assertSameParameters(Object[] expected, Object[] actual) {
+      assert expected.length == actual.length : "Expected " + Arrays.toString(expected) + " but was " + Arrays.toString(actual);
+      for (int i = 0; i < expected.length; i++) {
+         if (expected[i] instanceof ReplicableCommand) {
+            assert actual[i] instanceof ReplicableCommand : "Expected " + expected[i] + " but was " + actual[i];
+            assertSameParameters(((ReplicableCommand) expected[i]).getParameters(),
+                                 ((ReplicableCommand) actual[i]).getParameters());
+         } else {
+            assert expected[i] == null ? actual[i] == null : expected[i].equals(actual[i]) :
+                  "Parameter " + i + ": expected " + expected[i] + " but was " + actual[i];
+         }
+      }
+   }
+}
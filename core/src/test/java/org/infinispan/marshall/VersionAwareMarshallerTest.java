@@ -42,9 +42,11 @@
 import org.infinispan.commons.hash.MurmurHash2;
 import org.infinispan.commons.hash.MurmurHash3;
 import org.infinispan.config.Configuration;
+import org.infinispan.container.entries.EntryVersion;
 import org.infinispan.container.entries.ImmortalCacheEntry;
 import org.infinispan.container.entries.ImmortalCacheValue;
 import org.infinispan.container.entries.InternalCacheEntry;
+import org.infinispan.container.entries.InternalCacheValue;
 import org.infinispan.container.entries.InternalEntryFactory;
 import org.infinispan.container.entries.MortalCacheEntry;
 import org.infinispan.container.entries.MortalCacheValue;
@@ -366,6 +368,39 @@ public void testInternalCacheEntryMarshalling() throws Exception {
       marshallAndAssertEquality(entry4);
    }
 
+   public void testEntryVersionMarshalling() throws Exception {
+      GlobalTransaction gtx = gtf.newGlobalTransaction(new JGroupsAddress(new IpAddress(12345)), false);
+      EntryVersion version = EntryVersion.of(gtx);
+      marshallAndAssertEquality(version);
+
+      MortalCacheEntry entry = (MortalCacheEntry) InternalEntryFactory.create("key", "value", System.currentTimeMillis() - 1000, 200000, System.currentTimeMillis(), -1);
+      entry.setVersion(version);
+      InternalCacheEntry rentry = (InternalCacheEntry) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(entry));
+      assert version.equals(rentry.getVersion()) : "Version " + rentry.getVersion() + " should be the same as " + version;
+
+      ImmortalCacheValue value = (ImmortalCacheValue) InternalEntryFactory.createValue("value", -1, -1, -1, -1);
+      value.setVersion(version);
+      InternalCacheValue rvalue = (InternalCacheValue) marshaller.objectFromByteBuffer(marshaller.objectToByteBuffer(value));
+      assert version.equals(rvalue.getVersion()) : "Version " + rvalue.getVersion() + " should be the same as " + version;
+   }
+
+   public void testUnversionedEntryFormatIsUnchanged() throws Exception {
+      GlobalTransaction gtx = gtf.newGlobalTransaction(new JGroupsAddress(new IpAddress(12345)), false);
+      EntryVersion version = EntryVersion.of(gtx);
+      ImmortalCacheEntry entry = (ImmortalCacheEntry) InternalEntryFactory.create("key", "value");
+      byte[] unversionedBytes = marshaller.objectToByteBuffer(entry);
+      InternalCacheEntry rentry = (InternalCacheEntry) marshaller.objectFromByteBuffer(unversionedBytes);
+      assert rentry.getVersion() == null;
+      assert "value".equals(rentry.getValue());
+
+      // versioned entries are written with a different id, with the version in front of the usual format
+      entry.setVersion(version);
+      byte[] versionedBytes = marshaller.objectToByteBuffer(entry);
+      assert versionedBytes.length > unversionedBytes.length : "The version should only be written for versioned entries";
+      entry.setVersion(null);
+      assert Arrays.equals(unversionedBytes, marshaller.objectToByteBuffer(entry));
+   }
+
    public void testInternalCacheValueMarshalling() throws Exception {
       ImmortalCacheValue value1 = (ImmortalCacheValue) InternalEntryFactory.createValue("value", System.currentTimeMillis() - 1000, -1, System.currentTimeMillis(), -1);
       byte[] bytes = marshaller.objectToByteBuffer(value1);
@@ -30,12 +30,16 @@
 import org.infinispan.test.TestingUtil;
 import org.infinispan.test.fwk.TestCacheManagerFactory;
 import org.infinispan.transaction.lookup.DummyTransactionManagerLookup;
+import org.infinispan.util.concurrent.locks.DeadlockDetectingLockManager;
+import org.infinispan.util.concurrent.locks.LockManagerImpl;
 import org.infinispan.util.logging.Log;
 import org.infinispan.util.logging.LogFactory;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import javax.transaction.TransactionManager;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -60,6 +64,12 @@
  * </pre>
  * There are two different benchmark methods, one for local cache {@link #testLocalDifferentTxSize()} and one for replicated caches
  * {@link #testReplDifferentTxSize()}.
+ * <p/>
+ * Besides the throughput, each run prints the CPU time used by the executor threads per successful transaction, the
+ * average time spent waiting for a contended lock and the number of deadlocks detected. Transactions waiting for a lock
+ * are parked and only woken up when they get the lock or when a deadlock is detected, so with deadlock detection
+ * enabled the CPU time per transaction should stay close to the one without it, while the lock wait time should drop as
+ * deadlocked transactions no longer wait for the lock acquisition timeout.
  * 
  *
  * @author Mircea.Markus@jboss.com
@@ -157,6 +167,7 @@ private void runDistributedTest() throws Exception {
             configuration.setCacheMode(Configuration.CacheMode.REPL_SYNC);
             cm.defineConfiguration("test", configuration);
             Cache distCache = cm.getCache("test");
+            enableLockProfiling(distCache);
             ExecutorThread executorThread = new ExecutorThread(startLatch, distCache);
             executorThreads.add(executorThread);
             containers.add(cm);
@@ -177,6 +188,7 @@ private void runLocalTest() throws Exception {
          Configuration configuration = getConfiguration();
          cm.defineConfiguration("test", configuration);
          Cache localCache = cm.getCache("test");
+         enableLockProfiling(localCache);
 
          CountDownLatch startLatch = new CountDownLatch(1);
 
@@ -193,17 +205,35 @@ private void runLocalTest() throws Exception {
       }
    }
 
+   private void enableLockProfiling(Cache cache) {
+      ((LockManagerImpl) TestingUtil.extractLockManager(cache)).setProfilingEnabled(true);
+   }
+
    private void joinThreadsAndPrintResult(List<ExecutorThread> executorThreads) throws InterruptedException {
       int totalSuccess = 0;
       int totalFailures = 0;
+      long totalCpuNanos = 0;
+      Set<LockManagerImpl> lockManagers = new HashSet<LockManagerImpl>();
       for (int i = 0; i < THREAD_COUNT; i++) {
          ExecutorThread executorThread = executorThreads.get(i);
          executorThread.join();
          totalSuccess += executorThread.getSuccessfullTx();
          totalFailures += executorThread.getFailedTx();
+         totalCpuNanos += executorThread.getCpuTime();
+         lockManagers.add((LockManagerImpl) TestingUtil.extractLockManager(executorThread.cache));
+      }
+      long totalWaitMicros = 0;
+      long detectedDeadlocks = 0;
+      for (LockManagerImpl lockManager : lockManagers) {
+         totalWaitMicros += lockManager.getAverageLockWaitTime();
+         if (lockManager instanceof DeadlockDetectingLockManager)
+            detectedDeadlocks += ((DeadlockDetectingLockManager) lockManager).getTotalNumberOfDetectedDeadlocks();
       }
       System.out.println("Use DDL? " + USE_DLD + " TX_SIZE = " + TX_SIZE + " totalSuccess = " + totalSuccess);
       System.out.println("Use DDL? " + USE_DLD + " TX_SIZE = " + TX_SIZE + " totalFailures = " + totalFailures);
+      System.out.println("Use DDL? " + USE_DLD + " TX_SIZE = " + TX_SIZE + " cpuMicrosPerSuccessfulTx = " + (totalSuccess == 0 ? "N/A" : String.valueOf(totalCpuNanos / 1000 / totalSuccess)));
+      System.out.println("Use DDL? " + USE_DLD + " TX_SIZE = " + TX_SIZE + " averageLockWaitMicros = " + totalWaitMicros / lockManagers.size());
+      System.out.println("Use DDL? " + USE_DLD + " TX_SIZE = " + TX_SIZE + " detectedDeadlocks = " + detectedDeadlocks);
       System.out.println("-------------------------------");
    }
 
@@ -219,6 +249,7 @@ public static class ExecutorThread extends Thread {
       private volatile CountDownLatch startLatch;
       private volatile int successfullTx;
       private volatile int failedTx;
+      private volatile long cpuTime;
       private volatile Cache cache;
       private volatile TransactionManager txManager;
       static int TX_INDEX = 0;
@@ -252,6 +283,8 @@ public void run() {
                failedTx++;
             }
          }
+         ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+         if (threadMXBean.isCurrentThreadCpuTimeSupported()) cpuTime = threadMXBean.getCurrentThreadCpuTime();
          info("Exiting thread " + getName() + " which lived " + (System.currentTimeMillis() - start) + " milliseconds");
       }
 
@@ -267,6 +300,10 @@ public int getFailedTx() {
       public int getSuccessfullTx() {
          return successfullTx;
       }
+
+      public long getCpuTime() {
+         return cpuTime;
+      }
    }
 
    private static List<String> getKeysPerTx() {
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.profiling;
+
+import org.infinispan.test.AbstractInfinispanTest;
+import org.infinispan.util.concurrent.locks.containers.LockContainer;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPooledPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantStripedLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantPooledPerEntryLockContainer;
+import org.infinispan.util.concurrent.locks.containers.ReentrantStripedLockContainer;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the striped, per-entry and pooled per-entry lock containers.
+ * <pre>
+ * Test description:
+ *    {@link #THREAD_COUNT} threads repeatedly lock and unlock random keys, for {@link #BENCHMARK_DURATION} millis.
+ * The keys are chosen from a pool of {@link #KEY_SPACE_SIZE} keys - a large key space means little contention, but a
+ * lot of lock creation and removal in the per-entry containers, and a lot of false sharing in the striped containers.
+ * Each thread uses its own lock owner, like the transactions of the Ownable containers would.  The number of lock
+ * acquisitions per second is printed for every container and key space size.
+ * </pre>
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "profiling", enabled = false, testName = "profiling.LockContainerPerformanceTest")
+public class LockContainerPerformanceTest extends AbstractInfinispanTest {
+
+   public static final int CONCURRENCY_LEVEL = 32;
+
+   public static int THREAD_COUNT = 16;
+
+   public static final long BENCHMARK_DURATION = 10000;
+
+   public static int KEY_SPACE_SIZE = 1000000;
+
+   public void testReentrantContainers() throws Exception {
+      for (int keySpace : new int[]{100, 10000, 1000000}) {
+         KEY_SPACE_SIZE = keySpace;
+         runTest("ReentrantStriped", new ReentrantStripedLockContainer(CONCURRENCY_LEVEL));
+         runTest("ReentrantPerEntry", new ReentrantPerEntryLockContainer(CONCURRENCY_LEVEL));
+         runTest("ReentrantPooledPerEntry", new ReentrantPooledPerEntryLockContainer(CONCURRENCY_LEVEL));
+      }
+   }
+
+   public void testOwnableReentrantContainers() throws Exception {
+      for (int keySpace : new int[]{100, 10000, 1000000}) {
+         KEY_SPACE_SIZE = keySpace;
+         runTest("OwnableReentrantStriped", new OwnableReentrantStripedLockContainer(CONCURRENCY_LEVEL));
+         runTest("OwnableReentrantPerEntry", new OwnableReentrantPerEntryLockContainer(CONCURRENCY_LEVEL));
+         runTest("OwnableReentrantPooledPerEntry", new OwnableReentrantPooledPerEntryLockContainer(CONCURRENCY_LEVEL));
+      }
+   }
+
+   private void runTest(String name, LockContainer<?> container) throws Exception {
+      CountDownLatch startLatch = new CountDownLatch(1);
+      Worker[] workers = new Worker[THREAD_COUNT];
+      for (int i = 0; i < THREAD_COUNT; i++) {
+         workers[i] = new Worker(container, startLatch);
+         workers[i].start();
+      }
+      startLatch.countDown();
+      Thread.sleep(BENCHMARK_DURATION);
+      long totalAcquired = 0;
+      long totalTimeouts = 0;
+      for (Worker w : workers) {
+         w.running = false;
+         w.join();
+         totalAcquired += w.acquired;
+         totalTimeouts += w.timeouts;
+      }
+      System.out.println(name + " keys = " + KEY_SPACE_SIZE + " locks/sec = " + totalAcquired * 1000 / BENCHMARK_DURATION
+                               + " timeouts = " + totalTimeouts + " locks held = " + container.getNumLocksHeld());
+      System.out.println("-------------------------------");
+   }
+
+   private static class Worker extends Thread {
+      private final LockContainer<?> container;
+      private final CountDownLatch startLatch;
+      private final Object owner = new Object();
+      private final Random random = new Random();
+      private volatile boolean running = true;
+      private long acquired;
+      private long timeouts;
+
+      Worker(LockContainer<?> container, CountDownLatch startLatch) {
+         this.container = container;
+         this.startLatch = startLatch;
+      }
+
+      @Override
+      public void run() {
+         try {
+            startLatch.await();
+            while (running) {
+               Integer key = random.nextInt(KEY_SPACE_SIZE);
+               if (container.acquireLock(owner, key, 100, TimeUnit.MILLISECONDS) != null) {
+                  container.releaseLock(owner, key);
+                  acquired++;
+               } else {
+                  timeouts++;
+               }
+            }
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+   }
+}
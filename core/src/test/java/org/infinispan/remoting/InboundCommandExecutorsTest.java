@@ -0,0 +1,299 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting;
+
+import org.infinispan.Cache;
+import org.infinispan.CacheException;
+import org.infinispan.commands.remote.ClusteredGetCommand;
+import org.infinispan.commands.remote.SingleRpcCommand;
+import org.infinispan.commands.tx.CommitCommand;
+import org.infinispan.commands.tx.PrepareCommand;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.context.impl.TxInvocationContext;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.manager.CacheContainer;
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.transaction.tm.DummyTransaction;
+import org.infinispan.util.concurrent.NotifyingFuture;
+import org.testng.annotations.Test;
+
+import javax.transaction.TransactionManager;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests that commands received from other nodes are handled on the executor of their class.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "remoting.InboundCommandExecutorsTest")
+public class InboundCommandExecutorsTest extends MultipleCacheManagersTest {
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration cfg = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      GlobalConfiguration gc = GlobalConfiguration.getClusteredDefault();
+      Properties p = new Properties();
+      p.setProperty("maxThreads", "2");
+      p.setProperty("stateTransfer.maxThreads", "0");
+      p.setProperty("write.maxThreads", "1");
+      p.setProperty("write.queueSize", "1");
+      p.setProperty("txControl.maxThreads", "1");
+      p.setProperty("txControl.queueSize", "1");
+      gc.setRemoteCommandsExecutorProperties(p);
+      CacheContainer first = TestCacheManagerFactory.createCacheManager(gc, cfg);
+      CacheContainer second = TestCacheManagerFactory.createCacheManager(gc.clone(), cfg);
+      registerCacheManager(first, second);
+
+      Configuration txCfg = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC, true);
+      Configuration asyncCfg = getDefaultClusteredConfig(Configuration.CacheMode.REPL_ASYNC);
+      for (int i = 0; i < 2; i++) {
+         manager(i).defineConfiguration("tx", txCfg);
+         manager(i).defineConfiguration("async", asyncCfg);
+      }
+   }
+
+   public void testRemoteWriteRunsOnWriteExecutor() {
+      Cache<String, String> cache1 = cache(0);
+      Cache<String, String> cache2 = cache(1);
+      ThreadRecordingListener listener = new ThreadRecordingListener();
+      cache2.addListener(listener);
+      try {
+         cache1.put("k", "v");
+         assert "v".equals(cache2.get("k"));
+         assert listener.threadName != null && listener.threadName.startsWith("RemoteCommands-write") :
+               "Remote put handled on thread " + listener.threadName;
+      } finally {
+         cache2.removeListener(listener);
+      }
+
+      InboundInvocationHandlerImpl handler = (InboundInvocationHandlerImpl) TestingUtil.extractGlobalComponent(manager(1), InboundInvocationHandler.class);
+      assert handler.getQueueDepth(InboundCommandClass.WRITE) == 0;
+      assert handler.getRejectedCommands(InboundCommandClass.WRITE) == 0;
+   }
+
+   public void testFullExecutorRejectsWithoutBlocking() throws Exception {
+      Cache<String, String> cache1 = cache(0);
+      Cache<String, String> cache2 = cache(1);
+      InboundInvocationHandlerImpl handler = (InboundInvocationHandlerImpl) TestingUtil.extractGlobalComponent(manager(1), InboundInvocationHandler.class);
+      BlockingInterceptor blocker = new BlockingInterceptor();
+      cache2.getAdvancedCache().addInterceptor(blocker, 0);
+      try {
+         NotifyingFuture<String> running = cache1.putAsync("k1", "v1");
+         blocker.entered.await(10, TimeUnit.SECONDS);
+         NotifyingFuture<String> queued = cache1.putAsync("k2", "v2");
+         for (int i = 0; i < 100 && handler.getQueueDepth(InboundCommandClass.WRITE) == 0; i++) Thread.sleep(100);
+         assert handler.getQueueDepth(InboundCommandClass.WRITE) == 1;
+
+         // both the write thread and the queue are taken, so the third write is refused instead of taking over the delivering thread
+         try {
+            cache1.put("k3", "v3");
+            assert false : "The put should have been rejected";
+         } catch (CacheException expected) {
+         }
+         assert handler.getRejectedCommands(InboundCommandClass.WRITE) == 1;
+         assert handler.showExecutorStatistics("write").contains("rejected=1");
+
+         blocker.release.countDown();
+         running.get(10, TimeUnit.SECONDS);
+         queued.get(10, TimeUnit.SECONDS);
+         assert "v2".equals(cache2.get("k2"));
+      } finally {
+         blocker.release.countDown();
+         cache2.getAdvancedCache().removeInterceptor(BlockingInterceptor.class);
+      }
+   }
+
+   public void testFullExecutorDoesNotRejectCommit() throws Exception {
+      final Cache<String, String> cache1 = cache(0, "tx");
+      Cache<String, String> cache2 = cache(1, "tx");
+      waitForClusterToForm("tx");
+      final TransactionManager tm = tm(0, "tx");
+      InboundInvocationHandlerImpl handler = (InboundInvocationHandlerImpl) TestingUtil.extractGlobalComponent(manager(1), InboundInvocationHandler.class);
+
+      // prepare a transaction while the executor still has room
+      tm.begin();
+      cache1.put("prepared", "v");
+      final DummyTransaction prepared = (DummyTransaction) tm.getTransaction();
+      assert prepared.runPrepare();
+      tm.suspend();
+
+      BlockingInterceptor blocker = new BlockingInterceptor();
+      cache2.getAdvancedCache().addInterceptor(blocker, 0);
+      ExecutorService threads = Executors.newCachedThreadPool();
+      try {
+         Future<Void> running = threads.submit(new TxPut(tm, cache1, "k1"));
+         blocker.entered.await(10, TimeUnit.SECONDS);
+         Future<Void> queued = threads.submit(new TxPut(tm, cache1, "k2"));
+         for (int i = 0; i < 100 && handler.getQueueDepth(InboundCommandClass.TX_CONTROL) == 0; i++) Thread.sleep(100);
+         assert handler.getQueueDepth(InboundCommandClass.TX_CONTROL) == 1;
+
+         // the prepare has already succeeded, so the commit must wait for room instead of being refused
+         Future<Void> commit = threads.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+               tm.resume(prepared);
+               prepared.runCommitTx();
+               return null;
+            }
+         });
+
+         blocker.release.countDown();
+         running.get(10, TimeUnit.SECONDS);
+         queued.get(10, TimeUnit.SECONDS);
+         commit.get(10, TimeUnit.SECONDS);
+         assert handler.getRejectedCommands(InboundCommandClass.TX_CONTROL) == 0;
+         assertReplicated("tx", "prepared", "v");
+      } finally {
+         blocker.release.countDown();
+         threads.shutdownNow();
+         cache2.getAdvancedCache().removeInterceptor(BlockingInterceptor.class);
+      }
+   }
+
+   public void testFullExecutorDoesNotDropAsyncWrite() throws Exception {
+      Cache<String, String> cache1 = cache(0);
+      Cache<String, String> cache2 = cache(1);
+      Cache<String, String> asyncCache1 = cache(0, "async");
+      cache(1, "async");
+      waitForClusterToForm("async");
+      InboundInvocationHandlerImpl handler = (InboundInvocationHandlerImpl) TestingUtil.extractGlobalComponent(manager(1), InboundInvocationHandler.class);
+      long rejected = handler.getRejectedCommands(InboundCommandClass.WRITE);
+
+      BlockingInterceptor blocker = new BlockingInterceptor();
+      cache2.getAdvancedCache().addInterceptor(blocker, 0);
+      try {
+         NotifyingFuture<String> running = cache1.putAsync("a1", "v1");
+         blocker.entered.await(10, TimeUnit.SECONDS);
+         NotifyingFuture<String> queued = cache1.putAsync("a2", "v2");
+         for (int i = 0; i < 100 && handler.getQueueDepth(InboundCommandClass.WRITE) == 0; i++) Thread.sleep(100);
+         assert handler.getQueueDepth(InboundCommandClass.WRITE) == 1;
+
+         // delivered in order and nobody waits for it, so refusing it would silently lose the write
+         asyncCache1.put("async", "v");
+
+         blocker.release.countDown();
+         running.get(10, TimeUnit.SECONDS);
+         queued.get(10, TimeUnit.SECONDS);
+         assertReplicated("async", "async", "v");
+         assert handler.getRejectedCommands(InboundCommandClass.WRITE) == rejected;
+      } finally {
+         blocker.release.countDown();
+         cache2.getAdvancedCache().removeInterceptor(BlockingInterceptor.class);
+      }
+   }
+
+   public void testClassification() {
+      assert InboundCommandClass.classify(new ClusteredGetCommand("cache")) == InboundCommandClass.READ;
+      assert InboundCommandClass.classify(new CommitCommand("cache")) == InboundCommandClass.TX_CONTROL;
+      SingleRpcCommand write = new SingleRpcCommand("cache", new PutKeyValueCommand());
+      assert InboundCommandClass.classify(write) == InboundCommandClass.WRITE;
+   }
+
+   public void testPerClassProperties() {
+      Properties p = new Properties();
+      p.setProperty("maxThreads", "2");
+      p.setProperty("read.maxThreads", "8");
+      Properties read = InboundInvocationHandlerImpl.getExecutorProperties(InboundCommandClass.READ, p);
+      Properties write = InboundInvocationHandlerImpl.getExecutorProperties(InboundCommandClass.WRITE, p);
+      assert "8".equals(read.getProperty("maxThreads"));
+      assert "2".equals(write.getProperty("maxThreads"));
+      assert !write.containsKey("read.maxThreads");
+   }
+
+   static class BlockingInterceptor extends CommandInterceptor {
+      final CountDownLatch entered = new CountDownLatch(1);
+      final CountDownLatch release = new CountDownLatch(1);
+
+      @Override
+      public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+         }
+         return invokeNextInterceptor(ctx, command);
+      }
+
+      @Override
+      public Object visitPrepareCommand(TxInvocationContext ctx, PrepareCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+         }
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+
+   private void assertReplicated(final String cacheName, final String key, final String expected) {
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return expected.equals(cache(1, cacheName).get(key));
+         }
+      });
+   }
+
+   static class TxPut implements Callable<Void> {
+      final TransactionManager tm;
+      final Cache<String, String> cache;
+      final String key;
+
+      TxPut(TransactionManager tm, Cache<String, String> cache, String key) {
+         this.tm = tm;
+         this.cache = cache;
+         this.key = key;
+      }
+
+      @Override
+      public Void call() throws Exception {
+         tm.begin();
+         cache.put(key, "v");
+         tm.commit();
+         return null;
+      }
+   }
+
+   @Listener
+   public static class ThreadRecordingListener {
+      volatile String threadName;
+
+      @CacheEntryModified
+      public void entryModified(CacheEntryModifiedEvent<?, ?> event) {
+         if (!event.isPre() && !event.isOriginLocal()) threadName = Thread.currentThread().getName();
+      }
+   }
+}
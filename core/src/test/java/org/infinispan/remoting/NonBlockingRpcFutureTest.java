@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting;
+
+import org.infinispan.Cache;
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.context.InvocationContext;
+import org.infinispan.factories.KnownComponentNames;
+import org.infinispan.interceptors.base.CommandInterceptor;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.util.concurrent.FutureListener;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Tests that calls made in future do not need a thread of the async transport executor to wait for the responses, by
+ * making async calls while every thread of that executor is blocked, and that the listeners of the returned futures
+ * are nevertheless notified from that executor rather than from a JGroups thread.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "remoting.NonBlockingRpcFutureTest")
+public class NonBlockingRpcFutureTest extends MultipleCacheManagersTest {
+   private static final int BLOCKING_TASKS = 100;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      createClusteredCaches(3, "repl", getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC));
+      defineConfigurationOnAllManagers("dist", getDefaultClusteredConfig(Configuration.CacheMode.DIST_SYNC));
+      waitForClusterToForm("dist");
+   }
+
+   public void testReplicatedPutAsyncWithExhaustedExecutor() throws Exception {
+      doTest("repl");
+   }
+
+   public void testDistributedPutAsyncWithExhaustedExecutor() throws Exception {
+      doTest("dist");
+   }
+
+   public void testListenersNotNotifiedFromJGroupsThreads() throws Exception {
+      Cache<Object, Object> cache = cache(0, "repl");
+      // keep the response back long enough for the listener to be attached before the call completes
+      cache(1, "repl").getAdvancedCache().addInterceptor(new DelayingInterceptor(), 0);
+      try {
+         final CountDownLatch notified = new CountDownLatch(1);
+         final AtomicReference<String> listenerThread = new AtomicReference<String>();
+         cache.putAsync("listened", "v").attachListener(new FutureListener<Object>() {
+            @Override
+            public void futureDone(Future<Object> future) {
+               listenerThread.set(Thread.currentThread().getName());
+               notified.countDown();
+            }
+         });
+         assert notified.await(10, SECONDS);
+         assert listenerThread.get().startsWith("asyncTransportThread") :
+               "Listener notified from " + listenerThread.get();
+      } finally {
+         cache(1, "repl").getAdvancedCache().removeInterceptor(DelayingInterceptor.class);
+      }
+   }
+
+   private void doTest(String cacheName) throws Exception {
+      Cache<Object, Object> cache = cache(0, cacheName);
+      ExecutorService executor = TestingUtil.extractGlobalComponentRegistry(manager(0))
+            .getComponent(ExecutorService.class, KnownComponentNames.ASYNC_TRANSPORT_EXECUTOR);
+      final CountDownLatch release = new CountDownLatch(1);
+      for (int i = 0; i < BLOCKING_TASKS; i++) {
+         executor.submit(new Runnable() {
+            @Override
+            public void run() {
+               try {
+                  release.await();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+            }
+         });
+      }
+
+      try {
+         List<Future<Object>> futures = new ArrayList<Future<Object>>();
+         for (int i = 0; i < 10; i++) futures.add(cache.putAsync("k" + i, "v" + i));
+         for (Future<Object> f : futures) f.get(10, SECONDS);
+         for (int i = 0; i < 10; i++) assert ("v" + i).equals(cache(1, cacheName).get("k" + i));
+      } finally {
+         release.countDown();
+      }
+   }
+
+   static class DelayingInterceptor extends CommandInterceptor {
+      @Override
+      public Object visitPutKeyValueCommand(InvocationContext ctx, PutKeyValueCommand command) throws Throwable {
+         if (!ctx.isOriginLocal()) Thread.sleep(500);
+         return invokeNextInterceptor(ctx, command);
+      }
+   }
+}
@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.remoting;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.config.GlobalConfiguration;
+import org.infinispan.io.ByteBuffer;
+import org.infinispan.manager.CacheContainer;
+import org.infinispan.marshall.StreamingMarshaller;
+import org.infinispan.remoting.transport.Transport;
+import org.infinispan.remoting.transport.jgroups.JGroupsTransport;
+import org.infinispan.remoting.transport.jgroups.MarshallerAdapter;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.jgroups.util.Buffer;
+import org.testng.annotations.Test;
+
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests that large RPC payloads are compressed, that a node with a threshold it never reaches still understands
+ * compressed payloads, and that payloads are left untouched when compression is disabled.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "remoting.RpcPayloadCompressionTest")
+public class RpcPayloadCompressionTest extends MultipleCacheManagersTest {
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration cfg = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      GlobalConfiguration gc = GlobalConfiguration.getClusteredDefault();
+      Properties p = new Properties();
+      p.setProperty(JGroupsTransport.COMPRESSION_THRESHOLD, "4096");
+      gc.setTransportProperties(p);
+      CacheContainer compressing = TestCacheManagerFactory.createCacheManager(gc, cfg);
+      GlobalConfiguration plainGc = GlobalConfiguration.getClusteredDefault();
+      Properties plainProperties = new Properties();
+      plainProperties.setProperty(JGroupsTransport.COMPRESSION_THRESHOLD, String.valueOf(Integer.MAX_VALUE));
+      plainGc.setTransportProperties(plainProperties);
+      CacheContainer plain = TestCacheManagerFactory.createCacheManager(plainGc, cfg);
+      registerCacheManager(compressing, plain);
+   }
+
+   public void testLargePayloadsAreCompressed() {
+      Cache<String, String> cache1 = cache(0);
+      Cache<String, String> cache2 = cache(1);
+      MarshallerAdapter adapter1 = getMarshallerAdapter(cache1);
+      MarshallerAdapter adapter2 = getMarshallerAdapter(cache2);
+      adapter1.resetStatistics();
+      adapter2.resetStatistics();
+
+      cache1.put("small", "value");
+      assertEquals(cache2.get("small"), "value");
+      assertEquals(adapter1.getCompressedMessages(), 0);
+
+      String large = repeat("compressible ", 2000);
+      cache1.put("large", large);
+      assertEquals(cache2.get("large"), large);
+      assertEquals(adapter1.getCompressedMessages(), 1);
+      assert adapter1.getCompressionBytesSaved() > large.length() / 2 : adapter1.getCompressionBytesSaved();
+      assert adapter1.getCompressionRatio() < 0.5 : adapter1.getCompressionRatio();
+
+      cache2.put("large2", large);
+      assertEquals(cache1.get("large2"), large);
+      assertEquals(adapter2.getCompressedMessages(), 0);
+   }
+
+   public void testDisabledCompressionKeepsMarshallerOutput() throws Exception {
+      StreamingMarshaller marshaller = TestingUtil.extractCacheMarshaller(cache(0));
+      MarshallerAdapter adapter = new MarshallerAdapter(marshaller);
+      String large = repeat("compressible ", 2000);
+      Buffer buffer = adapter.objectToBuffer(large);
+      ByteBuffer marshalled = marshaller.objectToBuffer(large);
+      assertEquals(buffer.getLength(), marshalled.getLength());
+      assertEquals(adapter.objectFromBuffer(buffer.getBuf(), buffer.getOffset(), buffer.getLength()), large);
+      assertEquals(adapter.getCompressedMessages(), 0);
+   }
+
+   public void testCorruptedUncompressedLengthIsRejected() throws Exception {
+      MarshallerAdapter adapter = new MarshallerAdapter(TestingUtil.extractCacheMarshaller(cache(0)), null, 1, Deflater.BEST_SPEED);
+      Buffer buffer = adapter.objectToBuffer(repeat("compressible ", 2000));
+      assertEquals(adapter.getCompressedMessages(), 1);
+      byte[] buf = Arrays.copyOfRange(buffer.getBuf(), buffer.getOffset(), buffer.getOffset() + buffer.getLength());
+      // the uncompressed length sits right before the trailer byte
+      buf[buf.length - 5] = (byte) 0x7F;
+      try {
+         adapter.objectFromBuffer(buf, 0, buf.length);
+         assert false : "A payload declaring a 2GB uncompressed length should have been rejected";
+      } catch (StreamCorruptedException expected) {
+      }
+   }
+
+   private MarshallerAdapter getMarshallerAdapter(Cache<?, ?> cache) {
+      return ((JGroupsTransport) TestingUtil.extractGlobalComponent(cache.getCacheManager(), Transport.class)).getMarshallerAdapter();
+   }
+
+   private static String repeat(String s, int times) {
+      StringBuilder sb = new StringBuilder(s.length() * times);
+      for (int i = 0; i < times; i++) sb.append(s);
+      return sb.toString();
+   }
+}
@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.replication;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.remoting.ReplicationQueue;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the write-coalescing mode and the byte threshold of the replication queue.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "replication.ReplicationQueueCoalescingTest")
+public class ReplicationQueueCoalescingTest extends MultipleCacheManagersTest {
+
+   private static final int REPL_QUEUE_INTERVAL = 60000;
+   private static final int REPL_QUEUE_MAX_ELEMENTS = 1000;
+   private static final long REPL_QUEUE_MAX_BYTES = 4096;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(Configuration.CacheMode.REPL_ASYNC);
+      config.setUseReplQueue(true);
+      config.setReplQueueInterval(REPL_QUEUE_INTERVAL);
+      config.setReplQueueMaxElements(REPL_QUEUE_MAX_ELEMENTS);
+      config.setReplQueueCoalescing(true);
+      createClusteredCaches(2, "coalescing", config);
+
+      Configuration bytesConfig = config.clone();
+      bytesConfig.setReplQueueCoalescing(false);
+      bytesConfig.setReplQueueMaxBytes(REPL_QUEUE_MAX_BYTES);
+      manager(0).defineConfiguration("bytes", bytesConfig);
+      manager(1).defineConfiguration("bytes", bytesConfig);
+
+      Configuration coalescingBytesConfig = config.clone();
+      coalescingBytesConfig.setReplQueueMaxBytes(REPL_QUEUE_MAX_BYTES);
+      manager(0).defineConfiguration("coalescingBytes", coalescingBytesConfig);
+      manager(1).defineConfiguration("coalescingBytes", coalescingBytesConfig);
+   }
+
+   public void testHotKeyIsCoalesced() {
+      Cache<String, Integer> cache1 = cache(0, "coalescing");
+      ReplicationQueue queue = replQueue(cache1);
+      for (int i = 0; i < 100; i++) cache1.put("counter", i);
+      assert queue.getElementsCount() == 1 : "Expected a single queued put, but was " + queue.getElementsCount();
+
+      queue.flush();
+      assertReplicated("coalescing", "counter", 99);
+   }
+
+   public void testRemoveSupersedesPut() {
+      Cache<String, String> cache1 = cache(0, "coalescing");
+      ReplicationQueue queue = replQueue(cache1);
+      cache1.put("k", "v1");
+      cache1.remove("k");
+      assert queue.getElementsCount() == 1;
+      cache1.put("k", "v2");
+      assert queue.getElementsCount() == 1;
+
+      queue.flush();
+      assertReplicated("coalescing", "k", "v2");
+   }
+
+   public void testConditionalWriteIsNotCoalesced() {
+      Cache<String, String> cache1 = cache(0, "coalescing");
+      ReplicationQueue queue = replQueue(cache1);
+      cache1.put("k", "v1");
+      assert cache1.replace("k", "v1", "v2");
+      cache1.put("k", "v3");
+      assert queue.getElementsCount() == 3 : "Expected 3 queued writes, but was " + queue.getElementsCount();
+
+      queue.flush();
+      assertReplicated("coalescing", "k", "v3");
+   }
+
+   public void testClearDropsPrecedingWrites() {
+      Cache<String, String> cache1 = cache(0, "coalescing");
+      Cache<String, String> cache2 = cache(1, "coalescing");
+      ReplicationQueue queue = replQueue(cache1);
+      cache1.put("a", "v");
+      cache1.put("b", "v");
+      cache1.clear();
+      cache1.put("c", "v");
+      assert queue.getElementsCount() == 2 : "Expected a clear and a put, but was " + queue.getElementsCount();
+
+      queue.flush();
+      assertReplicated("coalescing", "c", "v");
+      assert cache2.get("a") == null;
+      assert cache2.get("b") == null;
+   }
+
+   public void testFlushBasedOnBytes() {
+      Cache<String, byte[]> cache1 = cache(0, "bytes");
+      ReplicationQueue queue = replQueue(cache1);
+      cache1.put("small", new byte[16]);
+      assert queue.getElementsCount() == 1;
+
+      cache1.put("large", new byte[(int) REPL_QUEUE_MAX_BYTES]);
+      assert queue.getElementsCount() == 0 : "Expected the byte threshold to flush the queue";
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return cache(1, "bytes").get("large") != null && cache(1, "bytes").get("small") != null;
+         }
+      });
+   }
+
+   public void testCoalescedWritesDontCountTowardsBytes() {
+      Cache<String, byte[]> cache1 = cache(0, "coalescingBytes");
+      ReplicationQueue queue = replQueue(cache1);
+      // each put alone stays under the threshold, and supersedes the previous one
+      for (int i = 0; i < 10; i++) cache1.put("hot", new byte[(int) REPL_QUEUE_MAX_BYTES / 2]);
+      assert queue.getElementsCount() == 1 : "The superseded puts should not have triggered a flush";
+
+      queue.flush();
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return cache(1, "coalescingBytes").get("hot") != null;
+         }
+      });
+   }
+
+   private ReplicationQueue replQueue(Cache<?, ?> cache) {
+      return TestingUtil.extractComponent(cache, ReplicationQueue.class);
+   }
+
+   private void assertReplicated(final String cacheName, final Object key, final Object expected) {
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return expected.equals(cache(1, cacheName).get(key));
+         }
+      });
+   }
+}
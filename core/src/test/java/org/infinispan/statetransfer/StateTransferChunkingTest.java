@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that state is pushed to a joiner in several bounded chunks and that the joiner ends up with all
+ * the data.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "statetransfer.StateTransferChunkingTest")
+public class StateTransferChunkingTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_KEYS = 100;
+   private static final int CHUNK_SIZE = 5;
+
+   private Configuration config;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      config = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      config.setStateRetrievalChunkSize(CHUNK_SIZE);
+      createCluster(config, 2);
+      waitForClusterToForm();
+   }
+
+   public void testStateIsPushedInChunks() {
+      for (int i = 0; i < NUM_KEYS; i++) cache(0).put("k" + i, "v" + i);
+
+      addClusterEnabledCacheManager(config);
+      Cache<Object, Object> joiner = cache(2);
+      TestingUtil.blockUntilViewsReceived(60000, cache(0), cache(1), joiner);
+      TestingUtil.waitForRehashToComplete(cache(0), cache(1), joiner);
+
+      for (int i = 0; i < NUM_KEYS; i++) assert ("v" + i).equals(joiner.get("k" + i)) : "Missing key k" + i;
+
+      long pushedChunks = stateTransferManager(cache(0)).getPushedChunks() + stateTransferManager(cache(1)).getPushedChunks();
+      assert pushedChunks > 1 : "Expected state to be split into several chunks, but " + pushedChunks + " were pushed";
+
+      BaseStateTransferManagerImpl joinerStm = stateTransferManager(joiner);
+      assert joinerStm.getAppliedEntries() >= NUM_KEYS : "Joiner applied only " + joinerStm.getAppliedEntries() + " entries";
+      assert joinerStm.getAppliedChunks() > 1;
+      assert !joinerStm.isStateTransferInProgress();
+   }
+
+   private BaseStateTransferManagerImpl stateTransferManager(Cache<?, ?> cache) {
+      return (BaseStateTransferManagerImpl) TestingUtil.extractComponent(cache, StateTransferManager.class);
+   }
+}
@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.commands.write.PutKeyValueCommand;
+import org.infinispan.config.Configuration;
+import org.infinispan.context.impl.NonTxInvocationContext;
+import org.infinispan.distribution.DataLocality;
+import org.infinispan.distribution.DistributionManager;
+import org.infinispan.distribution.ch.ConsistentHash;
+import org.infinispan.test.AbstractInfinispanTest;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.easymock.EasyMock.*;
+
+/**
+ * Tests that a non-blocking state transfer records the writes received from nodes that started it before this one.
+ *
+ * @author Dan Berindei
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "statetransfer.StateTransferLockImplTest")
+public class StateTransferLockImplTest extends AbstractInfinispanTest {
+
+   private StateTransferLockImpl stateTransferLock;
+
+   @BeforeMethod
+   public void setUp() {
+      Configuration config = new Configuration();
+      config.setCacheMode(Configuration.CacheMode.DIST_SYNC);
+      config.setNonBlockingRehash(true);
+
+      DistributionManager dm = createNiceMock(DistributionManager.class);
+      expect(dm.getConsistentHash()).andReturn(createNiceMock(ConsistentHash.class)).anyTimes();
+      expect(dm.getLocality("owned")).andReturn(DataLocality.LOCAL).anyTimes();
+      expect(dm.getLocality("new")).andReturn(DataLocality.NOT_LOCAL).anyTimes();
+      replay(dm);
+
+      stateTransferLock = new StateTransferLockImpl();
+      stateTransferLock.injectDependencies(config);
+      stateTransferLock.injectDistributionManager(dm);
+   }
+
+   public void testRemoteWriteForNewOwnerStartsTracking() throws Exception {
+      NonTxInvocationContext remote = new NonTxInvocationContext(1, false);
+      write(remote, "owned");
+      assert !stateTransferLock.isKeyWrittenDuringStateTransfer("owned");
+
+      write(remote, "new");
+      assert stateTransferLock.isKeyWrittenDuringStateTransfer("new");
+
+      // our own state transfer task starting later must not forget that write
+      stateTransferLock.startTrackingWrites();
+      assert stateTransferLock.isKeyWrittenDuringStateTransfer("new");
+
+      stateTransferLock.stopTrackingWrites();
+      assert !stateTransferLock.isKeyWrittenDuringStateTransfer("new");
+   }
+
+   public void testLocalWriteDoesNotStartTracking() throws Exception {
+      write(new NonTxInvocationContext(1, true), "new");
+      assert !stateTransferLock.isKeyWrittenDuringStateTransfer("new");
+   }
+
+   private void write(NonTxInvocationContext ctx, Object key) throws Exception {
+      PutKeyValueCommand put = new PutKeyValueCommand(key, "value", false, null, -1, -1, null);
+      assert stateTransferLock.acquireForCommand(ctx, put);
+      stateTransferLock.releaseForCommand(ctx, put);
+   }
+}
@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.statetransfer;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.test.TestingUtil;
+import org.testng.annotations.Test;
+
+/**
+ * Verifies that the state pushed to a joiner stays within the configured bandwidth limit.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "statetransfer.StateTransferThrottlingTest")
+public class StateTransferThrottlingTest extends MultipleCacheManagersTest {
+
+   private static final int NUM_KEYS = 100;
+   private static final long MAX_BANDWIDTH = 4096;
+
+   private Configuration config;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      config = getDefaultClusteredConfig(Configuration.CacheMode.REPL_SYNC);
+      config.setStateRetrievalChunkSize(10);
+      config.setStateRetrievalMaxInFlightChunks(1);
+      config.setStateRetrievalMaxBandwidth(MAX_BANDWIDTH);
+      createCluster(config, 2);
+      waitForClusterToForm();
+   }
+
+   public void testStateTransferIsThrottled() {
+      for (int i = 0; i < NUM_KEYS; i++) cache(0).put("k" + i, "v" + i);
+
+      long start = System.currentTimeMillis();
+      addClusterEnabledCacheManager(config);
+      Cache<Object, Object> joiner = cache(2);
+      TestingUtil.blockUntilViewsReceived(60000, cache(0), cache(1), joiner);
+      TestingUtil.waitForRehashToComplete(cache(0), cache(1), joiner);
+      long duration = System.currentTimeMillis() - start;
+
+      for (int i = 0; i < NUM_KEYS; i++) assert ("v" + i).equals(joiner.get("k" + i)) : "Missing key k" + i;
+
+      long totalPushedBytes = 0, maxPushedBytes = 0, throttledTime = 0;
+      for (int i = 0; i < 2; i++) {
+         BaseStateTransferManagerImpl stm = stateTransferManager(cache(i));
+         assert stm.getMaxInFlightChunks() == 1;
+         assert stm.getMaxBandwidth() == MAX_BANDWIDTH;
+         assert stm.getStateTransferProgress() == 100;
+         assert stm.getEstimatedTimeRemaining() == -1;
+         totalPushedBytes += stm.getPushedBytes();
+         maxPushedBytes = Math.max(maxPushedBytes, stm.getPushedBytes());
+         throttledTime += stm.getThrottledTime();
+      }
+      assert totalPushedBytes > MAX_BANDWIDTH : "Expected more than " + MAX_BANDWIDTH + " bytes to be pushed, got " + totalPushedBytes;
+      assert throttledTime > 0;
+      // every node pushes its state on its own, and only its last chunk doesn't wait for the bandwidth limit
+      long minDuration = (maxPushedBytes - MAX_BANDWIDTH) * 1000 / MAX_BANDWIDTH;
+      assert duration >= minDuration : "State transfer took " + duration + " ms, expected at least " + minDuration + " ms";
+   }
+
+   public void testLimitsCanBeChangedAtRuntime() {
+      BaseStateTransferManagerImpl stm = stateTransferManager(cache(0));
+      stm.setMaxBandwidth(0);
+      stm.setMaxInFlightChunks(4);
+      assert stm.getMaxBandwidth() == 0;
+      assert stm.getMaxInFlightChunks() == 4;
+      try {
+         stm.setMaxInFlightChunks(0);
+         assert false : "Should not allow 0 chunks in flight";
+      } catch (IllegalArgumentException expected) {
+      }
+      stm.setMaxBandwidth(MAX_BANDWIDTH);
+      stm.setMaxInFlightChunks(1);
+   }
+
+   private BaseStateTransferManagerImpl stateTransferManager(Cache<?, ?> cache) {
+      return (BaseStateTransferManagerImpl) TestingUtil.extractComponent(cache, StateTransferManager.class);
+   }
+}
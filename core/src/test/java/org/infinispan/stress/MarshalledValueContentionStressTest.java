@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.stress;
+
+import org.infinispan.Cache;
+import org.infinispan.config.Configuration;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.util.logging.Log;
+import org.infinispan.util.logging.LogFactory;
+import org.testng.annotations.Test;
+
+import java.io.Serializable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures read throughput of a single hot key when lazy deserialization is enabled, i.e. when every read goes
+ * through {@link org.infinispan.marshall.MarshalledValue} deserialization and compaction.
+ *
+ * @author Galder Zamarreño
+ * @since 5.1
+ */
+@Test(testName = "stress.MarshalledValueContentionStressTest", groups = "stress", enabled = false,
+      description = "Disabled by default, designed to be run manually.")
+public class MarshalledValueContentionStressTest extends SingleCacheManagerTest {
+   private static final Log log = LogFactory.getLog(MarshalledValueContentionStressTest.class);
+
+   final int NUM_THREADS = 32;
+   final int RUN_TIME_MILLIS = 45 * 1000;
+   final int WARMUP_TIME_MILLIS = 10 * 1000;
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration c = getDefaultStandaloneConfig(false);
+      c.setUseLazyDeserialization(true);
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createCacheManager(c);
+      cache = cm.getCache();
+      return cm;
+   }
+
+   public void testHotKeyReads() throws InterruptedException {
+      HotKey key = new HotKey(1);
+      cache.put(key, new HotValue("value"));
+      doTest(cache, key, true);
+      doTest(cache, key, false);
+   }
+
+   private void doTest(final Cache<Object, Object> c, final HotKey key, boolean warmup) throws InterruptedException {
+      final CountDownLatch latch = new CountDownLatch(1);
+      final AtomicBoolean run = new AtomicBoolean(true);
+      final AtomicLong totalReads = new AtomicLong();
+
+      Thread[] readers = new Thread[NUM_THREADS];
+      for (int i = 0; i < NUM_THREADS; i++) {
+         readers[i] = new Thread("Reader-" + i) {
+            public void run() {
+               try {
+                  latch.await();
+               } catch (InterruptedException e) {
+                  throw new RuntimeException(e);
+               }
+               long runs = 0;
+               while (run.get()) {
+                  if (c.get(key) == null) throw new IllegalStateException("Hot key lost!");
+                  runs++;
+               }
+               totalReads.addAndGet(runs);
+            }
+         };
+         readers[i].start();
+      }
+
+      long start = System.nanoTime();
+      latch.countDown();
+      Thread.sleep(warmup ? WARMUP_TIME_MILLIS : RUN_TIME_MILLIS);
+      run.set(false);
+      for (Thread t : readers) t.join();
+      long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      if (!warmup)
+         log.warnf("%d threads reading a lazily deserialized hot key: %d ops/ms",
+                   NUM_THREADS, totalReads.get() / totalMillis);
+   }
+
+   public static class HotKey implements Serializable {
+      final int id;
+
+      HotKey(int id) {
+         this.id = id;
+      }
+
+      @Override
+      public boolean equals(Object o) {
+         return this == o || o instanceof HotKey && ((HotKey) o).id == id;
+      }
+
+      @Override
+      public int hashCode() {
+         return id;
+      }
+   }
+
+   public static class HotValue implements Serializable {
+      final String payload;
+
+      HotValue(String payload) {
+         this.payload = payload;
+      }
+   }
+}
@@ -0,0 +1,114 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx;
+
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.transaction.LocalTransaction;
+import org.infinispan.transaction.TransactionTable;
+import org.testng.annotations.Test;
+
+import javax.transaction.Transaction;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that the per-thread lookup of local transactions in the {@link TransactionTable} never hands out a
+ * transaction other than the one running, nor one that has already completed.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "tx.TransactionTableLookupTest")
+public class TransactionTableLookupTest extends SingleCacheManagerTest {
+
+   protected EmbeddedCacheManager createCacheManager() {
+      EmbeddedCacheManager cm = TestCacheManagerFactory.createLocalCacheManager(true);
+      cache = cm.getCache();
+      return cm;
+   }
+
+   private TransactionTable txTable() {
+      return TestingUtil.extractComponent(cache, TransactionTable.class);
+   }
+
+   public void testInterleavedTransactions() throws Exception {
+      tm().begin();
+      cache.put("k1", "v1");
+      Transaction t1 = tm().suspend();
+      tm().begin();
+      cache.put("k2", "v2");
+      Transaction t2 = tm().suspend();
+
+      LocalTransaction lt1 = txTable().getLocalTransaction(t1);
+      LocalTransaction lt2 = txTable().getLocalTransaction(t2);
+      assert lt1 != null && lt2 != null;
+      assert lt1 != lt2;
+      assert lt1.getTransaction() == t1;
+      assert txTable().getLocalTransaction(t1) == lt1;
+      assert txTable().getLocalTransaction(t2) == lt2;
+
+      tm().resume(t1);
+      cache.put("k3", "v3");
+      tm().commit();
+      assert txTable().getLocalTransaction(t1) == null;
+      assert !txTable().containsLocalTx(t1);
+
+      tm().resume(t2);
+      assert cache.get("k3").equals("v3");
+      tm().commit();
+      assert txTable().getLocalTransaction(t2) == null;
+      assert txTable().getLocalTxCount() == 0;
+      assert cache.get("k1").equals("v1");
+      assert cache.get("k2").equals("v2");
+   }
+
+   public void testTransactionCompletedByAnotherThread() throws Exception {
+      tm().begin();
+      cache.put("k", "v");
+      final Transaction tx = tm().suspend();
+      assert txTable().getLocalTransaction(tx) != null;
+
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try {
+         Future<Void> future = executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+               tm().resume(tx);
+               tm().commit();
+               return null;
+            }
+         });
+         future.get();
+      } finally {
+         executor.shutdownNow();
+      }
+
+      // this thread still remembers the transaction, but must not return it once it has been removed
+      assert txTable().getLocalTransaction(tx) == null;
+      assert cache.get("k").equals("v");
+   }
+}
@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx.locking;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.distribution.MagicKey;
+import org.infinispan.test.MultipleCacheManagersTest;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Tests that the keys a transaction only read are validated by their primary owner when it is not one of the nodes the
+ * transaction wrote to.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "tx.locking.VersionedWriteSkewDistTest")
+public class VersionedWriteSkewDistTest extends MultipleCacheManagersTest {
+
+   protected Configuration.CacheMode cacheMode = Configuration.CacheMode.DIST_SYNC;
+
+   /**
+    * The node running the transactions under test, which must not be the primary owner of {@link #readKey}.
+    */
+   protected int originator = 0;
+
+   protected Object readKey;
+   protected Object writeKey;
+
+   @Override
+   protected void createCacheManagers() throws Throwable {
+      Configuration config = getDefaultClusteredConfig(cacheMode, true);
+      config.fluent().transaction().lockingMode(LockingMode.OPTIMISTIC);
+      config.fluent().locking().isolationLevel(IsolationLevel.REPEATABLE_READ).useVersioning(true);
+      config.fluent().hash().numOwners(1);
+      config.fluent().l1().disable();
+      createCluster(config, 3);
+      waitForClusterToForm();
+      createKeys();
+   }
+
+   protected void createKeys() {
+      readKey = new MagicKey(cache(2), "read");
+      writeKey = new MagicKey(cache(1), "write");
+   }
+
+   public void testChangedReadKeyOwnedByAnotherNodeFails() throws Exception {
+      cache(originator).put(readKey, "init");
+
+      tm(originator).begin();
+      assertEquals(cache(originator).get(readKey), "init");
+      cache(originator).put(writeKey, "t1");
+      Transaction t1 = tm(originator).suspend();
+
+      tm(2).begin();
+      cache(2).put(readKey, "t2");
+      tm(2).commit();
+
+      tm(originator).resume(t1);
+      try {
+         tm(originator).commit();
+         assert false : "The read key changed, so the commit should have failed the version check";
+      } catch (RollbackException expected) {
+      }
+
+      for (int i = 0; i < 3; i++) {
+         assert !cache(i).containsKey(writeKey);
+         assertEquals(cache(i).get(readKey), "t2");
+      }
+      assertNotLocked(readKey);
+      assertNotLocked(writeKey);
+      assertNoTransactions();
+   }
+
+   public void testUnchangedReadKeyOwnedByAnotherNodeCommits() throws Exception {
+      cache(originator).put(readKey, "init");
+
+      tm(originator).begin();
+      assertEquals(cache(originator).get(readKey), "init");
+      cache(originator).put(writeKey, "t1");
+      tm(originator).commit();
+
+      for (int i = 0; i < 3; i++) assertEquals(cache(i).get(writeKey), "t1");
+      assertNotLocked(readKey);
+      // the primary owner of the read key took part in the transaction, so it must have been told that it completed
+      assertNoTransactions();
+   }
+
+   private void assertNoTransactions() {
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            for (int i = 0; i < 3; i++) {
+               if (!checkTxCount(i, 0, 0)) return false;
+            }
+            return true;
+         }
+      });
+   }
+}
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.tx.locking;
+
+import org.infinispan.config.Configuration;
+import org.infinispan.container.DataContainer;
+import org.infinispan.container.entries.EntryVersion;
+import org.infinispan.manager.EmbeddedCacheManager;
+import org.infinispan.test.SingleCacheManagerTest;
+import org.infinispan.test.TestingUtil;
+import org.infinispan.test.fwk.TestCacheManagerFactory;
+import org.infinispan.transaction.LockingMode;
+import org.infinispan.transaction.lookup.DummyTransactionManagerLookup;
+import org.infinispan.util.concurrent.IsolationLevel;
+import org.testng.annotations.Test;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Transaction;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+
+/**
+ * Tests the version based validation of optimistic transactions enabled through <tt>locking useVersioning</tt>.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "functional", testName = "tx.locking.VersionedWriteSkewTest")
+public class VersionedWriteSkewTest extends SingleCacheManagerTest {
+
+   @Override
+   protected EmbeddedCacheManager createCacheManager() throws Exception {
+      Configuration config = getDefaultStandaloneConfig(true);
+      config.fluent().transaction().lockingMode(LockingMode.OPTIMISTIC)
+            .transactionManagerLookup(new DummyTransactionManagerLookup());
+      config.fluent().locking().isolationLevel(IsolationLevel.REPEATABLE_READ).useVersioning(true);
+      return TestCacheManagerFactory.createCacheManager(config);
+   }
+
+   private EntryVersion version(Object key) {
+      return TestingUtil.extractComponent(cache, DataContainer.class).peek(key).getVersion();
+   }
+
+   public void testCommitInstallsVersions() throws Exception {
+      tm().begin();
+      cache.put("k1", "v1");
+      tm().commit();
+      EntryVersion v1 = version("k1");
+      assertNotNull(v1);
+
+      tm().begin();
+      cache.put("k1", "v2");
+      cache.put("k2", "v2");
+      tm().commit();
+      EntryVersion v2 = version("k1");
+      assertNotNull(v2);
+      assertFalse(v1.equals(v2));
+      assertEquals(version("k2"), v2);
+   }
+
+   public void testWriteAfterConcurrentCommitFails() throws Exception {
+      cache.put("k", "init");
+
+      tm().begin();
+      assertEquals(cache.get("k"), "init");
+      Transaction t1 = tm().suspend();
+
+      tm().begin();
+      cache.put("k", "t2");
+      tm().commit();
+
+      tm().resume(t1);
+      cache.put("k", "t1");
+      assertRollback();
+      assertEquals(cache.get("k"), "t2");
+      assertNoLocks();
+   }
+
+   public void testChangedReadOnlyKeyFails() throws Exception {
+      cache.put("read", "init");
+
+      tm().begin();
+      assertEquals(cache.get("read"), "init");
+      cache.put("write", "t1");
+      Transaction t1 = tm().suspend();
+
+      tm().begin();
+      cache.put("read", "t2");
+      tm().commit();
+
+      tm().resume(t1);
+      assertRollback();
+      assert !cache.containsKey("write");
+      assertNoLocks();
+   }
+
+   public void testDisjointTransactionsCommit() throws Exception {
+      tm().begin();
+      cache.put("a", "t1");
+      Transaction t1 = tm().suspend();
+
+      tm().begin();
+      cache.put("b", "t2");
+      tm().commit();
+
+      tm().resume(t1);
+      tm().commit();
+      assertEquals(cache.get("a"), "t1");
+      assertEquals(cache.get("b"), "t2");
+   }
+
+   public void testRemoveAndReinsertFails() throws Exception {
+      tm().begin();
+      cache.put("k", "v");
+      tm().commit();
+
+      tm().begin();
+      assertEquals(cache.get("k"), "v");
+      Transaction t1 = tm().suspend();
+
+      tm().begin();
+      cache.remove("k");
+      tm().commit();
+      tm().begin();
+      cache.put("k", "v");
+      tm().commit();
+
+      tm().resume(t1);
+      cache.put("k", "t1");
+      assertRollback();
+      assertEquals(cache.get("k"), "v");
+   }
+
+   private void assertRollback() throws Exception {
+      try {
+         tm().commit();
+         assert false : "Commit should have failed the version check";
+      } catch (RollbackException expected) {
+      }
+   }
+
+   private void assertNoLocks() {
+      assertEquals(lockManager().getNumberOfLocksHeld(), 0);
+   }
+}
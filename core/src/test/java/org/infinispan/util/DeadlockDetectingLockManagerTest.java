@@ -32,9 +32,16 @@
 import org.infinispan.util.concurrent.locks.DeadlockDetectedException;
 import org.infinispan.util.concurrent.locks.DeadlockDetectingLockManager;
 import org.infinispan.util.concurrent.locks.containers.LockContainer;
+import org.infinispan.util.concurrent.locks.containers.OwnableReentrantPerEntryLockContainer;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 
@@ -54,14 +61,20 @@ public class DeadlockDetectingLockManagerTest extends AbstractInfinispanTest {
    DeadlockDetectingLockManagerMock lockManager;
    Configuration config = new Configuration();
    private LockContainer lc;
-   private static final int SPIN_DURATION = 1000;
    private DldGlobalTransaction lockOwner;
+   private ExecutorService executor;
 
    @BeforeMethod
    public void setUp() {
       lc = createMock(LockContainer.class);
-      lockManager = new DeadlockDetectingLockManagerMock(SPIN_DURATION, true, lc, config);
+      lockManager = new DeadlockDetectingLockManagerMock(true, lc, config);
       lockOwner = (DldGlobalTransaction) TransactionFactory.TxFactoryEnum.DLD_NORECOVERY_XA.newGlobalTransaction();
+      executor = Executors.newSingleThreadExecutor();
+   }
+
+   @AfterMethod(alwaysRun = true)
+   public void tearDown() {
+      executor.shutdownNow();
    }
 
 
@@ -82,20 +95,20 @@ public void testLockHeldByThread() throws Exception {
       InvocationContext localTxContext = buildLocalTxIc(new DldGlobalTransaction());
 
       //this makes sure that we cannot acquire lock from the first try
-      expect(lc.acquireLock(localTxContext.getLockOwner(), "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(null);
+      expect(lc.acquireLock(localTxContext.getLockOwner(), "k", 0, TimeUnit.MILLISECONDS)).andReturn(null);
       lockManager.setOwner(Thread.currentThread() );
-      //next lock acquisition will succeed
+      //the lock owner is not a transaction, so we simply wait for the lock
       Lock mockLock = createNiceMock(Lock.class);
-      expect(lc.acquireLock(localTxContext.getLockOwner(), "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(mockLock);
+      expect(lc.acquireLock(localTxContext.getLockOwner(), "k", config.getLockAcquisitionTimeout(), TimeUnit.MILLISECONDS)).andReturn(mockLock);
       replay(lc);
 
       assert lockManager.lockAndRecord("k", localTxContext, config.getLockAcquisitionTimeout());
       assert lockManager.getOverlapWithNotDeadlockAwareLockOwners() == 1;
+      assert lockManager.getWaitingTransactions() == 0;
    }
 
-   public void testLocalDeadlock() throws Exception {
+   public void testSameKeyDeadlock() throws Exception {
       final DldGlobalTransaction ddgt = (DldGlobalTransaction) TransactionFactory.TxFactoryEnum.DLD_NORECOVERY_XA.newGlobalTransaction();
-
       InvocationContext localTxContext = buildLocalTxIc(ddgt);
 
       ddgt.setCoinToss(0);
@@ -103,13 +116,11 @@ public void testLocalDeadlock() throws Exception {
       assert ddgt.wouldLose(lockOwner);
 
       //this makes sure that we cannot acquire lock from the first try
-      expect(lc.acquireLock(localTxContext.getLockOwner(), "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(null);
-      Lock mockLock = createNiceMock(Lock.class);
-      expect(lc.acquireLock(localTxContext.getLockOwner(), "k", SPIN_DURATION, TimeUnit.MILLISECONDS)).andReturn(mockLock);
-      lockOwner.setRemote(false);
-      lockOwner.setLockIntention("k");
+      expect(lc.acquireLock(localTxContext.getLockOwner(), "k", 0, TimeUnit.MILLISECONDS)).andReturn(null);
+      //a remote transaction has the local lock, while we have the lock on the other nodes: the deadlock is detected
+      //before we even start waiting
+      lockOwner.setRemote(true);
       lockManager.setOwner(lockOwner);
-      lockManager.setOwnsLock(true);
       replay(lc);
       try {
          lockManager.lockAndRecord("k", localTxContext, config.getLockAcquisitionTimeout());
@@ -117,7 +128,71 @@ public void testLocalDeadlock() throws Exception {
       } catch (DeadlockDetectedException e) {
          //expected
       }
+      verify(lc);
       assertEquals(1l,lockManager.getDetectedLocalDeadlocks());
+      assert lockManager.getWaitingTransactions() == 0;
+   }
+
+   public void testLocalDeadlock() throws Exception {
+      // the waiting transaction loses the coin toss, so it is woken up when the other transaction closes the cycle
+      runLocalDeadlock(0, 1);
+   }
+
+   public void testLocalDeadlockClosingTransactionLoses() throws Exception {
+      runLocalDeadlock(1, 0);
+   }
+
+   private void runLocalDeadlock(long waitingCoinToss, long closingCoinToss) throws Exception {
+      final DeadlockDetectingLockManagerMock lm = new DeadlockDetectingLockManagerMock(true, new OwnableReentrantPerEntryLockContainer(32), config);
+      final DldGlobalTransaction waitingTx = (DldGlobalTransaction) TransactionFactory.TxFactoryEnum.DLD_NORECOVERY_XA.newGlobalTransaction();
+      final DldGlobalTransaction closingTx = (DldGlobalTransaction) TransactionFactory.TxFactoryEnum.DLD_NORECOVERY_XA.newGlobalTransaction();
+      waitingTx.setCoinToss(waitingCoinToss);
+      closingTx.setCoinToss(closingCoinToss);
+      final InvocationContext waitingCtx = buildLocalTxIc(waitingTx);
+      InvocationContext closingCtx = buildLocalTxIc(closingTx);
+      final long timeout = 10000;
+
+      assert lm.lockAndRecord("k1", closingCtx, timeout);
+      assert lm.lockAndRecord("k2", waitingCtx, timeout);
+
+      Future<Boolean> waiting = executor.submit(new Callable<Boolean>() {
+         @Override
+         public Boolean call() throws Exception {
+            try {
+               return lm.lockAndRecord("k1", waitingCtx, timeout);
+            } catch (DeadlockDetectedException e) {
+               // roll back
+               lm.unlock(Collections.<Object>singleton("k2"), waitingTx);
+               return false;
+            }
+         }
+      });
+      eventually(new Condition() {
+         @Override
+         public boolean isSatisfied() throws Exception {
+            return lm.getWaitingTransactions() == 1;
+         }
+      });
+
+      long start = System.currentTimeMillis();
+      boolean closingLocked;
+      try {
+         closingLocked = lm.lockAndRecord("k2", closingCtx, timeout);
+      } catch (DeadlockDetectedException e) {
+         lm.unlock(Collections.<Object>singleton("k1"), closingTx);
+         closingLocked = false;
+      }
+      boolean waitingLocked = waiting.get(timeout, TimeUnit.MILLISECONDS);
+      assert System.currentTimeMillis() - start < timeout / 2 : "The deadlock should be detected without waiting for the timeout";
+
+      if (waitingCoinToss < closingCoinToss) {
+         assert closingLocked && !waitingLocked;
+      } else {
+         assert !closingLocked && waitingLocked;
+      }
+      assert !Thread.currentThread().isInterrupted();
+      assertEquals(1l, lm.getDetectedLocalDeadlocks());
+      assert lm.getWaitingTransactions() == 0;
    }
 
    private InvocationContext buildLocalTxIc(final DldGlobalTransaction ddgt) {
@@ -133,10 +208,8 @@ public Object getLockOwner() {
    public static class DeadlockDetectingLockManagerMock extends DeadlockDetectingLockManager {
 
       private Object owner;
-      private boolean ownsLock;
 
-      public DeadlockDetectingLockManagerMock(long spinDuration, boolean exposeJmxStats, LockContainer lockContainer, Configuration configuration) {
-         this.spinDuration = spinDuration;
+      public DeadlockDetectingLockManagerMock(boolean exposeJmxStats, LockContainer lockContainer, Configuration configuration) {
          this.exposeJmxStats = exposeJmxStats;
          super.lockContainer = lockContainer;
          this.configuration = configuration;
@@ -146,18 +219,9 @@ public void setOwner(Object owner) {
          this.owner = owner;
       }
 
-      public void setOwnsLock(boolean ownsLock) {
-         this.ownsLock = ownsLock;
-      }
-
       @Override
       public Object getOwner(Object key) {
-         return owner;
-      }
-
-      @Override
-      public boolean ownsLock(Object key, Object owner) {
-         return ownsLock;
+         return owner != null ? owner : super.getOwner(key);
       }
    }
 }
@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011 Red Hat Inc. and/or its affiliates and other
+ * contributors as indicated by the @author tags. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing of
+ * individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.infinispan.util.concurrent;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Tests {@link SettableNotifyingFuture}.
+ *
+ * @author Manik Surtani
+ * @since 5.1
+ */
+@Test(groups = "unit", testName = "util.concurrent.SettableNotifyingFutureTest")
+public class SettableNotifyingFutureTest {
+
+   public void testSetNotifiesListenersOnce() throws Exception {
+      SettableNotifyingFuture<String> f = new SettableNotifyingFuture<String>();
+      CountingListener before = new CountingListener();
+      f.attachListener(before);
+      assert !f.isDone();
+      assert before.count.get() == 0;
+
+      assert f.set("v");
+      assert !f.set("w");
+      assert !f.setException(new Exception());
+      assert f.isDone();
+      assert "v".equals(f.get());
+      assert before.count.get() == 1;
+
+      CountingListener after = new CountingListener();
+      f.attachListener(after);
+      assert after.count.get() == 1;
+      assert before.count.get() == 1;
+   }
+
+   public void testSetException() throws Exception {
+      SettableNotifyingFuture<String> f = new SettableNotifyingFuture<String>();
+      Exception cause = new IllegalStateException();
+      assert f.setException(cause);
+      try {
+         f.get();
+         assert false : "Should have thrown an ExecutionException";
+      } catch (ExecutionException e) {
+         assert e.getCause() == cause;
+      }
+   }
+
+   public void testCancel() throws Exception {
+      SettableNotifyingFuture<String> f = new SettableNotifyingFuture<String>();
+      assert f.cancel(true);
+      assert f.isCancelled();
+      assert !f.set("v");
+      try {
+         f.get();
+         assert false : "Should have thrown a CancellationException";
+      } catch (CancellationException expected) {
+      }
+   }
+
+   public void testTimedGet() throws Exception {
+      SettableNotifyingFuture<String> f = new SettableNotifyingFuture<String>();
+      try {
+         f.get(10, MILLISECONDS);
+         assert false : "Should have timed out";
+      } catch (java.util.concurrent.TimeoutException expected) {
+      }
+   }
+
+   private static class CountingListener implements FutureListener<String> {
+      final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public void futureDone(Future<String> future) {
+         assert future.isDone();
+         count.incrementAndGet();
+      }
+   }
+}
@@ -33,6 +33,7 @@
 import org.infinispan.remoting.rpc.ResponseMode;
 import org.infinispan.remoting.transport.Address;
 import org.infinispan.remoting.transport.Transport;
+import org.infinispan.util.concurrent.NotifyingFuture;
 import org.infinispan.util.logging.Log;
 
 import java.util.Collection;
@@ -60,6 +61,14 @@ public Map<Address, Response> invokeRemotely(final Collection<Address> recipient
       return null;
    }
 
+   @Override
+   public NotifyingFuture<Map<Address, Response>> invokeRemotelyInFuture(final Collection<Address> recipients,
+            final ReplicableCommand rpcCommand, final ResponseMode mode, final long timeout,
+            final boolean usePriorityQueue, final ResponseFilter responseFilter,
+            final boolean supportReplay) {
+      return null;
+   }
+
    @Override
    public boolean isCoordinator() {
       return false;